@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -35,6 +36,7 @@ import java.util.UUID;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.sleepycat.bind.tuple.LongBinding;
 import com.sleepycat.je.Cursor;
+import com.sleepycat.je.CursorConfig;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.LockConflictException;
@@ -45,6 +47,7 @@ import com.sleepycat.je.SequenceConfig;
 import com.sleepycat.je.Transaction;
 import org.slf4j.Logger;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.message.EnqueueableMessage;
 import org.apache.qpid.server.model.ConfiguredObject;
@@ -52,23 +55,28 @@ import org.apache.qpid.server.store.Event;
 import org.apache.qpid.server.store.EventListener;
 import org.apache.qpid.server.store.EventManager;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.MappedMessageContentCache;
 import org.apache.qpid.server.store.MessageHandle;
+import org.apache.qpid.server.store.MessageMetaDataCache;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoreException;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.store.Xid;
+import org.apache.qpid.server.store.berkeleydb.entry.MessageContentKey;
 import org.apache.qpid.server.store.berkeleydb.entry.PreparedTransaction;
 import org.apache.qpid.server.store.berkeleydb.entry.QueueEntryKey;
-import org.apache.qpid.server.store.berkeleydb.tuple.ByteBufferBinding;
+import org.apache.qpid.server.store.berkeleydb.tuple.MessageContentKeyBinding;
 import org.apache.qpid.server.store.berkeleydb.tuple.MessageMetaDataBinding;
 import org.apache.qpid.server.store.berkeleydb.tuple.PreparedTransactionBinding;
 import org.apache.qpid.server.store.berkeleydb.tuple.QueueEntryBinding;
 import org.apache.qpid.server.store.berkeleydb.tuple.XidBinding;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
+import org.apache.qpid.server.virtualhost.berkeleydb.BDBVirtualHost;
 
 
 public abstract class AbstractBDBMessageStore implements MessageStore
@@ -78,7 +86,7 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
     private static final String MESSAGE_META_DATA_DB_NAME = "MESSAGE_METADATA";
     private static final String MESSAGE_META_DATA_SEQ_DB_NAME = "MESSAGE_METADATA.SEQ";
-    private static final String MESSAGE_CONTENT_DB_NAME = "MESSAGE_CONTENT";
+    private static final String MESSAGE_CONTENT_DB_NAME = "MESSAGE_CONTENT_CHUNKS";
     private static final String DELIVERY_DB_NAME = "QUEUE_ENTRIES";
 
     //TODO: Add upgrader to remove BRIDGES and LINKS
@@ -101,6 +109,9 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     private boolean _limitBusted;
     private long _totalStoreSize;
     private final Random _lockConflictRandom = new Random();
+    private volatile MessageMetaDataCache _flowedMetaDataCache;
+    private volatile MappedMessageContentCache _mappedContentCache;
+    private volatile int _contentChunkSize = BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE;
 
     @Override
     public void upgradeStoreStructure() throws StoreException
@@ -242,9 +253,7 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                     getLogger().debug("Deleted metadata for message {}", messageId);
 
                     //now remove the content data from the store if there is any.
-                    DatabaseEntry contentKeyEntry = new DatabaseEntry();
-                    LongBinding.longToEntry(messageId, contentKeyEntry);
-                    getMessageContentDb().delete(tx, contentKeyEntry);
+                    deleteContent(tx, messageId);
 
                     getLogger().debug("Deleted content for message {}", messageId);
 
@@ -325,38 +334,20 @@ public abstract class AbstractBDBMessageStore implements MessageStore
      */
     int getContent(long messageId, int offset, ByteBuffer dst) throws StoreException
     {
-        DatabaseEntry contentKeyEntry = new DatabaseEntry();
-        LongBinding.longToEntry(messageId, contentKeyEntry);
-        DatabaseEntry value = new DatabaseEntry();
-        ByteBufferBinding contentTupleBinding = ByteBufferBinding.getInstance();
-
-
         getLogger().debug("Message Id: {} Getting content body from offset: {}", messageId, offset);
 
-
         try
         {
-
             int written = 0;
-            OperationStatus status = getMessageContentDb().get(null, contentKeyEntry, value, LockMode.READ_UNCOMMITTED);
-            if (status == OperationStatus.SUCCESS)
+            Collection<QpidByteBuffer> content = readContent(messageId, offset, dst.remaining());
+            if (content != null)
             {
-                QpidByteBuffer buffer = contentTupleBinding.entryToObject(value);
-                int size = buffer.remaining();
-                if (offset > size)
-                {
-                    throw new RuntimeException("Offset " + offset + " is greater than message size " + size
-                                               + " for message id " + messageId + "!");
-
-                }
-
-                written = size - offset;
-                if(written > dst.remaining())
+                for (QpidByteBuffer buf : content)
                 {
-                    written = dst.remaining();
+                    written += buf.remaining();
+                    buf.get(dst);
+                    buf.dispose();
                 }
-                buffer = buffer.view(offset, written);
-                buffer.get(dst);
             }
             return written;
         }
@@ -371,36 +362,61 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
     Collection<QpidByteBuffer> getAllContent(long messageId) throws StoreException
     {
-        DatabaseEntry contentKeyEntry = new DatabaseEntry();
-        LongBinding.longToEntry(messageId, contentKeyEntry);
-        DatabaseEntry value = new DatabaseEntry();
-
         getLogger().debug("Message Id: {} Getting content body", messageId);
 
+        final MappedMessageContentCache mappedContentCache = _mappedContentCache;
+        if (mappedContentCache != null)
+        {
+            final Collection<QpidByteBuffer> mappedContent = mappedContentCache.get(messageId);
+            if (mappedContent != null)
+            {
+                return mappedContent;
+            }
+        }
+
         try
         {
-            OperationStatus status = getMessageContentDb().get(null, contentKeyEntry, value, LockMode.READ_UNCOMMITTED);
+            Collection<QpidByteBuffer> content = readContent(messageId, 0, Integer.MAX_VALUE);
+            if (content == null)
+            {
+                throw new StoreException("Unable to find message with id " + messageId);
+            }
 
-            if (status == OperationStatus.SUCCESS)
+            if (mappedContentCache != null)
             {
-                byte[] data = value.getData();
-                int offset = value.getOffset();
-                int length = value.getSize();
-                Collection<QpidByteBuffer> buffers = QpidByteBuffer.allocateDirectCollection(length);
-                for(QpidByteBuffer buf : buffers)
+                final Collection<QpidByteBuffer> mappedContent = mappedContentCache.put(messageId, content);
+                if (mappedContent != null)
                 {
-                    int bufSize = buf.remaining();
-                    buf.put(data, offset, bufSize);
-                    buf.flip();
-                    offset+=bufSize;
+                    for (QpidByteBuffer buf : content)
+                    {
+                        buf.dispose();
+                    }
+                    return mappedContent;
                 }
-                return buffers;
             }
-            else
+            return content;
+        }
+        catch (RuntimeException e)
+        {
+            throw getEnvironmentFacade().handleDatabaseException("Error getting AMQMessage with id "
+                                                                 + messageId
+                                                                 + " to database: "
+                                                                 + e.getMessage(), e);
+        }
+    }
+
+    Collection<QpidByteBuffer> getContentRange(long messageId, int offset, int length) throws StoreException
+    {
+        getLogger().debug("Message Id: {} Getting {} bytes of content body from offset: {}", messageId, length, offset);
+
+        try
+        {
+            Collection<QpidByteBuffer> content = readContent(messageId, offset, length);
+            if (content == null)
             {
                 throw new StoreException("Unable to find message with id " + messageId);
             }
-
+            return content;
         }
         catch (RuntimeException e)
         {
@@ -411,6 +427,138 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         }
     }
 
+    /**
+     * Reads the given range of the content of a message.  The content is stored in chunks keyed by the message id
+     * and the offset of the chunk, so only the chunks spanning the range are read.
+     *
+     * @param messageId The message to get the data for.
+     * @param offset    The offset of the data within the message.
+     * @param length    The maximum number of bytes to read.
+     *
+     * @return the content, or null if the store holds no content for the message
+     */
+    private Collection<QpidByteBuffer> readContent(final long messageId, final int offset, final int length)
+    {
+        final MessageContentKeyBinding keyBinding = MessageContentKeyBinding.getInstance();
+        final DatabaseEntry key = new DatabaseEntry();
+        keyBinding.objectToEntry(new MessageContentKey(messageId, offset), key);
+        final DatabaseEntry value = new DatabaseEntry();
+        // position the cursor on the chunk holding the offset without fetching the data of the chunks passed over
+        value.setPartial(0, 0, true);
+
+        final List<QpidByteBuffer> content = new ArrayList<>();
+        Cursor cursor = null;
+        try
+        {
+            cursor = getMessageContentDb().openCursor(null, CursorConfig.READ_UNCOMMITTED);
+            OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.READ_UNCOMMITTED);
+            if (status != OperationStatus.SUCCESS || !isChunkKey(keyBinding.entryToObject(key), messageId, offset))
+            {
+                // the offset lies within the preceding chunk
+                status = status == OperationStatus.SUCCESS
+                        ? cursor.getPrev(key, value, LockMode.READ_UNCOMMITTED)
+                        : cursor.getLast(key, value, LockMode.READ_UNCOMMITTED);
+            }
+            if (status != OperationStatus.SUCCESS || keyBinding.entryToObject(key).getMessageId() != messageId)
+            {
+                return null;
+            }
+
+            value.setPartial(false);
+            status = cursor.getCurrent(key, value, LockMode.READ_UNCOMMITTED);
+
+            int position = offset;
+            int remaining = length;
+            int size = 0;
+            while (status == OperationStatus.SUCCESS && remaining > 0)
+            {
+                final MessageContentKey chunkKey = keyBinding.entryToObject(key);
+                if (chunkKey.getMessageId() != messageId)
+                {
+                    break;
+                }
+                final int chunkOffset = chunkKey.getOffset();
+                if (chunkOffset > position)
+                {
+                    throw new StoreException("Content of message id " + messageId + " has no chunk at offset "
+                                             + position);
+                }
+
+                size = chunkOffset + value.getSize();
+                if (size > position)
+                {
+                    int chunkLength = Math.min(size - position, remaining);
+                    int dataOffset = value.getOffset() + position - chunkOffset;
+                    for (QpidByteBuffer buf : QpidByteBuffer.allocateDirectCollection(chunkLength,
+                                                                                      DirectMemoryCategory.CONTENT))
+                    {
+                        int bufSize = buf.remaining();
+                        buf.put(value.getData(), dataOffset, bufSize);
+                        buf.flip();
+                        content.add(buf);
+                        dataOffset += bufSize;
+                    }
+                    position += chunkLength;
+                    remaining -= chunkLength;
+                }
+
+                if (remaining > 0)
+                {
+                    status = cursor.getNext(key, value, LockMode.READ_UNCOMMITTED);
+                }
+            }
+
+            if (offset > size && length > 0)
+            {
+                throw new RuntimeException("Offset " + offset + " is greater than message size " + size
+                                           + " for message id " + messageId + "!");
+            }
+            return content;
+        }
+        catch (RuntimeException e)
+        {
+            for (QpidByteBuffer buf : content)
+            {
+                buf.dispose();
+            }
+            throw e;
+        }
+        finally
+        {
+            closeCursorSafely(cursor, getEnvironmentFacade());
+        }
+    }
+
+    private static boolean isChunkKey(final MessageContentKey key, final long messageId, final int offset)
+    {
+        return key.getMessageId() == messageId && key.getOffset() == offset;
+    }
+
+    private void deleteContent(final Transaction tx, final long messageId)
+    {
+        final MessageContentKeyBinding keyBinding = MessageContentKeyBinding.getInstance();
+        final DatabaseEntry key = new DatabaseEntry();
+        keyBinding.objectToEntry(new MessageContentKey(messageId, 0), key);
+        final DatabaseEntry value = new DatabaseEntry();
+        value.setPartial(0, 0, true);
+
+        Cursor cursor = null;
+        try
+        {
+            cursor = getMessageContentDb().openCursor(tx, null);
+            OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.RMW);
+            while (status == OperationStatus.SUCCESS && keyBinding.entryToObject(key).getMessageId() == messageId)
+            {
+                cursor.delete();
+                status = cursor.getNext(key, value, LockMode.RMW);
+            }
+        }
+        finally
+        {
+            closeCursorSafely(cursor, getEnvironmentFacade());
+        }
+    }
+
     private void visitMessagesInternal(MessageHandler handler, EnvironmentFacade environmentFacade)
     {
         Cursor cursor = null;
@@ -515,41 +663,62 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     }
 
     /**
-     * Stores a chunk of message data.
+     * Stores the content of a message as a sequence of records of at most the configured chunk size, each keyed by
+     * the message id and the offset of the chunk within the message.  A message without content is stored as a
+     * single empty chunk.
      *
      * @param tx         The transaction for the operation.
      * @param messageId       The message to store the data for.
-     * @param contentBody     The content of the data chunk.
+     * @param contentBody     The content of the message.
      *
      * @throws org.apache.qpid.server.store.StoreException If the operation fails for any reason, or if the specified message does not exist.
      */
     private void addContent(final Transaction tx, long messageId,
                             Collection<QpidByteBuffer> contentBody) throws StoreException
     {
-        DatabaseEntry key = new DatabaseEntry();
-        LongBinding.longToEntry(messageId, key);
-        DatabaseEntry value = new DatabaseEntry();
-
         int size = 0;
-
         for(QpidByteBuffer buf : contentBody)
         {
             size += buf.remaining();
         }
-        byte[] data = new byte[size];
-        ByteBuffer dst = ByteBuffer.wrap(data);
-        for(QpidByteBuffer buf : contentBody)
-        {
-            buf.copyTo(dst);
-        }
-        value.setData(data);
+
+        final int chunkSize = _contentChunkSize;
+        final MessageContentKeyBinding keyBinding = MessageContentKeyBinding.getInstance();
+        final Iterator<QpidByteBuffer> iterator = contentBody.iterator();
+        QpidByteBuffer current = null;
+        int chunkOffset = 0;
         try
         {
-            OperationStatus status = getMessageContentDb().put(tx, key, value);
-            if (status != OperationStatus.SUCCESS)
+            do
             {
-                throw new StoreException("Error adding content for message id " + messageId + ": " + status);
+                byte[] data = new byte[Math.min(chunkSize, size - chunkOffset)];
+                int filled = 0;
+                while (filled < data.length)
+                {
+                    if (current == null || !current.hasRemaining())
+                    {
+                        if (current != null)
+                        {
+                            current.dispose();
+                        }
+                        current = iterator.next().duplicate();
+                    }
+                    int length = Math.min(current.remaining(), data.length - filled);
+                    current.get(data, filled, length);
+                    filled += length;
+                }
+
+                DatabaseEntry key = new DatabaseEntry();
+                keyBinding.objectToEntry(new MessageContentKey(messageId, chunkOffset), key);
+                DatabaseEntry value = new DatabaseEntry(data);
+                OperationStatus status = getMessageContentDb().put(tx, key, value);
+                if (status != OperationStatus.SUCCESS)
+                {
+                    throw new StoreException("Error adding content for message id " + messageId + ": " + status);
+                }
+                chunkOffset += data.length;
             }
+            while (chunkOffset < size);
 
             getLogger().debug("Storing content for message {} in transaction {}", messageId, tx);
 
@@ -561,6 +730,13 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                                                                  + " to database: "
                                                                  + e.getMessage(), e);
         }
+        finally
+        {
+            if (current != null)
+            {
+                current.dispose();
+            }
+        }
     }
 
     /**
@@ -918,6 +1094,45 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
     protected abstract ConfiguredObject<?> getParent();
 
+    protected void openFlowedMetaDataCache(final ConfiguredObject<?> parent)
+    {
+        _flowedMetaDataCache = MessageMetaDataCache.open(parent);
+    }
+
+    protected void configureContentChunkSize(final ConfiguredObject<?> parent)
+    {
+        final int chunkSize = BDBUtils.getContextValue(parent,
+                                                       Integer.class,
+                                                       BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE,
+                                                       BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE);
+        _contentChunkSize = chunkSize > 0 ? chunkSize : BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE;
+    }
+
+    protected void openMappedContentCache(final ConfiguredObject<?> parent)
+    {
+        _mappedContentCache = MappedMessageContentCache.open(parent);
+    }
+
+    protected void closeMappedContentCache()
+    {
+        final MappedMessageContentCache mappedContentCache = _mappedContentCache;
+        if (mappedContentCache != null)
+        {
+            _mappedContentCache = null;
+            mappedContentCache.close();
+        }
+    }
+
+    protected void closeFlowedMetaDataCache()
+    {
+        final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+        if (flowedMetaDataCache != null)
+        {
+            _flowedMetaDataCache = null;
+            flowedMetaDataCache.close();
+        }
+    }
+
     protected abstract EnvironmentFacade getEnvironmentFacade();
 
     protected abstract long getPersistentSizeLowThreshold();
@@ -1027,6 +1242,8 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     {
 
         private final long _messageId;
+        // kept so that the size of the content is known without reloading meta-data that has been flowed to disk
+        private final int _contentSize;
 
         private MessageDataRef<T> _messageDataRef;
 
@@ -1038,6 +1255,7 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         StoredBDBMessage(long messageId, T metaData, boolean isRecovered)
         {
             _messageId = messageId;
+            _contentSize = metaData.getContentSize();
 
             if(!isRecovered)
             {
@@ -1063,7 +1281,15 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                 if (metaData == null)
                 {
                     checkMessageStoreOpen();
-                    metaData = (T) getMessageMetaData(_messageId);
+                    final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+                    if (flowedMetaDataCache != null)
+                    {
+                        metaData = (T) flowedMetaDataCache.get(_messageId);
+                    }
+                    if (metaData == null)
+                    {
+                        metaData = (T) getMessageMetaData(_messageId);
+                    }
                     _messageDataRef = new MessageDataSoftRef<>(metaData, _messageDataRef.getData());
                 }
                 return metaData;
@@ -1127,6 +1353,18 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         @Override
         public synchronized Collection<QpidByteBuffer> getContent(int offset, int length)
         {
+            if (isLargeContentOnlyInStore() && (offset > 0 || length < _contentSize))
+            {
+                // read just the chunks spanning the range rather than loading (and holding) the whole content; a read
+                // of the whole content, such as a read-ahead, loads it all anyway and so keeps it as any other message
+                if (offset >= _contentSize || length <= 0)
+                {
+                    return Collections.emptyList();
+                }
+                checkMessageStoreOpen();
+                return AbstractBDBMessageStore.this.getContentRange(_messageId, offset, length);
+            }
+
             Collection<QpidByteBuffer> bufs = getContentAsByteBuffer();
             Collection<QpidByteBuffer> content = new ArrayList<>(bufs.size());
             int pos = 0;
@@ -1240,6 +1478,17 @@ public abstract class AbstractBDBMessageStore implements MessageStore
             }
             metaData.dispose();
             _messageDataRef = null;
+
+            final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+            if (flowedMetaDataCache != null)
+            {
+                flowedMetaDataCache.remove(_messageId);
+            }
+            final MappedMessageContentCache mappedContentCache = _mappedContentCache;
+            if (mappedContentCache != null)
+            {
+                mappedContentCache.remove(_messageId);
+            }
         }
 
         @Override
@@ -1248,6 +1497,14 @@ public abstract class AbstractBDBMessageStore implements MessageStore
             return _messageDataRef != null && (_messageDataRef.isHardRef() || _messageDataRef.getData() != null);
         }
 
+        private boolean isLargeContentOnlyInStore()
+        {
+            return stored()
+                   && _messageDataRef.getData() == null
+                   && _mappedContentCache == null
+                   && _contentSize > _contentChunkSize;
+        }
+
         private boolean stored()
         {
             return _messageDataRef != null && !_messageDataRef.isHardRef();
@@ -1260,6 +1517,12 @@ public abstract class AbstractBDBMessageStore implements MessageStore
             flushToStore();
             if(_messageDataRef != null && !_messageDataRef.isHardRef())
             {
+                final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+                final T metaData = _messageDataRef.getMetaData();
+                if (flowedMetaDataCache != null && metaData != null)
+                {
+                    flowedMetaDataCache.put(_messageId, metaData);
+                }
                 ((MessageDataSoftRef)_messageDataRef).clear();
             }
             return true;
@@ -1485,6 +1748,8 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
     private class BDBMessageStoreReader implements MessageStoreReader
     {
+        private static final int MESSAGE_INSTANCE_BATCH_SIZE = 1024;
+
         @Override
         public void visitMessages(final MessageHandler handler) throws StoreException
         {
@@ -1507,9 +1772,43 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
         @Override
         public void visitMessageInstances(final TransactionLogResource queue, final MessageInstanceHandler handler) throws StoreException
+        {
+            visitMessageInstances(queue, 0L, Long.MAX_VALUE, handler);
+        }
+
+        @Override
+        public void visitMessageInstances(final TransactionLogResource queue,
+                                          final long fromMessageId,
+                                          final long toMessageId,
+                                          final MessageInstanceHandler handler) throws StoreException
         {
             checkMessageStoreOpen();
 
+            // entries are read a batch at a time so that the cursor is not held open while the handler runs and
+            // the entries of a large queue are not all held in memory at once
+            long nextMessageId = fromMessageId;
+            List<QueueEntryKey> entries;
+            do
+            {
+                entries = readMessageInstances(queue, nextMessageId, toMessageId);
+                for(QueueEntryKey entry : entries)
+                {
+                    UUID queueId = entry.getQueueId();
+                    long messageId = entry.getMessageId();
+                    if (!handler.handle(new BDBEnqueueRecord(queueId, messageId)))
+                    {
+                        return;
+                    }
+                    nextMessageId = messageId + 1;
+                }
+            }
+            while (entries.size() == MESSAGE_INSTANCE_BATCH_SIZE);
+        }
+
+        private List<QueueEntryKey> readMessageInstances(final TransactionLogResource queue,
+                                                         final long fromMessageId,
+                                                         final long toMessageId)
+        {
             Cursor cursor = null;
             List<QueueEntryKey> entries = new ArrayList<QueueEntryKey>();
             try
@@ -1520,7 +1819,7 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                 value.setPartial(0, 0, true);
 
                 QueueEntryBinding keyBinding = QueueEntryBinding.getInstance();
-                keyBinding.objectToEntry(new QueueEntryKey(queue.getId(),0l), key);
+                keyBinding.objectToEntry(new QueueEntryKey(queue.getId(), fromMessageId), key);
 
                 boolean searchCompletedSuccessfully = false;
                 int attempts = 0;
@@ -1532,18 +1831,23 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                         if (!searchCompletedSuccessfully && (searchCompletedSuccessfully = cursor.getSearchKeyRange(key,value, LockMode.DEFAULT) == OperationStatus.SUCCESS))
                         {
                             QueueEntryKey entry = keyBinding.entryToObject(key);
-                            if(entry.getQueueId().equals(queue.getId()))
+                            if(isInRange(entry, queue, toMessageId))
                             {
                                 entries.add(entry);
                             }
+                            else
+                            {
+                                completed = true;
+                            }
                         }
 
-                        if (searchCompletedSuccessfully)
+                        if (searchCompletedSuccessfully && !completed)
                         {
-                            while(cursor.getNext(key, value, LockMode.DEFAULT) == OperationStatus.SUCCESS)
+                            while(entries.size() < MESSAGE_INSTANCE_BATCH_SIZE
+                                  && cursor.getNext(key, value, LockMode.DEFAULT) == OperationStatus.SUCCESS)
                             {
                                 QueueEntryKey entry = keyBinding.entryToObject(key);
-                                if(entry.getQueueId().equals(queue.getId()))
+                                if(isInRange(entry, queue, toMessageId))
                                 {
                                     entries.add(entry);
                                 }
@@ -1570,21 +1874,51 @@ public abstract class AbstractBDBMessageStore implements MessageStore
             {
                 closeCursorSafely(cursor, getEnvironmentFacade());
             }
+            return entries;
+        }
 
-            for(QueueEntryKey entry : entries)
+        private boolean isInRange(final QueueEntryKey entry, final TransactionLogResource queue, final long toMessageId)
+        {
+            return entry.getQueueId().equals(queue.getId()) && entry.getMessageId() < toMessageId;
+        }
+
+        @Override
+        public void visitMessageIds(final long fromMessageId,
+                                    final long toMessageId,
+                                    final MessageIdHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            Cursor cursor = null;
+            try
             {
-                UUID queueId = entry.getQueueId();
-                long messageId = entry.getMessageId();
-                if (!handler.handle(new BDBEnqueueRecord(queueId, messageId)))
+                cursor = getMessageMetaDataDb().openCursor(null, null);
+                DatabaseEntry key = new DatabaseEntry();
+                DatabaseEntry value = new DatabaseEntry();
+                value.setPartial(0, 0, true);
+                LongBinding.longToEntry(fromMessageId, key);
+
+                OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.READ_UNCOMMITTED);
+                while (status == OperationStatus.SUCCESS)
                 {
-                    break;
+                    long messageId = LongBinding.entryToLong(key);
+                    if (messageId >= toMessageId || !handler.handle(messageId))
+                    {
+                        break;
+                    }
+                    status = cursor.getNext(key, value, LockMode.READ_UNCOMMITTED);
                 }
             }
-
+            catch (RuntimeException e)
+            {
+                throw getEnvironmentFacade().handleDatabaseException("Cannot visit message ids", e);
+            }
+            finally
+            {
+                closeCursorSafely(cursor, getEnvironmentFacade());
+            }
         }
 
-
-
         @Override
         public void visitMessageInstances(final MessageInstanceHandler handler) throws StoreException
         {
@@ -71,7 +71,7 @@ public class BDBConfigurationStore implements MessageStoreProvider, DurableConfi
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(BDBConfigurationStore.class);
 
-    public static final int VERSION = 9;
+    public static final int VERSION = 10;
     private static final String CONFIGURED_OBJECTS_DB_NAME = "CONFIGURED_OBJECTS";
     private static final String CONFIGURED_OBJECT_HIERARCHY_DB_NAME = "CONFIGURED_OBJECT_HIERARCHY";
 
@@ -588,6 +588,9 @@ public class BDBConfigurationStore implements MessageStoreProvider, DurableConfi
                 {
                     _persistentSizeLowThreshold = _persistentSizeHighThreshold;
                 }
+                configureContentChunkSize(parent);
+                openFlowedMetaDataCache(parent);
+                openMappedContentCache(parent);
             }
         }
 
@@ -599,7 +602,11 @@ public class BDBConfigurationStore implements MessageStoreProvider, DurableConfi
         @Override
         public void closeMessageStore()
         {
-            _messageStoreOpen.set(false);
+            if (_messageStoreOpen.compareAndSet(true, false))
+            {
+                closeFlowedMetaDataCache();
+                closeMappedContentCache();
+            }
         }
 
         @Override
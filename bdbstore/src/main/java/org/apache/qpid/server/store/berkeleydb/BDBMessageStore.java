@@ -77,6 +77,9 @@ public class BDBMessageStore extends AbstractBDBMessageStore
             }
 
             _environmentFacade = _environmentFacadeFactory.createEnvironmentFacade(parent);
+            configureContentChunkSize(parent);
+            openFlowedMetaDataCache(parent);
+            openMappedContentCache(parent);
         }
     }
 
@@ -85,6 +88,8 @@ public class BDBMessageStore extends AbstractBDBMessageStore
     {
         if (_messageStoreOpen.compareAndSet(true, false))
         {
+            closeFlowedMetaDataCache();
+            closeMappedContentCache();
             if (_environmentFacade != null)
             {
                 try
@@ -36,6 +36,9 @@ import com.sleepycat.je.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
+
 public class CoalescingCommiter implements Committer
 {
     private final CommitThread _commitThread;
@@ -189,18 +192,15 @@ public class CoalescingCommiter implements Committer
             int completedJobsIndex = 0;
             try
             {
-                long startTime = 0;
-                if(LOGGER.isDebugEnabled())
-                {
-                    startTime = System.currentTimeMillis();
-                }
+                long startTime = System.nanoTime();
 
                 _environmentFacade.flushLog();
 
+                long duration = System.nanoTime() - startTime;
+                EventTracer.trace(TraceEvent.STORE_COMMIT, getName(), duration);
                 if(LOGGER.isDebugEnabled())
                 {
-                    long duration = System.currentTimeMillis() - startTime;
-                    LOGGER.debug("flushLog completed in " + duration  + " ms");
+                    LOGGER.debug("flushLog completed in " + TimeUnit.NANOSECONDS.toMillis(duration)  + " ms");
                 }
 
                 while(completedJobsIndex < _inProcessJobs.size())
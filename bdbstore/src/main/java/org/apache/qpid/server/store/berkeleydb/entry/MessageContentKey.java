@@ -0,0 +1,47 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store.berkeleydb.entry;
+
+/**
+ * Identifies a chunk of the content of a message by the message id and the offset of the first byte of the chunk
+ * within the message.
+ */
+public class MessageContentKey
+{
+    private final long _messageId;
+    private final int _offset;
+
+    public MessageContentKey(long messageId, int offset)
+    {
+        _messageId = messageId;
+        _offset = offset;
+    }
+
+    public long getMessageId()
+    {
+        return _messageId;
+    }
+
+    public int getOffset()
+    {
+        return _offset;
+    }
+}
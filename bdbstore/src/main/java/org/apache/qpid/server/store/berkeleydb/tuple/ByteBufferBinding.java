@@ -26,6 +26,7 @@ import com.sleepycat.bind.tuple.TupleBinding;
 import com.sleepycat.bind.tuple.TupleInput;
 import com.sleepycat.bind.tuple.TupleOutput;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 
 public class ByteBufferBinding extends TupleBinding<QpidByteBuffer>
@@ -56,7 +57,7 @@ public class ByteBufferBinding extends TupleBinding<QpidByteBuffer>
     public QpidByteBuffer entryToObject(final TupleInput input)
     {
         int available = input.available();
-        QpidByteBuffer buf = QpidByteBuffer.allocateDirect(available);
+        QpidByteBuffer buf = QpidByteBuffer.allocateDirect(available, DirectMemoryCategory.CONTENT);
         byte[] copyBuf = COPY_BUFFER.get();
         while(available > 0)
         {
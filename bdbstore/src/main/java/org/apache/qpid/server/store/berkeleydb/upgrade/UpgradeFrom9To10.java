@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.store.berkeleydb.upgrade;
+package org.apache.qpid.server.store.berkeleydb.upgrade;
+
+import com.sleepycat.bind.tuple.LongBinding;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.berkeleydb.BDBUtils;
+import org.apache.qpid.server.store.berkeleydb.entry.MessageContentKey;
+import org.apache.qpid.server.store.berkeleydb.tuple.MessageContentKeyBinding;
+import org.apache.qpid.server.virtualhost.berkeleydb.BDBVirtualHost;
+
+/**
+ * Upgrades from a v9 database to a v10 database
+ *
+ * Change in this version:
+ *
+ * Message content is moved from the database MESSAGE_CONTENT to MESSAGE_CONTENT_CHUNKS. The structure of the
+ * database changes from ( message-id: long ) {@literal ->} ( byte[] data ) to ( message-id: long, offset: int )
+ * {@literal ->} ( byte[] data ), with the content of each message split into chunks of at most the configured chunk
+ * size.
+ */
+@SuppressWarnings("unused")
+public class UpgradeFrom9To10 extends AbstractStoreUpgrade
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpgradeFrom9To10.class);
+
+    static final String OLD_CONTENT_DB_NAME = "MESSAGE_CONTENT";
+    static final String NEW_CONTENT_DB_NAME = "MESSAGE_CONTENT_CHUNKS";
+
+    @Override
+    public void performUpgrade(final Environment environment,
+                               final UpgradeInteractionHandler handler,
+                               final ConfiguredObject<?> parent)
+    {
+        reportStarting(environment, 9);
+
+        if (environment.getDatabaseNames().contains(OLD_CONTENT_DB_NAME))
+        {
+            final int chunkSize = getChunkSize(parent);
+            LOGGER.info("Message Contents");
+
+            final Transaction transaction = environment.beginTransaction(null, null);
+            try
+            {
+                CursorOperation contentOperation = new CursorOperation()
+                {
+                    @Override
+                    public void processEntry(final Database oldContentDatabase,
+                                             final Database newContentDatabase,
+                                             final Transaction contentTransaction,
+                                             final DatabaseEntry key,
+                                             final DatabaseEntry value)
+                    {
+                        long messageId = LongBinding.entryToLong(key);
+                        upgradeMessageContent(messageId, value, chunkSize, newContentDatabase, contentTransaction);
+                    }
+                };
+                new DatabaseTemplate(environment, OLD_CONTENT_DB_NAME, NEW_CONTENT_DB_NAME, transaction).run(
+                        contentOperation);
+                LOGGER.info(contentOperation.getRowCount() + " Message Content Entries");
+
+                environment.removeDatabase(transaction, OLD_CONTENT_DB_NAME);
+                transaction.commit();
+            }
+            catch (RuntimeException e)
+            {
+                try
+                {
+                    if (transaction.isValid())
+                    {
+                        transaction.abort();
+                    }
+                }
+                finally
+                {
+                    throw e;
+                }
+            }
+        }
+
+        reportFinished(environment, 10);
+    }
+
+    private void upgradeMessageContent(final long messageId,
+                                       final DatabaseEntry value,
+                                       final int chunkSize,
+                                       final Database newContentDatabase,
+                                       final Transaction transaction)
+    {
+        final MessageContentKeyBinding keyBinding = MessageContentKeyBinding.getInstance();
+        final byte[] data = value.getData();
+        final int size = value.getSize();
+        int chunkOffset = 0;
+        do
+        {
+            int chunkLength = Math.min(chunkSize, size - chunkOffset);
+            DatabaseEntry chunkKey = new DatabaseEntry();
+            keyBinding.objectToEntry(new MessageContentKey(messageId, chunkOffset), chunkKey);
+            DatabaseEntry chunkValue = new DatabaseEntry();
+            chunkValue.setData(data, value.getOffset() + chunkOffset, chunkLength);
+
+            OperationStatus status = newContentDatabase.put(transaction, chunkKey, chunkValue);
+            if (status != OperationStatus.SUCCESS)
+            {
+                throw new StoreException("Cannot upgrade content of message " + messageId + ": " + status);
+            }
+            chunkOffset += chunkLength;
+        }
+        while (chunkOffset < size);
+    }
+
+    private int getChunkSize(final ConfiguredObject<?> parent)
+    {
+        int chunkSize = parent == null
+                ? BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE
+                : BDBUtils.getContextValue(parent,
+                                           Integer.class,
+                                           BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE,
+                                           BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE);
+        return chunkSize > 0 ? chunkSize : BDBVirtualHost.DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE;
+    }
+}
@@ -142,6 +142,12 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         throwUnsupportedForReplica();
     }
 
+    @Override
+    public void executeReadAheadTask(final String name, final Runnable task, final AccessControlContext context)
+    {
+        throwUnsupportedForReplica();
+    }
+
     @Override
     public Broker<?> getBroker()
     {
@@ -242,6 +248,12 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0;
     }
 
+    @Override
+    public boolean isConnectionThreadAffinity()
+    {
+        return false;
+    }
+
     @Override
     public long getQueueCount()
     {
@@ -284,6 +296,24 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0;
     }
 
+    @Override
+    public long getRecoveredMessages()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveredQueueEntries()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveryDuration()
+    {
+        return 0;
+    }
+
     @Override
     public Collection<? extends Connection<?>> getConnections()
     {
@@ -372,6 +402,12 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0l;
     }
 
+    @Override
+    public void setBlockedForDirectMemory(final boolean blocked)
+    {
+
+    }
+
     @Override
     public void scheduleHouseKeepingTask(final long period, final HouseKeepingTask task)
     {
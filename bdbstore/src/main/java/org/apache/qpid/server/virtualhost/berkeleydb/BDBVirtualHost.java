@@ -38,6 +38,14 @@ public interface BDBVirtualHost<X extends BDBVirtualHost<X>> extends VirtualHost
     @ManagedContextDefault(name= QPID_BROKER_BDB_TOTAL_CACHE_SIZE)
     long DEFAULT_JE_CACHE_SIZE = Math.max(BDB_MIN_CACHE_SIZE, Runtime.getRuntime().maxMemory()/20l);
 
+    String QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE = "qpid.bdb.message_content_chunk_size";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE,
+            description = "The maximum size in bytes of each record holding part of the content of a message in a"
+                          + " BDB message store.  Content is read a chunk at a time, so a partial read of a large"
+                          + " message loads only the chunks it spans.")
+    int DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE = 256 * 1024;
+
     @ManagedAttribute(mandatory = true, defaultValue = "${qpid.work_dir}${file.separator}${this:name}${file.separator}messages")
     String getStorePath();
 
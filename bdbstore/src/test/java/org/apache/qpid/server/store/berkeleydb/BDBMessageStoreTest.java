@@ -26,6 +26,7 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
@@ -311,6 +312,38 @@ public class BDBMessageStoreTest extends MessageStoreTestCase
         assertTrue("Unexpected content", Arrays.equals(expected, array));
     }
 
+    public void testGetContentOfFlowedMessageSpanningChunks() throws Exception
+    {
+        BDBMessageStore bdbStore = (BDBMessageStore) getStore();
+        StoredMessage<MessageMetaData> storedMessage_0_8 = createAndStoreSingleChunkMessage_0_8(bdbStore);
+        storedMessage_0_8.flowToDisk();
+        assertFalse("Message content should not be in memory", storedMessage_0_8.isInMemory());
+
+        // the range spans the second and third chunks
+        Collection<QpidByteBuffer> content = storedMessage_0_8.getContent(3, 6);
+        byte[] actual = new byte[6];
+        int position = 0;
+        for (QpidByteBuffer buf : content)
+        {
+            int remaining = buf.remaining();
+            buf.get(actual, position, remaining);
+            position += remaining;
+            buf.dispose();
+        }
+        assertEquals("Unexpected length", 6, position);
+        assertTrue("Unexpected content", Arrays.equals(Arrays.copyOfRange(CONTENT_BYTES, 3, 9), actual));
+        assertFalse("Partial read should not load the content into memory", storedMessage_0_8.isInMemory());
+
+        assertTrue("Unexpected content beyond the end of the message",
+                   storedMessage_0_8.getContent(CONTENT_BYTES.length, 1).isEmpty());
+
+        for (QpidByteBuffer buf : storedMessage_0_8.getContent(0, CONTENT_BYTES.length))
+        {
+            buf.dispose();
+        }
+        assertTrue("Read of the whole content should keep it in memory", storedMessage_0_8.isInMemory());
+    }
+
     /**
      * Tests that messages which are added to the store and then removed using the
      * public MessageStore interfaces are actually removed from the store by then
@@ -394,6 +427,10 @@ public class BDBMessageStoreTest extends MessageStoreTestCase
 
         final BDBVirtualHost parent = mock(BDBVirtualHost.class);
         when(parent.getStorePath()).thenReturn(_storeLocation);
+        // use small chunks so that the test messages span several of them
+        when(parent.getContextKeys(false)).thenReturn(
+                Collections.singleton(BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE));
+        when(parent.getContextValue(Integer.class, BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE)).thenReturn(4);
         return parent;
     }
 
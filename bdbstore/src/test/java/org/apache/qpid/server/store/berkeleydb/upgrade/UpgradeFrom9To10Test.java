@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.server.store.berkeleydb.upgrade;
+
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sleepycat.bind.tuple.LongBinding;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Transaction;
+
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.berkeleydb.entry.MessageContentKey;
+import org.apache.qpid.server.store.berkeleydb.tuple.MessageContentKeyBinding;
+import org.apache.qpid.server.virtualhost.berkeleydb.BDBVirtualHost;
+
+public class UpgradeFrom9To10Test extends AbstractUpgradeTestCase
+{
+    private static final int CHUNK_SIZE = 10;
+
+    @Override
+    protected String getStoreDirectoryName()
+    {
+        return "bdbstore-v8";
+    }
+
+    public void testPerformUpgrade() throws Exception
+    {
+        storeContent(1000001L, new byte[0]);
+        storeContent(1000002L, createContent(CHUNK_SIZE));
+        storeContent(1000003L, createContent(CHUNK_SIZE * 3 + 5));
+        Map<Long, byte[]> originalContent = loadOldContent();
+
+        VirtualHost virtualHost = getVirtualHost();
+        when(virtualHost.getContextKeys(false)).thenReturn(
+                Collections.singleton(BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE));
+        when(virtualHost.getContextValue(Integer.class, BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE))
+                .thenReturn(CHUNK_SIZE);
+
+        UpgradeFrom9To10 upgrade = new UpgradeFrom9To10();
+        upgrade.performUpgrade(_environment, UpgradeInteractionHandler.DEFAULT_HANDLER, virtualHost);
+
+        assertFalse("Old content database should have been removed",
+                    _environment.getDatabaseNames().contains(UpgradeFrom9To10.OLD_CONTENT_DB_NAME));
+
+        final Map<Long, ByteArrayOutputStream> upgradedContent = new HashMap<>();
+        CursorOperation contentCursor = new CursorOperation()
+        {
+            @Override
+            public void processEntry(Database sourceDatabase, Database targetDatabase, Transaction transaction,
+                                     DatabaseEntry key, DatabaseEntry value)
+            {
+                MessageContentKey contentKey = MessageContentKeyBinding.getInstance().entryToObject(key);
+                assertTrue("Unexpected chunk size " + value.getSize(), value.getSize() <= CHUNK_SIZE);
+
+                ByteArrayOutputStream content = upgradedContent.get(contentKey.getMessageId());
+                if (content == null)
+                {
+                    content = new ByteArrayOutputStream();
+                    upgradedContent.put(contentKey.getMessageId(), content);
+                }
+                assertEquals("Unexpected chunk offset", content.size(), contentKey.getOffset());
+                content.write(value.getData(), value.getOffset(), value.getSize());
+            }
+        };
+        new DatabaseTemplate(_environment, UpgradeFrom9To10.NEW_CONTENT_DB_NAME, null).run(contentCursor);
+
+        assertEquals("Unexpected number of messages", originalContent.keySet(), upgradedContent.keySet());
+        for (Map.Entry<Long, byte[]> entry : originalContent.entrySet())
+        {
+            assertTrue("Unexpected content for message " + entry.getKey(),
+                       Arrays.equals(entry.getValue(), upgradedContent.get(entry.getKey()).toByteArray()));
+        }
+        assertDatabaseRecordCount(UpgradeFrom9To10.NEW_CONTENT_DB_NAME,
+                                  getDatabaseChunkCount(originalContent));
+    }
+
+    private long getDatabaseChunkCount(final Map<Long, byte[]> content)
+    {
+        long count = 0;
+        for (byte[] data : content.values())
+        {
+            count += Math.max(1, (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+        return count;
+    }
+
+    private byte[] createContent(final int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private void storeContent(final long messageId, final byte[] data)
+    {
+        DatabaseCallable<Void> operation = new DatabaseCallable<Void>()
+        {
+            @Override
+            public Void call(Database sourceDatabase, Database targetDatabase, Transaction transaction)
+            {
+                DatabaseEntry key = new DatabaseEntry();
+                LongBinding.longToEntry(messageId, key);
+                sourceDatabase.put(null, key, new DatabaseEntry(data));
+                return null;
+            }
+        };
+        new DatabaseTemplate(_environment, UpgradeFrom9To10.OLD_CONTENT_DB_NAME, null).call(operation);
+    }
+
+    private Map<Long, byte[]> loadOldContent()
+    {
+        final Map<Long, byte[]> content = new HashMap<>();
+        CursorOperation contentCursor = new CursorOperation()
+        {
+            @Override
+            public void processEntry(Database sourceDatabase, Database targetDatabase, Transaction transaction,
+                                     DatabaseEntry key, DatabaseEntry value)
+            {
+                byte[] data = new byte[value.getSize()];
+                System.arraycopy(value.getData(), value.getOffset(), data, 0, value.getSize());
+                content.put(LongBinding.entryToLong(key), data);
+            }
+        };
+        new DatabaseTemplate(_environment, UpgradeFrom9To10.OLD_CONTENT_DB_NAME, null).run(contentCursor);
+        return content;
+    }
+}
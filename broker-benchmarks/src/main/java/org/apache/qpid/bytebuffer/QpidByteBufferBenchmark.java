@@ -0,0 +1,89 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures allocating (and disposing of) pooled direct buffers of a range of sizes, from smaller than a single
+ * pooled buffer to spanning several of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QpidByteBufferBenchmark
+{
+    private static final int POOLED_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_POOL_SIZE = 1024;
+
+    @Param({"256", "8192", "262144", "1048576"})
+    int _size;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        QpidByteBuffer.initialisePool(POOLED_BUFFER_SIZE, MAX_POOL_SIZE);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int allocateDirectCollection()
+    {
+        return allocateAndDispose();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int allocateDirectCollectionContended()
+    {
+        return allocateAndDispose();
+    }
+
+    private int allocateAndDispose()
+    {
+        Collection<QpidByteBuffer> buffers = QpidByteBuffer.allocateDirectCollection(_size);
+        int allocated = 0;
+        for (QpidByteBuffer buffer : buffers)
+        {
+            allocated += buffer.remaining();
+            buffer.dispose();
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.benchmark;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.internal.InternalMessage;
+import org.apache.qpid.server.message.internal.InternalMessageHeader;
+import org.apache.qpid.server.model.Broker;
+import org.apache.qpid.server.model.BrokerTestHelper;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.model.Exchange;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.model.VirtualHostNode;
+import org.apache.qpid.server.security.AccessControl;
+import org.apache.qpid.server.store.DurableConfigurationStore;
+import org.apache.qpid.server.store.preferences.PreferenceStore;
+import org.apache.qpid.server.virtualhost.AbstractVirtualHost;
+import org.apache.qpid.server.virtualhost.memory.MemoryVirtualHost;
+
+/**
+ * Creates a real {@link MemoryVirtualHost} (backed by the in-memory message store) beneath mocked broker and
+ * virtualhost node objects, so that benchmarks exercise the genuine queue and exchange implementations
+ * without the cost of starting a whole broker.
+ */
+public final class BenchmarkVirtualHost
+{
+    private static final Principal SYSTEM_PRINCIPAL = new Principal()
+    {
+        @Override
+        public String getName()
+        {
+            return "BENCHMARK";
+        }
+    };
+
+    private BenchmarkVirtualHost()
+    {
+    }
+
+    public static VirtualHost<?> create(String name)
+    {
+        Broker<?> broker = BrokerTestHelper.createBrokerMock();
+        ConfiguredObjectFactory objectFactory = broker.getObjectFactory();
+        AccessControl accessControl = BrokerTestHelper.createAccessControlMock();
+
+        VirtualHostNode virtualHostNode =
+                BrokerTestHelper.mockWithSystemPrincipalAndAccessControl(VirtualHostNode.class,
+                                                                         SYSTEM_PRINCIPAL,
+                                                                         accessControl);
+        when(virtualHostNode.getName()).thenReturn(name + "_node");
+        when(virtualHostNode.getParent(eq(Broker.class))).thenReturn(broker);
+        when(virtualHostNode.getParent(eq(VirtualHostNode.class))).thenReturn(virtualHostNode);
+        when(virtualHostNode.getConfigurationStore()).thenReturn(mock(DurableConfigurationStore.class));
+        when(virtualHostNode.getModel()).thenReturn(objectFactory.getModel());
+        when(virtualHostNode.getObjectFactory()).thenReturn(objectFactory);
+        when(virtualHostNode.getCategoryClass()).thenReturn(VirtualHostNode.class);
+        when(virtualHostNode.getTaskExecutor()).thenReturn(broker.getTaskExecutor());
+        when(virtualHostNode.getChildExecutor()).thenReturn(broker.getTaskExecutor());
+        when(virtualHostNode.createPreferenceStore()).thenReturn(mock(PreferenceStore.class));
+        when(broker.getVirtualHostNodes()).thenReturn(Collections.<VirtualHostNode<?>>singletonList(virtualHostNode));
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(VirtualHost.TYPE, MemoryVirtualHost.VIRTUAL_HOST_TYPE);
+        attributes.put(VirtualHost.NAME, name);
+
+        AbstractVirtualHost<?> host =
+                (AbstractVirtualHost<?>) objectFactory.create(VirtualHost.class, attributes, virtualHostNode);
+        host.start();
+        when(virtualHostNode.getVirtualHost()).thenReturn(host);
+        return host;
+    }
+
+    public static Queue<?> createQueue(VirtualHost<?> virtualHost, String name, Map<String, Object> arguments)
+    {
+        Map<String, Object> attributes = new HashMap<>(arguments);
+        attributes.put(Queue.ID, UUID.randomUUID());
+        attributes.put(Queue.NAME, name);
+        return virtualHost.createChild(Queue.class, attributes);
+    }
+
+    public static Queue<?> createQueue(VirtualHost<?> virtualHost, String name)
+    {
+        return createQueue(virtualHost, name, Collections.<String, Object>emptyMap());
+    }
+
+    public static Exchange<?> createExchange(VirtualHost<?> virtualHost, String name, String type)
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Exchange.ID, UUID.randomUUID());
+        attributes.put(Exchange.NAME, name);
+        attributes.put(Exchange.TYPE, type);
+        return virtualHost.createChild(Exchange.class, attributes);
+    }
+
+    public static InternalMessage createMessage(VirtualHost<?> virtualHost, Map<String, Object> headers, String body)
+    {
+        AMQMessageHeader header = new InternalMessageHeader(headers,
+                                                            null,
+                                                            0L,
+                                                            null,
+                                                            null,
+                                                            UUID.randomUUID().toString(),
+                                                            "text/plain",
+                                                            null,
+                                                            (byte) 4,
+                                                            System.currentTimeMillis(),
+                                                            0L,
+                                                            null,
+                                                            null);
+        return InternalMessage.createStringMessage(virtualHost.getMessageStore(), header, body);
+    }
+}
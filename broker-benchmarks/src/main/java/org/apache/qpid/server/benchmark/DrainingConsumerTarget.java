@@ -0,0 +1,68 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.benchmark;
+
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.consumer.MockConsumer;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.ServerMessage;
+
+/**
+ * A consumer target that settles every message as soon as it is sent, so that a benchmark can push an unbounded
+ * number of messages through a queue without the queue (or the target) accumulating state.  Credit can be
+ * withheld to allow a backlog to build up on the queue.
+ */
+public class DrainingConsumerTarget extends MockConsumer
+{
+    private volatile boolean _credit = true;
+    private long _sent;
+
+    @Override
+    public long send(final ConsumerImpl consumer, final MessageInstance entry, final boolean batch)
+    {
+        _sent++;
+        long size = entry.getMessage().getSize();
+        entry.delete();
+        return size;
+    }
+
+    @Override
+    public boolean allocateCredit(final ServerMessage msg)
+    {
+        return _credit;
+    }
+
+    @Override
+    public boolean hasCredit()
+    {
+        return _credit && super.hasCredit();
+    }
+
+    public void setCredit(final boolean credit)
+    {
+        _credit = credit;
+    }
+
+    public long getSent()
+    {
+        return _sent;
+    }
+}
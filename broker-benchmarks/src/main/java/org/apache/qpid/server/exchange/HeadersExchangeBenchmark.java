@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.exchange.ExchangeDefaults;
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.InstanceProperties;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.queue.BaseQueue;
+
+/**
+ * Measures {@link HeadersExchange#doRoute} for messages carrying a handful of headers against a set of
+ * {@code x-match=all} bindings, of which a small number match each message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeadersExchangeBenchmark
+{
+    private static final int QUEUES = 16;
+    private static final int REGIONS = 10;
+    private static final int MESSAGES = 256;
+
+    @Param({"10", "100", "1000"})
+    int _bindings;
+
+    private VirtualHost<?> _virtualHost;
+    private HeadersExchange _exchange;
+    private ServerMessage[] _messages;
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _virtualHost = BenchmarkVirtualHost.create("headersExchangeBenchmark");
+        _exchange = (HeadersExchange) BenchmarkVirtualHost.createExchange(_virtualHost,
+                                                                          "amq.benchmark.headers",
+                                                                          ExchangeDefaults.HEADERS_EXCHANGE_CLASS);
+        Queue<?>[] queues = new Queue<?>[QUEUES];
+        for (int i = 0; i < QUEUES; i++)
+        {
+            queues[i] = BenchmarkVirtualHost.createQueue(_virtualHost, "queue" + i);
+        }
+
+        for (int i = 0; i < _bindings; i++)
+        {
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("x-match", "all");
+            arguments.put("region", "region" + (i % REGIONS));
+            arguments.put("type", "type" + i);
+            _exchange.addBinding("binding" + i, queues[i % QUEUES], arguments);
+        }
+
+        _messages = new ServerMessage[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            Map<String, Object> headers = new HashMap<>();
+            headers.put("region", "region" + (i % REGIONS));
+            headers.put("type", "type" + (i * 7 % _bindings));
+            headers.put("priority", i % 10);
+            headers.put("source", "benchmark");
+            _messages[i] = BenchmarkVirtualHost.createMessage(_virtualHost, headers, "body");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public List<BaseQueue> doRoute()
+    {
+        ServerMessage message = _messages[_next];
+        _next = (_next + 1) % MESSAGES;
+        return _exchange.doRoute(message, "", InstanceProperties.EMPTY);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.exchange.ExchangeDefaults;
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.InstanceProperties;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.queue.BaseQueue;
+
+/**
+ * Measures {@link TopicExchangeImpl#doRoute} against a mixture of exact and wildcard bindings, for routing keys which
+ * match one, several or none of the bindings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopicExchangeBenchmark
+{
+    private static final int QUEUES = 16;
+    private static final int SECTORS = 100;
+    private static final int ROUTING_KEYS = 1024;
+
+    @Param({"10", "1000", "10000"})
+    int _bindings;
+
+    private VirtualHost<?> _virtualHost;
+    private TopicExchangeImpl _exchange;
+    private ServerMessage _message;
+    private String[] _routingKeys;
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _virtualHost = BenchmarkVirtualHost.create("topicExchangeBenchmark");
+        _exchange = (TopicExchangeImpl) BenchmarkVirtualHost.createExchange(_virtualHost,
+                                                                        "amq.benchmark.topic",
+                                                                        ExchangeDefaults.TOPIC_EXCHANGE_CLASS);
+        Queue<?>[] queues = new Queue<?>[QUEUES];
+        for (int i = 0; i < QUEUES; i++)
+        {
+            queues[i] = BenchmarkVirtualHost.createQueue(_virtualHost, "queue" + i);
+        }
+
+        for (int i = 0; i < _bindings; i++)
+        {
+            final String bindingKey;
+            switch (i % 4)
+            {
+                case 0:
+                    bindingKey = "stock." + (i % SECTORS) + ".*";
+                    break;
+                case 1:
+                    bindingKey = "stock.#." + i;
+                    break;
+                default:
+                    bindingKey = "stock." + (i % SECTORS) + "." + i;
+            }
+            _exchange.addBinding(bindingKey, queues[i % QUEUES], Collections.<String, Object>emptyMap());
+        }
+
+        _routingKeys = new String[ROUTING_KEYS];
+        for (int i = 0; i < ROUTING_KEYS; i++)
+        {
+            // every eighth key matches nothing
+            _routingKeys[i] = i % 8 == 0 ? "bond." + i : "stock." + (i % SECTORS) + "." + (i * 7 % _bindings);
+        }
+
+        _message = BenchmarkVirtualHost.createMessage(_virtualHost, Collections.<String, Object>emptyMap(), "body");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public List<BaseQueue> doRoute()
+    {
+        String routingKey = _routingKeys[_next];
+        _next = (_next + 1) % ROUTING_KEYS;
+        return _exchange.doRoute(_message, routingKey, InstanceProperties.EMPTY);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.InstanceProperties;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Measures evaluation of parsed JMS selectors of increasing complexity against messages which alternately do and do
+ * not match.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMSSelectorFilterBenchmark
+{
+    private static final int MESSAGES = 64;
+
+    @Param({"region = 'EU'",
+            "region = 'EU' AND priority > 3",
+            "price BETWEEN 10.0 AND 20.0 OR symbol LIKE 'QP%'",
+            "region IN ('EU', 'US', 'APAC') AND NOT (quantity < 100) AND JMSPriority >= 4"})
+    String _selector;
+
+    private VirtualHost<?> _virtualHost;
+    private JMSSelectorFilter _filter;
+    private Filterable[] _filterables;
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _virtualHost = BenchmarkVirtualHost.create("selectorBenchmark");
+        _filter = new JMSSelectorFilter(_selector);
+
+        _filterables = new Filterable[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            Map<String, Object> headers = new HashMap<>();
+            headers.put("region", i % 2 == 0 ? "EU" : "LATAM");
+            headers.put("priority", i % 10);
+            headers.put("price", (double) (i % 40));
+            headers.put("symbol", i % 3 == 0 ? "QPID" : "ACME");
+            headers.put("quantity", i * 10);
+            _filterables[i] = Filterable.Factory.newInstance(BenchmarkVirtualHost.createMessage(_virtualHost,
+                                                                                                headers,
+                                                                                                "body"),
+                                                             InstanceProperties.EMPTY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public boolean matches()
+    {
+        Filterable filterable = _filterables[_next];
+        _next = (_next + 1) % MESSAGES;
+        return _filter.matches(filterable);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Measures the heap retained by each entry of a deep {@link StandardQueueEntryList}, over and above the messages
+ * themselves, and the cost of walking such a list.
+ * <p>
+ * The retained size, measured once the list has been filled, is reported alongside the throughput as the secondary
+ * result <code>retainedBytesPerEntry</code>.  It covers the entry, the reference it holds to its message on behalf of
+ * the queue and the record of that reference kept by the message.  With compressed oops the
+ * entry itself should account for 48 bytes, unless the message has an expiration, delivery has been attempted to a
+ * consumer that rejected it, or a listener is awaiting a change in its state.
+ * <p>
+ * The larger depth requires a heap of several gigabytes, e.g. <code>-jvmArgs -Xmx4g</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepQueueBenchmark
+{
+    @Param({"100000", "1000000"})
+    int _depth;
+
+    private VirtualHost<?> _virtualHost;
+    private StandardQueueImpl _queue;
+    private StandardQueueEntryList _list;
+    private long _retainedBytesPerEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _virtualHost = BenchmarkVirtualHost.create("deepQueueBenchmark");
+        _queue = (StandardQueueImpl) BenchmarkVirtualHost.createQueue(_virtualHost, "queue");
+
+        final ServerMessage[] messages = new ServerMessage[_depth];
+        for (int i = 0; i < _depth; i++)
+        {
+            messages[i] = BenchmarkVirtualHost.createMessage(_virtualHost,
+                                                             Collections.<String, Object>emptyMap(),
+                                                             "message" + i);
+        }
+
+        final long before = usedHeap();
+        _list = new StandardQueueEntryList(_queue);
+        for (ServerMessage message : messages)
+        {
+            _list.add(message, null);
+        }
+        final long after = usedHeap();
+
+        _retainedBytesPerEntry = Math.round((double) (after - before) / _depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        QueueEntryIterator iterator = _list.iterator();
+        while (iterator.advance())
+        {
+            QueueEntry entry = iterator.getNode();
+            if (entry.acquire())
+            {
+                entry.delete();
+            }
+        }
+        _queue.close();
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public int iterate(final Footprint footprint)
+    {
+        footprint.retainedBytesPerEntry = _retainedBytesPerEntry;
+        int available = 0;
+        QueueEntryIterator iterator = _list.iterator();
+        while (iterator.advance())
+        {
+            QueueEntry entry = iterator.getNode();
+            if (entry.isAvailable() && !entry.expired())
+            {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint
+    {
+        public long retainedBytesPerEntry;
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            Thread.sleep(100L);
+            used = Math.min(used, memoryMXBean.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
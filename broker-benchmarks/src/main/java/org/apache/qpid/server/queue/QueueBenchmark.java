@@ -0,0 +1,168 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.benchmark.DrainingConsumerTarget;
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Measures the cost of putting a message onto a queue and getting it to a consumer, both when the message can be
+ * delivered straight through during {@link AbstractQueue#enqueue} and when it has to be delivered asynchronously
+ * from a backlog by {@link AbstractQueue#processQueue}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark
+{
+    static final int BACKLOG = 1000;
+    private static final int MESSAGE_POOL_SIZE = 16384;
+
+    @State(Scope.Benchmark)
+    public static class QueueState
+    {
+        @Param({"1", "8", "64"})
+        int _consumers;
+
+        VirtualHost<?> _virtualHost;
+        AbstractQueue<?> _queue;
+        DrainingConsumerTarget[] _targets;
+        ServerMessage[] _messages;
+        MessageReference[] _references;
+        int _next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception
+        {
+            _virtualHost = BenchmarkVirtualHost.create("queueBenchmark");
+            _queue = (AbstractQueue<?>) BenchmarkVirtualHost.createQueue(_virtualHost, "queue");
+            _targets = new DrainingConsumerTarget[_consumers];
+            for (int i = 0; i < _consumers; i++)
+            {
+                _targets[i] = new DrainingConsumerTarget();
+                _queue.addConsumer(_targets[i],
+                                   null,
+                                   ServerMessage.class,
+                                   "consumer" + i,
+                                   EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES),
+                                   0);
+            }
+
+            // hold a reference to every message for the duration of the trial so that the store does not delete
+            // them each time their queue entry is consumed
+            _messages = new ServerMessage[MESSAGE_POOL_SIZE];
+            _references = new MessageReference[MESSAGE_POOL_SIZE];
+            for (int i = 0; i < MESSAGE_POOL_SIZE; i++)
+            {
+                _messages[i] = BenchmarkVirtualHost.createMessage(_virtualHost,
+                                                                  Collections.<String, Object>emptyMap(),
+                                                                  "message" + i);
+                _references[i] = _messages[i].newReference();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            for (MessageReference reference : _references)
+            {
+                reference.release();
+            }
+            _queue.close();
+            _virtualHost.close();
+        }
+
+        ServerMessage nextMessage()
+        {
+            ServerMessage message = _messages[_next];
+            _next = (_next + 1) % MESSAGE_POOL_SIZE;
+            return message;
+        }
+
+        void setCredit(boolean credit)
+        {
+            for (DrainingConsumerTarget target : _targets)
+            {
+                target.setCredit(credit);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BacklogState
+    {
+        @Setup(Level.Invocation)
+        public void fillBacklog(QueueState state)
+        {
+            state.setCredit(false);
+            for (int i = 0; i < BACKLOG; i++)
+            {
+                state._queue.enqueue(state.nextMessage(), null, null);
+            }
+            state.setCredit(true);
+        }
+    }
+
+    @Benchmark
+    public int enqueueStraightThrough(QueueState state)
+    {
+        state._queue.enqueue(state.nextMessage(), null, null);
+        return state._queue.getQueueDepthMessages();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BACKLOG)
+    public long processQueue(QueueState state, BacklogState backlog)
+    {
+        long runs = 0;
+        while (state._queue.getQueueDepthMessages() != 0)
+        {
+            state._queue.processQueue(null);
+            runs++;
+        }
+        return runs;
+    }
+}
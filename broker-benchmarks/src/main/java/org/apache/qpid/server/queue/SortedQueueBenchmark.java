@@ -0,0 +1,164 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Measures publishers enqueuing onto, and consumers removing from, a {@link SortedQueueImpl} concurrently, with
+ * either the red/black tree entry list or the concurrent skip list entry list.
+ * <p>
+ * The number of publisher and consumer threads can be varied from the command line using JMH's thread group option,
+ * e.g. <code>-tg 4,4</code> for four publishers and four consumers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortedQueueBenchmark
+{
+    private static final int MESSAGE_POOL_SIZE = 4096;
+    private static final int KEY_RANGE = 1000;
+
+    @State(Scope.Group)
+    public static class QueueState
+    {
+        @Param({"false", "true"})
+        boolean _concurrentEntryList;
+
+        VirtualHost<?> _virtualHost;
+        SortedQueueImpl _queue;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception
+        {
+            _virtualHost = BenchmarkVirtualHost.create("sortedQueueBenchmark");
+            final Map<String, Object> arguments = new HashMap<>();
+            arguments.put(Queue.TYPE, SortedQueue.SORTED_QUEUE_TYPE);
+            arguments.put(SortedQueue.SORT_KEY, "key");
+            arguments.put(SortedQueue.CONCURRENT_ENTRY_LIST, _concurrentEntryList);
+            _queue = (SortedQueueImpl) BenchmarkVirtualHost.createQueue(_virtualHost, "queue", arguments);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            _queue.close();
+            _virtualHost.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PublisherState
+    {
+        ServerMessage[] _messages;
+        MessageReference[] _references;
+        int _next;
+
+        @Setup(Level.Trial)
+        public void setUp(QueueState queueState)
+        {
+            // each publisher owns its messages, so a message is never enqueued twice while still on the queue
+            final Random random = new Random();
+            _messages = new ServerMessage[MESSAGE_POOL_SIZE];
+            _references = new MessageReference[MESSAGE_POOL_SIZE];
+            for (int i = 0; i < MESSAGE_POOL_SIZE; i++)
+            {
+                _messages[i] = BenchmarkVirtualHost.createMessage(queueState._virtualHost,
+                                                                  Collections.<String, Object>singletonMap(
+                                                                          "key", String.format("%04d", random.nextInt(KEY_RANGE))),
+                                                                  "message" + i);
+                _references[i] = _messages[i].newReference();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            for (MessageReference reference : _references)
+            {
+                reference.release();
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("publishConsume")
+    @GroupThreads(2)
+    public boolean publish(QueueState queueState, PublisherState publisherState)
+    {
+        final ServerMessage message = publisherState._messages[publisherState._next];
+        publisherState._next = (publisherState._next + 1) % MESSAGE_POOL_SIZE;
+        if (message.isReferenced(queueState._queue))
+        {
+            // consumers have fallen behind by a whole pool
+            return false;
+        }
+        queueState._queue.enqueue(message, null, null);
+        return true;
+    }
+
+    @Benchmark
+    @Group("publishConsume")
+    @GroupThreads(2)
+    public boolean consume(QueueState queueState)
+    {
+        final QueueEntryList entries = queueState._queue.getEntries();
+        QueueEntry entry = entries.next(entries.getHead());
+        while (entry != null)
+        {
+            if (entry.acquire())
+            {
+                entry.delete();
+                return true;
+            }
+            entry = entries.next(entry);
+        }
+        return false;
+    }
+}
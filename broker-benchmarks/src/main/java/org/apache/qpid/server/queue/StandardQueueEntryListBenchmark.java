@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.benchmark.BenchmarkVirtualHost;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Measures appending to, and walking over, a {@link StandardQueueEntryList} independently of the queue that would
+ * normally own it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StandardQueueEntryListBenchmark
+{
+    static final int ADD_BATCH = 1000;
+
+    @Param({"1000", "100000"})
+    int _depth;
+
+    private VirtualHost<?> _virtualHost;
+    private StandardQueueImpl _queue;
+    private ServerMessage[] _batchMessages;
+    private StandardQueueEntryList _batchList;
+    private StandardQueueEntryList _filledList;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _virtualHost = BenchmarkVirtualHost.create("queueEntryListBenchmark");
+        _queue = (StandardQueueImpl) BenchmarkVirtualHost.createQueue(_virtualHost, "queue");
+
+        _batchMessages = new ServerMessage[ADD_BATCH];
+        for (int i = 0; i < ADD_BATCH; i++)
+        {
+            _batchMessages[i] = createMessage(i);
+        }
+
+        _filledList = new StandardQueueEntryList(_queue);
+        for (int i = 0; i < _depth; i++)
+        {
+            _filledList.add(createMessage(i), null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        deleteEntries(_filledList);
+        _queue.close();
+        _virtualHost.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void createBatchList()
+    {
+        _batchList = new StandardQueueEntryList(_queue);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteBatchList()
+    {
+        // the entries hold references to the messages on behalf of the queue, which must be released before the
+        // same messages can be added again
+        deleteEntries(_batchList);
+        _batchList = null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ADD_BATCH)
+    public QueueEntry add()
+    {
+        QueueEntry entry = null;
+        for (ServerMessage message : _batchMessages)
+        {
+            entry = _batchList.add(message, null);
+        }
+        return entry;
+    }
+
+    @Benchmark
+    public int iterate()
+    {
+        int available = 0;
+        QueueEntryIterator iterator = _filledList.iterator();
+        while (iterator.advance())
+        {
+            if (iterator.getNode().isAvailable())
+            {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    private ServerMessage createMessage(final int i)
+    {
+        return BenchmarkVirtualHost.createMessage(_virtualHost,
+                                                  Collections.<String, Object>emptyMap(),
+                                                  "message" + i);
+    }
+
+    private static void deleteEntries(final QueueEntryList list)
+    {
+        QueueEntryIterator iterator = list.iterator();
+        while (iterator.advance())
+        {
+            QueueEntry entry = iterator.getNode();
+            if (entry.acquire())
+            {
+                entry.delete();
+            }
+        }
+    }
+}
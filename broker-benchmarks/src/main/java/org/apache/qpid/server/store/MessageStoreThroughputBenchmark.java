@@ -0,0 +1,197 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.message.EnqueueableMessage;
+import org.apache.qpid.server.store.berkeleydb.BDBMessageStore;
+import org.apache.qpid.server.store.segmentedlog.SegmentedLogMessageStore;
+import org.apache.qpid.server.virtualhost.berkeleydb.BDBVirtualHost;
+import org.apache.qpid.server.virtualhost.segmentedlog.SegmentedLogVirtualHost;
+import org.apache.qpid.util.FileUtils;
+
+/**
+ * Compares the persistent throughput of the BDB and segmented log message stores.  Each operation publishes a
+ * persistent message to a queue in one transaction and consumes it in another, as a broker does for a message that
+ * is delivered and acknowledged, and waits for both transactions to be durable.
+ * <p>
+ * The concurrent benchmark shows how well each store shares the cost of a sync between the transactions of many
+ * sessions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageStoreThroughputBenchmark
+{
+    private static final String BDB = "BDB";
+    private static final String SEGMENTED_LOG = "SegmentedLog";
+
+    @Param({BDB, SEGMENTED_LOG})
+    String _storeType;
+
+    @Param({"256", "65536"})
+    int _messageSize;
+
+    private File _storeLocation;
+    private MessageStore _store;
+    private byte[] _content;
+    private TransactionLogResource _queue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _storeLocation = Files.createTempDirectory("messageStoreThroughputBenchmark").toFile();
+
+        if (BDB.equals(_storeType))
+        {
+            final BDBVirtualHost<?> parent = mock(BDBVirtualHost.class);
+            when(parent.getName()).thenReturn("messageStoreThroughputBenchmark");
+            when(parent.getStorePath()).thenReturn(_storeLocation.getAbsolutePath());
+            _store = new BDBMessageStore();
+            _store.openMessageStore(parent);
+        }
+        else
+        {
+            final SegmentedLogVirtualHost<?> parent = mock(SegmentedLogVirtualHost.class);
+            when(parent.getName()).thenReturn("messageStoreThroughputBenchmark");
+            when(parent.getStorePath()).thenReturn(_storeLocation.getAbsolutePath());
+            _store = new SegmentedLogMessageStore();
+            _store.openMessageStore(parent);
+        }
+
+        _content = new byte[_messageSize];
+        for (int i = 0; i < _messageSize; i++)
+        {
+            _content[i] = (byte) i;
+        }
+
+        final UUID queueId = UUID.randomUUID();
+        _queue = new TransactionLogResource()
+        {
+            @Override
+            public String getName()
+            {
+                return "benchmarkQueue";
+            }
+
+            @Override
+            public UUID getId()
+            {
+                return queueId;
+            }
+
+            @Override
+            public MessageDurability getMessageDurability()
+            {
+                return MessageDurability.DEFAULT;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _store.closeMessageStore();
+        FileUtils.delete(_storeLocation, true);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long publishConsume()
+    {
+        return publishAndConsume();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long concurrentPublishConsume()
+    {
+        return publishAndConsume();
+    }
+
+    private long publishAndConsume()
+    {
+        final long messageId = _store.getNextMessageId();
+        final MessageHandle<TestMessageMetaData> handle =
+                _store.addMessage(new TestMessageMetaData(messageId, _messageSize));
+        final QpidByteBuffer content = QpidByteBuffer.wrap(_content);
+        handle.addContent(content);
+        content.dispose();
+        final StoredMessage<TestMessageMetaData> storedMessage = handle.allContentAdded();
+
+        final Transaction enqueueTransaction = _store.newTransaction();
+        final MessageEnqueueRecord enqueueRecord =
+                enqueueTransaction.enqueueMessage(_queue, new EnqueueableMessage<TestMessageMetaData>()
+                {
+                    @Override
+                    public long getMessageNumber()
+                    {
+                        return storedMessage.getMessageNumber();
+                    }
+
+                    @Override
+                    public boolean isPersistent()
+                    {
+                        return true;
+                    }
+
+                    @Override
+                    public StoredMessage<TestMessageMetaData> getStoredMessage()
+                    {
+                        return storedMessage;
+                    }
+                });
+        enqueueTransaction.commitTran();
+
+        final Transaction dequeueTransaction = _store.newTransaction();
+        dequeueTransaction.dequeueMessage(enqueueRecord);
+        dequeueTransaction.commitTran();
+        storedMessage.remove();
+
+        return messageId;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store.berkeleydb;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.store.MessageHandle;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.store.TestMessageMetaData;
+import org.apache.qpid.server.virtualhost.berkeleydb.BDBVirtualHost;
+import org.apache.qpid.util.FileUtils;
+
+/**
+ * Measures publishing large messages to, and consuming them from, a BDB message store once their content has been
+ * flowed to disk.  The consumer reads the content in network sized slices, as a delivering connection does.
+ * <p>
+ * The largest chunk size stores each message as a single record, as the store did before content was chunked; every
+ * slice read then loads the whole record.  Run with <code>-prof gc</code> and compare the
+ * <code>gc.alloc.rate.norm</code> of the chunk sizes to see the memory each operation allocates.  The largest message
+ * size requires a heap of at least 1g.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LargeMessageContentBenchmark
+{
+    private static final int SLICE_SIZE = 64 * 1024;
+
+    @Param({"1048576", "16777216", "104857600"})
+    int _messageSize;
+
+    @Param({"262144", "1073741824"})
+    int _chunkSize;
+
+    private File _storeLocation;
+    private BDBMessageStore _store;
+    private byte[] _content;
+    private StoredMessage<TestMessageMetaData> _storedMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _storeLocation = Files.createTempDirectory("largeMessageContentBenchmark").toFile();
+
+        final BDBVirtualHost<?> parent = mock(BDBVirtualHost.class);
+        when(parent.getName()).thenReturn("largeMessageContentBenchmark");
+        when(parent.getStorePath()).thenReturn(_storeLocation.getAbsolutePath());
+        when(parent.getContextKeys(false)).thenReturn(
+                Collections.singleton(BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE));
+        when(parent.getContextValue(Integer.class, BDBVirtualHost.QPID_BDB_MESSAGE_CONTENT_CHUNK_SIZE))
+                .thenReturn(_chunkSize);
+
+        _store = new BDBMessageStore();
+        _store.openMessageStore(parent);
+
+        _content = new byte[_messageSize];
+        for (int i = 0; i < _messageSize; i++)
+        {
+            _content[i] = (byte) i;
+        }
+
+        _storedMessage = storeMessage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _storedMessage.remove();
+        _store.closeMessageStore();
+        FileUtils.delete(_storeLocation, true);
+    }
+
+    @Benchmark
+    public long publish()
+    {
+        final StoredMessage<TestMessageMetaData> storedMessage = storeMessage();
+        final long messageNumber = storedMessage.getMessageNumber();
+        storedMessage.remove();
+        return messageNumber;
+    }
+
+    @Benchmark
+    public long consume()
+    {
+        long checksum = 0;
+        for (int offset = 0; offset < _messageSize; offset += SLICE_SIZE)
+        {
+            final Collection<QpidByteBuffer> content = _storedMessage.getContent(offset, SLICE_SIZE);
+            for (QpidByteBuffer buf : content)
+            {
+                checksum += buf.get(0);
+                buf.dispose();
+            }
+        }
+        // a consumer of a flowed message does not keep the content in memory
+        _storedMessage.flowToDisk();
+        return checksum;
+    }
+
+    private StoredMessage<TestMessageMetaData> storeMessage()
+    {
+        final long messageId = _store.getNextMessageId();
+        final MessageHandle<TestMessageMetaData> handle =
+                _store.addMessage(new TestMessageMetaData(messageId, _messageSize));
+        for (int offset = 0; offset < _messageSize; offset += SLICE_SIZE)
+        {
+            final QpidByteBuffer slice =
+                    QpidByteBuffer.wrap(_content, offset, Math.min(SLICE_SIZE, _messageSize - offset));
+            handle.addContent(slice);
+            slice.dispose();
+        }
+        final StoredMessage<TestMessageMetaData> storedMessage = handle.allContentAdded();
+        storedMessage.flowToDisk();
+        return storedMessage;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.security.auth.Subject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.transport.network.TransportEncryption;
+
+/**
+ * Measures the round trip of a single byte echoed back by a {@link NonBlockingConnection} chosen round-robin from a
+ * large population of mostly idle connections, with and without selector thread affinity.
+ * <p>
+ * With 10000 connections the benchmark holds 20000 sockets open, so the file descriptor limit of the process
+ * (<code>ulimit -n</code>) must be raised accordingly before running it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkConnectionSchedulerBenchmark
+{
+    private static final int NETWORK_BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 8;
+    private static final int NUMBER_OF_SELECTORS = 2;
+
+    @Param({"false", "true"})
+    boolean _threadAffinity;
+
+    @Param({"1000", "10000"})
+    int _connections;
+
+    private NetworkConnectionScheduler _scheduler;
+    private ServerSocketChannel _serverSocketChannel;
+    private final List<SocketChannel> _clients = new ArrayList<>();
+    private final List<NonBlockingConnection> _serverConnections = new ArrayList<>();
+    private final ByteBuffer _request = ByteBuffer.allocate(1);
+    private final ByteBuffer _response = ByteBuffer.allocate(1);
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        QpidByteBuffer.initialisePool(NETWORK_BUFFER_SIZE, 1024);
+
+        final AmqpPort<?> port = mock(AmqpPort.class);
+        when(port.getNetworkBufferSize()).thenReturn(NETWORK_BUFFER_SIZE);
+        when(port.getContextValue(eq(Long.class), eq(AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE)))
+                .thenReturn(AmqpPort.DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
+
+        _scheduler = new NetworkConnectionScheduler("benchmark", NUMBER_OF_SELECTORS, POOL_SIZE, 60000L,
+                                                    _threadAffinity);
+        _scheduler.start();
+
+        _serverSocketChannel = ServerSocketChannel.open();
+        _serverSocketChannel.socket().bind(new InetSocketAddress("localhost", 0), _connections);
+        final InetSocketAddress address = (InetSocketAddress) _serverSocketChannel.socket().getLocalSocketAddress();
+
+        final Runnable noop = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        for (int i = 0; i < _connections; i++)
+        {
+            final SocketChannel client = SocketChannel.open(address);
+            client.socket().setTcpNoDelay(true);
+            _clients.add(client);
+
+            final SocketChannel accepted = _serverSocketChannel.accept();
+            accepted.socket().setTcpNoDelay(true);
+            accepted.configureBlocking(false);
+
+            final EchoProtocolEngine engine = new EchoProtocolEngine();
+            final NonBlockingConnection connection = new NonBlockingConnection(accepted,
+                                                                               engine,
+                                                                               EnumSet.of(TransportEncryption.NONE),
+                                                                               noop,
+                                                                               _scheduler,
+                                                                               port);
+            engine.setConnection(connection);
+            connection.start();
+            _scheduler.addConnection(connection);
+            _serverConnections.add(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        for (SocketChannel client : _clients)
+        {
+            client.close();
+        }
+        _clients.clear();
+        _serverConnections.clear();
+        _serverSocketChannel.close();
+        _scheduler.close();
+    }
+
+    @Benchmark
+    public byte echo() throws IOException
+    {
+        final SocketChannel client = _clients.get(_next);
+        _next = (_next + 1) % _clients.size();
+
+        _request.clear();
+        _request.put((byte) _next);
+        _request.flip();
+        while (_request.hasRemaining())
+        {
+            client.write(_request);
+        }
+
+        _response.clear();
+        while (_response.hasRemaining())
+        {
+            if (client.read(_response) < 0)
+            {
+                throw new IOException("Connection closed by broker side");
+            }
+        }
+        return _response.get(0);
+    }
+
+    private static class EchoProtocolEngine implements ProtocolEngine
+    {
+        private final AggregateTicker _aggregateTicker = new AggregateTicker();
+        private final AtomicBoolean _hasWork = new AtomicBoolean();
+        private volatile NonBlockingConnection _connection;
+        private volatile Action<ProtocolEngine> _workListener;
+        private volatile boolean _transportBlockedForWriting;
+        private volatile boolean _messageAssignmentSuspended;
+
+        void setConnection(final NonBlockingConnection connection)
+        {
+            _connection = connection;
+        }
+
+        @Override
+        public void received(final QpidByteBuffer msg)
+        {
+            final QpidByteBuffer echo = QpidByteBuffer.allocateDirect(msg.remaining());
+            echo.put(msg);
+            echo.flip();
+            _connection.send(echo);
+            echo.dispose();
+        }
+
+        @Override
+        public void closed()
+        {
+        }
+
+        @Override
+        public void writerIdle()
+        {
+        }
+
+        @Override
+        public void readerIdle()
+        {
+        }
+
+        @Override
+        public Subject getSubject()
+        {
+            return new Subject();
+        }
+
+        @Override
+        public boolean isTransportBlockedForWriting()
+        {
+            return _transportBlockedForWriting;
+        }
+
+        @Override
+        public void setTransportBlockedForWriting(final boolean blocked)
+        {
+            _transportBlockedForWriting = blocked;
+        }
+
+        @Override
+        public void setMessageAssignmentSuspended(final boolean value, final boolean notifyConsumers)
+        {
+            _messageAssignmentSuspended = value;
+        }
+
+        @Override
+        public boolean isMessageAssignmentSuspended()
+        {
+            return _messageAssignmentSuspended;
+        }
+
+        @Override
+        public Iterator<Runnable> processPendingIterator()
+        {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public boolean hasWork()
+        {
+            return _hasWork.get();
+        }
+
+        @Override
+        public void clearWork()
+        {
+            _hasWork.set(false);
+        }
+
+        @Override
+        public void notifyWork()
+        {
+            _hasWork.set(true);
+            final Action<ProtocolEngine> workListener = _workListener;
+            if (workListener != null)
+            {
+                workListener.performAction(this);
+            }
+        }
+
+        @Override
+        public void setWorkListener(final Action<ProtocolEngine> listener)
+        {
+            _workListener = listener;
+        }
+
+        @Override
+        public AggregateTicker getAggregateTicker()
+        {
+            return _aggregateTicker;
+        }
+
+        @Override
+        public void encryptedTransport()
+        {
+        }
+
+        @Override
+        public void setIOThread(final Thread ioThread)
+        {
+        }
+
+        @Override
+        public long getLastReadTime()
+        {
+            return 0L;
+        }
+
+        @Override
+        public long getLastWriteTime()
+        {
+            return 0L;
+        }
+    }
+}
@@ -40,6 +40,8 @@ import org.apache.qpid.server.logging.messages.SubscriptionMessages;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.model.Consumer;
 import org.apache.qpid.server.queue.SuspendedConsumerLoggingTicker;
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.util.StateChangeListener;
 
@@ -61,6 +63,7 @@ public abstract class AbstractConsumerTarget implements ConsumerTarget, LogSubje
 
     private final boolean _isPullOnly;
     private Iterator<ConsumerImpl> _pullIterator;
+    private volatile String _traceSubject;
 
 
     protected AbstractConsumerTarget(final State initialState,
@@ -84,6 +87,21 @@ public abstract class AbstractConsumerTarget implements ConsumerTarget, LogSubje
 
     }
 
+    /**
+     * The tracer may retain its subjects long after the consumer is closed, so it is given the description of the
+     * target rather than the target itself.
+     */
+    private String getTraceSubject()
+    {
+        String traceSubject = _traceSubject;
+        if (traceSubject == null)
+        {
+            traceSubject = toString();
+            _traceSubject = traceSubject;
+        }
+        return traceSubject;
+    }
+
     public boolean isMultiQueue()
     {
         return _isMultiQueue;
@@ -205,6 +223,17 @@ public abstract class AbstractConsumerTarget implements ConsumerTarget, LogSubje
                     }
                 }
             }
+            if (EventTracer.isEnabled())
+            {
+                if (to == State.SUSPENDED)
+                {
+                    EventTracer.trace(TraceEvent.CONSUMER_SUSPENDED, getTraceSubject());
+                }
+                else if (from == State.SUSPENDED)
+                {
+                    EventTracer.trace(TraceEvent.CONSUMER_RESUMED, getTraceSubject());
+                }
+            }
             if(_suspendedConsumerLoggingTicker != null)
             {
                 if (to == State.SUSPENDED)
@@ -67,6 +67,7 @@ import org.apache.qpid.server.model.State;
 import org.apache.qpid.server.model.StateTransition;
 import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.queue.BaseQueue;
+import org.apache.qpid.server.queue.EnqueueBatch;
 import org.apache.qpid.server.security.SecurityToken;
 import org.apache.qpid.server.security.access.Operation;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
@@ -470,12 +471,13 @@ public abstract class AbstractExchange<T extends AbstractExchange<T>>
         {
             final BaseQueue[] baseQueues;
 
-            if(message.isReferenced())
+            // an enqueue still pending in the batch of this thread is yet to be reflected by the message's references
+            if(message.isReferenced() || EnqueueBatch.isEnqueuePending(message))
             {
                 ArrayList<BaseQueue> uniqueQueues = new ArrayList<>(queues.size());
                 for(BaseQueue q : queues)
                 {
-                    if(!message.isReferenced(q))
+                    if(!message.isReferenced(q) && !EnqueueBatch.isEnqueuePending(q, message))
                     {
                         uniqueQueues.add(q);
                     }
@@ -497,7 +499,7 @@ public abstract class AbstractExchange<T extends AbstractExchange<T>>
                     {
                         for(int i = 0; i < baseQueues.length; i++)
                         {
-                            baseQueues[i].enqueue(message, postEnqueueAction, records[i]);
+                            EnqueueBatch.enqueue(baseQueues[i], message, postEnqueueAction, records[i]);
                         }
                     }
                     finally
@@ -116,6 +116,19 @@ class HeadersBinding
         return _binding;
     }
 
+    boolean isMatchAny()
+    {
+        return matchAny;
+    }
+
+    /**
+     * @return the headers whose values are constrained by this binding, and the values they must have
+     */
+    Map<String, Object> getRequiredValues()
+    {
+        return Collections.unmodifiableMap(matches);
+    }
+
     /**
      * Checks whether the supplied headers match the requirements of this binding
      * @param headers the headers to check
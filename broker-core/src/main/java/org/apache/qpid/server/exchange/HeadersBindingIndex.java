@@ -0,0 +1,134 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.apache.qpid.server.message.AMQMessageHeader;
+
+/**
+ * Selects the headers bindings which a message could match.
+ * <p>
+ * A binding with x-match=all which constrains the value of at least one header can only match a message carrying
+ * that header with that value, so such bindings are indexed by one of their required header name/value pairs and
+ * are only offered for messages whose header has the indexed value.  All other bindings are offered for every
+ * message.  The caller must still check each offered binding against the message.
+ */
+class HeadersBindingIndex
+{
+    private final ConcurrentMap<String, ConcurrentMap<Object, CopyOnWriteArraySet<HeadersBinding>>> _indexedBindings =
+            new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<HeadersBinding> _unindexedBindings = new CopyOnWriteArrayList<>();
+
+    synchronized void add(final HeadersBinding binding)
+    {
+        Map.Entry<String, Object> key = getIndexKey(binding);
+        if(key == null)
+        {
+            _unindexedBindings.add(binding);
+        }
+        else
+        {
+            ConcurrentMap<Object, CopyOnWriteArraySet<HeadersBinding>> bindingsByValue =
+                    _indexedBindings.get(key.getKey());
+            if(bindingsByValue == null)
+            {
+                bindingsByValue = new ConcurrentHashMap<>();
+                _indexedBindings.put(key.getKey(), bindingsByValue);
+            }
+            CopyOnWriteArraySet<HeadersBinding> bindings = bindingsByValue.get(key.getValue());
+            if(bindings == null)
+            {
+                bindings = new CopyOnWriteArraySet<>();
+                bindingsByValue.put(key.getValue(), bindings);
+            }
+            bindings.add(binding);
+        }
+    }
+
+    synchronized boolean remove(final HeadersBinding binding)
+    {
+        Map.Entry<String, Object> key = getIndexKey(binding);
+        if(key == null)
+        {
+            return _unindexedBindings.remove(binding);
+        }
+        else
+        {
+            ConcurrentMap<Object, CopyOnWriteArraySet<HeadersBinding>> bindingsByValue =
+                    _indexedBindings.get(key.getKey());
+            CopyOnWriteArraySet<HeadersBinding> bindings =
+                    bindingsByValue == null ? null : bindingsByValue.get(key.getValue());
+            if(bindings == null || !bindings.remove(binding))
+            {
+                return false;
+            }
+            if(bindings.isEmpty())
+            {
+                bindingsByValue.remove(key.getValue());
+                if(bindingsByValue.isEmpty())
+                {
+                    _indexedBindings.remove(key.getKey());
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Adds to the given collection every binding which could match a message with the given headers.
+     */
+    void addCandidates(final AMQMessageHeader headers, final Collection<HeadersBinding> candidates)
+    {
+        candidates.addAll(_unindexedBindings);
+        if(headers != null)
+        {
+            for(Map.Entry<String, ConcurrentMap<Object, CopyOnWriteArraySet<HeadersBinding>>> entry
+                    : _indexedBindings.entrySet())
+            {
+                Object value = headers.getHeader(entry.getKey());
+                if(value != null)
+                {
+                    CopyOnWriteArraySet<HeadersBinding> bindings = entry.getValue().get(value);
+                    if(bindings != null)
+                    {
+                        candidates.addAll(bindings);
+                    }
+                }
+            }
+        }
+    }
+
+    private Map.Entry<String, Object> getIndexKey(final HeadersBinding binding)
+    {
+        if(binding.isMatchAny())
+        {
+            return null;
+        }
+        Map<String, Object> requiredValues = binding.getRequiredValues();
+        return requiredValues.isEmpty() ? null : requiredValues.entrySet().iterator().next();
+    }
+}
@@ -22,11 +22,10 @@ package org.apache.qpid.server.exchange;
 
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
-import java.util.ListIterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.slf4j.Logger;
@@ -79,8 +78,9 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
     private final ConcurrentMap<String, CopyOnWriteArraySet<Binding<?>>> _bindingsByKey =
                             new ConcurrentHashMap<>();
 
-    private final CopyOnWriteArrayList<HeadersBinding> _bindingHeaderMatchers =
-                            new CopyOnWriteArrayList<HeadersBinding>();
+    private final ConcurrentMap<Binding<?>, HeadersBinding> _headersBindings = new ConcurrentHashMap<>();
+
+    private final HeadersBindingIndex _bindingIndex = new HeadersBindingIndex();
 
     @ManagedObjectFactoryConstructor
     public HeadersExchange(final Map<String, Object> attributes, final VirtualHost<?> vhost)
@@ -97,9 +97,13 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
 
         LinkedHashSet<BaseQueue> queues = new LinkedHashSet<BaseQueue>();
 
-        for (HeadersBinding hb : _bindingHeaderMatchers)
+        Filterable filterable = Filterable.Factory.newInstance(payload, instanceProperties);
+        List<HeadersBinding> candidates = new ArrayList<>();
+        _bindingIndex.addCandidates(filterable.getMessageHeader(), candidates);
+
+        for (HeadersBinding hb : candidates)
         {
-            if (hb.matches(Filterable.Factory.newInstance(payload,instanceProperties)))
+            if (hb.matches(filterable))
             {
                 Binding<?> b = hb.getBinding();
 
@@ -144,7 +148,9 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
                           " with binding key '" +bindingKey + "' and args: " + binding.getArguments());
         }
 
-        _bindingHeaderMatchers.add(new HeadersBinding(binding));
+        HeadersBinding headersBinding = new HeadersBinding(binding);
+        _headersBindings.put(binding, headersBinding);
+        _bindingIndex.add(headersBinding);
         bindings.add(binding);
 
     }
@@ -153,13 +159,11 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
     protected void onBindingUpdated(final Binding<?> binding, final Map<String, Object> oldArguments)
     {
         HeadersBinding headersBinding = new HeadersBinding(binding);
-        ListIterator<HeadersBinding> iter = _bindingHeaderMatchers.listIterator();
-        while(iter.hasNext())
+        HeadersBinding oldHeadersBinding = _headersBindings.replace(binding, headersBinding);
+        if(oldHeadersBinding != null)
         {
-            if(iter.next().equals(headersBinding))
-            {
-                iter.set(headersBinding);
-            }
+            _bindingIndex.remove(oldHeadersBinding);
+            _bindingIndex.add(headersBinding);
         }
 
     }
@@ -174,7 +178,8 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
             bindings.remove(binding);
         }
 
-        boolean removedBinding = _bindingHeaderMatchers.remove(new HeadersBinding(binding));
+        HeadersBinding headersBinding = _headersBindings.remove(binding);
+        boolean removedBinding = headersBinding != null && _bindingIndex.remove(headersBinding);
         _logger.debug("Removing Binding: {}", removedBinding);
 
     }
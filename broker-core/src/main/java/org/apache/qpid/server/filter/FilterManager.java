@@ -20,10 +20,15 @@
  */
 package org.apache.qpid.server.filter;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.qpid.filter.FilterableMessage;
+import org.apache.qpid.filter.PropertyExpression;
+
 public class FilterManager
 {
 
@@ -62,6 +67,28 @@ public class FilterManager
         return false;
     }
 
+    /**
+     * @return the properties which must equal a given string value for a message to be allowed by all filters
+     */
+    public Map<PropertyExpression<FilterableMessage>, String> getRequiredValues()
+    {
+        Map<PropertyExpression<FilterableMessage>, String> requiredValues = null;
+        for(MessageFilter filter : _filters.values())
+        {
+            if(filter instanceof JMSSelectorFilter && !((JMSSelectorFilter) filter).getRequiredValues().isEmpty())
+            {
+                if(requiredValues == null)
+                {
+                    requiredValues = new LinkedHashMap<>();
+                }
+                requiredValues.putAll(((JMSSelectorFilter) filter).getRequiredValues());
+            }
+        }
+        return requiredValues == null
+                ? Collections.<PropertyExpression<FilterableMessage>, String>emptyMap()
+                : requiredValues;
+    }
+
     public Iterator<MessageFilter> filters()
     {
         return _filters.values().iterator();
@@ -20,13 +20,18 @@
  */
 package org.apache.qpid.server.filter;
 
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.qpid.common.AMQPFilterTypes;
 import org.apache.qpid.filter.BooleanExpression;
+import org.apache.qpid.filter.EqualityConstraints;
 import org.apache.qpid.filter.FilterableMessage;
 import org.apache.qpid.filter.JMSMessagePropertyExpression;
+import org.apache.qpid.filter.PropertyExpression;
+import org.apache.qpid.filter.SelectorCompiler;
 import org.apache.qpid.filter.SelectorParsingException;
 import org.apache.qpid.filter.selector.ParseException;
 import org.apache.qpid.filter.selector.SelectorParser;
@@ -41,13 +46,16 @@ public class JMSSelectorFilter implements MessageFilter
 
     private String _selector;
     private BooleanExpression _matcher;
+    private Map<PropertyExpression<FilterableMessage>, String> _requiredValues;
 
     public JMSSelectorFilter(String selector) throws ParseException, TokenMgrError, SelectorParsingException
     {
         _selector = selector;
         SelectorParser<FilterableMessage> selectorParser = new SelectorParser<>();
         selectorParser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
-        _matcher = selectorParser.parse(selector);
+        BooleanExpression<FilterableMessage> parsed = selectorParser.parse(selector);
+        _requiredValues = EqualityConstraints.getRequiredValues(parsed);
+        _matcher = SelectorCompiler.compile(parsed);
     }
 
     @Override
@@ -78,6 +86,14 @@ public class JMSSelectorFilter implements MessageFilter
         return _selector;
     }
 
+    /**
+     * @return the properties which must equal a given string value for a message to match this selector
+     */
+    public Map<PropertyExpression<FilterableMessage>, String> getRequiredValues()
+    {
+        return _requiredValues;
+    }
+
     @Override
     public boolean equals(final Object o)
     {
@@ -48,6 +48,7 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
     private final StoredMessage<T> _handle;
     private final Object _connectionReference;
     private volatile Collection<UUID> _resources;
+    private volatile boolean _rerouted;
 
 
     public AbstractServerMessageImpl(StoredMessage<T> handle, Object connectionReference)
@@ -61,6 +62,18 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
         return _handle;
     }
 
+    @Override
+    public void markRerouted()
+    {
+        _rerouted = true;
+    }
+
+    @Override
+    public boolean isRerouted()
+    {
+        return _rerouted;
+    }
+
     private boolean incrementReference()
     {
         do
@@ -48,5 +48,13 @@ public interface ServerMessage<T extends StorableMessageMetaData> extends Enqueu
 
     long getArrivalTime();
 
+    /**
+     * Records that the message is being routed again from a queue, as when it is moved or copied to another queue or
+     * sent to an alternate exchange, so that its later enqueues are not taken to follow its arrival.
+     */
+    void markRerouted();
+
+    boolean isRerouted();
+
     Object getConnectionReference();
 }
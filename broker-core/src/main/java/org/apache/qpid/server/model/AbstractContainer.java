@@ -45,6 +45,8 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.configuration.CommonProperties;
 import org.apache.qpid.server.configuration.IllegalConfigurationException;
 import org.apache.qpid.server.logging.EventLogger;
@@ -52,6 +54,7 @@ import org.apache.qpid.server.logging.messages.BrokerMessages;
 import org.apache.qpid.server.plugin.ConfigurationSecretEncrypterFactory;
 import org.apache.qpid.server.plugin.PluggableFactoryLoader;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
+import org.apache.qpid.server.trace.EventTraceContent;
 import org.apache.qpid.server.util.HousekeepingExecutor;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
 import org.apache.qpid.util.SystemUtils;
@@ -337,6 +340,56 @@ public abstract class AbstractContainer<X extends AbstractContainer<X>> extends
         return _bufferPoolMXBean.getTotalCapacity();
     }
 
+    public int getNumberOfPooledDirectBuffers()
+    {
+        return QpidByteBuffer.getNumberOfPooledBuffers();
+    }
+
+    public long getDirectBufferSlabCapacity()
+    {
+        return QpidByteBuffer.getSlabCapacity();
+    }
+
+    public long getDirectBufferSlabUsedSize()
+    {
+        return QpidByteBuffer.getSlabUsedSize();
+    }
+
+    public long getDirectBufferSlabWastedSize()
+    {
+        return QpidByteBuffer.getSlabUsedSize() - QpidByteBuffer.getSlabRequestedSize();
+    }
+
+    public long getNumberOfLeakedDirectBuffers()
+    {
+        return QpidByteBuffer.getNumberOfLeakedBuffers();
+    }
+
+    public long getNetworkDirectMemoryUsed()
+    {
+        return QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.NETWORK);
+    }
+
+    public long getContentDirectMemoryUsed()
+    {
+        return QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.CONTENT);
+    }
+
+    public long getTlsDirectMemoryUsed()
+    {
+        return QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.TLS);
+    }
+
+    public long getOtherDirectMemoryUsed()
+    {
+        return QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.OTHER);
+    }
+
+    public long getPooledDirectMemory()
+    {
+        return QpidByteBuffer.getPooledDirectMemory();
+    }
+
     public int getNumberOfObjectsPendingFinalization()
     {
         return ManagementFactory.getMemoryMXBean().getObjectPendingFinalizationCount();
@@ -399,6 +452,12 @@ public abstract class AbstractContainer<X extends AbstractContainer<X>> extends
         return new ThreadStackContent(threadDump.toString());
     }
 
+    public Content dumpEventTrace()
+    {
+        getEventLogger().message(BrokerMessages.OPERATION("dumpEventTrace"));
+        return new EventTraceContent();
+    }
+
     private String getThreadStackTraces(final ThreadInfo threadInfo)
     {
         String lineSeparator = System.lineSeparator();
@@ -171,6 +171,38 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
     @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE)
     int DEFAULT_BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE = 1024;
 
+    String BROKER_DIRECT_BYTE_BUFFER_MAGAZINE_SIZE = "broker.directByteBufferMagazineSize";
+    @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_MAGAZINE_SIZE,
+            description = "The number of pooled direct buffers each thread may hold in addition to those of the shared"
+                          + " pool")
+    int DEFAULT_BROKER_DIRECT_BYTE_BUFFER_MAGAZINE_SIZE = 32;
+
+    String BROKER_DIRECT_BYTE_BUFFER_LEAK_DETECTION = "broker.directByteBufferLeakDetection";
+    @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_LEAK_DETECTION,
+            description = "If true, pooled direct buffers which are garbage collected without being released are"
+                          + " logged together with the stack at which they were allocated.  Intended for debugging"
+                          + " only.")
+    boolean DEFAULT_BROKER_DIRECT_BYTE_BUFFER_LEAK_DETECTION = false;
+
+    String BROKER_DIRECT_MEMORY_HIGH_WATERMARK = "broker.directMemoryHighWatermark";
+    @ManagedContextDefault(name = BROKER_DIRECT_MEMORY_HIGH_WATERMARK,
+            description = "The direct memory in use by buffers, excluding that held idle by the buffer pool, in"
+                          + " bytes, above which messages are flowed to disk and producers are blocked until the use"
+                          + " falls below the low watermark")
+    long DEFAULT_BROKER_DIRECT_MEMORY_HIGH_WATERMARK = (long) (0.8 * (double) BrokerImpl.getMaxDirectMemorySize());
+
+    String BROKER_DIRECT_MEMORY_LOW_WATERMARK = "broker.directMemoryLowWatermark";
+    @ManagedContextDefault(name = BROKER_DIRECT_MEMORY_LOW_WATERMARK,
+            description = "The direct memory in use by buffers, excluding that held idle by the buffer pool, in"
+                          + " bytes, below which producers blocked on crossing the high watermark are unblocked")
+    long DEFAULT_BROKER_DIRECT_MEMORY_LOW_WATERMARK = (long) (0.6 * (double) BrokerImpl.getMaxDirectMemorySize());
+
+    String BROKER_DIRECT_MEMORY_CHECK_PERIOD = "broker.directMemoryCheckPeriod";
+    @ManagedContextDefault(name = BROKER_DIRECT_MEMORY_CHECK_PERIOD,
+            description = "The period, in milliseconds, at which the direct memory in use is checked against the"
+                          + " watermarks")
+    long DEFAULT_BROKER_DIRECT_MEMORY_CHECK_PERIOD = 1000L;
+
     @ManagedAttribute(validValues = {"org.apache.qpid.server.model.BrokerImpl#getAvailableConfigurationEncrypters()"})
     String getConfidentialConfigurationEncryptionProvider();
 
@@ -239,6 +271,71 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
                       description = "Total capacity of direct memory allocated for the Broker process")
     long getDirectMemoryTotalCapacity();
 
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.COUNT,
+                      label = "Pooled Direct Buffers",
+                      description = "Number of direct buffers held by the pool, including those held by the magazines of"
+                                    + " threads")
+    int getNumberOfPooledDirectBuffers();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Direct Buffer Slab Capacity",
+                      description = "Total size of the slabs from which direct buffers smaller than the network"
+                                    + " buffer size are allocated")
+    long getDirectBufferSlabCapacity();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Direct Buffer Slab Used Size",
+                      description = "Total size of the slab chunks in use.  The remainder of the slab capacity is"
+                                    + " free for reuse.")
+    long getDirectBufferSlabUsedSize();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Direct Buffer Slab Wasted Size",
+                      description = "Total size of the slab chunks in use beyond that requested, due to the rounding"
+                                    + " of requests up to their size class")
+    long getDirectBufferSlabWastedSize();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE,
+                      units = StatisticUnit.COUNT,
+                      label = "Leaked Direct Buffers",
+                      description = "Number of pooled direct buffers garbage collected without being released, or -1"
+                                    + " if leak detection is not enabled")
+    long getNumberOfLeakedDirectBuffers();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Network Direct Memory",
+                      description = "Direct memory in use by the buffers into which network input is read")
+    long getNetworkDirectMemoryUsed();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Content Direct Memory",
+                      description = "Direct memory in use by message content held by the message stores")
+    long getContentDirectMemoryUsed();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "TLS Direct Memory",
+                      description = "Direct memory in use by the buffers of TLS connections")
+    long getTlsDirectMemoryUsed();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Other Direct Memory",
+                      description = "Direct memory in use for other purposes, such as the encoding of frames")
+    long getOtherDirectMemoryUsed();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Pooled Direct Memory",
+                      description = "Direct memory held idle by the buffer pool and the slabs, ready for reuse")
+    long getPooledDirectMemory();
+
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
                       units = StatisticUnit.COUNT,
                       label = "Number Of Object Pending Finalization",
@@ -265,6 +362,11 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
                                         description = "Regular expression to find threads with names containing matching characters")
                                  String threadNameFindExpression);
 
+    @ManagedOperation(nonModifying = true,
+            description = "Dumps the most recent internal events (queue runner, consumer, flow to disk, connection and store commit activity) recorded by each thread as JSON",
+            changesConfiguredObjectState = false)
+    Content dumpEventTrace();
+
     @ManagedOperation(nonModifying = true,
             description = "Returns the principal of the currently authenticated user",
             changesConfiguredObjectState = false)
@@ -119,6 +119,9 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
 
     /** Flags used to control the reporting of flow to disk. Protected by this */
     private boolean _totalMessageSizeExceedThresholdReported = false,  _totalMessageSizeWithinThresholdReported = true;
+    private boolean _directMemoryHighWatermarkExceeded;
+    private long _directMemoryUsed;
+    private long _directMemoryLowWatermark;
 
     @ManagedAttributeField
     private int _connection_sessionCountLimit;
@@ -201,8 +204,10 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
         _networkBufferSize = networkBufferSize;
 
         int poolSize = getContextValue(Integer.class, BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE);
+        int magazineSize = getContextValue(Integer.class, BROKER_DIRECT_BYTE_BUFFER_MAGAZINE_SIZE);
+        boolean leakDetection = getContextValue(Boolean.class, BROKER_DIRECT_BYTE_BUFFER_LEAK_DETECTION);
 
-        QpidByteBuffer.initialisePool(_networkBufferSize, poolSize);
+        QpidByteBuffer.initialisePool(_networkBufferSize, poolSize, magazineSize, leakDetection);
     }
 
     @Override
@@ -409,6 +414,19 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
                                                              getHousekeepingThreadCount(),
                                                              getSystemTaskSubject("Housekeeping", _principal));
 
+        final long directMemoryCheckPeriod = getContextValue(Long.class, BROKER_DIRECT_MEMORY_CHECK_PERIOD);
+        if (directMemoryCheckPeriod > 0L)
+        {
+            scheduleHouseKeepingTask(directMemoryCheckPeriod, TimeUnit.MILLISECONDS, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    checkDirectMemoryUsage(QpidByteBuffer.getTotalDirectMemoryUsed());
+                }
+            });
+        }
+
         final PreferenceStoreUpdaterImpl updater = new PreferenceStoreUpdaterImpl();
         final Collection<PreferenceRecord> preferenceRecords = _preferenceStore.openAndLoad(updater);
         _preferenceTaskExecutor = new TaskExecutorImpl("broker-" + getName() + "-preferences", null);
@@ -512,6 +530,13 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
             }
         }
 
+        if (_directMemoryHighWatermarkExceeded)
+        {
+            // shed from memory as much of the message content as takes direct memory use down to the low watermark
+            final long excess = _directMemoryUsed - _directMemoryLowWatermark;
+            totalTarget = Math.max(0L, Math.min(totalTarget, totalSize - excess));
+        }
+
         if (totalSize > totalTarget && !_totalMessageSizeExceedThresholdReported)
         {
             _eventLogger.message(BrokerMessages.FLOW_TO_DISK_ACTIVE(totalSize / 1024, totalTarget / 1024));
@@ -548,6 +573,51 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
         }
     }
 
+    /**
+     * Once the direct memory in use exceeds the high watermark, reduces the target sizes of the virtual hosts so that
+     * their queues flow message content to disk, and blocks producers, until the use falls below the low watermark.
+     */
+    public synchronized void checkDirectMemoryUsage(final long directMemoryUsed)
+    {
+        final long highWatermark = getContextValue(Long.class, BROKER_DIRECT_MEMORY_HIGH_WATERMARK);
+        final long lowWatermark = Math.min(highWatermark,
+                                           getContextValue(Long.class, BROKER_DIRECT_MEMORY_LOW_WATERMARK));
+        _directMemoryUsed = directMemoryUsed;
+        _directMemoryLowWatermark = lowWatermark;
+
+        if (!_directMemoryHighWatermarkExceeded && directMemoryUsed > highWatermark)
+        {
+            _directMemoryHighWatermarkExceeded = true;
+            _eventLogger.message(BrokerMessages.DIRECT_MEMORY_HIGH(directMemoryUsed / 1024, highWatermark / 1024));
+        }
+        else if (_directMemoryHighWatermarkExceeded && directMemoryUsed < lowWatermark)
+        {
+            _directMemoryHighWatermarkExceeded = false;
+            _eventLogger.message(BrokerMessages.DIRECT_MEMORY_LOW(directMemoryUsed / 1024, lowWatermark / 1024));
+            assignTargetSizes();
+            setVirtualHostsBlockedForDirectMemory(false);
+        }
+
+        if (_directMemoryHighWatermarkExceeded)
+        {
+            // virtual hosts activated since the watermark was crossed must be blocked too
+            assignTargetSizes();
+            setVirtualHostsBlockedForDirectMemory(true);
+        }
+    }
+
+    private void setVirtualHostsBlockedForDirectMemory(final boolean blocked)
+    {
+        for (VirtualHostNode<?> vhn : getVirtualHostNodes())
+        {
+            VirtualHost<?> vh = vhn.getVirtualHost();
+            if (vh != null)
+            {
+                vh.setBlockedForDirectMemory(blocked);
+            }
+        }
+    }
+
     @Override
     protected void onOpen()
     {
@@ -114,6 +114,73 @@ public interface Connection<X extends Connection<X>> extends ConfiguredObject<X>
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Last I/O time")
     Date getLastIoTime();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.BYTES, label = "TLS Overhead",
+                      description = "Bytes added to the traffic of the connection, in both directions, by TLS record"
+                                    + " headers, padding, MACs and handshakes")
+    long getTlsOverheadBytes();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.TIME_DURATION,
+                      label = "TLS CPU Time",
+                      description = "CPU time in nanoseconds spent encrypting and decrypting the traffic of the"
+                                    + " connection, or -1 if it is not measured because the port's"
+                                    + " tlsCpuTimeStatistics attribute is not set or the JVM does not support"
+                                    + " measuring thread CPU time")
+    long getTlsCpuTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this connection")
+    long getPublishToEnqueueLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this connection")
+    long getPublishToEnqueueLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this connection")
+    long getPublishToEnqueueLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this connection")
+    long getEnqueueToDeliverLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this connection")
+    long getEnqueueToDeliverLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this connection")
+    long getEnqueueToDeliverLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this connection")
+    long getDeliverToAckLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this connection")
+    long getDeliverToAckLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this connection")
+    long getDeliverToAckLatencyP999();
+
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT, label = "Sessions")
     int getSessionCount();
 
@@ -39,6 +39,7 @@ import org.apache.qpid.server.queue.NotificationCheck;
 import org.apache.qpid.server.queue.QueueConsumer;
 import org.apache.qpid.server.queue.QueueEntry;
 import org.apache.qpid.server.queue.QueueEntryVisitor;
+import org.apache.qpid.server.queue.QueueRecoveryPager;
 import org.apache.qpid.server.store.MessageDurability;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.util.Deletable;
@@ -80,6 +81,7 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     String DEFAULT_FILTERS = "defaultFilters";
     String ENSURE_NONDESTRUCTIVE_CONSUMERS = "ensureNondestructiveConsumers";
     String HOLD_ON_PUBLISH_ENABLED = "holdOnPublishEnabled";
+    String DELIVERY_RUNNERS = "deliveryRunners";
 
 
     String QUEUE_MINIMUM_ESTIMATED_MEMORY_FOOTPRINT = "queue.minimumEstimatedMemoryFootprint";
@@ -94,6 +96,26 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedContextDefault(name = MAX_ASYNCHRONOUS_DELIVERIES )
     int DEFAULT_MAX_ASYNCHRONOUS_DELIVERIES = 80;
 
+    String SELECTOR_INDEX_ENABLED = "queue.selectorIndexEnabled";
+    @ManagedContextDefault(name = SELECTOR_INDEX_ENABLED,
+            description = "If true, entries are indexed by the values of message properties which consumers' selectors"
+                          + " require to equal a string literal, so that those consumers only visit entries which could"
+                          + " match.")
+    boolean DEFAULT_SELECTOR_INDEX_ENABLED = false;
+
+    String READ_AHEAD_ENTRIES = "queue.readAheadEntries";
+    @ManagedContextDefault(name = READ_AHEAD_ENTRIES,
+            description = "The number of entries beyond a consumer's position for which the content of messages that"
+                          + " have been flowed to disk is reloaded ahead of delivery.  Zero, the default, disables"
+                          + " read-ahead.")
+    int DEFAULT_READ_AHEAD_ENTRIES = 0;
+
+    String READ_AHEAD_BYTES = "queue.readAheadBytes";
+    @ManagedContextDefault(name = READ_AHEAD_BYTES,
+            description = "The maximum size of the content reloaded by each read-ahead.  A queue has at most one"
+                          + " read-ahead in progress, whichever consumer it is for.")
+    long DEFAULT_READ_AHEAD_BYTES = 1024 * 1024;
+
     String MIME_TYPE_TO_FILE_EXTENSION = "qpid.mimeTypeToFileExtension";
     @SuppressWarnings("unused")
     @ManagedContextDefault(name = MIME_TYPE_TO_FILE_EXTENSION, description = "A mapping of MIME types to file extensions.")
@@ -233,6 +255,19 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
                                      + "visible may depend on how frequently the virtual host housekeeping thread runs.")
     boolean isHoldOnPublishEnabled();
 
+    @ManagedContextDefault( name = "queue.deliveryRunners")
+    int DEFAULT_DELIVERY_RUNNERS = 1;
+
+    @ManagedAttribute( defaultValue = "${queue.deliveryRunners}",
+                       immutable = true,
+                       description = "The number of threads which may asynchronously deliver messages from this queue "
+                                     + "at the same time.  When greater than one, the queue's consumers are divided "
+                                     + "between that many runners, each of which delivers only to its own consumers. "
+                                     + "This allows delivery from a single queue with many consumers to use more than "
+                                     + "one core, at the cost of the strict round-robin ordering of deliveries between "
+                                     + "consumers of different runners.")
+    int getDeliveryRunners();
+
     //children
     Collection<? extends Binding<?>> getBindings();
 
@@ -298,6 +333,63 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Oldest Message")
     long getOldestMessageAge();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Read Ahead")
+    long getTotalReadAheadMessages();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this queue")
+    long getPublishToEnqueueLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this queue")
+    long getPublishToEnqueueLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this queue")
+    long getPublishToEnqueueLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this queue")
+    long getEnqueueToDeliverLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this queue")
+    long getEnqueueToDeliverLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this queue")
+    long getEnqueueToDeliverLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this queue")
+    long getDeliverToAckLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this queue")
+    long getDeliverToAckLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this queue")
+    long getDeliverToAckLatencyP999();
+
     @ManagedOperation(description = "move messages from this queue to another", changesConfiguredObjectState = false)
     List<Long> moveMessages(@Param(name = "destination", description = "The queue to which the messages should be moved") Queue<?> destination,
                             @Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for moving") List<Long> messageIds,
@@ -373,6 +465,12 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
 
     void incrementUnackedMsgCount(QueueEntry entry);
 
+    void registerEnqueueToDeliverLatency(QueueConsumer<?> consumer, long latency);
+
+    void registerDeliverToAckLatency(QueueConsumer<?> consumer, long latency);
+
+    void resetLatencyStatistics();
+
     boolean resend(QueueEntry entry, QueueConsumer<?> consumer);
 
     List<? extends QueueEntry> getMessagesOnTheQueue();
@@ -409,6 +507,15 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
 
     void recover(ServerMessage<?> message, MessageEnqueueRecord enqueueRecord);
 
+    /**
+     * Recovers the queue's entries lazily.  Instead of all being recovered before the queue completes recovery,
+     * the entries are recovered page by page by the given pager as the queue's consumers make room for them.
+     * Messages enqueued meanwhile are held back until the pager has recovered the last entry and recovery is
+     * completed, so that they are delivered after the messages that were on the queue before.  Once a page worth of
+     * messages is held back, the pager recovers the remaining entries without waiting for consumers.
+     */
+    void recoverLazily(QueueRecoveryPager pager);
+
     void setTargetSize(long targetSize);
 
     long getPotentialMemoryFootprint();
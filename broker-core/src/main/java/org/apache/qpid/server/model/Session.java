@@ -89,4 +89,58 @@ public interface Session<X extends Session<X>> extends ConfiguredObject<X>
      */
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Last Transaction Update")
     Date getTransactionUpdateTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this session")
+    long getPublishToEnqueueLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this session")
+    long getPublishToEnqueueLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Publish to Enqueue Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the arrival of messages at the Broker to their enqueue, for this session")
+    long getPublishToEnqueueLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this session")
+    long getEnqueueToDeliverLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this session")
+    long getEnqueueToDeliverLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Enqueue to Delivery Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the enqueue of messages to their delivery to a consumer, for this session")
+    long getEnqueueToDeliverLatencyP999();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this session")
+    long getDeliverToAckLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this session")
+    long getDeliverToAckLatencyP99();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Delivery to Acknowledgement Latency p999",
+                      description = "99.9th percentile, in nanoseconds, of the time"
+                                    + " from the delivery of messages to a consumer to their acknowledgement, for this session")
+    long getDeliverToAckLatencyP999();
 }
@@ -75,6 +75,72 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
 
     @ManagedContextDefault( name = VIRTUALHOST_WORK_DIR_VAR)
     public static final String VIRTUALHOST_WORK_DIR = VIRTUALHOST_WORK_DIR_VAR_EXPRESSION;
+    String FLOWED_MESSAGE_META_DATA_CACHE_ENABLED = "virtualhost.flowedMessageMetaDataCache.enabled";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = FLOWED_MESSAGE_META_DATA_CACHE_ENABLED,
+            description = "If true, the meta-data of messages flowed to disk is held in a memory mapped file beneath"
+                          + " the virtualhost's work directory rather than re-read from the message store")
+    boolean DEFAULT_FLOWED_MESSAGE_META_DATA_CACHE_ENABLED = false;
+
+    String FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE = "virtualhost.flowedMessageMetaDataCache.segmentSize";
+    @ManagedContextDefault( name = FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE,
+            description = "The size in bytes of each mapped segment of the flowed message meta-data cache")
+    int DEFAULT_FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    String MAPPED_MESSAGE_CONTENT_CACHE_ENABLED = "virtualhost.mappedMessageContentCache.enabled";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = MAPPED_MESSAGE_CONTENT_CACHE_ENABLED,
+            description = "If true, the content of large messages reloaded from the message store is held in memory"
+                          + " mapped files beneath the virtualhost's work directory and written to the network"
+                          + " directly from there")
+    boolean DEFAULT_MAPPED_MESSAGE_CONTENT_CACHE_ENABLED = false;
+
+    String MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD = "virtualhost.mappedMessageContentCache.threshold";
+    @ManagedContextDefault( name = MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD,
+            description = "The size in bytes from which the content of a message is held in the mapped content cache")
+    int DEFAULT_MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD = 64 * 1024;
+
+    String MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE = "virtualhost.mappedMessageContentCache.segmentSize";
+    @ManagedContextDefault( name = MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE,
+            description = "The size in bytes of each mapped file of the content cache")
+    int DEFAULT_MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    String JDBC_STORE_COMMIT_BATCH_MAX_SIZE = "virtualhost.jdbcStore.commitBatch.maxSize";
+    @ManagedContextDefault( name = JDBC_STORE_COMMIT_BATCH_MAX_SIZE,
+            description = "The maximum number of transactions of a JDBC message store committed together in one"
+                          + " database transaction")
+    int DEFAULT_JDBC_STORE_COMMIT_BATCH_MAX_SIZE = 256;
+
+    String JDBC_STORE_COMMIT_BATCH_MAX_LATENCY = "virtualhost.jdbcStore.commitBatch.maxLatency";
+    @ManagedContextDefault( name = JDBC_STORE_COMMIT_BATCH_MAX_LATENCY,
+            description = "The time in milliseconds for which a JDBC message store waits for further transactions to"
+                          + " commit with the first of a batch. If zero, transactions are committed as soon as the"
+                          + " previous database commit has completed")
+    long DEFAULT_JDBC_STORE_COMMIT_BATCH_MAX_LATENCY = 0L;
+
+    String RANGED_RECOVERY_RANGE_SIZE = "virtualhost.rangedRecovery.rangeSize";
+    @ManagedContextDefault( name = RANGED_RECOVERY_RANGE_SIZE,
+            description = "If greater than zero, asynchronous message store recovery streams the store in ranges of"
+                          + " this many message ids, recovering the queues of each range in parallel and holding only"
+                          + " the messages of the current range in memory. If zero, each queue is recovered in its"
+                          + " entirety by its own thread")
+    int DEFAULT_RANGED_RECOVERY_RANGE_SIZE = 0;
+
+    String RANGED_RECOVERY_THREADS = "virtualhost.rangedRecovery.threads";
+    @ManagedContextDefault( name = RANGED_RECOVERY_THREADS,
+            description = "The number of threads reading the message store in parallel during ranged recovery")
+    int DEFAULT_RANGED_RECOVERY_THREADS = Runtime.getRuntime().availableProcessors();
+
+    String LAZY_RECOVERY_PAGE_SIZE = "virtualhost.lazyRecovery.pageSize";
+    @ManagedContextDefault( name = LAZY_RECOVERY_PAGE_SIZE,
+            description = "If greater than zero, asynchronous message store recovery makes queues available"
+                          + " immediately and pages their entries in from the store this many at a time as consumers"
+                          + " make room for them. Messages published to a queue before its last page has been"
+                          + " recovered are delivered after the recovered ones. A message on several queues is loaded"
+                          + " once and held for the queues yet to page it in; the content of those held beyond a page"
+                          + " for a queue is flowed to disk. Takes precedence over ranged recovery")
+    int DEFAULT_LAZY_RECOVERY_PAGE_SIZE = 0;
+
     @ManagedContextDefault( name = "queue.deadLetterQueueEnabled")
     public static final boolean DEFAULT_DEAD_LETTER_QUEUE_ENABLED = false;
     String DEFAULT_DLE_NAME_SUFFIX = "_DLE";
@@ -158,6 +224,17 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
     @ManagedAttribute( defaultValue = "${" + VIRTUALHOST_CONNECTION_THREAD_POOL_NUMBER_OF_SELECTORS + "}")
     int getNumberOfSelectors();
 
+    String VIRTUALHOST_CONNECTION_THREAD_POOL_THREAD_AFFINITY = "virtualhost.connectionThreadPool.threadAffinity";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = VIRTUALHOST_CONNECTION_THREAD_POOL_THREAD_AFFINITY)
+    boolean DEFAULT_VIRTUALHOST_CONNECTION_THREAD_POOL_THREAD_AFFINITY = false;
+
+    @ManagedAttribute( defaultValue = "${" + VIRTUALHOST_CONNECTION_THREAD_POOL_THREAD_AFFINITY + "}",
+                       description = "If true, each thread of the connection thread pool selects upon and performs all"
+                                     + " the work of a fixed subset of the virtualhost's connections, in which case the"
+                                     + " number of selectors is ignored.")
+    boolean isConnectionThreadAffinity();
+
     @DerivedAttribute( persist = true )
     String getModelVersion();
 
@@ -166,6 +243,21 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
 
     void executeTask(String name, Runnable task, AccessControlContext context);
 
+    String READ_AHEAD_THREAD_COUNT = "virtualhost.readAheadThreadCount";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = READ_AHEAD_THREAD_COUNT,
+            description = "The maximum number of threads reloading the content of messages flowed to disk ahead of"
+                          + " their delivery from queues.")
+    int DEFAULT_READ_AHEAD_THREAD_COUNT = 2;
+
+    /**
+     * Runs a task which reloads the content of messages flowed to disk.  Such tasks block on the store, so they are
+     * run by their own bounded pool of threads rather than by the housekeeping threads.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the virtual host is not active
+     */
+    void executeReadAheadTask(String name, Runnable task, AccessControlContext context);
+
     @ManagedAttribute( defaultValue = "${virtualhost.enabledConnectionValidators}")
     List<String> getEnabledConnectionValidators();
 
@@ -199,6 +291,15 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
     @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Outbound")
     long getMessagesOut();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Recovered")
+    long getRecoveredMessages();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Recovered Queue Entries")
+    long getRecoveredQueueEntries();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION, label = "Recovery Duration")
+    long getRecoveryDuration();
+
     Broker<?> getBroker();
 
     @Override
@@ -289,4 +390,6 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
 
     long getTotalQueueDepthBytes();
 
+    void setBlockedForDirectMemory(boolean blocked);
+
 }
@@ -197,6 +197,60 @@ public final class SessionAdapter extends AbstractConfiguredObject<SessionAdapte
         return new Date(_session.getTransactionUpdateTime());
     }
 
+    @Override
+    public long getPublishToEnqueueLatencyP50()
+    {
+        return _session.getLatencyStatistics().getPublishToEnqueue().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP99()
+    {
+        return _session.getLatencyStatistics().getPublishToEnqueue().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP999()
+    {
+        return _session.getLatencyStatistics().getPublishToEnqueue().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP50()
+    {
+        return _session.getLatencyStatistics().getEnqueueToDeliver().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP99()
+    {
+        return _session.getLatencyStatistics().getEnqueueToDeliver().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP999()
+    {
+        return _session.getLatencyStatistics().getEnqueueToDeliver().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP50()
+    {
+        return _session.getLatencyStatistics().getDeliverToAck().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP99()
+    {
+        return _session.getLatencyStatistics().getDeliverToAck().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP999()
+    {
+        return _session.getLatencyStatistics().getDeliverToAck().getValueAtPercentile(99.9);
+    }
+
     @StateTransition(currentState = State.ACTIVE, desiredState = State.DELETED)
     private ListenableFuture<Void> doDelete()
     {
@@ -35,6 +35,8 @@ import org.apache.qpid.server.model.StatisticType;
 import org.apache.qpid.server.model.StatisticUnit;
 import org.apache.qpid.server.model.Transport;
 import org.apache.qpid.server.model.TrustStore;
+import org.apache.qpid.server.model.WriteCoalescingMode;
+import org.apache.qpid.server.stats.NetworkWriteStatistics;
 
 import javax.net.ssl.SSLContext;
 
@@ -49,6 +51,12 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     String MAX_OPEN_CONNECTIONS = "maxOpenConnections";
     String THREAD_POOL_SIZE = "threadPoolSize";
     String NUMBER_OF_SELECTORS = "numberOfSelectors";
+    String THREAD_AFFINITY = "threadAffinity";
+    String WRITE_COALESCING_MODE = "writeCoalescingMode";
+    String WRITE_COALESCING_MAX_BYTES = "writeCoalescingMaxBytes";
+    String WRITE_COALESCING_MAX_DELAY = "writeCoalescingMaxDelay";
+    String TLS_BATCHING = "tlsBatching";
+    String TLS_CPU_TIME_STATISTICS = "tlsCpuTimeStatistics";
 
     String DEFAULT_AMQP_PROTOCOLS = "qpid.port.default_amqp_protocols";
 
@@ -56,8 +64,14 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     String PORT_AMQP_THREAD_POOL_KEEP_ALIVE_TIMEOUT = "qpid.port.amqp.threadPool.keep_alive_timeout";
 
     String PORT_AMQP_NUMBER_OF_SELECTORS = "qpid.port.amqp.threadPool.numberOfSelectors";
+    String PORT_AMQP_THREAD_AFFINITY = "qpid.port.amqp.threadPool.threadAffinity";
     String PORT_AMQP_ACCEPT_BACKLOG = "qpid.port.amqp.acceptBacklog";
     String PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE = "qpid.port.amqp.outboundMessageBufferSize";
+    String PORT_AMQP_WRITE_COALESCING_MODE = "qpid.port.amqp.writeCoalescing.mode";
+    String PORT_AMQP_WRITE_COALESCING_MAX_BYTES = "qpid.port.amqp.writeCoalescing.maxBytes";
+    String PORT_AMQP_WRITE_COALESCING_MAX_DELAY = "qpid.port.amqp.writeCoalescing.maxDelay";
+    String PORT_AMQP_TLS_BATCHING = "qpid.port.amqp.tls.batching";
+    String PORT_AMQP_TLS_CPU_TIME_STATISTICS = "qpid.port.amqp.tls.cpuTimeStatistics";
 
     @ManagedContextDefault(name = DEFAULT_AMQP_PROTOCOLS)
     String INSTALLED_PROTOCOLS = AmqpPortImpl.getInstalledProtocolsAsString();
@@ -79,6 +93,10 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedContextDefault(name = PORT_AMQP_NUMBER_OF_SELECTORS)
     long DEFAULT_PORT_AMQP_NUMBER_OF_SELECTORS = Math.max(DEFAULT_PORT_AMQP_THREAD_POOL_SIZE / 8, 1);
 
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_THREAD_AFFINITY)
+    boolean DEFAULT_PORT_AMQP_THREAD_AFFINITY = false;
+
     @SuppressWarnings("unused")
     @ManagedContextDefault(name = PORT_AMQP_ACCEPT_BACKLOG)
     int DEFAULT_PORT_AMQP_ACCEPT_BACKLOG = 1024;
@@ -92,6 +110,26 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedContextDefault(name = PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE)
     long DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE = 1024 * 1024;
 
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_WRITE_COALESCING_MODE)
+    String DEFAULT_PORT_AMQP_WRITE_COALESCING_MODE = "NONE";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_WRITE_COALESCING_MAX_BYTES)
+    int DEFAULT_PORT_AMQP_WRITE_COALESCING_MAX_BYTES = 64 * 1024;
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_WRITE_COALESCING_MAX_DELAY)
+    long DEFAULT_PORT_AMQP_WRITE_COALESCING_MAX_DELAY = 1;
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_TLS_BATCHING)
+    boolean DEFAULT_PORT_AMQP_TLS_BATCHING = false;
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_TLS_CPU_TIME_STATISTICS)
+    boolean DEFAULT_PORT_AMQP_TLS_CPU_TIME_STATISTICS = false;
+
 
     String PROTOCOL_HANDSHAKE_TIMEOUT = "qpid.port.protocol_handshake_timeout";
 
@@ -116,6 +154,40 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedAttribute( defaultValue = "${" + PORT_AMQP_NUMBER_OF_SELECTORS + "}")
     int getNumberOfSelectors();
 
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_THREAD_AFFINITY + "}",
+                       description = "If true, each thread of the pool selects upon and performs all the work of a"
+                                     + " fixed subset of the port's connections, in which case the number of"
+                                     + " selectors is ignored.")
+    boolean isThreadAffinity();
+
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_WRITE_COALESCING_MODE + "}",
+                       description = "Whether the frames buffered for a connection are written to the network as soon"
+                                     + " as they are produced (NONE), held back within the bounds of the maximum bytes"
+                                     + " and delay (BOUNDED), or held back within those bounds only while the"
+                                     + " connection produces small amounts of output (ADAPTIVE).")
+    WriteCoalescingMode getWriteCoalescingMode();
+
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_WRITE_COALESCING_MAX_BYTES + "}",
+                       description = "The number of buffered bytes at which the frames of a connection are written"
+                                     + " regardless of the write coalescing mode.")
+    int getWriteCoalescingMaxBytes();
+
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_WRITE_COALESCING_MAX_DELAY + "}",
+                       description = "The time in milliseconds for which buffered frames may be held back before they"
+                                     + " are written.")
+    long getWriteCoalescingMaxDelay();
+
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_TLS_BATCHING + "}",
+                       description = "If true, TLS connections encrypt the pending frames into as many records as"
+                                     + " fit a single reused output buffer before writing it, and decrypt all the"
+                                     + " complete records read before passing the data on for processing.")
+    boolean isTlsBatching();
+
+    @ManagedAttribute( defaultValue = "${" + PORT_AMQP_TLS_CPU_TIME_STATISTICS + "}",
+                       description = "If true, TLS connections measure the thread CPU time spent encrypting and"
+                                     + " decrypting their traffic, where the JVM supports it.")
+    boolean isTlsCpuTimeStatistics();
+
     @ManagedAttribute( defaultValue = DEFAULT_AMQP_NEED_CLIENT_AUTH )
     boolean getNeedClientAuth();
 
@@ -142,6 +214,18 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT, label = "Connections")
     int getConnectionCount();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Network Writes")
+    long getTotalNetworkWrites();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.BYTES, label = "Network Bytes Written")
+    long getTotalNetworkBytesWritten();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT, label = "Network Writes Per Second")
+    long getNetworkWriteRate();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.BYTES, label = "Average Bytes Per Network Write")
+    long getAverageBytesPerNetworkWrite();
+
     @DerivedAttribute(description = "Maximum time allowed for a new connection to send a protocol header."
                                     + " If the connection does not send a protocol header within this time,"
                                     + " the connection will be aborted.")
@@ -155,5 +239,13 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
 
     int decrementConnectionCount();
 
+    /**
+     * Adds the network writes of a connection to the port's statistics.  The writes of a connection remain counted
+     * once it is removed.
+     */
+    void addNetworkWriteStatistics(NetworkWriteStatistics statistics);
+
+    void removeNetworkWriteStatistics(NetworkWriteStatistics statistics);
+
     int getNetworkBufferSize();
 }
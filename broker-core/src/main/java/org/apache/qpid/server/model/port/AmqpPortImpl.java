@@ -57,6 +57,8 @@ import org.apache.qpid.server.model.*;
 import org.apache.qpid.server.plugin.ProtocolEngineCreator;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
 import org.apache.qpid.server.plugin.TransportProviderFactory;
+import org.apache.qpid.server.stats.NetworkWriteStatistics;
+import org.apache.qpid.server.stats.StatisticsCounter;
 import org.apache.qpid.server.transport.AcceptingTransport;
 import org.apache.qpid.server.transport.PortBindFailureException;
 import org.apache.qpid.server.transport.TransportProvider;
@@ -111,7 +113,32 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
     @ManagedAttributeField
     private int _numberOfSelectors;
 
+    @ManagedAttributeField
+    private boolean _threadAffinity;
+
+    @ManagedAttributeField
+    private WriteCoalescingMode _writeCoalescingMode;
+
+    @ManagedAttributeField
+    private int _writeCoalescingMaxBytes;
+
+    @ManagedAttributeField
+    private long _writeCoalescingMaxDelay;
+
+    @ManagedAttributeField
+    private boolean _tlsBatching;
+
+    @ManagedAttributeField
+    private boolean _tlsCpuTimeStatistics;
+
     private final AtomicInteger _connectionCount = new AtomicInteger();
+    // the statistics of the open connections, which are summed when read; guarded by itself
+    private final Set<NetworkWriteStatistics> _networkWriteStatistics = new HashSet<>();
+    private long _closedConnectionNetworkWrites;
+    private long _closedConnectionNetworkBytesWritten;
+    private long _networkWriteRateSampleTime = System.currentTimeMillis();
+    private long _networkWriteRateSampleWrites;
+    private long _networkWriteRate;
     private final AtomicBoolean _connectionCountWarningGiven = new AtomicBoolean();
 
     private final Container<?> _container;
@@ -141,6 +168,42 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         return _numberOfSelectors;
     }
 
+    @Override
+    public boolean isThreadAffinity()
+    {
+        return _threadAffinity;
+    }
+
+    @Override
+    public WriteCoalescingMode getWriteCoalescingMode()
+    {
+        return _writeCoalescingMode;
+    }
+
+    @Override
+    public int getWriteCoalescingMaxBytes()
+    {
+        return _writeCoalescingMaxBytes;
+    }
+
+    @Override
+    public long getWriteCoalescingMaxDelay()
+    {
+        return _writeCoalescingMaxDelay;
+    }
+
+    @Override
+    public boolean isTlsBatching()
+    {
+        return _tlsBatching;
+    }
+
+    @Override
+    public boolean isTlsCpuTimeStatistics()
+    {
+        return _tlsCpuTimeStatistics;
+    }
+
 
     @Override
     public SSLContext getSSLContext()
@@ -355,6 +418,7 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         }
 
         validateThreadPoolSettings(this);
+        validateWriteCoalescingSettings(this);
     }
 
     @Override
@@ -366,6 +430,11 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         {
             validateThreadPoolSettings(changed);
         }
+        if (changedAttributes.contains(WRITE_COALESCING_MAX_BYTES)
+            || changedAttributes.contains(WRITE_COALESCING_MAX_DELAY))
+        {
+            validateWriteCoalescingSettings(changed);
+        }
     }
 
     private void validateThreadPoolSettings(final AmqpPort changed)
@@ -384,6 +453,18 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         }
     }
 
+    private void validateWriteCoalescingSettings(final AmqpPort changed)
+    {
+        if (changed.getWriteCoalescingMaxBytes() < 1)
+        {
+            throw new IllegalConfigurationException(String.format("Write coalescing maximum bytes %d on Port %s must be greater than zero.", changed.getWriteCoalescingMaxBytes(), getName()));
+        }
+        if (changed.getWriteCoalescingMaxDelay() < 0)
+        {
+            throw new IllegalConfigurationException(String.format("Write coalescing maximum delay %d on Port %s must not be negative.", changed.getWriteCoalescingMaxDelay(), getName()));
+        }
+    }
+
     private SSLContext createSslContext()
     {
         KeyStore keyStore = getKeyStore();
@@ -651,6 +732,88 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         return _connectionCount.get();
     }
 
+    @Override
+    public void addNetworkWriteStatistics(final NetworkWriteStatistics statistics)
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            _networkWriteStatistics.add(statistics);
+        }
+    }
+
+    @Override
+    public void removeNetworkWriteStatistics(final NetworkWriteStatistics statistics)
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            if (_networkWriteStatistics.remove(statistics))
+            {
+                _closedConnectionNetworkWrites += statistics.getWrites();
+                _closedConnectionNetworkBytesWritten += statistics.getBytesWritten();
+            }
+        }
+    }
+
+    @Override
+    public long getTotalNetworkWrites()
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            long writes = _closedConnectionNetworkWrites;
+            for (NetworkWriteStatistics statistics : _networkWriteStatistics)
+            {
+                writes += statistics.getWrites();
+            }
+            return writes;
+        }
+    }
+
+    @Override
+    public long getTotalNetworkBytesWritten()
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            long bytesWritten = _closedConnectionNetworkBytesWritten;
+            for (NetworkWriteStatistics statistics : _networkWriteStatistics)
+            {
+                bytesWritten += statistics.getBytesWritten();
+            }
+            return bytesWritten;
+        }
+    }
+
+    /**
+     * Returns the rate of writes over the interval between the last two samples, a sample being taken when the rate is
+     * read at least a sample period after the previous one.
+     */
+    @Override
+    public long getNetworkWriteRate()
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            final long now = System.currentTimeMillis();
+            final long elapsed = now - _networkWriteRateSampleTime;
+            if (elapsed >= StatisticsCounter.DEFAULT_SAMPLE_PERIOD)
+            {
+                final long writes = getTotalNetworkWrites();
+                _networkWriteRate = (writes - _networkWriteRateSampleWrites) * 1000L / elapsed;
+                _networkWriteRateSampleWrites = writes;
+                _networkWriteRateSampleTime = now;
+            }
+            return _networkWriteRate;
+        }
+    }
+
+    @Override
+    public long getAverageBytesPerNetworkWrite()
+    {
+        synchronized (_networkWriteStatistics)
+        {
+            final long writes = getTotalNetworkWrites();
+            return writes == 0L ? 0L : getTotalNetworkBytesWritten() / writes;
+        }
+    }
+
     @Override
     public long getProtocolHandshakeTimeout()
     {
@@ -29,6 +29,7 @@ import org.apache.qpid.server.logging.LogSubject;
 import org.apache.qpid.server.model.Consumer;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.Session;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.util.Deletable;
 import org.apache.qpid.transport.network.Ticker;
@@ -66,6 +67,8 @@ public interface AMQSessionModel<T extends AMQSessionModel<T>> extends Comparabl
 
     int getUnacknowledgedMessageCount();
 
+    LatencyStatistics getLatencyStatistics();
+
     Long getTxnCount();
     Long getTxnStart();
     Long getTxnCommits();
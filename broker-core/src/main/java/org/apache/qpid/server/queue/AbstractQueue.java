@@ -65,7 +65,10 @@ import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.bytebuffer.QpidByteBufferInputStream;
+import org.apache.qpid.filter.FilterableMessage;
+import org.apache.qpid.filter.PropertyExpression;
 import org.apache.qpid.filter.SelectorParsingException;
 import org.apache.qpid.filter.selector.ParseException;
 import org.apache.qpid.filter.selector.TokenMgrError;
@@ -100,10 +103,13 @@ import org.apache.qpid.server.protocol.MessageConverterRegistry;
 import org.apache.qpid.server.security.SecurityToken;
 import org.apache.qpid.server.security.access.Operation;
 import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.store.MessageDurability;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.txn.AutoCommitTransaction;
 import org.apache.qpid.server.txn.LocalTransaction;
@@ -147,6 +153,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final DeletedChildListener _deletedChildListener = new DeletedChildListener();
 
     private final AccessControlContext _immediateDeliveryContext;
+    private final AccessControlContext _readAheadContext;
 
     @ManagedAttributeField( beforeSet = "preSetAlternateExchange", afterSet = "postSetAlternateExchange")
     private Exchange _alternateExchange;
@@ -176,8 +183,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final AtomicLong _persistentMessageDequeueSize = new AtomicLong();
     private final AtomicLong _persistentMessageEnqueueCount = new AtomicLong();
     private final AtomicLong _persistentMessageDequeueCount = new AtomicLong();
+    private final LatencyStatistics _latencyStatistics = new LatencyStatistics();
     private final AtomicLong _unackedMsgCount = new AtomicLong(0);
     private final AtomicLong _unackedMsgBytes = new AtomicLong();
+    private final AtomicLong _readAheadMessages = new AtomicLong();
 
     private final AtomicInteger _bindingCountHigh = new AtomicInteger();
 
@@ -221,6 +230,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final Set<NotificationCheck> _notificationChecks =
             Collections.synchronizedSet(EnumSet.noneOf(NotificationCheck.class));
 
+    private volatile int _readAheadEntries;
+    private volatile long _readAheadBytes;
+    private final AtomicBoolean _readAheadScheduled = new AtomicBoolean();
+    private volatile QueueEntry _readAheadTrigger;
 
     private volatile int _maxAsyncDeliveries;
     private volatile long _estimatedAverageMessageHeaderSize;
@@ -254,6 +267,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private int _maximumDeliveryAttempts;
 
     private MessageGroupManager _messageGroupManager;
+    private SelectorIndex _selectorIndex;
 
     private QueueNotificationListener  _notificationListener = NULL_NOTIFICATION_LISTENER;
     private final long[] _lastNotificationTimes = new long[NotificationCheck.values().length];
@@ -274,6 +288,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private boolean _ensureNondestructiveConsumers;
     @ManagedAttributeField
     private volatile boolean _holdOnPublishEnabled;
+    @ManagedAttributeField
+    private int _deliveryRunners;
 
 
     private static final int RECOVERING = 1;
@@ -284,8 +300,15 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final AtomicInteger _enqueuingWhileRecovering = new AtomicInteger(0);
 
     private final ConcurrentLinkedQueue<EnqueueRequest> _postRecoveryQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _postRecoveryQueueCount = new AtomicInteger();
+
+    // entries are added to the entry list before the group and selector indexes, these are the additions in progress
+    private final Set<PendingIndexing> _pendingIndexing =
+            Collections.newSetFromMap(new ConcurrentHashMap<PendingIndexing, Boolean>());
+    private volatile QueueRecoveryPager _recoveryPager;
 
     private final QueueRunner _queueRunner;
+    private volatile QueueRunner[] _queueRunners;
     private boolean _closing;
     private final ConcurrentMap<String, Callable<MessageFilter>> _defaultFiltersMap = new ConcurrentHashMap<>();
     private final List<HoldMethod> _holdMethods = new CopyOnWriteArrayList<>();
@@ -304,9 +327,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _virtualHost = virtualHost;
         _immediateDeliveryContext = getSystemTaskControllerContext("Immediate Delivery", virtualHost.getPrincipal());
+        _readAheadContext = getSystemTaskControllerContext("Read Ahead", virtualHost.getPrincipal());
 
         _queueRunner = new QueueRunner(this, getSystemTaskControllerContext("Queue Delivery",
                                                                             virtualHost.getPrincipal()));
+        _queueRunners = new QueueRunner[] { _queueRunner };
     }
 
     @Override
@@ -356,6 +381,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         {
             throw new IllegalConfigurationException("Flow resume size can't be greater than flow control size");
         }
+        if (_deliveryRunners < 1)
+        {
+            throw new IllegalConfigurationException("Number of delivery runners must be at least 1");
+        }
     }
 
     @Override
@@ -496,6 +525,24 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _estimatedAverageMessageHeaderSize = getContextValue(Long.class, QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD);
         _maxAsyncDeliveries = getContextValue(Integer.class, Queue.MAX_ASYNCHRONOUS_DELIVERIES);
+        _selectorIndex = getContextValue(Boolean.class, Queue.SELECTOR_INDEX_ENABLED) ? new SelectorIndex() : null;
+        _readAheadEntries = getContextValue(Integer.class, Queue.READ_AHEAD_ENTRIES);
+        _readAheadBytes = getContextValue(Long.class, Queue.READ_AHEAD_BYTES);
+        if(_deliveryRunners > 1)
+        {
+            // each runner delivers only to its own partition of the consumers; _consumerList continues to hold
+            // every consumer for straight-through delivery and everything else
+            final QueueRunner[] queueRunners = new QueueRunner[_deliveryRunners];
+            for(int i = 0; i < _deliveryRunners; i++)
+            {
+                queueRunners[i] = new QueueRunner(this,
+                                                  getSystemTaskControllerContext("Queue Delivery",
+                                                                                 _virtualHost.getPrincipal()),
+                                                  new QueueConsumerList(),
+                                                  i);
+            }
+            _queueRunners = queueRunners;
+        }
         _mimeTypeToFileExtension = getContextValue(Map.class, MAP_OF_STRING_STRING, MIME_TYPE_TO_FILE_EXTENSION);
 
         if(_defaultFilters != null)
@@ -692,6 +739,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return _holdOnPublishEnabled;
     }
 
+    @Override
+    public int getDeliveryRunners()
+    {
+        return _deliveryRunners;
+    }
+
     @Override
     public Collection<String> getAvailableAttributes()
     {
@@ -933,14 +986,28 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
 
         consumer.setStateListener(this);
+
+        SelectorIndex.Predicate indexedPredicate = null;
+        if(_selectorIndex != null && filters != null)
+        {
+            Map<PropertyExpression<FilterableMessage>, String> requiredValues = filters.getRequiredValues();
+            if(!requiredValues.isEmpty())
+            {
+                Map.Entry<PropertyExpression<FilterableMessage>, String> requiredValue =
+                        requiredValues.entrySet().iterator().next();
+                indexedPredicate = new SelectorIndex.Predicate(requiredValue.getKey(), requiredValue.getValue());
+                _selectorIndex.register(indexedPredicate, getEntries());
+            }
+        }
+
         QueueContext queueContext;
         if(filters == null || !filters.startAtTail())
         {
-            queueContext = new QueueContext(getEntries().getHead());
+            queueContext = new QueueContext(getEntries().getHead(), indexedPredicate);
         }
         else
         {
-            queueContext = new QueueContext(getEntries().getTail());
+            queueContext = new QueueContext(getEntries().getTail(), indexedPredicate);
         }
         consumer.setQueueContext(queueContext);
 
@@ -951,6 +1018,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 _hasPullOnlyConsumers = true;
             }
             _consumerList.add(consumer);
+            addToDeliveryPartition(consumer);
 
             if (isDeleted())
             {
@@ -977,6 +1045,51 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return consumer;
     }
 
+    private void addToDeliveryPartition(final QueueConsumer<?> consumer)
+    {
+        final QueueRunner[] queueRunners = _queueRunners;
+        if(queueRunners.length > 1)
+        {
+            QueueConsumerList smallest = null;
+            for(QueueRunner runner : queueRunners)
+            {
+                final QueueConsumerList partition = runner.getConsumerList();
+                if(smallest == null || partition.size() < smallest.size())
+                {
+                    smallest = partition;
+                }
+            }
+            smallest.add(consumer);
+        }
+    }
+
+    private void removeFromDeliveryPartition(final QueueConsumer<?> consumer)
+    {
+        final QueueRunner[] queueRunners = _queueRunners;
+        if(queueRunners.length > 1)
+        {
+            for(QueueRunner runner : queueRunners)
+            {
+                if(runner.getConsumerList().remove(consumer))
+                {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean isAsynchronousDeliveryIdle()
+    {
+        for(QueueRunner runner : _queueRunners)
+        {
+            if(!runner.isIdle())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected ListenableFuture<Void> beforeClose()
     {
@@ -997,10 +1110,16 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         if (removed)
         {
+            removeFromDeliveryPartition(consumer);
             consumer.closeAsync();
             // No longer can the queue have an exclusive consumer
             setExclusiveSubscriber(null);
 
+            final QueueContext queueContext = consumer.getQueueContext();
+            if(queueContext != null && queueContext.getIndexedPredicate() != null)
+            {
+                _selectorIndex.unregister(queueContext.getIndexedPredicate());
+            }
             consumer.setQueueContext(null);
 
             if(_exclusive == ExclusivityPolicy.LINK)
@@ -1141,6 +1260,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         incrementQueueCount();
         incrementQueueSize(message);
+        registerPublishToEnqueueLatency(message);
 
         _totalMessagesReceived.incrementAndGet();
 
@@ -1154,6 +1274,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 if(addedToRecoveryQueue = (_recovering.get() == RECOVERING))
                 {
                     _postRecoveryQueue.add(new EnqueueRequest(message, action, enqueueRecord));
+                    int heldEntries = _postRecoveryQueueCount.incrementAndGet();
+                    final QueueRecoveryPager recoveryPager = _recoveryPager;
+                    if (recoveryPager != null)
+                    {
+                        recoveryPager.entryHeld(heldEntries);
+                    }
                 }
             }
             finally
@@ -1176,10 +1302,54 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
 
         long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
-        _flowToDiskChecker.flowToDiskAndReportIfNecessary(message.getStoredMessage(), estimatedQueueSize,
+        _flowToDiskChecker.flowToDiskAndReportIfNecessary(message, estimatedQueueSize,
                                                           _targetQueueSize.get());
     }
 
+    @Override
+    public final void enqueue(final List<? extends ServerMessage> messages,
+                              final Action<? super MessageInstance> action,
+                              final List<? extends MessageEnqueueRecord> enqueueRecords)
+    {
+        if(messages.isEmpty())
+        {
+            return;
+        }
+        else if(messages.size() == 1 || _recovering.get() != RECOVERED)
+        {
+            for(int i = 0; i < messages.size(); i++)
+            {
+                enqueue(messages.get(i), action, enqueueRecords.get(i));
+            }
+            return;
+        }
+
+        incrementQueueCountAndSize(messages);
+        for(ServerMessage message : messages)
+        {
+            registerPublishToEnqueueLatency(message);
+        }
+
+        doEnqueue(messages, action, enqueueRecords);
+
+        long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
+        final long targetQueueSize = _targetQueueSize.get();
+        for(ServerMessage message : messages)
+        {
+            _flowToDiskChecker.flowToDiskIfNecessary(message, estimatedQueueSize, targetQueueSize);
+        }
+        _flowToDiskChecker.reportFlowToDiskStatusIfNecessary(estimatedQueueSize, targetQueueSize);
+    }
+
+    private void registerPublishToEnqueueLatency(final ServerMessage message)
+    {
+        // the arrival of a message that is routed again from a queue long precedes its enqueue
+        if(!message.isRerouted())
+        {
+            _latencyStatistics.registerEnqueue(message.getMessageNumber(), message.getArrivalTime());
+        }
+    }
+
     public final void recover(ServerMessage message, final MessageEnqueueRecord enqueueRecord)
     {
         incrementQueueCount();
@@ -1190,12 +1360,19 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         doEnqueue(message, null, enqueueRecord);
     }
 
+    @Override
+    public final void recoverLazily(final QueueRecoveryPager pager)
+    {
+        _recoveryPager = pager;
+    }
+
 
     @Override
     public final void completeRecovery()
     {
         if(_recovering.compareAndSet(RECOVERING, COMPLETING_RECOVERY))
         {
+            _recoveryPager = null;
             while(_enqueuingWhileRecovering.get() != 0)
             {
                 Thread.yield();
@@ -1217,6 +1394,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         while(!_postRecoveryQueue.isEmpty())
         {
             EnqueueRequest request = _postRecoveryQueue.poll();
+            _postRecoveryQueueCount.decrementAndGet();
             MessageReference<?> messageReference = request.getMessage();
             doEnqueue(messageReference.getMessage(), request.getAction(), request.getEnqueueRecord());
             messageReference.release();
@@ -1226,12 +1404,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     protected void doEnqueue(final ServerMessage message, final Action<? super MessageInstance> action, MessageEnqueueRecord enqueueRecord)
     {
         final QueueConsumer<?> exclusiveSub = _exclusiveSubscriber;
-        final QueueEntry entry = getEntries().add(message, enqueueRecord);
+        final QueueEntry entry = addToEntriesAndIndexes(message, enqueueRecord);
         updateExpiration(entry);
 
         try
         {
-            if (action != null || (exclusiveSub == null  && _queueRunner.isIdle()))
+            if (action != null || (exclusiveSub == null  && isAsynchronousDeliveryIdle()))
             {
                 AccessController.doPrivileged(
                         new PrivilegedAction<Void>()
@@ -1264,6 +1442,62 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     }
 
+    /**
+     * Adds a batch of messages to the queue, attempting straight-through delivery of each, but only scheduling
+     * asynchronous delivery once for the whole batch.
+     */
+    protected void doEnqueue(final List<? extends ServerMessage> messages,
+                             final Action<? super MessageInstance> action,
+                             final List<? extends MessageEnqueueRecord> enqueueRecords)
+    {
+        boolean entryAvailable = false;
+
+        for(int i = 0; i < messages.size(); i++)
+        {
+            final QueueConsumer<?> exclusiveSub = _exclusiveSubscriber;
+            final QueueEntry entry = addToEntriesAndIndexes(messages.get(i), enqueueRecords.get(i));
+            updateExpiration(entry);
+
+            try
+            {
+                if (action != null || (exclusiveSub == null && isAsynchronousDeliveryIdle()))
+                {
+                    AccessController.doPrivileged(
+                            new PrivilegedAction<Void>()
+                            {
+                                @Override
+                                public Void run()
+                                {
+                                    tryDeliverStraightThrough(entry);
+                                    return null;
+                                }
+                            }, _immediateDeliveryContext);
+                }
+
+                if (entry.isAvailable())
+                {
+                    checkConsumersNotAheadOfDelivery(entry);
+                    entryAvailable = true;
+                }
+
+                checkForNotificationOnNewMessage(entry.getMessage());
+            }
+            finally
+            {
+                if(action != null)
+                {
+                    action.performAction(entry);
+                }
+            }
+        }
+
+        if (entryAvailable)
+        {
+            notifyPullOnlyConsumers();
+            deliverAsync();
+        }
+    }
+
     private void updateExpiration(final QueueEntry entry)
     {
         long expiration = entry.getMessage().getExpiration();
@@ -1479,6 +1713,36 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         getAtomicQueueCount().incrementAndGet();
     }
 
+    private void incrementQueueCountAndSize(final List<? extends ServerMessage> messages)
+    {
+        final int count = messages.size();
+        long size = 0l;
+        long persistentSize = 0l;
+        int persistentCount = 0;
+        final boolean durable = isDurable();
+        for(ServerMessage message : messages)
+        {
+            long messageSize = message.getSize();
+            size += messageSize;
+            if(durable && message.isPersistent())
+            {
+                persistentSize += messageSize;
+                persistentCount++;
+            }
+        }
+
+        getAtomicQueueCount().addAndGet(count);
+        getAtomicQueueSize().addAndGet(size);
+        _enqueueCount.addAndGet(count);
+        _enqueueSize.addAndGet(size);
+        if(persistentCount != 0)
+        {
+            _persistentMessageEnqueueSize.addAndGet(persistentSize);
+            _persistentMessageEnqueueCount.addAndGet(persistentCount);
+        }
+        _totalMessagesReceived.addAndGet(count);
+    }
+
     private void deliverMessage(final QueueConsumer<?> sub,
                                 final QueueEntry entry,
                                 boolean batch,
@@ -1550,6 +1814,14 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     @Override
     public void dequeue(QueueEntry entry)
     {
+        if(_messageGroupManager != null)
+        {
+            _messageGroupManager.entryDequeued(entry);
+        }
+        if(_selectorIndex != null)
+        {
+            _selectorIndex.entryDequeued(entry);
+        }
         decrementQueueCount();
         decrementQueueSize(entry);
         if (entry.acquiredByConsumer())
@@ -1557,6 +1829,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             _deliveredMessages.decrementAndGet();
         }
 
+        final QueueRecoveryPager recoveryPager = _recoveryPager;
+        if (recoveryPager != null)
+        {
+            recoveryPager.entryDequeued();
+        }
+
         checkCapacity();
 
     }
@@ -1697,6 +1975,86 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return oldestMessageArrivalTime;
     }
 
+    @Override
+    public long getTotalReadAheadMessages()
+    {
+        return _readAheadMessages.get();
+    }
+
+    @Override
+    public void registerEnqueueToDeliverLatency(final QueueConsumer<?> consumer, final long latency)
+    {
+        _latencyStatistics.registerEnqueueToDeliver(latency);
+        consumer.getSessionModel().getLatencyStatistics().registerEnqueueToDeliver(latency);
+    }
+
+    @Override
+    public void resetLatencyStatistics()
+    {
+        _latencyStatistics.reset();
+    }
+
+    @Override
+    public void registerDeliverToAckLatency(final QueueConsumer<?> consumer, final long latency)
+    {
+        _latencyStatistics.registerDeliverToAck(latency);
+        consumer.getSessionModel().getLatencyStatistics().registerDeliverToAck(latency);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP50()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP99()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP999()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP50()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP99()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP999()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP50()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP99()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP999()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(99.9);
+    }
+
     @Override
     public long getOldestMessageAge()
     {
@@ -2165,7 +2523,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         _stateChangeCount.incrementAndGet();
 
-        _queueRunner.execute();
+        for(QueueRunner runner : _queueRunners)
+        {
+            runner.execute();
+        }
 
     }
 
@@ -2296,6 +2657,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
             if (node != null && node.isAvailable())
             {
+                readAheadIfNecessary(sub, node);
+
                 if (sub.hasInterest(node) && mightAssign(sub, node))
                 {
                     if (!sub.wouldSuspend(node))
@@ -2340,6 +2703,37 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return atTail || !subActive;
     }
 
+    /**
+     * Schedules the asynchronous reload of the content of messages flowed to disk which lie ahead of the given
+     * consumer, if the consumer has reached the entry marking the middle of the last read-ahead, or has found content
+     * which has not been read ahead.  A queue has at most one read-ahead in progress, so the budget of entries and
+     * bytes applies to the queue as a whole rather than to each of its consumers.
+     */
+    private void readAheadIfNecessary(final QueueConsumer<?> sub, final QueueEntry node)
+    {
+        if (_readAheadEntries > 0)
+        {
+            final ServerMessage message = node.getMessage();
+            final StoredMessage storedMessage = message == null ? null : message.getStoredMessage();
+            if (storedMessage != null
+                && (node == _readAheadTrigger || !storedMessage.isInMemory())
+                && _readAheadScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    _virtualHost.executeReadAheadTask("Queue Read Ahead: " + getName(),
+                                                      new ReadAheadTask(sub, node),
+                                                      _readAheadContext);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    _logger.debug("Read-ahead on queue '{}' rejected", getName(), e);
+                    _readAheadScheduled.set(false);
+                }
+            }
+        }
+    }
+
     private boolean noHigherPriorityWithCredit(final QueueConsumer<?> sub)
     {
         ConsumerNodeIterator iterator = _consumerList.iterator();
@@ -2387,9 +2781,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             QueueEntry node = (releasedNode != null && lastSeen.compareTo(releasedNode)>=0) ? releasedNode : getEntries()
                     .next(lastSeen);
 
+            final SelectorIndex.Predicate indexedPredicate = context.getIndexedPredicate();
             boolean expired = false;
+            boolean unassignable = false;
             while (node != null && (!node.isAvailable() || (expired = node.expired()) || !sub.hasInterest(node) ||
-                                    !mightAssign(sub,node)))
+                                    (unassignable = !mightAssign(sub,node))))
             {
                 if (expired)
                 {
@@ -2407,8 +2803,32 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
                 lastSeen = context.getLastSeenEntry();
                 releasedNode = context.getReleasedEntry();
-                node = (releasedNode != null && lastSeen.compareTo(releasedNode)>=0) ? releasedNode : getEntries().next(
-                        lastSeen);
+                if (releasedNode != null && lastSeen.compareTo(releasedNode) >= 0)
+                {
+                    node = releasedNode;
+                }
+                else if (unassignable)
+                {
+                    // rather than stepping through the entries of groups owned by other consumers one at a time,
+                    // jump to the next entry this consumer could be assigned
+                    unassignable = false;
+                    final QueueEntry tail = getEntries().getTail();
+                    final QueueEntry pending = getEarliestPendingIndexing(lastSeen);
+                    node = getEntryFoundByIndex(_messageGroupManager.findNextAssignableEntry(sub, lastSeen),
+                                                lastSeen, tail, pending);
+                }
+                else if (indexedPredicate != null)
+                {
+                    // only entries in the bucket for the consumer's indexed predicate could match its selector
+                    final QueueEntry tail = getEntries().getTail();
+                    final QueueEntry pending = getEarliestPendingIndexing(lastSeen);
+                    node = getEntryFoundByIndex(_selectorIndex.findNextAvailableEntry(indexedPredicate, lastSeen),
+                                                lastSeen, tail, pending);
+                }
+                else
+                {
+                    node = getEntries().next(lastSeen);
+                }
             }
             return node;
         }
@@ -2418,6 +2838,86 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    private QueueEntry addToEntriesAndIndexes(final ServerMessage message, final MessageEnqueueRecord enqueueRecord)
+    {
+        if(_messageGroupManager == null && _selectorIndex == null)
+        {
+            return getEntries().add(message, enqueueRecord);
+        }
+
+        final PendingIndexing pending = new PendingIndexing();
+        _pendingIndexing.add(pending);
+        try
+        {
+            final QueueEntry entry = getEntries().add(message, enqueueRecord);
+            pending._entry = entry;
+            if(_messageGroupManager != null)
+            {
+                _messageGroupManager.entryAdded(entry);
+            }
+            // checked once the entry is on the list, as the entries already on the list are indexed on registration
+            if(_selectorIndex != null && !_selectorIndex.isEmpty())
+            {
+                _selectorIndex.entryAdded(entry);
+            }
+            return entry;
+        }
+        finally
+        {
+            _pendingIndexing.remove(pending);
+        }
+    }
+
+    /**
+     * Returns the earliest entry after the given entry that is still being added to the group and selector indexes,
+     * or null if there is none.  An addition whose entry is not yet known is reported as the given entry itself, as
+     * it may lie anywhere after it.
+     */
+    private QueueEntry getEarliestPendingIndexing(final QueueEntry lastSeen)
+    {
+        QueueEntry earliest = null;
+        for(PendingIndexing pending : _pendingIndexing)
+        {
+            final QueueEntry entry = pending._entry;
+            if(entry == null)
+            {
+                return lastSeen;
+            }
+            else if(entry.compareTo(lastSeen) > 0 && (earliest == null || entry.compareTo(earliest) < 0))
+            {
+                earliest = entry;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Returns the entry that a search of the group or selector index found, unless an entry before it may have been
+     * missed by the search.  That is so if an entry between the last seen entry and the one found was still being
+     * added to the indexes when the search started, or if the entry found was added during the search, since others
+     * before it may have been too.  The consumer then steps to the entry following the last it has seen rather than
+     * risk jumping past such an entry.
+     *
+     * @param tail the tail of the entry list when the search started
+     * @param pending the earliest entry after the last seen that was being added to the indexes when the search
+     *                started, as returned by {@link #getEarliestPendingIndexing(QueueEntry)}
+     */
+    private QueueEntry getEntryFoundByIndex(final QueueEntry found,
+                                            final QueueEntry lastSeen,
+                                            final QueueEntry tail,
+                                            final QueueEntry pending)
+    {
+        final boolean mayHaveMissed = found == null
+                                      ? pending != null
+                                      : (pending != null && pending.compareTo(found) < 0) || found.compareTo(tail) > 0;
+        return mayHaveMissed ? getEntries().next(lastSeen) : found;
+    }
+
+    private static final class PendingIndexing
+    {
+        private volatile QueueEntry _entry;
+    }
+
     public boolean isEntryAheadOfConsumer(QueueEntry entry, QueueConsumer<?> sub)
     {
         QueueContext context = sub.getQueueContext();
@@ -2470,7 +2970,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         boolean lastLoop = false;
         int iterations = getMaxAsyncDeliveries();
 
-        final int numSubs = _consumerList.size();
+        final QueueConsumerList consumerList = runner == null || runner.getConsumerList() == null
+                ? _consumerList
+                : runner.getConsumerList();
+        final int numSubs = consumerList.size();
 
         final int perSub = Math.max(iterations / Math.max(numSubs,1), 1);
 
@@ -2497,7 +3000,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             boolean allConsumersDone = true;
             boolean consumerDone;
 
-            ConsumerNodeIterator consumerNodeIterator = _consumerList.iterator();
+            ConsumerNodeIterator consumerNodeIterator = consumerList.iterator();
             //iterate over the subscribers and try to advance their pointer
             while (consumerNodeIterator.advance())
             {
@@ -2559,7 +3062,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 //All consumers reported being done, but we have to do
                 //an extra loop if the iterations are not exhausted and
                 //there is still any work to be done
-                deliveryIncomplete = _consumerList.size() != 0;
+                deliveryIncomplete = consumerList.size() != 0;
                 lastLoop = true;
             }
             else
@@ -2646,7 +3149,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                     if (msg != null)
                     {
                         cumulativeQueueSize += msg.getSize() + _estimatedAverageMessageHeaderSize;
-                        _flowToDiskChecker.flowToDiskIfNecessary(msg.getStoredMessage(), cumulativeQueueSize,
+                        _flowToDiskChecker.flowToDiskIfNecessary(msg, cumulativeQueueSize,
                                                                  _targetQueueSize.get());
 
                         for(NotificationCheck check : perMessageChecks)
@@ -3102,7 +3605,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             throw new VirtualHostUnavailableException(this._virtualHost);
         }
 
-        if(!message.isReferenced(this))
+        if(!message.isReferenced(this) && !EnqueueBatch.isEnqueuePending(this, message))
         {
             txn.enqueue(this, message, new ServerTransaction.EnqueueAction()
             {
@@ -3112,7 +3615,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 {
                     try
                     {
-                        AbstractQueue.this.enqueue(message, postEnqueueAction, records[0]);
+                        EnqueueBatch.enqueue(AbstractQueue.this, message, postEnqueueAction, records[0]);
                     }
                     finally
                     {
@@ -3878,23 +4381,99 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    private class ReadAheadTask implements Runnable
+    {
+        private final QueueConsumer<?> _consumer;
+        private final QueueEntry _start;
+
+        private ReadAheadTask(final QueueConsumer<?> consumer, final QueueEntry start)
+        {
+            _consumer = consumer;
+            _start = start;
+        }
+
+        @Override
+        public void run()
+        {
+            QueueEntry trigger = null;
+            try
+            {
+                QueueEntry entry = _start;
+                long bytes = 0L;
+                for (int i = 0; entry != null && i < _readAheadEntries && bytes < _readAheadBytes; i++)
+                {
+                    if (i == _readAheadEntries / 2)
+                    {
+                        trigger = entry;
+                    }
+                    if (entry.isAvailable() && _consumer.hasInterest(entry))
+                    {
+                        bytes += readAhead(entry);
+                    }
+                    entry = getEntries().next(entry);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                _logger.debug("Read-ahead on queue '{}' failed", getName(), e);
+            }
+            finally
+            {
+                _readAheadTrigger = trigger;
+                _readAheadScheduled.set(false);
+            }
+        }
+
+        private long readAhead(final QueueEntry entry)
+        {
+            final MessageReference<?> reference = entry.newMessageReference();
+            if (reference == null)
+            {
+                return 0L;
+            }
+            try
+            {
+                final ServerMessage<?> message = reference.getMessage();
+                final StoredMessage<?> storedMessage = message.getStoredMessage();
+                if (storedMessage != null && !storedMessage.isInMemory())
+                {
+                    for (QpidByteBuffer buf : storedMessage.getContent(0, (int) message.getSize()))
+                    {
+                        buf.dispose();
+                    }
+                    _readAheadMessages.incrementAndGet();
+                }
+                return message.getSize();
+            }
+            finally
+            {
+                reference.release();
+            }
+        }
+    }
+
     private class FlowToDiskChecker
     {
         final AtomicBoolean _lastReportedFlowToDiskStatus = new AtomicBoolean(false);
 
-        void flowToDiskIfNecessary(StoredMessage<?> storedMessage, long estimatedQueueSize, final long targetQueueSize)
+        void flowToDiskIfNecessary(ServerMessage<?> message, long estimatedQueueSize, final long targetQueueSize)
         {
+            final StoredMessage<?> storedMessage = message.getStoredMessage();
             if ((estimatedQueueSize > targetQueueSize) && storedMessage.isInMemory())
             {
-                storedMessage.flowToDisk();
+                // the size is taken from the message, as the meta-data of the stored message is gone once flowed
+                if (storedMessage.flowToDisk() && EventTracer.isEnabled())
+                {
+                    EventTracer.trace(TraceEvent.FLOW_TO_DISK, getName(), message.getSize());
+                }
             }
         }
 
-        void flowToDiskAndReportIfNecessary(StoredMessage<?> storedMessage,
+        void flowToDiskAndReportIfNecessary(ServerMessage<?> message,
                                             final long estimatedQueueSize,
                                             final long targetQueueSize)
         {
-            flowToDiskIfNecessary(storedMessage, estimatedQueueSize, targetQueueSize);
+            flowToDiskIfNecessary(message, estimatedQueueSize, targetQueueSize);
             reportFlowToDiskStatusIfNecessary(estimatedQueueSize, targetQueueSize);
         }
 
@@ -20,7 +20,8 @@
  */
 package org.apache.qpid.server.queue;
 
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -32,10 +33,15 @@ public class AssignedConsumerMessageGroupManager implements MessageGroupManager
 {
     private static final Logger _logger = LoggerFactory.getLogger(AssignedConsumerMessageGroupManager.class);
 
+    // index key for entries without a group, which may be assigned to any consumer and so are always ready
+    private static final Object UNGROUPED = new Object();
+
 
     private final String _groupId;
     private final ConcurrentMap<Integer, QueueConsumer<?>> _groupMap = new ConcurrentHashMap<Integer, QueueConsumer<?>>();
+    private final ConcurrentMap<QueueConsumer<?>, Set<Integer>> _consumerGroups = new ConcurrentHashMap<>();
     private final int _groupMask;
+    private final MessageGroupIndex _index = new MessageGroupIndex();
 
     public AssignedConsumerMessageGroupManager(final String groupId, final int maxGroups)
     {
@@ -93,8 +99,7 @@ public class AssignedConsumerMessageGroupManager implements MessageGroupManager
                 if(assignedSub == null)
                 {
                     _logger.debug("Assigning group {} to sub {}", groupVal, sub);
-                    assignedSub = _groupMap.putIfAbsent(group, sub);
-                    return assignedSub == null || assignedSub == sub;
+                    return assignGroup(group, sub);
                 }
                 else
                 {
@@ -104,63 +109,87 @@ public class AssignedConsumerMessageGroupManager implements MessageGroupManager
         }
     }
     
-    public QueueEntry findEarliestAssignedAvailableEntry(QueueConsumer<?> sub)
+    // assignments change rarely, so they are serialised to keep the index consistent with the group map
+    private synchronized boolean assignGroup(final Integer group, final QueueConsumer<?> sub)
     {
-        EntryFinder visitor = new EntryFinder(sub);
-        sub.getQueue().visit(visitor);
-        return visitor.getEntry();
+        QueueConsumer<?> assignedSub = _groupMap.putIfAbsent(group, sub);
+        if(assignedSub == null)
+        {
+            Set<Integer> groups = _consumerGroups.get(sub);
+            if(groups == null)
+            {
+                groups = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+                _consumerGroups.put(sub, groups);
+            }
+            groups.add(group);
+            _index.assign(group);
+        }
+        return assignedSub == null || assignedSub == sub;
     }
 
-    private class EntryFinder implements QueueEntryVisitor
+    public QueueEntry findEarliestAssignedAvailableEntry(QueueConsumer<?> sub)
     {
-        private QueueEntry _entry;
-        private QueueConsumer<?> _sub;
-
-        public EntryFinder(final QueueConsumer<?> sub)
+        QueueEntry earliest = null;
+        Set<Integer> groups = _consumerGroups.get(sub);
+        if(groups != null)
         {
-            _sub = sub;
+            for(Integer group : groups)
+            {
+                QueueEntry entry = _index.getFirstAvailableEntry(group);
+                if(entry != null && (earliest == null || entry.compareTo(earliest) < 0))
+                {
+                    earliest = entry;
+                }
+            }
         }
+        return earliest;
+    }
 
-        public boolean visit(final QueueEntry entry)
+    public QueueEntry findNextAssignableEntry(final QueueConsumer<?> sub, final QueueEntry after)
+    {
+        QueueEntry next = null;
+        Set<Integer> groups = _consumerGroups.get(sub);
+        if(groups != null)
         {
-            if(!entry.isAvailable())
+            for(Integer group : groups)
             {
-                return false;
+                QueueEntry entry = _index.getNextAvailableEntry(group, after);
+                if(entry != null && (next == null || entry.compareTo(next) < 0))
+                {
+                    next = entry;
+                }
             }
+        }
+        return _index.findNextReadyEntry(after, next);
+    }
 
-            Object groupId = entry.getMessage().getMessageHeader().getHeader(_groupId);
-            if(groupId == null)
-            {
-                return false;
-            }
+    public void entryAdded(final QueueEntry entry)
+    {
+        _index.add(getIndexKey(entry), entry);
+    }
 
-            Integer group = groupId.hashCode() & _groupMask;
-            QueueConsumer<?> assignedSub = _groupMap.get(group);
-            if(assignedSub == _sub)
-            {
-                _entry = entry;
-                return true;
-            }
-            else
-            {
-                return false;
-            }
-        }
+    public void entryDequeued(final QueueEntry entry)
+    {
+        _index.remove(getIndexKey(entry), entry);
+    }
 
-        public QueueEntry getEntry()
-        {
-            return _entry;
-        }
+    private Object getIndexKey(final QueueEntry entry)
+    {
+        Object groupVal = entry.getMessage().getMessageHeader().getHeader(_groupId);
+        return groupVal == null ? UNGROUPED : Integer.valueOf(groupVal.hashCode() & _groupMask);
     }
 
-    public void clearAssignments(QueueConsumer<?> sub)
+    public synchronized void clearAssignments(QueueConsumer<?> sub)
     {
-        Iterator<QueueConsumer<?>> subIter = _groupMap.values().iterator();
-        while(subIter.hasNext())
+        Set<Integer> groups = _consumerGroups.remove(sub);
+        if(groups != null)
         {
-            if(subIter.next() == sub)
+            for(Integer group : groups)
             {
-                subIter.remove();
+                if(_groupMap.remove(group, sub))
+                {
+                    _index.free(group);
+                }
             }
         }
     }
@@ -21,6 +21,8 @@
 
 package org.apache.qpid.server.queue;
 
+import java.util.List;
+
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
@@ -31,6 +33,17 @@ public interface BaseQueue extends TransactionLogResource
 {
     void enqueue(ServerMessage message, Action<? super MessageInstance> action, MessageEnqueueRecord record);
 
+    /**
+     * Enqueues a batch of messages, in order, amortising the per-enqueue bookkeeping over the batch.
+     *
+     * @param messages the messages to enqueue
+     * @param action action to perform on each resulting queue entry (may be null)
+     * @param records the enqueue record for each message (elements may be null)
+     */
+    void enqueue(List<? extends ServerMessage> messages,
+                 Action<? super MessageInstance> action,
+                 List<? extends MessageEnqueueRecord> records);
+
     boolean isDurable();
     boolean isDeleted();
 
@@ -31,10 +31,11 @@ import org.slf4j.LoggerFactory;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.ServerMessage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Set;
 
 public class DefinedGroupMessageGroupManager implements MessageGroupManager
 {
@@ -43,12 +44,13 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
     private final String _groupId;
     private final String _defaultGroup;
     private final Map<Object, Group> _groupMap = new HashMap<Object, Group>();
+    private final Map<QueueConsumer<?>, Set<Group>> _consumerGroups = new HashMap<>();
     private final ConsumerResetHelper _resetHelper;
+    private final MessageGroupIndex _index = new MessageGroupIndex();
 
     private final class Group
     {
         private final Object _group;
-        private final SortedSet<QueueEntry> _skippedEntries = new TreeSet<>();
         private QueueConsumer<?> _consumer;
         private int _activeCount;
 
@@ -71,24 +73,29 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
             }
         }
         
-        public void subtract(final QueueEntry entry, final boolean released)
+        public void subtract()
         {
-            if(!released)
-            {
-                _skippedEntries.remove(entry);
-            }
             if(--_activeCount == 0)
             {
-                if(!_skippedEntries.isEmpty())
+                free();
+
+                // consumers may have passed over entries of this group while it was assigned
+                final QueueEntry firstAvailable = _index.getFirstAvailableEntry(_group);
+                if(firstAvailable != null)
                 {
-                    _resetHelper.resetSubPointersForGroups(_skippedEntries.first());
-                    _skippedEntries.clear();
+                    _resetHelper.resetSubPointersForGroups(firstAvailable);
                 }
-                _consumer = null;
-                _groupMap.remove(_group);
             }
         }
 
+        private void free()
+        {
+            removeConsumerGroup(this);
+            _consumer = null;
+            _groupMap.remove(_group);
+            _index.free(_group);
+        }
+
         @Override
         public boolean equals(final Object o)
         {
@@ -131,11 +138,6 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
                     ", _activeCount=" + _activeCount +
                     '}';
         }
-
-        public void addSkippedEntry(final QueueEntry entry)
-        {
-            _skippedEntries.add(entry);
-        }
     }
 
     public DefinedGroupMessageGroupManager(final String groupId, String defaultGroup, ConsumerResetHelper resetHelper)
@@ -150,12 +152,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         Object groupId = getKey(entry);
 
         Group group = _groupMap.get(groupId);
-        final boolean possibleAssignment = group == null || !group.isValid() || group.getConsumer() == sub;
-        if(!possibleAssignment)
-        {
-            group.addSkippedEntry(entry);
-        }
-        return possibleAssignment;
+        return group == null || !group.isValid() || group.getConsumer() == sub;
     }
 
     public synchronized boolean acceptMessage(final QueueConsumer<?> sub, final QueueEntry entry)
@@ -170,9 +167,15 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
 
         if(group == null || !group.isValid())
         {
+            if(group != null)
+            {
+                removeConsumerGroup(group);
+            }
             group = new Group(groupId, sub);
 
             _groupMap.put(groupId, group);
+            addConsumerGroup(group);
+            _index.assign(groupId);
 
             // there's a small chance that the group became empty between the point at which getNextAvailable() was
             // called on the consumer, and when accept message is called... in that case we want to avoid delivering
@@ -192,58 +195,90 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         }
         else
         {
-            group.addSkippedEntry(entry);
-            return false;            
+            return false;
         }
     }
 
-    public synchronized QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
+    private void addConsumerGroup(final Group group)
     {
-        EntryFinder visitor = new EntryFinder(sub);
-        sub.getQueue().visit(visitor);
-        return visitor.getEntry();
+        Set<Group> groups = _consumerGroups.get(group.getConsumer());
+        if(groups == null)
+        {
+            groups = new HashSet<>();
+            _consumerGroups.put(group.getConsumer(), groups);
+        }
+        groups.add(group);
     }
 
-    private class EntryFinder implements QueueEntryVisitor
+    private void removeConsumerGroup(final Group group)
     {
-        private QueueEntry _entry;
-        private QueueConsumer _sub;
-
-        public EntryFinder(final QueueConsumer<?> sub)
+        Set<Group> groups = _consumerGroups.get(group.getConsumer());
+        if(groups != null && groups.remove(group) && groups.isEmpty())
         {
-            _sub = sub;
+            _consumerGroups.remove(group.getConsumer());
         }
+    }
 
-        public boolean visit(final QueueEntry entry)
+    public synchronized QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
+    {
+        QueueEntry earliest = null;
+        Set<Group> groups = _consumerGroups.get(sub);
+        if(groups != null)
         {
-            if(!entry.isAvailable())
+            for(Group group : groups)
             {
-                return false;
+                QueueEntry entry = _index.getFirstAvailableEntry(group._group);
+                if(entry != null && (earliest == null || entry.compareTo(earliest) < 0))
+                {
+                    earliest = entry;
+                }
             }
+        }
+        return earliest;
+    }
 
-            Object groupId = getKey(entry);
-
-            Group group = _groupMap.get(groupId);
-            if(group != null && group.getConsumer() == _sub)
-            {
-                _entry = entry;
-                return true;
-            }
-            else
+    public synchronized QueueEntry findNextAssignableEntry(final QueueConsumer<?> sub, final QueueEntry after)
+    {
+        QueueEntry next = null;
+        Set<Group> groups = _consumerGroups.get(sub);
+        if(groups != null)
+        {
+            for(Group group : groups)
             {
-                return false;
+                QueueEntry entry = _index.getNextAvailableEntry(group._group, after);
+                if(entry != null && (next == null || entry.compareTo(next) < 0))
+                {
+                    next = entry;
+                }
             }
         }
+        return _index.findNextReadyEntry(after, next);
+    }
 
-        public QueueEntry getEntry()
-        {
-            return _entry;
-        }
+    public void entryAdded(final QueueEntry entry)
+    {
+        _index.add(getKey(entry), entry);
     }
 
-    
-    public void clearAssignments(final QueueConsumer<?> sub)
+    public void entryDequeued(final QueueEntry entry)
+    {
+        _index.remove(getKey(entry), entry);
+    }
+
+    public synchronized void clearAssignments(final QueueConsumer<?> sub)
     {
+        // groups of the consumer still holding acquired entries are freed once those entries are released
+        Set<Group> groups = _consumerGroups.get(sub);
+        if(groups != null)
+        {
+            for(Group group : new ArrayList<>(groups))
+            {
+                if(group._activeCount == 0)
+                {
+                    group.free();
+                }
+            }
+        }
     }
     
     private Object getKey(QueueEntry entry)
@@ -280,7 +315,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
                     }
                     else if (isConsumerAcquiredStateForThisGroup(oldState) && !isConsumerAcquiredStateForThisGroup(newState))
                     {
-                        _group.subtract((QueueEntry) entry, newState.getState() == MessageInstance.State.AVAILABLE);
+                        _group.subtract();
                     }
                 }
                 else
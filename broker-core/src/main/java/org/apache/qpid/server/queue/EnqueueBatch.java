@@ -0,0 +1,255 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.util.Action;
+
+/**
+ * Collects consecutive queue enqueues which result from routing messages on the current thread to the same queue so
+ * that they may be applied to the queue as a single batch, using {@link BaseQueue#enqueue(List, Action, List)}.
+ *
+ * A batch is started with {@link #begin()} and must be ended with {@link #complete()} (in a finally block) on the same
+ * thread.  Batches may be nested, in which case the enqueues are only applied when the outermost batch completes.
+ * The pending enqueues are applied as soon as an enqueue is made to a different queue, and may be applied at any
+ * time with {@link #flush()}, which callers use before doing anything that may observe the state of a queue.
+ * Enqueues made through {@link #enqueue(BaseQueue, ServerMessage, Action, MessageEnqueueRecord)} when no batch is in
+ * progress are applied to the queue immediately.
+ */
+public final class EnqueueBatch
+{
+    private static final Logger _logger = LoggerFactory.getLogger(EnqueueBatch.class);
+
+    private static final ThreadLocal<EnqueueBatch> CURRENT_BATCH = new ThreadLocal<>();
+
+    private PendingEnqueues _pendingEnqueues;
+    private int _depth;
+
+    private EnqueueBatch()
+    {
+    }
+
+    public static void begin()
+    {
+        EnqueueBatch batch = CURRENT_BATCH.get();
+        if (batch == null)
+        {
+            batch = new EnqueueBatch();
+            CURRENT_BATCH.set(batch);
+        }
+        batch._depth++;
+    }
+
+    public static void complete()
+    {
+        final EnqueueBatch batch = CURRENT_BATCH.get();
+        if (batch == null)
+        {
+            throw new IllegalStateException("No enqueue batch in progress");
+        }
+        if (--batch._depth == 0)
+        {
+            // any enqueues made as a consequence of applying this batch (e.g. by post enqueue actions) are applied
+            // immediately
+            CURRENT_BATCH.remove();
+            batch.applyPendingEnqueues();
+        }
+    }
+
+    /**
+     * Completes the batch as {@link #complete()} does, but logs rather than throws any failure to apply the pending
+     * enqueues, so that it does not hide the exception which caused the batch to be completed early.
+     */
+    public static void completeAfterFailure()
+    {
+        try
+        {
+            complete();
+        }
+        catch (RuntimeException e)
+        {
+            _logger.error("Error completing enqueue batch", e);
+        }
+    }
+
+    /**
+     * Applies the enqueues pending in the batch of the current thread, if any.  The batch remains in progress.
+     */
+    public static void flush()
+    {
+        final EnqueueBatch batch = CURRENT_BATCH.get();
+        if (batch != null)
+        {
+            batch.applyPendingEnqueues();
+        }
+    }
+
+    /**
+     * Returns true if the batch of the current thread holds an enqueue of the message which has yet to be applied.
+     */
+    public static boolean isEnqueuePending(final ServerMessage message)
+    {
+        final EnqueueBatch batch = CURRENT_BATCH.get();
+        return batch != null && batch._pendingEnqueues != null && batch._pendingEnqueues.contains(message);
+    }
+
+    /**
+     * Returns true if the batch of the current thread holds an enqueue of the message to the queue which has yet to
+     * be applied, that is, if the message is about to be referenced by the queue.
+     */
+    public static boolean isEnqueuePending(final BaseQueue queue, final ServerMessage message)
+    {
+        final EnqueueBatch batch = CURRENT_BATCH.get();
+        return batch != null
+               && batch._pendingEnqueues != null
+               && batch._pendingEnqueues.getQueue() == queue
+               && batch._pendingEnqueues.contains(message);
+    }
+
+    public static void enqueue(final BaseQueue queue,
+                               final ServerMessage message,
+                               final Action<? super MessageInstance> action,
+                               final MessageEnqueueRecord record)
+    {
+        final EnqueueBatch batch = CURRENT_BATCH.get();
+        if (batch == null)
+        {
+            queue.enqueue(message, action, record);
+        }
+        else
+        {
+            if (batch._pendingEnqueues != null && batch._pendingEnqueues.getQueue() != queue)
+            {
+                batch.applyPendingEnqueues();
+            }
+            if (batch._pendingEnqueues == null)
+            {
+                batch._pendingEnqueues = new PendingEnqueues(queue);
+            }
+            batch._pendingEnqueues.add(message, action, record);
+        }
+    }
+
+    private void applyPendingEnqueues()
+    {
+        final PendingEnqueues pendingEnqueues = _pendingEnqueues;
+        if (pendingEnqueues != null)
+        {
+            // enqueues made while these are applied start a new run
+            _pendingEnqueues = null;
+            try
+            {
+                pendingEnqueues.apply();
+            }
+            catch (RuntimeException e)
+            {
+                _logger.error("Error enqueuing batch of messages to queue '{}'",
+                              pendingEnqueues.getQueue().getName(),
+                              e);
+                throw e;
+            }
+        }
+    }
+
+    private static class PendingEnqueues
+    {
+        private final BaseQueue _queue;
+        private final List<ServerMessage> _messages = new ArrayList<>();
+        private final Set<ServerMessage> _messageSet =
+                Collections.newSetFromMap(new IdentityHashMap<ServerMessage, Boolean>());
+        private final List<Action<? super MessageInstance>> _actions = new ArrayList<>();
+        private final List<MessageEnqueueRecord> _records = new ArrayList<>();
+        private final List<MessageReference> _references = new ArrayList<>();
+
+        PendingEnqueues(final BaseQueue queue)
+        {
+            _queue = queue;
+        }
+
+        BaseQueue getQueue()
+        {
+            return _queue;
+        }
+
+        boolean contains(final ServerMessage message)
+        {
+            return _messageSet.contains(message);
+        }
+
+        void add(final ServerMessage message,
+                 final Action<? super MessageInstance> action,
+                 final MessageEnqueueRecord record)
+        {
+            // hold the message until it is enqueued, the caller may release its own reference as soon as we return
+            _references.add(message.newReference());
+            _messages.add(message);
+            _messageSet.add(message);
+            _actions.add(action);
+            _records.add(record);
+        }
+
+        void apply()
+        {
+            try
+            {
+                // messages are enqueued in the order they were added, in runs sharing the same post enqueue action
+                int start = 0;
+                while (start < _messages.size())
+                {
+                    final Action<? super MessageInstance> action = _actions.get(start);
+                    int end = start + 1;
+                    while (end < _messages.size() && _actions.get(end) == action)
+                    {
+                        end++;
+                    }
+                    if (end - start == 1)
+                    {
+                        _queue.enqueue(_messages.get(start), action, _records.get(start));
+                    }
+                    else
+                    {
+                        _queue.enqueue(_messages.subList(start, end), action, _records.subList(start, end));
+                    }
+                    start = end;
+                }
+            }
+            finally
+            {
+                for (MessageReference reference : _references)
+                {
+                    reference.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Indexes the entries of a grouped queue by message group, holding the entries of each group in queue order.
+ * <p>
+ * Groups that hold entries and are assigned to no consumer are ready, and are kept ordered by their earliest entry.
+ * This allows the {@link MessageGroupManager} to find the next entry that a consumer could be assigned by looking
+ * only at the groups assigned to that consumer and at the ready groups, without walking over the (possibly very
+ * many) entries or groups owned by other consumers.
+ * <p>
+ * Each group is updated under its own lock, so that enqueues and dequeues of different groups do not contend.
+ */
+public class MessageGroupIndex
+{
+    private final ConcurrentMap<Object, GroupEntries> _groups = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<QueueEntry, GroupEntries> _readyGroups = new ConcurrentSkipListMap<>();
+
+    public void add(final Object group, final QueueEntry entry)
+    {
+        while(true)
+        {
+            GroupEntries entries = getOrCreateGroupEntries(group);
+            synchronized (entries)
+            {
+                if(!entries._discarded)
+                {
+                    // an entry dequeued before it could be indexed would otherwise never be removed
+                    if(entry.isDeleted())
+                    {
+                        entries.discardIfUnused();
+                    }
+                    else
+                    {
+                        entries._entries.add(entry);
+                        entries.updateReadiness();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    public void remove(final Object group, final QueueEntry entry)
+    {
+        GroupEntries entries = _groups.get(group);
+        if(entries != null)
+        {
+            synchronized (entries)
+            {
+                if(entries._entries.remove(entry))
+                {
+                    entries.updateReadiness();
+                    entries.discardIfUnused();
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the group as assigned to a consumer, so that it is no longer ready.
+     */
+    public void assign(final Object group)
+    {
+        while(true)
+        {
+            GroupEntries entries = getOrCreateGroupEntries(group);
+            synchronized (entries)
+            {
+                if(!entries._discarded)
+                {
+                    entries._assigned = true;
+                    entries.updateReadiness();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the group as assigned to no consumer, so that it is ready if it holds entries.
+     */
+    public void free(final Object group)
+    {
+        GroupEntries entries = _groups.get(group);
+        if(entries != null)
+        {
+            synchronized (entries)
+            {
+                entries._assigned = false;
+                entries.updateReadiness();
+                entries.discardIfUnused();
+            }
+        }
+    }
+
+    /**
+     * @return the earliest available entry of the given group, or null if the group has no available entries
+     */
+    public QueueEntry getFirstAvailableEntry(final Object group)
+    {
+        GroupEntries entries = _groups.get(group);
+        return entries == null ? null : firstAvailable(entries._entries);
+    }
+
+    /**
+     * @return the earliest available entry of the given group after the given entry, or null if there is none
+     */
+    public QueueEntry getNextAvailableEntry(final Object group, final QueueEntry after)
+    {
+        GroupEntries entries = _groups.get(group);
+        return entries == null ? null : firstAvailable(entries._entries.tailSet(after, false));
+    }
+
+    /**
+     * @return the earlier of the given entry and the earliest available entry after the given entry which belongs to
+     * a ready group, or null if neither exists
+     */
+    public QueueEntry findNextReadyEntry(final QueueEntry after, final QueueEntry earliestFound)
+    {
+        QueueEntry next = earliestFound;
+        for(Map.Entry<QueueEntry, GroupEntries> readyGroup : _readyGroups.entrySet())
+        {
+            // the ready groups are ordered by their earliest entry, so no later group can hold an earlier entry
+            if(next != null && readyGroup.getKey().compareTo(next) >= 0)
+            {
+                break;
+            }
+            QueueEntry candidate = firstAvailable(readyGroup.getValue()._entries.tailSet(after, false));
+            if(candidate != null && (next == null || candidate.compareTo(next) < 0))
+            {
+                next = candidate;
+            }
+        }
+        return next;
+    }
+
+    public int getGroupCount()
+    {
+        return _groups.size();
+    }
+
+    public int getReadyGroupCount()
+    {
+        return _readyGroups.size();
+    }
+
+    private GroupEntries getOrCreateGroupEntries(final Object group)
+    {
+        GroupEntries entries = _groups.get(group);
+        if(entries == null)
+        {
+            entries = new GroupEntries(group);
+            GroupEntries existing = _groups.putIfAbsent(group, entries);
+            if(existing != null)
+            {
+                entries = existing;
+            }
+        }
+        return entries;
+    }
+
+    private QueueEntry firstAvailable(final NavigableSet<QueueEntry> entries)
+    {
+        Iterator<QueueEntry> iterator = entries.iterator();
+        while(iterator.hasNext())
+        {
+            QueueEntry entry = iterator.next();
+            if(entry.isAvailable())
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private final class GroupEntries
+    {
+        private final Object _group;
+        private final ConcurrentSkipListSet<QueueEntry> _entries = new ConcurrentSkipListSet<>();
+        private boolean _assigned;
+        private boolean _discarded;
+        private QueueEntry _readyKey;
+
+        private GroupEntries(final Object group)
+        {
+            _group = group;
+        }
+
+        // called holding the lock of the group entries
+        private void updateReadiness()
+        {
+            QueueEntry readyKey = _assigned || _entries.isEmpty() ? null : _entries.first();
+            if(readyKey != _readyKey)
+            {
+                if(_readyKey != null)
+                {
+                    _readyGroups.remove(_readyKey, this);
+                }
+                if(readyKey != null)
+                {
+                    _readyGroups.put(readyKey, this);
+                }
+                _readyKey = readyKey;
+            }
+        }
+
+        // called holding the lock of the group entries
+        private void discardIfUnused()
+        {
+            if(_entries.isEmpty() && !_assigned)
+            {
+                _discarded = true;
+                _groups.remove(_group, this);
+            }
+        }
+    }
+}
@@ -35,5 +35,17 @@ public interface MessageGroupManager
 
     QueueEntry findEarliestAssignedAvailableEntry(QueueConsumer<?> sub);
 
+    /**
+     * Finds the earliest available entry after the given entry which the consumer could be assigned, that is one
+     * belonging to a group which is either already assigned to the consumer or not assigned to any consumer.
+     *
+     * @return the entry, or null if there is no such entry
+     */
+    QueueEntry findNextAssignableEntry(QueueConsumer<?> sub, QueueEntry after);
+
+    void entryAdded(QueueEntry entry);
+
+    void entryDequeued(QueueEntry entry);
+
     void clearAssignments(QueueConsumer<?> sub);
 }
@@ -27,6 +27,7 @@ final class QueueContext
 {
     private volatile QueueEntry _lastSeenEntry;
     private volatile QueueEntry _releasedEntry;
+    private final SelectorIndex.Predicate _indexedPredicate;
 
     static final AtomicReferenceFieldUpdater<QueueContext, QueueEntry>
             _lastSeenUpdater =
@@ -38,8 +39,14 @@ final class QueueContext
         (QueueContext.class, QueueEntry.class, "_releasedEntry");
 
     public QueueContext(QueueEntry head)
+    {
+        this(head, null);
+    }
+
+    public QueueContext(QueueEntry head, SelectorIndex.Predicate indexedPredicate)
     {
         _lastSeenEntry = head;
+        _indexedPredicate = indexedPredicate;
     }
 
     public QueueEntry getLastSeenEntry()
@@ -53,6 +60,11 @@ final class QueueContext
         return _releasedEntry;
     }
 
+    SelectorIndex.Predicate getIndexedPredicate()
+    {
+        return _indexedPredicate;
+    }
+
     @Override
     public String toString()
     {
@@ -39,6 +39,7 @@ import org.apache.qpid.server.message.MessageReference;
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Exchange;
 import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.txn.LocalTransaction;
@@ -55,8 +56,6 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     private final MessageReference _message;
 
-    private Set<Long> _rejectedBy = null;
-
     private static final EntryState HELD_STATE = new EntryState()
     {
         @Override
@@ -81,13 +80,14 @@ public abstract class QueueEntryImpl implements QueueEntry
         (QueueEntryImpl.class, EntryState.class, "_state");
 
 
-    private volatile StateChangeListenerEntry<? super QueueEntry, EntryState> _stateChangeListeners;
+    /** State which most entries never need, allocated on first use to keep the entries of deep queues small */
+    private volatile Extension _extension;
 
     private static final
-        AtomicReferenceFieldUpdater<QueueEntryImpl, StateChangeListenerEntry>
-                _listenersUpdater =
+        AtomicReferenceFieldUpdater<QueueEntryImpl, Extension>
+                _extensionUpdater =
         AtomicReferenceFieldUpdater.newUpdater
-        (QueueEntryImpl.class, StateChangeListenerEntry.class, "_stateChangeListeners");
+        (QueueEntryImpl.class, Extension.class, "_extension");
 
 
     private static final
@@ -99,21 +99,23 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     private volatile long _entryId;
 
-    private static int REDELIVERED_FLAG = 1;
-    private static int PERSISTENT_FLAG = 2;
-    private static int MANDATORY_FLAG = 4;
-    private static int IMMEDIATE_FLAG = 8;
-    private int _flags;
-    private long _expiration;
+    private static final int REDELIVERED_FLAG = 1;
+    private static final int PERSISTENT_FLAG = 2;
+    private static final int MANDATORY_FLAG = 4;
+    private static final int IMMEDIATE_FLAG = 8;
+    private static final int DELIVERED_TO_CONSUMER_FLAG = 16;
+    private static final int DELIVERY_COUNT_SHIFT = 8;
+    private static final int DELIVERY_COUNT_UNIT = 1 << DELIVERY_COUNT_SHIFT;
 
-    /** Number of times this message has been delivered */
-    private volatile int _deliveryCount = -1;
-    private static final AtomicIntegerFieldUpdater<QueueEntryImpl> _deliveryCountUpdater = AtomicIntegerFieldUpdater
-                    .newUpdater(QueueEntryImpl.class, "_deliveryCount");
+    /** The flags above in the low order bits, and the number of times this message has been delivered above them */
+    private volatile int _flagsAndDeliveryCount;
+    private static final AtomicIntegerFieldUpdater<QueueEntryImpl> _flagsAndDeliveryCountUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(QueueEntryImpl.class, "_flagsAndDeliveryCount");
 
     private final MessageEnqueueRecord _enqueueRecord;
 
 
+
     public QueueEntryImpl(QueueEntryList queueEntryList)
     {
         this(queueEntryList, null, Long.MIN_VALUE, null);
@@ -153,13 +155,48 @@ public abstract class QueueEntryImpl implements QueueEntry
             {
                 setPersistent();
             }
-            _expiration = _message.getMessage().getExpiration();
+            setExpiration(_message.getMessage().getExpiration());
+            if(LatencyStatistics.isSampled(_message.getMessage().getMessageNumber()))
+            {
+                final Extension extension = getExtension();
+                extension._latencyTimestamp = System.nanoTime();
+                extension._latencySampled = true;
+            }
         }
     }
 
     public void setExpiration(long expiration)
     {
-        _expiration = expiration;
+        if(expiration != 0L || _extension != null)
+        {
+            getExtension()._expiration = expiration;
+        }
+    }
+
+    private long getExpiration()
+    {
+        final Extension extension = _extension;
+        return extension == null ? 0L : extension._expiration;
+    }
+
+    private Extension getExtension()
+    {
+        Extension extension = _extension;
+        if(extension == null)
+        {
+            extension = new Extension();
+            if(!_extensionUpdater.compareAndSet(this, null, extension))
+            {
+                extension = _extension;
+            }
+        }
+        return extension;
+    }
+
+    private boolean hasStateChangeListeners()
+    {
+        final Extension extension = _extension;
+        return extension != null && extension._stateChangeListeners != null;
     }
 
     public InstanceProperties getInstanceProperties()
@@ -194,12 +231,12 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public boolean getDeliveredToConsumer()
     {
-        return _deliveryCountUpdater.get(this) != -1;
+        return isFlagSet(DELIVERED_TO_CONSUMER_FLAG);
     }
 
     public boolean expired()
     {
-        long expiration = _expiration;
+        long expiration = getExpiration();
         if (expiration != 0L)
         {
             long now = System.currentTimeMillis();
@@ -296,7 +333,7 @@ public abstract class QueueEntryImpl implements QueueEntry
             }
         }
 
-        if(acquired && _stateChangeListeners != null)
+        if(acquired && hasStateChangeListeners())
         {
             notifyStateChange(AVAILABLE_STATE, state);
         }
@@ -309,8 +346,17 @@ public abstract class QueueEntryImpl implements QueueEntry
         final boolean acquired = acquire(((QueueConsumer<?>) sub).getOwningState().getUnstealableState());
         if(acquired)
         {
-            _deliveryCountUpdater.compareAndSet(this,-1,0);
+            setFlag(DELIVERED_TO_CONSUMER_FLAG);
             getQueue().incrementUnackedMsgCount(this);
+
+            final Extension extension = _extension;
+            if (extension != null && extension._latencySampled)
+            {
+                final long now = System.nanoTime();
+                final long latency = now - extension._latencyTimestamp;
+                extension._latencyTimestamp = now;
+                getQueue().registerEnqueueToDeliverLatency((QueueConsumer<?>) sub, latency);
+            }
         }
         return acquired;
     }
@@ -426,11 +472,16 @@ public abstract class QueueEntryImpl implements QueueEntry
         {
             getQueue().decrementUnackedMsgCount(this);
         }
+        final Extension extension = _extension;
+        if (extension != null && extension._latencySampled)
+        {
+            extension._latencyTimestamp = System.nanoTime();
+        }
 
         if(!getQueue().isDeleted())
         {
             getQueue().requeue(this);
-            if (_stateChangeListeners != null && previousState.getState() == State.ACQUIRED)
+            if (hasStateChangeListeners() && previousState.getState() == State.ACQUIRED)
             {
                 notifyStateChange(previousState, AVAILABLE_STATE);
             }
@@ -486,12 +537,13 @@ public abstract class QueueEntryImpl implements QueueEntry
 
         if (consumer != null)
         {
-            if (_rejectedBy == null)
+            final Extension extension = getExtension();
+            if (extension._rejectedBy == null)
             {
-                _rejectedBy = new HashSet<Long>();
+                extension._rejectedBy = new HashSet<Long>();
             }
 
-            _rejectedBy.add(consumer.getConsumerNumber());
+            extension._rejectedBy.add(consumer.getConsumerNumber());
         }
         else
         {
@@ -501,10 +553,10 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public boolean isRejectedBy(ConsumerImpl consumer)
     {
-
-        if (_rejectedBy != null) // We have consumers that rejected this message
+        final Extension extension = _extension;
+        if (extension != null && extension._rejectedBy != null) // We have consumers that rejected this message
         {
-            return _rejectedBy.contains(consumer.getConsumerNumber());
+            return extension._rejectedBy.contains(consumer.getConsumerNumber());
         }
         else // This message hasn't been rejected yet.
         {
@@ -526,10 +578,17 @@ public abstract class QueueEntryImpl implements QueueEntry
             if (state instanceof ConsumerAcquiredState)
             {
                 getQueue().decrementUnackedMsgCount(this);
+
+                final Extension extension = _extension;
+                if (extension != null && extension._latencySampled)
+                {
+                    getQueue().registerDeliverToAckLatency((QueueConsumer<?>) ((ConsumerAcquiredState<?>) state).getConsumer(),
+                                                           System.nanoTime() - extension._latencyTimestamp);
+                }
             }
 
             getQueue().dequeue(this);
-            if(_stateChangeListeners != null)
+            if(hasStateChangeListeners())
             {
                 notifyStateChange(state, DEQUEUED_STATE);
             }
@@ -544,7 +603,9 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     private void notifyStateChange(final EntryState oldState, final EntryState newState)
     {
-        StateChangeListenerEntry<? super QueueEntry, EntryState> entry = _listenersUpdater.get(this);
+        final Extension extension = _extension;
+        StateChangeListenerEntry<? super QueueEntry, EntryState> entry =
+                extension == null ? null : extension._stateChangeListeners;
         while(entry != null)
         {
             StateChangeListener<? super QueueEntry, EntryState> l = entry.getListener();
@@ -601,6 +662,7 @@ public abstract class QueueEntryImpl implements QueueEntry
 
         if (alternateExchange != null)
         {
+            getMessage().markRerouted();
             enqueues = alternateExchange.send(getMessage(),
                                               getMessage().getInitialRoutingAddress(),
                                               getInstanceProperties(),
@@ -641,15 +703,17 @@ public abstract class QueueEntryImpl implements QueueEntry
     public void addStateChangeListener(StateChangeListener<? super MessageInstance, EntryState> listener)
     {
         StateChangeListenerEntry<? super QueueEntry, EntryState> entry = new StateChangeListenerEntry<>(listener);
-        if(!_listenersUpdater.compareAndSet(this,null, entry))
+        final Extension extension = getExtension();
+        if(!Extension._listenersUpdater.compareAndSet(extension, null, entry))
         {
-            _listenersUpdater.get(this).add(entry);
+            Extension._listenersUpdater.get(extension).add(entry);
         }
     }
 
     public boolean removeStateChangeListener(StateChangeListener<? super MessageInstance, EntryState> listener)
     {
-        StateChangeListenerEntry entry = _listenersUpdater.get(this);
+        final Extension extension = _extension;
+        StateChangeListenerEntry entry = extension == null ? null : extension._stateChangeListeners;
         if(entry != null)
         {
             return entry.remove(listener);
@@ -686,7 +750,7 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public int getDeliveryCount()
     {
-        return _deliveryCount == -1 ? 0 : _deliveryCount;
+        return _flagsAndDeliveryCount >>> DELIVERY_COUNT_SHIFT;
     }
 
     @Override
@@ -697,13 +761,48 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public void incrementDeliveryCount()
     {
-        _deliveryCountUpdater.compareAndSet(this,-1,0);
-        _deliveryCountUpdater.incrementAndGet(this);
+        int current;
+        do
+        {
+            current = _flagsAndDeliveryCount;
+        }
+        while(!_flagsAndDeliveryCountUpdater.compareAndSet(this,
+                                                           current,
+                                                           (current | DELIVERED_TO_CONSUMER_FLAG)
+                                                           + DELIVERY_COUNT_UNIT));
     }
 
     public void decrementDeliveryCount()
     {
-        _deliveryCountUpdater.decrementAndGet(this);
+        int current;
+        do
+        {
+            current = _flagsAndDeliveryCount;
+            if((current >>> DELIVERY_COUNT_SHIFT) == 0)
+            {
+                return;
+            }
+        }
+        while(!_flagsAndDeliveryCountUpdater.compareAndSet(this, current, current - DELIVERY_COUNT_UNIT));
+    }
+
+    private void setFlag(final int flag)
+    {
+        int current;
+        do
+        {
+            current = _flagsAndDeliveryCount;
+            if((current & flag) != 0)
+            {
+                return;
+            }
+        }
+        while(!_flagsAndDeliveryCountUpdater.compareAndSet(this, current, current | flag));
+    }
+
+    private boolean isFlagSet(final int flag)
+    {
+        return (_flagsAndDeliveryCount & flag) != 0;
     }
 
     @Override
@@ -739,17 +838,17 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public void setRedelivered()
     {
-        _flags |= REDELIVERED_FLAG;
+        setFlag(REDELIVERED_FLAG);
     }
 
     private void setPersistent()
     {
-        _flags |= PERSISTENT_FLAG;
+        setFlag(PERSISTENT_FLAG);
     }
 
     public boolean isRedelivered()
     {
-        return (_flags & REDELIVERED_FLAG) != 0;
+        return isFlagSet(REDELIVERED_FLAG);
     }
 
     @Override
@@ -775,15 +874,15 @@ public abstract class QueueEntryImpl implements QueueEntry
             {
 
                 case REDELIVERED:
-                    return (_flags & REDELIVERED_FLAG) != 0;
+                    return isFlagSet(REDELIVERED_FLAG);
                 case PERSISTENT:
-                    return (_flags & PERSISTENT_FLAG) != 0;
+                    return isFlagSet(PERSISTENT_FLAG);
                 case MANDATORY:
-                    return (_flags & MANDATORY_FLAG) != 0;
+                    return isFlagSet(MANDATORY_FLAG);
                 case IMMEDIATE:
-                    return (_flags & IMMEDIATE_FLAG) != 0;
+                    return isFlagSet(IMMEDIATE_FLAG);
                 case EXPIRATION:
-                    return _expiration;
+                    return getExpiration();
                 default:
                     throw new IllegalArgumentException("Unknown property " + prop);
             }
@@ -796,4 +895,20 @@ public abstract class QueueEntryImpl implements QueueEntry
     {
         return _enqueueRecord;
     }
+
+    private static final class Extension
+    {
+        private static final
+            AtomicReferenceFieldUpdater<Extension, StateChangeListenerEntry>
+                    _listenersUpdater =
+            AtomicReferenceFieldUpdater.newUpdater
+            (Extension.class, StateChangeListenerEntry.class, "_stateChangeListeners");
+
+        private volatile StateChangeListenerEntry<? super QueueEntry, EntryState> _stateChangeListeners;
+        private Set<Long> _rejectedBy;
+        private volatile long _expiration;
+        /** The nano time at which a sampled entry was last made available to, or acquired by, a consumer */
+        private volatile long _latencyTimestamp;
+        private volatile boolean _latencySampled;
+    }
 }
@@ -0,0 +1,35 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.server.queue;
+
+/**
+ * Pages the entries of a lazily recovered queue in from the message store.  The queue tells the pager as its
+ * entries are dequeued so that the pager can page further entries in as the queue's consumers make room for them.
+ * The queue also tells the pager as it holds back messages enqueued during recovery, so that the pager can page the
+ * remaining entries in rather than let the held messages grow without bound while the queue has no consumers.
+ */
+public interface QueueRecoveryPager
+{
+    void entryDequeued();
+
+    void entryHeld(int heldEntries);
+}
@@ -28,6 +28,8 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
 import org.apache.qpid.server.util.ConnectionScopedRuntimeException;
 
 /**
@@ -35,6 +37,9 @@ import org.apache.qpid.server.util.ConnectionScopedRuntimeException;
  * asynchronous message delivery to consumers, which is necessary
  * when straight-through delivery of a message to a consumer isn't
  * possible during the enqueue operation.
+ *
+ * A queue normally has a single runner delivering to all of its consumers.  Where the queue is configured with more
+ * than one delivery runner, each runner is given a disjoint subset of the consumers to deliver to.
  */
 public class QueueRunner implements Runnable
 {
@@ -54,12 +59,23 @@ public class QueueRunner implements Runnable
     private final AtomicLong _lastRunTime = new AtomicLong();
     private final AccessControlContext _context;
     private final String _taskName;
+    private final QueueConsumerList _consumerList;
+    private final int _partition;
 
     public QueueRunner(AbstractQueue queue, AccessControlContext context)
+    {
+        this(queue, context, null, 0);
+    }
+
+    QueueRunner(AbstractQueue queue, AccessControlContext context, QueueConsumerList consumerList, int partition)
     {
         _queue = queue;
         _context = context;
-        _taskName = "Queue Runner[" + _queue.getName() + "]";
+        _consumerList = consumerList;
+        _partition = partition;
+        _taskName = partition == 0
+                ? "Queue Runner[" + _queue.getName() + "]"
+                : "Queue Runner[" + _queue.getName() + "-" + partition + "]";
     }
 
     @Override
@@ -69,6 +85,7 @@ public class QueueRunner implements Runnable
         {
             long runAgain = Long.MIN_VALUE;
             _stateChange.set(false);
+            final long startTime = System.nanoTime();
             try
             {
                 runAgain = _queue.processQueue(QueueRunner.this);
@@ -89,12 +106,15 @@ public class QueueRunner implements Runnable
             {
                 _scheduled.compareAndSet(RUNNING, IDLE);
                 final long stateChangeCount = _queue.getStateChangeCount();
+                final long endTime = System.nanoTime();
                 _lastRunAgain.set(runAgain);
-                _lastRunTime.set(System.nanoTime());
+                _lastRunTime.set(endTime);
+                EventTracer.trace(TraceEvent.QUEUE_RUNNER_RAN, _taskName, endTime - startTime);
                 if(runAgain == 0L || runAgain != stateChangeCount || _stateChange.compareAndSet(true,false))
                 {
                     if(_scheduled.compareAndSet(IDLE, SCHEDULED))
                     {
+                        EventTracer.trace(TraceEvent.QUEUE_RUNNER_SCHEDULED, _taskName);
                         _queue.execute(_taskName, QueueRunner.this, _context);
                     }
                 }
@@ -105,7 +125,9 @@ public class QueueRunner implements Runnable
     @Override
     public String toString()
     {
-        return "QueueRunner-" + _queue.getLogSubject().toLogString();
+        return _partition == 0
+                ? "QueueRunner-" + _queue.getLogSubject().toLogString()
+                : "QueueRunner-" + _partition + "-" + _queue.getLogSubject().toLogString();
     }
 
     public void execute()
@@ -113,6 +135,7 @@ public class QueueRunner implements Runnable
         _stateChange.set(true);
         if(_scheduled.compareAndSet(IDLE, SCHEDULED))
         {
+            EventTracer.trace(TraceEvent.QUEUE_RUNNER_SCHEDULED, _taskName);
             _queue.execute(_taskName, this, _context);
         }
     }
@@ -122,4 +145,12 @@ public class QueueRunner implements Runnable
         return _scheduled.get() == IDLE;
     }
 
+    /**
+     * @return the consumers this runner delivers to, or null if it delivers to all the consumers of the queue
+     */
+    QueueConsumerList getConsumerList()
+    {
+        return _consumerList;
+    }
+
 }
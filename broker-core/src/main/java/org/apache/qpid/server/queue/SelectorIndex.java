@@ -0,0 +1,264 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.filter.FilterableMessage;
+import org.apache.qpid.filter.PropertyExpression;
+import org.apache.qpid.server.filter.Filterable;
+
+/**
+ * Buckets the entries of a queue by the values of those message properties which consumers' selectors require to
+ * equal a given string (e.g. <code>region = 'EU'</code>), so that such a consumer need only visit the entries
+ * which could match its selector.
+ * <p>
+ * A property is indexed for as long as at least one consumer has registered a predicate on it.  When a property is
+ * first registered the entries already on the queue are indexed.
+ * <p>
+ * Only registration is serialised; entries are added, removed and searched for without locking.  The value an entry
+ * is indexed under is kept with the index, so removing a dequeued entry does not evaluate its properties again.
+ */
+public class SelectorIndex
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorIndex.class);
+
+    public static final class Predicate
+    {
+        private final PropertyExpression<FilterableMessage> _property;
+        private final String _value;
+
+        public Predicate(final PropertyExpression<FilterableMessage> property, final String value)
+        {
+            _property = property;
+            _value = value;
+        }
+
+        public PropertyExpression<FilterableMessage> getProperty()
+        {
+            return _property;
+        }
+
+        public String getValue()
+        {
+            return _value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _property + " = '" + _value + "'";
+        }
+    }
+
+    private static final class PropertyIndex
+    {
+        private final ConcurrentMap<String, NavigableSet<QueueEntry>> _buckets = new ConcurrentHashMap<>();
+        private final ConcurrentMap<QueueEntry, String> _indexedValues = new ConcurrentHashMap<>();
+        private int _predicateCount;
+
+        private void add(final QueueEntry entry, final String value)
+        {
+            _indexedValues.put(entry, value);
+            NavigableSet<QueueEntry> bucket;
+            do
+            {
+                bucket = _buckets.get(value);
+                if(bucket == null)
+                {
+                    final NavigableSet<QueueEntry> newBucket = new ConcurrentSkipListSet<>();
+                    bucket = _buckets.putIfAbsent(value, newBucket);
+                    if(bucket == null)
+                    {
+                        bucket = newBucket;
+                    }
+                }
+                bucket.add(entry);
+            }
+            // an empty bucket may have been discarded by a concurrent removal before the entry was added to it
+            while(_buckets.get(value) != bucket);
+
+            // a concurrent dequeue may have found the value before the entry was in its bucket
+            if(entry.isDeleted())
+            {
+                _indexedValues.remove(entry);
+                removeFromBucket(entry, value);
+            }
+        }
+
+        private void remove(final QueueEntry entry)
+        {
+            final String value = _indexedValues.remove(entry);
+            if(value != null)
+            {
+                removeFromBucket(entry, value);
+            }
+        }
+
+        private void removeFromBucket(final QueueEntry entry, final String value)
+        {
+            final NavigableSet<QueueEntry> bucket = _buckets.get(value);
+            if(bucket != null && bucket.remove(entry) && bucket.isEmpty())
+            {
+                _buckets.remove(value, bucket);
+            }
+        }
+    }
+
+    private final ConcurrentMap<PropertyExpression<FilterableMessage>, PropertyIndex> _indexes =
+            new ConcurrentHashMap<>();
+    private volatile boolean _empty = true;
+
+    public synchronized void register(final Predicate predicate, final QueueEntryList entries)
+    {
+        PropertyIndex index = _indexes.get(predicate.getProperty());
+        if(index == null)
+        {
+            index = new PropertyIndex();
+            _indexes.put(predicate.getProperty(), index);
+            _empty = false;
+
+            // entries enqueued concurrently are indexed by entryAdded() if they are missed here
+            QueueEntryIterator iterator = entries.iterator();
+            while(iterator.advance())
+            {
+                QueueEntry entry = iterator.getNode();
+                if(!entry.isDeleted())
+                {
+                    addToIndex(predicate.getProperty(), index, entry);
+                }
+            }
+            LOGGER.debug("Indexing entries by property {}", predicate.getProperty());
+        }
+        index._predicateCount++;
+    }
+
+    public synchronized void unregister(final Predicate predicate)
+    {
+        PropertyIndex index = _indexes.get(predicate.getProperty());
+        if(index != null && --index._predicateCount == 0)
+        {
+            _indexes.remove(predicate.getProperty());
+            _empty = _indexes.isEmpty();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return _empty;
+    }
+
+    public void entryAdded(final QueueEntry entry)
+    {
+        // an entry dequeued before it could be indexed would otherwise never be removed from its bucket
+        if(!entry.isDeleted())
+        {
+            for(Map.Entry<PropertyExpression<FilterableMessage>, PropertyIndex> index : _indexes.entrySet())
+            {
+                addToIndex(index.getKey(), index.getValue(), entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry, which must already be dequeued, from its buckets.  Returns at once while no property is
+     * indexed: a property registered after the emptiness is read skips the entry, as registration indexes only the
+     * entries that are not yet dequeued.
+     */
+    public void entryDequeued(final QueueEntry entry)
+    {
+        if(!_empty)
+        {
+            for(PropertyIndex index : _indexes.values())
+            {
+                index.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the earliest available entry after the given entry which satisfies the predicate, or null if there is
+     * no such entry
+     */
+    public QueueEntry findNextAvailableEntry(final Predicate predicate, final QueueEntry after)
+    {
+        PropertyIndex index = _indexes.get(predicate.getProperty());
+        NavigableSet<QueueEntry> bucket = index == null ? null : index._buckets.get(predicate.getValue());
+        if(bucket != null)
+        {
+            Iterator<QueueEntry> iterator = bucket.tailSet(after, false).iterator();
+            while(iterator.hasNext())
+            {
+                QueueEntry entry = iterator.next();
+                if(entry.isAvailable())
+                {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addToIndex(final PropertyExpression<FilterableMessage> property,
+                            final PropertyIndex index,
+                            final QueueEntry entry)
+    {
+        String value = getValue(property, entry.asFilterable());
+        if(value != null)
+        {
+            index.add(entry, value);
+        }
+    }
+
+    /**
+     * Only string values (or enums, which compare equal to their name) can satisfy an equality predicate with a
+     * string literal, so other values are not indexed.
+     */
+    private static String getValue(final PropertyExpression<FilterableMessage> property,
+                                   final Filterable filterable)
+    {
+        try
+        {
+            Object value = property.evaluate(filterable);
+            if(value instanceof String)
+            {
+                return (String) value;
+            }
+            else if(value instanceof Enum)
+            {
+                return ((Enum) value).name();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.debug("Could not evaluate property {} for indexing", property, e);
+        }
+        return null;
+    }
+}
@@ -21,6 +21,7 @@
 package org.apache.qpid.server.queue;
 
 import org.apache.qpid.server.model.ManagedAttribute;
+import org.apache.qpid.server.model.ManagedContextDefault;
 import org.apache.qpid.server.model.ManagedObject;
 import org.apache.qpid.server.model.Queue;
 
@@ -29,9 +30,17 @@ public interface SortedQueue<X extends SortedQueue<X>> extends Queue<X>
 {
     String SORT_KEY = "sortKey";
     String SORTED_QUEUE_TYPE = "sorted";
+    String CONCURRENT_ENTRY_LIST = "concurrentEntryList";
+
+    @ManagedContextDefault( name = "queue.sortedConcurrentEntryList")
+    boolean DEFAULT_CONCURRENT_ENTRY_LIST = false;
 
     @ManagedAttribute( mandatory = true )
     String getSortKey();
 
+    @ManagedAttribute( defaultValue = "${queue.sortedConcurrentEntryList}", immutable = true,
+            description = "If true, entries are held in a concurrent skip list allowing publishers and consumers"
+                          + " to proceed without taking a queue-wide lock.")
+    boolean isConcurrentEntryList();
 
 }
@@ -19,6 +19,7 @@
  */
 package org.apache.qpid.server.queue;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.qpid.server.message.MessageInstance;
@@ -38,7 +39,9 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
 
     @ManagedAttributeField
     private String _sortKey;
-    private SortedQueueEntryList _entries;
+    @ManagedAttributeField
+    private boolean _concurrentEntryList;
+    private QueueEntryList _entries;
 
     @ManagedObjectFactoryConstructor
     public SortedQueueImpl(Map<String, Object> attributes, VirtualHost<?> virtualHost)
@@ -50,7 +53,7 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
     protected void onOpen()
     {
         super.onOpen();
-        _entries = new SortedQueueEntryList(this);
+        _entries = _concurrentEntryList ? new ConcurrentSortedQueueEntryList(this) : new SortedQueueEntryList(this);
     }
 
     @Override
@@ -58,14 +61,39 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
                         final Action<? super MessageInstance> action,
                         MessageEnqueueRecord record)
     {
-        synchronized (_sortedQueueLock)
+        if(_concurrentEntryList)
         {
             super.doEnqueue(message, action, record);
         }
+        else
+        {
+            synchronized (_sortedQueueLock)
+            {
+                super.doEnqueue(message, action, record);
+            }
+        }
     }
 
     @Override
-    SortedQueueEntryList getEntries()
+    protected void doEnqueue(final List<? extends ServerMessage> messages,
+                             final Action<? super MessageInstance> action,
+                             final List<? extends MessageEnqueueRecord> records)
+    {
+        if(_concurrentEntryList)
+        {
+            super.doEnqueue(messages, action, records);
+        }
+        else
+        {
+            synchronized (_sortedQueueLock)
+            {
+                super.doEnqueue(messages, action, records);
+            }
+        }
+    }
+
+    @Override
+    QueueEntryList getEntries()
     {
         return _entries;
     }
@@ -75,4 +103,10 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
     {
         return _sortKey;
     }
+
+    @Override
+    public boolean isConcurrentEntryList()
+    {
+        return _concurrentEntryList;
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.server.stats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class holds the latency distributions of the stages a message passes through: from its publication to its
+ * enqueue, from its enqueue to its delivery to a consumer, and from that delivery to its acknowledgement.
+ * <p>
+ * As with {@link StatisticsGatherer}s, the statistics of a session are created with those of its connection as
+ * their parent, so that latencies recorded against the session are also recorded against the connection.
+ * <p>
+ * The latencies are recorded for a sample of the messages only, chosen by message number so that the same messages
+ * are sampled at every stage, and so that queue entries need not all hold a timestamp.
+ */
+public class LatencyStatistics
+{
+    /** The latencies of one message in every SAMPLE_MASK + 1, by message number, are sampled */
+    private static final long SAMPLE_MASK = 15L;
+
+    private final LatencyStatistics _parent;
+    private final LatencyHistogram _publishToEnqueue = new LatencyHistogram();
+    private final LatencyHistogram _enqueueToDeliver = new LatencyHistogram();
+    private final LatencyHistogram _deliverToAck = new LatencyHistogram();
+
+    public LatencyStatistics()
+    {
+        this(null);
+    }
+
+    public LatencyStatistics(LatencyStatistics parent)
+    {
+        _parent = parent;
+    }
+
+    public static boolean isSampled(long messageNumber)
+    {
+        return (messageNumber & SAMPLE_MASK) == 0L;
+    }
+
+    /**
+     * Registers the enqueue of a message, if it is sampled. Message arrival times are taken from the system clock, so
+     * this latency has millisecond resolution only.
+     *
+     * @param messageNumber the number of the message
+     * @param arrivalTime the time the message arrived at the broker
+     */
+    public void registerEnqueue(long messageNumber, long arrivalTime)
+    {
+        if (arrivalTime > 0L && isSampled(messageNumber))
+        {
+            registerPublishToEnqueue(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - arrivalTime));
+        }
+    }
+
+    public void registerPublishToEnqueue(long latency)
+    {
+        _publishToEnqueue.record(latency);
+        if (_parent != null)
+        {
+            _parent.registerPublishToEnqueue(latency);
+        }
+    }
+
+    public void registerEnqueueToDeliver(long latency)
+    {
+        _enqueueToDeliver.record(latency);
+        if (_parent != null)
+        {
+            _parent.registerEnqueueToDeliver(latency);
+        }
+    }
+
+    public void registerDeliverToAck(long latency)
+    {
+        _deliverToAck.record(latency);
+        if (_parent != null)
+        {
+            _parent.registerDeliverToAck(latency);
+        }
+    }
+
+    /**
+     * Clears the latencies recorded so far.  The latencies of the parent are not cleared.
+     */
+    public void reset()
+    {
+        _publishToEnqueue.reset();
+        _enqueueToDeliver.reset();
+        _deliverToAck.reset();
+    }
+
+    public LatencyHistogram getPublishToEnqueue()
+    {
+        return _publishToEnqueue;
+    }
+
+    public LatencyHistogram getEnqueueToDeliver()
+    {
+        return _enqueueToDeliver;
+    }
+
+    public LatencyHistogram getDeliverToAck()
+    {
+        return _deliverToAck;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.server.stats;
+
+/**
+ * Counts the network writes of a single connection.  A connection's work is performed by one thread at a time, so the
+ * counts are updated without atomic operations; they are summed with those of the port's other connections only when
+ * the port's statistics are read.
+ */
+public final class NetworkWriteStatistics
+{
+    private volatile long _writes;
+    private volatile long _bytesWritten;
+
+    public void registerWrite(final long bytesWritten)
+    {
+        _writes = _writes + 1L;
+        _bytesWritten = _bytesWritten + bytesWritten;
+    }
+
+    public long getWrites()
+    {
+        return _writes;
+    }
+
+    public long getBytesWritten()
+    {
+        return _bytesWritten;
+    }
+}
@@ -21,7 +21,6 @@
 package org.apache.qpid.server.store;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -36,23 +35,21 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.message.EnqueueableMessage;
 import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.plugin.MessageMetaDataType;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 public abstract class AbstractJDBCMessageStore implements MessageStore
@@ -87,6 +84,7 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
     private static final String DELETE_FROM_QUEUE_ENTRY = "DELETE FROM " + QUEUE_ENTRY_TABLE_NAME + " WHERE queue_id = ? AND message_id =?";
     private static final String SELECT_FROM_QUEUE_ENTRY = "SELECT queue_id, message_id FROM " + QUEUE_ENTRY_TABLE_NAME + " ORDER BY queue_id, message_id";
     private static final String SELECT_FROM_QUEUE_ENTRY_FOR_QUEUE = "SELECT queue_id, message_id FROM " + QUEUE_ENTRY_TABLE_NAME + " WHERE queue_id = ? ORDER BY queue_id, message_id";
+    private static final String SELECT_FROM_QUEUE_ENTRY_FOR_QUEUE_RANGE = "SELECT queue_id, message_id FROM " + QUEUE_ENTRY_TABLE_NAME + " WHERE queue_id = ? AND message_id >= ? AND message_id < ? ORDER BY queue_id, message_id";
 
     private static final String INSERT_INTO_MESSAGE_CONTENT = "INSERT INTO " + MESSAGE_CONTENT_TABLE_NAME
                                                               + "( message_id, content ) values (?, ?)";
@@ -101,6 +99,7 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
     private static final String DELETE_FROM_META_DATA = "DELETE FROM " + META_DATA_TABLE_NAME + " WHERE message_id = ?";
     private static final String SELECT_ALL_FROM_META_DATA = "SELECT message_id, meta_data FROM " + META_DATA_TABLE_NAME;
     private static final String SELECT_ONE_FROM_META_DATA = "SELECT message_id, meta_data FROM " + META_DATA_TABLE_NAME + " WHERE message_id = ?";
+    private static final String SELECT_IDS_FROM_META_DATA_RANGE = "SELECT message_id FROM " + META_DATA_TABLE_NAME + " WHERE message_id >= ? AND message_id < ? ORDER BY message_id";
 
     private static final String INSERT_INTO_XIDS =
             "INSERT INTO "+ XID_TABLE_NAME +" ( format, global_id, branch_id ) values (?, ?, ?)";
@@ -117,12 +116,12 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             " WHERE format = ? and global_id = ? and branch_id = ?";
 
     protected final EventManager _eventManager = new EventManager();
-    private ConfiguredObject<?> _parent;
+    private volatile MessageMetaDataCache _flowedMetaDataCache;
 
     protected abstract boolean isMessageStoreOpen();
 
     protected abstract void checkMessageStoreOpen();
-    private ScheduledThreadPoolExecutor _executor;
+    private volatile CoalescingJDBCCommitter _committer;
 
     public AbstractJDBCMessageStore()
     {
@@ -258,30 +257,71 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     protected void initMessageStore(final ConfiguredObject<?> parent)
     {
-        _parent = parent;
-        _executor = new ScheduledThreadPoolExecutor(4, new ThreadFactory()
-        {
-            private final AtomicInteger _count = new AtomicInteger();
-            @Override
-            public Thread newThread(final Runnable r)
-            {
-                final Thread thread = Executors.defaultThreadFactory().newThread(r);
-                thread.setName(parent.getName() + "-store-"+_count.incrementAndGet());
-                return thread;
-            }
-        });
-        _executor.prestartAllCoreThreads();
-
+        final int maxBatchSize = parent.getContextKeys(false).contains(VirtualHost.JDBC_STORE_COMMIT_BATCH_MAX_SIZE)
+                ? parent.getContextValue(Integer.class, VirtualHost.JDBC_STORE_COMMIT_BATCH_MAX_SIZE)
+                : VirtualHost.DEFAULT_JDBC_STORE_COMMIT_BATCH_MAX_SIZE;
+        final long maxBatchLatency = parent.getContextKeys(false).contains(VirtualHost.JDBC_STORE_COMMIT_BATCH_MAX_LATENCY)
+                ? parent.getContextValue(Long.class, VirtualHost.JDBC_STORE_COMMIT_BATCH_MAX_LATENCY)
+                : VirtualHost.DEFAULT_JDBC_STORE_COMMIT_BATCH_MAX_LATENCY;
+        _committer = new CoalescingJDBCCommitter(parent.getName(),
+                                                 new CoalescingJDBCCommitter.BatchFactory()
+                                                 {
+                                                     @Override
+                                                     public JDBCStatementBatch newBatch() throws SQLException
+                                                     {
+                                                         return newStatementBatch();
+                                                     }
+                                                 },
+                                                 maxBatchSize,
+                                                 maxBatchLatency);
+        _committer.start();
+        openFlowedMetaDataCache(parent);
     }
 
     @Override
     public void closeMessageStore()
     {
-        if(_executor != null)
+        if(_committer != null)
         {
-            _executor.shutdown();
+            _committer.stop();
         }
+        closeFlowedMetaDataCache();
+    }
+
+    /**
+     * Returns the number of transactions committed since the store was opened.
+     */
+    public long getCommittedTransactionCount()
+    {
+        return _committer == null ? 0L : _committer.getCommittedTransactionCount();
+    }
 
+    /**
+     * Returns the number of database commits made, each for one or more transactions, since the store was opened.
+     */
+    public long getDatabaseCommitCount()
+    {
+        return _committer == null ? 0L : _committer.getDatabaseCommitCount();
+    }
+
+    public long getCommitLatencyAtPercentile(double percentile)
+    {
+        return _committer == null ? 0L : _committer.getCommitLatency().getValueAtPercentile(percentile);
+    }
+
+    protected void openFlowedMetaDataCache(final ConfiguredObject<?> parent)
+    {
+        _flowedMetaDataCache = MessageMetaDataCache.open(parent);
+    }
+
+    protected void closeFlowedMetaDataCache()
+    {
+        final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+        if (flowedMetaDataCache != null)
+        {
+            _flowedMetaDataCache = null;
+            flowedMetaDataCache.close();
+        }
     }
 
     protected abstract Logger getLogger();
@@ -563,6 +603,15 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     protected abstract Connection getConnection() throws SQLException;
 
+    private JDBCStatementBatch newStatementBatch() throws SQLException
+    {
+        return new JDBCStatementBatch(newConnection(),
+                                      INSERT_INTO_META_DATA,
+                                      INSERT_INTO_MESSAGE_CONTENT,
+                                      INSERT_INTO_QUEUE_ENTRY,
+                                      DELETE_FROM_QUEUE_ENTRY);
+    }
+
     @Override
     public Transaction newTransaction()
     {
@@ -571,61 +620,42 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         return new JDBCTransaction();
     }
 
-    private void enqueueMessage(ConnectionWrapper connWrapper, final TransactionLogResource queue, Long messageId) throws StoreException
+    private void enqueueMessage(JDBCStatementBatch batch, final UUID queueId, long messageId) throws StoreException
     {
-        Connection conn = connWrapper.getConnection();
-
-
         try
         {
             if (getLogger().isDebugEnabled())
             {
-                getLogger().debug("Enqueuing message {} on queue {} with id {} [Connection {}]",
-                                  messageId, queue.getName(), queue.getId(), conn);
-            }
-
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_QUEUE_ENTRY))
-            {
-                stmt.setString(1, queue.getId().toString());
-                stmt.setLong(2, messageId);
-                stmt.executeUpdate();
+                getLogger().debug("Enqueuing message {} on queue with id {} [Connection {}]",
+                                  messageId, queueId, batch.getConnection());
             }
 
+            PreparedStatement stmt = batch.getStatement(INSERT_INTO_QUEUE_ENTRY);
+            stmt.setString(1, queueId.toString());
+            stmt.setLong(2, messageId);
+            batch.addBatch(INSERT_INTO_QUEUE_ENTRY, null);
         }
         catch (SQLException e)
         {
             getLogger().error("Failed to enqueue message {}", messageId, e);
-            throw new StoreException("Error writing enqueued message with id " + messageId + " for queue " + queue.getName() + " with id " + queue.getId()
-                                     + " to database", e);
+            throw new StoreException("Error writing enqueued message with id " + messageId + " for queue with id "
+                                     + queueId + " to database", e);
         }
 
     }
 
-    private void dequeueMessage(ConnectionWrapper connWrapper, final UUID queueId,
-                                Long messageId) throws StoreException
+    private void dequeueMessage(JDBCStatementBatch batch, final UUID queueId,
+                                long messageId) throws StoreException
     {
-
-        Connection conn = connWrapper.getConnection();
-
         try
         {
-            try (PreparedStatement stmt = conn.prepareStatement(DELETE_FROM_QUEUE_ENTRY))
-            {
-                stmt.setString(1, queueId.toString());
-                stmt.setLong(2, messageId);
-                int results = stmt.executeUpdate();
-
-
-                if (results != 1)
-                {
-                    throw new StoreException("Unable to find message with id " + messageId
-                                             + " on queue with id " + queueId);
-                }
-
-                getLogger().debug("Dequeuing message {} on queue with id {}", messageId, queueId);
-
-            }
+            PreparedStatement stmt = batch.getStatement(DELETE_FROM_QUEUE_ENTRY);
+            stmt.setString(1, queueId.toString());
+            stmt.setLong(2, messageId);
+            batch.addBatch(DELETE_FROM_QUEUE_ENTRY, "Unable to find message with id " + messageId
+                                                    + " on queue with id " + queueId);
 
+            getLogger().debug("Dequeuing message {} on queue with id {}", messageId, queueId);
         }
         catch (SQLException e)
         {
@@ -636,10 +666,10 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
-    private void removeXid(ConnectionWrapper connWrapper, long format, byte[] globalId, byte[] branchId)
+    private void removeXid(JDBCStatementBatch batch, long format, byte[] globalId, byte[] branchId)
             throws StoreException
     {
-        Connection conn = connWrapper.getConnection();
+        Connection conn = batch.getConnection();
 
 
         try
@@ -687,10 +717,11 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
-    private List<Runnable> recordXid(ConnectionWrapper connWrapper, long format, byte[] globalId, byte[] branchId,
-                                     Transaction.EnqueueRecord[] enqueues, Transaction.DequeueRecord[] dequeues) throws StoreException
+    private void recordXid(JDBCStatementBatch batch, long format, byte[] globalId, byte[] branchId,
+                           Transaction.EnqueueRecord[] enqueues, Transaction.DequeueRecord[] dequeues,
+                           List<StoredJDBCMessage<?>> storingMessages) throws StoreException
     {
-        Connection conn = connWrapper.getConnection();
+        Connection conn = batch.getConnection();
 
 
         try
@@ -712,9 +743,9 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             for(Transaction.EnqueueRecord enqueue : enqueues)
             {
                 StoredMessage storedMessage = enqueue.getMessage().getStoredMessage();
-                if(storedMessage instanceof StoredJDBCMessage)
+                if(storedMessage instanceof StoredJDBCMessage && ((StoredJDBCMessage<?>) storedMessage).store(batch))
                 {
-                    ((StoredJDBCMessage) storedMessage).store(conn);
+                    storingMessages.add((StoredJDBCMessage<?>) storedMessage);
                 }
             }
 
@@ -754,7 +785,6 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             {
                 stmt.close();
             }
-            return Collections.emptyList();
         }
         catch (SQLException e)
         {
@@ -764,131 +794,24 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
-    private static final class ConnectionWrapper
-    {
-        private final Connection _connection;
-
-        public ConnectionWrapper(Connection conn)
-        {
-            _connection = conn;
-        }
-
-        public Connection getConnection()
-        {
-            return _connection;
-        }
-    }
-
-
-    private void commitTran(ConnectionWrapper connWrapper) throws StoreException
-    {
-        try
-        {
-            Connection conn = connWrapper.getConnection();
-            conn.commit();
-
-            getLogger().debug("commit tran completed");
-
-            conn.close();
-        }
-        catch (SQLException e)
-        {
-            throw new StoreException("Error commit tx", e);
-        }
-    }
-
-    private <X> ListenableFuture<X> commitTranAsync(final ConnectionWrapper connWrapper, final X val) throws StoreException
-    {
-        final SettableFuture<X> future = SettableFuture.create();
-        _executor.submit(new Runnable()
-                        {
-                            @Override
-                            public void run()
-                            {
-                                try
-                                {
-                                    commitTran(connWrapper);
-                                    future.set(val);
-                                }
-                                catch (RuntimeException e)
-                                {
-                                    future.setException(e);
-                                }
-                            }
-                        });
-        return future;
-    }
-
-    private void abortTran(ConnectionWrapper connWrapper) throws StoreException
-    {
-        if (connWrapper == null)
-        {
-            throw new StoreException("Fatal internal error: transactional context is empty at abortTran");
-        }
-
-        getLogger().debug("abort tran called: {}", connWrapper.getConnection());
-
-        try
-        {
-            Connection conn = connWrapper.getConnection();
-            conn.rollback();
-            conn.close();
-        }
-        catch (SQLException e)
-        {
-            throw new StoreException("Error aborting transaction: " + e.getMessage(), e);
-        }
-
-    }
-
-    private void storeMetaData(Connection conn, long messageId, StorableMessageMetaData metaData)
+    private void storeMetaData(JDBCStatementBatch batch, long messageId, StorableMessageMetaData metaData)
             throws SQLException
     {
         getLogger().debug("Adding metadata for message {}", messageId);
 
-        PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_META_DATA);
-        try
-        {
-            stmt.setLong(1, messageId);
-
-            final int bodySize = 1 + metaData.getStorableSize();
-            byte[] underlying = new byte[bodySize];
-            underlying[0] = (byte) metaData.getType().ordinal();
-            QpidByteBuffer buf = QpidByteBuffer.wrap(underlying);
-            buf.position(1);
-            buf = buf.slice();
+        PreparedStatement stmt = batch.getStatement(INSERT_INTO_META_DATA);
+        stmt.setLong(1, messageId);
 
-            metaData.writeToBuffer(buf);
-            ByteArrayInputStream bis = new ByteArrayInputStream(underlying);
-            try
-            {
-                stmt.setBinaryStream(2, bis, underlying.length);
-                int result = stmt.executeUpdate();
-
-                if (result == 0)
-                {
-                    throw new StoreException("Unable to add meta data for message " + messageId);
-                }
-            }
-            finally
-            {
-                try
-                {
-                    bis.close();
-                }
-                catch (IOException e)
-                {
-
-                    throw new SQLException(e);
-                }
-            }
-
-        }
-        finally
-        {
-            stmt.close();
-        }
+        final int bodySize = 1 + metaData.getStorableSize();
+        byte[] underlying = new byte[bodySize];
+        underlying[0] = (byte) metaData.getType().ordinal();
+        QpidByteBuffer buf = QpidByteBuffer.wrap(underlying);
+        buf.position(1);
+        buf = buf.slice();
 
+        metaData.writeToBuffer(buf);
+        stmt.setBinaryStream(2, new ByteArrayInputStream(underlying), underlying.length);
+        batch.addBatch(INSERT_INTO_META_DATA, "Unable to add meta data for message " + messageId);
     }
 
 
@@ -1009,13 +932,11 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     protected abstract byte[] getBlobAsBytes(ResultSet rs, int col) throws SQLException;
 
-    private void addContent(final Connection conn, long messageId,
-                            Collection<QpidByteBuffer> contentBody)
+    private void addContent(final JDBCStatementBatch batch, long messageId,
+                            Collection<QpidByteBuffer> contentBody) throws SQLException
     {
         getLogger().debug("Adding content for message {}", messageId);
 
-        PreparedStatement stmt = null;
-
         int size = 0;
 
         for(QpidByteBuffer buf : contentBody)
@@ -1029,23 +950,10 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             buf.copyTo(dst);
         }
 
-        try
-        {
-
-            stmt = conn.prepareStatement(INSERT_INTO_MESSAGE_CONTENT);
-            stmt.setLong(1, messageId);
-            stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
-            stmt.executeUpdate();
-        }
-        catch (SQLException e)
-        {
-            JdbcUtils.closeConnection(conn, getLogger());
-            throw new StoreException("Error adding content for message " + messageId + ": " + e.getMessage(), e);
-        }
-        finally
-        {
-            JdbcUtils.closePreparedStatement(stmt, getLogger());
-        }
+        PreparedStatement stmt = batch.getStatement(INSERT_INTO_MESSAGE_CONTENT);
+        stmt.setLong(1, messageId);
+        stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+        batch.addBatch(INSERT_INTO_MESSAGE_CONTENT, null);
     }
 
     Collection<QpidByteBuffer> getAllContent(long messageId) throws StoreException
@@ -1068,7 +976,8 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
                 byte[] data = getBlobAsBytes(rs, 1);
                 int offset = 0;
                 int length = data.length;
-                Collection<QpidByteBuffer> buffers = QpidByteBuffer.allocateDirectCollection(length);
+                Collection<QpidByteBuffer> buffers =
+                        QpidByteBuffer.allocateDirectCollection(length, DirectMemoryCategory.CONTENT);
                 for(QpidByteBuffer buf : buffers)
                 {
                     int bufSize = buf.remaining();
@@ -1102,53 +1011,95 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
     }
 
 
+    private interface BatchAction
+    {
+        void write(JDBCStatementBatch batch) throws SQLException;
+    }
+
+    /**
+     * A transaction records its work as it is made and writes it to the database only when committed, so that
+     * the {@link CoalescingJDBCCommitter} can write the work of concurrent transactions as one batch.
+     * <p>
+     * The messages whose rows the transaction writes are treated as stored only once the batch has been committed,
+     * as the batch may be rolled back and the transaction written again to another.
+     */
     protected class JDBCTransaction implements Transaction
     {
-        private final ConnectionWrapper _connWrapper;
-        private int _storeSizeIncrease;
-        private final List<Runnable> _preCommitActions = new ArrayList<>();
-        private final List<Runnable> _postCommitActions = new ArrayList<>();
+        private final List<BatchAction> _actions = new ArrayList<>();
+        private final List<StoredJDBCMessage<?>> _storingMessages = new ArrayList<>();
 
-        protected JDBCTransaction()
+        private final CoalescingJDBCCommitter.CommitJob _commitJob = new CoalescingJDBCCommitter.CommitJob()
         {
-            try
+            @Override
+            public void write(final JDBCStatementBatch batch) throws SQLException
             {
-                _connWrapper = new ConnectionWrapper(newConnection());
+                _storingMessages.clear();
+                for(BatchAction action : _actions)
+                {
+                    action.write(batch);
+                }
             }
-            catch (SQLException e)
+
+            @Override
+            public void committed()
+            {
+                int storeSizeIncrease = 0;
+                for(StoredJDBCMessage<?> message : _storingMessages)
+                {
+                    storeSizeIncrease += message.storeCommitted();
+                }
+                _storingMessages.clear();
+                storedSizeChange(storeSizeIncrease);
+            }
+
+            @Override
+            public void rolledBack()
             {
-                throw new StoreException(e);
+                for(StoredJDBCMessage<?> message : _storingMessages)
+                {
+                    message.storeRolledBack();
+                }
+                _storingMessages.clear();
             }
+        };
+
+        protected JDBCTransaction()
+        {
         }
 
         @Override
-        public MessageEnqueueRecord enqueueMessage(TransactionLogResource queue, EnqueueableMessage message)
+        public MessageEnqueueRecord enqueueMessage(final TransactionLogResource queue, EnqueueableMessage message)
         {
             checkMessageStoreOpen();
 
             final StoredMessage storedMessage = message.getStoredMessage();
             if(storedMessage instanceof StoredJDBCMessage)
             {
-                _preCommitActions.add(new Runnable()
+                final StoredJDBCMessage<?> jdbcMessage = (StoredJDBCMessage<?>) storedMessage;
+                _actions.add(new BatchAction()
                 {
                     @Override
-                    public void run()
+                    public void write(final JDBCStatementBatch batch) throws SQLException
                     {
-                        try
+                        if (jdbcMessage.store(batch))
                         {
-                            ((StoredJDBCMessage) storedMessage).store(_connWrapper.getConnection());
-                            _storeSizeIncrease += storedMessage.getMetaData().getContentSize();
-                        }
-                        catch (SQLException e)
-                        {
-                            throw new StoreException("Exception on enqueuing message into message store" + _messageId,
-                                                     e);
+                            _storingMessages.add(jdbcMessage);
                         }
                     }
                 });
             }
-            AbstractJDBCMessageStore.this.enqueueMessage(_connWrapper, queue, message.getMessageNumber());
-            return new JDBCEnqueueRecord(queue.getId(), message.getMessageNumber());
+            final JDBCEnqueueRecord enqueueRecord = new JDBCEnqueueRecord(queue.getId(), message.getMessageNumber());
+            _actions.add(new BatchAction()
+            {
+                @Override
+                public void write(final JDBCStatementBatch batch)
+                {
+                    AbstractJDBCMessageStore.this.enqueueMessage(batch,
+                                                                 enqueueRecord.getQueueId(),
+                                                                 enqueueRecord.getMessageNumber());
+                }
+            });
+            return enqueueRecord;
         }
 
         @Override
@@ -1156,60 +1107,37 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         {
             checkMessageStoreOpen();
 
-            AbstractJDBCMessageStore.this.dequeueMessage(_connWrapper,
-                                                         enqueueRecord.getQueueId(),
-                                                         enqueueRecord.getMessageNumber());
+            _actions.add(new BatchAction()
+            {
+                @Override
+                public void write(final JDBCStatementBatch batch)
+                {
+                    AbstractJDBCMessageStore.this.dequeueMessage(batch,
+                                                                 enqueueRecord.getQueueId(),
+                                                                 enqueueRecord.getMessageNumber());
+                }
+            });
         }
 
         @Override
         public void commitTran()
         {
             checkMessageStoreOpen();
-            doPreCommitActions();
-            AbstractJDBCMessageStore.this.commitTran(_connWrapper);
-            storedSizeChange(_storeSizeIncrease);
-            doPostCommitActions();
+            _committer.commit(_commitJob);
         }
 
         @Override
         public <X> ListenableFuture<X> commitTranAsync(final X val)
         {
             checkMessageStoreOpen();
-            doPreCommitActions();
-            ListenableFuture<X> futureResult = AbstractJDBCMessageStore.this.commitTranAsync(_connWrapper, val);
-            storedSizeChange(_storeSizeIncrease);
-            doPostCommitActions();
-            return futureResult;
-        }
-
-        private void doPreCommitActions()
-        {
-            for(Runnable action : _preCommitActions)
-            {
-                action.run();
-            }
-            _preCommitActions.clear();
-        }
-
-        private void doPostCommitActions()
-        {
-            // QPID-7447: prevent unnecessary allocation of empty iterator
-            if (!_postCommitActions.isEmpty())
-            {
-                for (Runnable action : _postCommitActions)
-                {
-                    action.run();
-                }
-                _postCommitActions.clear();
-            }
+            return _committer.commitAsync(_commitJob, val);
         }
 
         @Override
         public void abortTran()
         {
             checkMessageStoreOpen();
-            _preCommitActions.clear();
-            AbstractJDBCMessageStore.this.abortTran(_connWrapper);
+            _actions.clear();
         }
 
         @Override
@@ -1217,22 +1145,37 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         {
             checkMessageStoreOpen();
 
-            AbstractJDBCMessageStore.this.removeXid(_connWrapper,
-                                                    record.getFormat(),
-                                                    record.getGlobalId(),
-                                                    record.getBranchId());
+            _actions.add(new BatchAction()
+            {
+                @Override
+                public void write(final JDBCStatementBatch batch)
+                {
+                    AbstractJDBCMessageStore.this.removeXid(batch,
+                                                            record.getFormat(),
+                                                            record.getGlobalId(),
+                                                            record.getBranchId());
+                }
+            });
         }
 
         @Override
         public StoredXidRecord recordXid(final long format,
                                          final byte[] globalId,
                                          final byte[] branchId,
-                                         EnqueueRecord[] enqueues,
-                                         DequeueRecord[] dequeues)
+                                         final EnqueueRecord[] enqueues,
+                                         final DequeueRecord[] dequeues)
         {
             checkMessageStoreOpen();
 
-            _postCommitActions.addAll(AbstractJDBCMessageStore.this.recordXid(_connWrapper, format, globalId, branchId, enqueues, dequeues));
+            _actions.add(new BatchAction()
+            {
+                @Override
+                public void write(final JDBCStatementBatch batch)
+                {
+                    AbstractJDBCMessageStore.this.recordXid(batch, format, globalId, branchId, enqueues, dequeues,
+                                                            _storingMessages);
+                }
+            });
             return new JDBCStoredXidRecord(format, globalId, branchId);
         }
 
@@ -1404,6 +1347,7 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         private final long _messageId;
 
         private MessageDataRef<T> _messageDataRef;
+        private boolean _storing;
 
 
         StoredJDBCMessage(long messageId, T metaData)
@@ -1444,7 +1388,15 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
                     checkMessageStoreOpen();
                     try
                     {
-                        metaData = (T) AbstractJDBCMessageStore.this.getMetaData(_messageId);
+                        final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+                        if (flowedMetaDataCache != null)
+                        {
+                            metaData = (T) flowedMetaDataCache.get(_messageId);
+                        }
+                        if (metaData == null)
+                        {
+                            metaData = (T) AbstractJDBCMessageStore.this.getMetaData(_messageId);
+                        }
                         _messageDataRef = new MessageDataSoftRef<>(metaData, _messageDataRef.getData());
                     }
                     catch (SQLException e)
@@ -1556,46 +1508,97 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             return content;
         }
 
-        synchronized void store(final Connection conn) throws SQLException
+        /**
+         * Adds the meta-data and content of the message to the batch, unless the message has already been stored, is
+         * being stored by another batch, or has been removed.  The message is not treated as stored, and so cannot be
+         * flowed to disk, until {@link #storeCommitted()} is called.
+         *
+         * @return true if the message was added to the batch
+         */
+        synchronized boolean store(final JDBCStatementBatch batch) throws SQLException
         {
-            if (!stored())
+            if (_messageDataRef != null && !stored() && !_storing)
             {
 
-                AbstractJDBCMessageStore.this.storeMetaData(conn, _messageId, _messageDataRef.getMetaData());
-                AbstractJDBCMessageStore.this.addContent(conn, _messageId,
+                AbstractJDBCMessageStore.this.storeMetaData(batch, _messageId, _messageDataRef.getMetaData());
+                AbstractJDBCMessageStore.this.addContent(batch, _messageId,
                                                          _messageDataRef.getData() == null
                                                                 ? Collections.<QpidByteBuffer>emptySet()
                                                                 : _messageDataRef.getData());
 
                 getLogger().debug("Storing message {} to store", _messageId);
 
-                MessageDataRef<T> hardRef = _messageDataRef;
-                MessageDataSoftRef<T> messageDataSoftRef;
+                _storing = true;
+                return true;
+            }
+            return false;
+        }
 
-                messageDataSoftRef = new MessageDataSoftRef<>(hardRef.getMetaData(), hardRef.getData());
+        /**
+         * Called once the batch to which {@link #store(JDBCStatementBatch)} added the message has been committed.
+         *
+         * @return the increase in the size of the store
+         */
+        synchronized int storeCommitted()
+        {
+            _storing = false;
+            if (_messageDataRef == null)
+            {
+                // the message was removed while its rows were being committed
+                AbstractJDBCMessageStore.this.removeMessage(_messageId);
+                return 0;
+            }
 
-                _messageDataRef = messageDataSoftRef;
+            MessageDataRef<T> hardRef = _messageDataRef;
+            MessageDataSoftRef<T> messageDataSoftRef;
 
+            messageDataSoftRef = new MessageDataSoftRef<>(hardRef.getMetaData(), hardRef.getData());
 
-            }
+            _messageDataRef = messageDataSoftRef;
+
+            return hardRef.getMetaData().getContentSize();
+        }
+
+        /**
+         * Called if the batch to which {@link #store(JDBCStatementBatch)} added the message has been rolled back.
+         */
+        synchronized void storeRolledBack()
+        {
+            _storing = false;
         }
 
         synchronized ListenableFuture<Void> flushToStore()
         {
             if (_messageDataRef != null)
             {
-                if(!stored())
+                if(!stored() && !_storing)
                 {
-                    try (Connection conn = newConnection())
+                    JDBCStatementBatch batch = null;
+                    boolean committed = false;
+                    try
                     {
-                        store(conn);
-                        conn.commit();
-                        storedSizeChange(getMetaData().getContentSize());
+                        batch = newStatementBatch();
+                        store(batch);
+                        batch.commit();
+                        committed = true;
+                        storedSizeChange(storeCommitted());
                     }
                     catch (SQLException e)
                     {
                         throw new StoreException("Failed to flow to disk", e);
                     }
+                    finally
+                    {
+                        if (batch != null)
+                        {
+                            if (!committed)
+                            {
+                                batch.rollback(getLogger());
+                                storeRolledBack();
+                            }
+                            batch.close(getLogger());
+                        }
+                    }
                 }
 
             }
@@ -1627,6 +1630,12 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             }
             metaData.dispose();
             _messageDataRef = null;
+
+            final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+            if (flowedMetaDataCache != null)
+            {
+                flowedMetaDataCache.remove(_messageId);
+            }
         }
 
         @Override
@@ -1647,9 +1656,16 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             flushToStore();
             if(_messageDataRef != null && !_messageDataRef.isHardRef())
             {
+                final MessageMetaDataCache flowedMetaDataCache = _flowedMetaDataCache;
+                final T metaData = _messageDataRef.getMetaData();
+                if (flowedMetaDataCache != null && metaData != null)
+                {
+                    flowedMetaDataCache.put(_messageId, metaData);
+                }
                 ((MessageDataSoftRef)_messageDataRef).clear();
             }
-            return true;
+            // a message whose rows are still being committed by a transaction must be kept in memory
+            return !_storing;
         }
 
         @Override
@@ -1826,6 +1842,83 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
         }
 
+        @Override
+        public void visitMessageInstances(TransactionLogResource queue,
+                                          long fromMessageId,
+                                          long toMessageId,
+                                          MessageInstanceHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            Connection conn = null;
+            try
+            {
+                conn = newAutoCommitConnection();
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_FROM_QUEUE_ENTRY_FOR_QUEUE_RANGE))
+                {
+                    stmt.setString(1, queue.getId().toString());
+                    stmt.setLong(2, fromMessageId);
+                    stmt.setLong(3, toMessageId);
+                    try (ResultSet rs = stmt.executeQuery())
+                    {
+                        while (rs.next())
+                        {
+                            String id = rs.getString(1);
+                            long messageId = rs.getLong(2);
+                            if (!handler.handle(new JDBCEnqueueRecord(UUID.fromString(id), messageId)))
+                            {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            catch (SQLException e)
+            {
+                throw new StoreException("Error encountered when visiting message instances", e);
+            }
+            finally
+            {
+                JdbcUtils.closeConnection(conn, getLogger());
+            }
+        }
+
+        @Override
+        public void visitMessageIds(long fromMessageId, long toMessageId, MessageIdHandler handler)
+                throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            Connection conn = null;
+            try
+            {
+                conn = newAutoCommitConnection();
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_IDS_FROM_META_DATA_RANGE))
+                {
+                    stmt.setLong(1, fromMessageId);
+                    stmt.setLong(2, toMessageId);
+                    try (ResultSet rs = stmt.executeQuery())
+                    {
+                        while (rs.next())
+                        {
+                            if (!handler.handle(rs.getLong(1)))
+                            {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            catch (SQLException e)
+            {
+                throw new StoreException("Error encountered when visiting message ids", e);
+            }
+            finally
+            {
+                JdbcUtils.closeConnection(conn, getLogger());
+            }
+        }
+
         @Override
         public void visitMessageInstances(MessageInstanceHandler handler) throws StoreException
         {
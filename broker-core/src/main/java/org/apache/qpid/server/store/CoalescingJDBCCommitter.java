@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.store;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.server.stats.LatencyHistogram;
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
+
+/**
+ * Commits the transactions of a JDBC message store on a single thread, merging the transactions that are waiting
+ * when the thread becomes free into one database transaction. The rows of the merged transactions are written with
+ * one {@link JDBCStatementBatch}, so that a database commit, and the log force that comes with it, is shared by all
+ * the transactions of the batch.
+ * <p>
+ * At most <code>maxBatchSize</code> transactions are merged. If <code>maxBatchLatency</code> is greater than zero,
+ * the thread waits for up to that many milliseconds after the arrival of the first transaction of a batch for
+ * others to join it. If any statement of a batch fails the whole batch is rolled back and its transactions are
+ * committed again one at a time, so that only the transactions which fail on their own are failed.
+ */
+class CoalescingJDBCCommitter
+{
+    interface BatchFactory
+    {
+        JDBCStatementBatch newBatch() throws SQLException;
+    }
+
+    interface CommitJob
+    {
+        void write(JDBCStatementBatch batch) throws SQLException;
+
+        /**
+         * Called on the commit thread once the database commit that includes the rows of the job has completed.
+         */
+        void committed();
+
+        /**
+         * Called on the commit thread when the database transaction to which the job was written has been rolled
+         * back.  The job may be written again to another batch.
+         */
+        void rolledBack();
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingJDBCCommitter.class);
+
+    private final CommitThread _commitThread;
+    private final AtomicLong _committedTransactions = new AtomicLong();
+    private final AtomicLong _databaseCommits = new AtomicLong();
+    private final LatencyHistogram _commitLatency = new LatencyHistogram();
+
+    CoalescingJDBCCommitter(final String name,
+                            final BatchFactory batchFactory,
+                            final int maxBatchSize,
+                            final long maxBatchLatency)
+    {
+        _commitThread = new CommitThread("Commit-Thread-" + name,
+                                         batchFactory,
+                                         Math.max(1, maxBatchSize),
+                                         TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxBatchLatency)));
+    }
+
+    void start()
+    {
+        _commitThread.start();
+    }
+
+    void stop()
+    {
+        _commitThread.close();
+        if (Thread.currentThread() != _commitThread)
+        {
+            try
+            {
+                _commitThread.join();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Commit thread has not shutdown", ie);
+            }
+        }
+    }
+
+    void commit(final CommitJob job)
+    {
+        SynchronousPendingCommit pendingCommit = new SynchronousPendingCommit(job);
+        _commitThread.addJob(pendingCommit);
+        pendingCommit.awaitCompletion();
+    }
+
+    <X> ListenableFuture<X> commitAsync(final CommitJob job, final X val)
+    {
+        AsynchronousPendingCommit<X> pendingCommit = new AsynchronousPendingCommit<>(job, val);
+        _commitThread.addJob(pendingCommit);
+        return pendingCommit.getFuture();
+    }
+
+    long getCommittedTransactionCount()
+    {
+        return _committedTransactions.get();
+    }
+
+    long getDatabaseCommitCount()
+    {
+        return _databaseCommits.get();
+    }
+
+    /**
+     * Returns the distribution of the times from the submission of transactions to the completion of the database
+     * commits that include them.
+     */
+    LatencyHistogram getCommitLatency()
+    {
+        return _commitLatency;
+    }
+
+    private static abstract class PendingCommit
+    {
+        private final CommitJob _job;
+        private final long _submitTime = System.nanoTime();
+
+        PendingCommit(final CommitJob job)
+        {
+            _job = job;
+        }
+
+        CommitJob getJob()
+        {
+            return _job;
+        }
+
+        long getSubmitTime()
+        {
+            return _submitTime;
+        }
+
+        void complete()
+        {
+            try
+            {
+                _job.committed();
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Exception processing committed transaction", e);
+            }
+            finally
+            {
+                completed();
+            }
+        }
+
+        void rolledBack()
+        {
+            try
+            {
+                _job.rolledBack();
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Exception processing rolled back transaction", e);
+            }
+        }
+
+        abstract void completed();
+
+        abstract void abort(RuntimeException e);
+    }
+
+    private static final class AsynchronousPendingCommit<X> extends PendingCommit
+    {
+        private final SettableFuture<X> _future = SettableFuture.create();
+        private final X _value;
+
+        AsynchronousPendingCommit(final CommitJob job, final X value)
+        {
+            super(job);
+            _value = value;
+        }
+
+        ListenableFuture<X> getFuture()
+        {
+            return _future;
+        }
+
+        @Override
+        void completed()
+        {
+            _future.set(_value);
+        }
+
+        @Override
+        void abort(final RuntimeException e)
+        {
+            _future.setException(e);
+        }
+    }
+
+    private static final class SynchronousPendingCommit extends PendingCommit
+    {
+        private boolean _done;
+        private RuntimeException _exception;
+
+        SynchronousPendingCommit(final CommitJob job)
+        {
+            super(job);
+        }
+
+        @Override
+        synchronized void completed()
+        {
+            _done = true;
+            notifyAll();
+        }
+
+        @Override
+        synchronized void abort(final RuntimeException e)
+        {
+            _done = true;
+            _exception = e;
+            notifyAll();
+        }
+
+        synchronized void awaitCompletion()
+        {
+            boolean interrupted = false;
+            while (!_done)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            if (_exception != null)
+            {
+                throw _exception;
+            }
+        }
+    }
+
+    private class CommitThread extends Thread
+    {
+        private final AtomicBoolean _stopped = new AtomicBoolean(false);
+        private final Queue<PendingCommit> _jobQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _queuedJobs = new AtomicInteger();
+        private final Object _lock = new Object();
+        private final BatchFactory _batchFactory;
+        private final int _maxBatchSize;
+        private final long _maxBatchLatency;
+
+        private final List<PendingCommit> _inProcessJobs = new ArrayList<>();
+
+        CommitThread(final String name,
+                     final BatchFactory batchFactory,
+                     final int maxBatchSize,
+                     final long maxBatchLatency)
+        {
+            super(name);
+            _batchFactory = batchFactory;
+            _maxBatchSize = maxBatchSize;
+            _maxBatchLatency = maxBatchLatency;
+        }
+
+        @Override
+        public void run()
+        {
+            while (!_stopped.get())
+            {
+                synchronized (_lock)
+                {
+                    long waitTime;
+                    while (!_stopped.get() && (waitTime = getWaitTime()) > 0L)
+                    {
+                        try
+                        {
+                            TimeUnit.NANOSECONDS.timedWait(_lock, waitTime);
+                        }
+                        catch (InterruptedException e)
+                        {
+                        }
+                    }
+                }
+                processJobs();
+            }
+
+            while (_queuedJobs.get() > 0)
+            {
+                processJobs();
+            }
+        }
+
+        /**
+         * Returns the time, in nanoseconds, for which the next batch should wait for transactions, or zero if it can
+         * be committed now.
+         */
+        private long getWaitTime()
+        {
+            final PendingCommit oldest = _jobQueue.peek();
+            if (oldest == null)
+            {
+                // Periodically wake up and check, just in case we missed a notification.
+                return TimeUnit.MILLISECONDS.toNanos(500L);
+            }
+            else if (_maxBatchLatency == 0L || _queuedJobs.get() >= _maxBatchSize)
+            {
+                return 0L;
+            }
+            else
+            {
+                return Math.max(0L, oldest.getSubmitTime() + _maxBatchLatency - System.nanoTime());
+            }
+        }
+
+        private void processJobs()
+        {
+            PendingCommit job;
+            while (_inProcessJobs.size() < _maxBatchSize && (job = _jobQueue.poll()) != null)
+            {
+                _queuedJobs.decrementAndGet();
+                _inProcessJobs.add(job);
+            }
+            if (_inProcessJobs.isEmpty())
+            {
+                return;
+            }
+
+            try
+            {
+                final boolean commitSeparately = _inProcessJobs.size() > 1;
+                if (!commitJobs(_inProcessJobs, !commitSeparately) && commitSeparately)
+                {
+                    // the failure of one transaction must not fail the others merged with it
+                    for (PendingCommit pendingCommit : _inProcessJobs)
+                    {
+                        commitJobs(Collections.singletonList(pendingCommit), true);
+                    }
+                }
+            }
+            finally
+            {
+                _inProcessJobs.clear();
+            }
+        }
+
+        /**
+         * Writes the given jobs to one batch and commits it.
+         *
+         * @param abortOnFailure whether the jobs are to be aborted should the commit fail
+         * @return true if the batch was committed
+         */
+        private boolean commitJobs(final List<PendingCommit> jobs, final boolean abortOnFailure)
+        {
+            JDBCStatementBatch batch = null;
+            try
+            {
+                batch = _batchFactory.newBatch();
+                for (PendingCommit pendingCommit : jobs)
+                {
+                    pendingCommit.getJob().write(batch);
+                }
+
+                long startTime = System.nanoTime();
+                batch.commit();
+                long endTime = System.nanoTime();
+
+                EventTracer.trace(TraceEvent.STORE_COMMIT, getName(), endTime - startTime);
+                if (LOGGER.isDebugEnabled())
+                {
+                    LOGGER.debug("Committed {} transaction(s) in {} ms",
+                                 jobs.size(),
+                                 TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+                }
+
+                _databaseCommits.incrementAndGet();
+                _committedTransactions.addAndGet(jobs.size());
+                for (PendingCommit pendingCommit : jobs)
+                {
+                    _commitLatency.record(endTime - pendingCommit.getSubmitTime());
+                    pendingCommit.complete();
+                }
+                return true;
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                if (batch != null)
+                {
+                    batch.rollback(LOGGER);
+                }
+                for (PendingCommit pendingCommit : jobs)
+                {
+                    pendingCommit.rolledBack();
+                }
+
+                if (abortOnFailure)
+                {
+                    LOGGER.error("Failed to commit batch of {} transaction(s)", jobs.size(), e);
+                    StoreException storeException = e instanceof StoreException
+                            ? (StoreException) e
+                            : new StoreException("Error committing transaction: " + e.getMessage(), e);
+                    for (PendingCommit pendingCommit : jobs)
+                    {
+                        pendingCommit.abort(storeException);
+                    }
+                }
+                else
+                {
+                    LOGGER.warn("Failed to commit batch of {} transaction(s), committing each separately",
+                                jobs.size(), e);
+                }
+                return false;
+            }
+            finally
+            {
+                if (batch != null)
+                {
+                    batch.close(LOGGER);
+                }
+            }
+        }
+
+        void addJob(final PendingCommit job)
+        {
+            if (_stopped.get())
+            {
+                throw new IllegalStateException("Commit thread is stopped");
+            }
+            _jobQueue.add(job);
+            final int queuedJobs = _queuedJobs.incrementAndGet();
+            if (queuedJobs == 1 || queuedJobs == _maxBatchSize)
+            {
+                synchronized (_lock)
+                {
+                    _lock.notifyAll();
+                }
+            }
+
+            // the thread may have drained the queue for the last time between the check and the add
+            if (_stopped.get() && _jobQueue.remove(job))
+            {
+                _queuedJobs.decrementAndGet();
+                job.abort(new StoreException("Commit thread has been closed, transaction aborted"));
+            }
+        }
+
+        void close()
+        {
+            synchronized (_lock)
+            {
+                _stopped.set(true);
+                _lock.notifyAll();
+            }
+        }
+    }
+}
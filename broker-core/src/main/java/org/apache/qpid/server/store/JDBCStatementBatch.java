@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+/**
+ * Collects the rows written by one or more store transactions on a single connection, so that each statement is
+ * sent to the database as one batch and all the transactions are made durable by one commit.
+ * <p>
+ * Batches are executed in the order in which their statements were given when the batch was created, whatever the
+ * order in which rows were added, so that rows are always inserted before rows of the same transactions are deleted.
+ */
+class JDBCStatementBatch
+{
+    private final Connection _connection;
+    private final List<String> _statementOrder;
+    private final Map<String, PreparedStatement> _statements = new HashMap<>();
+    private final Map<String, List<String>> _failureMessages = new HashMap<>();
+    private int _rowCount;
+
+    JDBCStatementBatch(final Connection connection, final String... statementOrder)
+    {
+        _connection = connection;
+        _statementOrder = Arrays.asList(statementOrder);
+    }
+
+    Connection getConnection()
+    {
+        return _connection;
+    }
+
+    /**
+     * Returns the prepared statement for the given sql, on which the parameters of the next row are to be set before
+     * calling {@link #addBatch(String, String)}.
+     */
+    PreparedStatement getStatement(final String sql) throws SQLException
+    {
+        PreparedStatement statement = _statements.get(sql);
+        if (statement == null)
+        {
+            if (!_statementOrder.contains(sql))
+            {
+                throw new IllegalArgumentException("Statement '" + sql + "' cannot be batched");
+            }
+            statement = _connection.prepareStatement(sql);
+            _statements.put(sql, statement);
+            _failureMessages.put(sql, new ArrayList<String>());
+        }
+        return statement;
+    }
+
+    /**
+     * Adds the parameters set on the statement for the given sql to its batch.
+     *
+     * @param failureMessage if not null, the message of the {@link StoreException} thrown when the batch is
+     *                       executed should the row not update anything
+     */
+    void addBatch(final String sql, final String failureMessage) throws SQLException
+    {
+        getStatement(sql).addBatch();
+        _failureMessages.get(sql).add(failureMessage);
+        _rowCount++;
+    }
+
+    int getRowCount()
+    {
+        return _rowCount;
+    }
+
+    void execute() throws SQLException
+    {
+        for (String sql : _statementOrder)
+        {
+            final PreparedStatement statement = _statements.get(sql);
+            final List<String> failureMessages = _failureMessages.get(sql);
+            if (statement != null && !failureMessages.isEmpty())
+            {
+                final int[] updateCounts = statement.executeBatch();
+                for (int i = 0; i < updateCounts.length && i < failureMessages.size(); i++)
+                {
+                    if (updateCounts[i] == 0 && failureMessages.get(i) != null)
+                    {
+                        throw new StoreException(failureMessages.get(i));
+                    }
+                }
+                failureMessages.clear();
+            }
+        }
+        _rowCount = 0;
+    }
+
+    void commit() throws SQLException
+    {
+        execute();
+        _connection.commit();
+    }
+
+    void rollback(final Logger logger)
+    {
+        try
+        {
+            _connection.rollback();
+        }
+        catch (SQLException e)
+        {
+            logger.warn("Failed to roll back batch", e);
+        }
+    }
+
+    void close(final Logger logger)
+    {
+        for (PreparedStatement statement : _statements.values())
+        {
+            JdbcUtils.closePreparedStatement(statement, logger);
+        }
+        _statements.clear();
+        JdbcUtils.closeConnection(_connection, logger);
+    }
+}
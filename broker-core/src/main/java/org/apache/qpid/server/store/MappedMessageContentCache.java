@@ -0,0 +1,327 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Holds the content of large messages in memory mapped files beneath the virtualhost's work directory.  Content
+ * reloaded from the store is copied into the mapping once, and is thereafter handed out as slices of the mapping, so
+ * that it can be written to the network without further copying and without occupying the direct buffer pool.
+ * <p>
+ * Content is appended to fixed size segments, each backed by a file of its own, and content larger than a segment is
+ * given a segment to itself.  The file of a segment is deleted once all the content within it has been removed; its
+ * mapping, and so any slice still queued for the network, remains valid until it is garbage collected.  The cache is
+ * not durable.
+ */
+public class MappedMessageContentCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedMessageContentCache.class);
+
+    private final File _directory;
+    private final int _segmentSize;
+    private final int _threshold;
+    private final Map<Long, Location> _locations = new HashMap<>();
+    private Segment _currentSegment;
+    private long _mappedSize;
+    private boolean _closed;
+
+    public MappedMessageContentCache(final File directory, final int segmentSize, final int threshold)
+            throws IOException
+    {
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create directory " + directory.getAbsolutePath());
+        }
+        _directory = directory;
+        _segmentSize = segmentSize;
+        _threshold = threshold;
+    }
+
+    /**
+     * Returns a cache for the content of the messages of the given virtualhost's store, or null if the virtualhost is
+     * not configured to use one.
+     */
+    public static MappedMessageContentCache open(final ConfiguredObject<?> parent)
+    {
+        final Set<String> contextKeys = parent.getContextKeys(false);
+        if (contextKeys.contains(VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_ENABLED)
+            && Boolean.TRUE.equals(parent.getContextValue(Boolean.class,
+                                                          VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_ENABLED)))
+        {
+            final String workDir = contextKeys.contains(VirtualHost.VIRTUALHOST_WORK_DIR_VAR)
+                    ? parent.getContextValue(String.class, VirtualHost.VIRTUALHOST_WORK_DIR_VAR)
+                    : System.getProperty("java.io.tmpdir");
+            final int segmentSize = contextKeys.contains(VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE)
+                    ? parent.getContextValue(Integer.class, VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE)
+                    : VirtualHost.DEFAULT_MAPPED_MESSAGE_CONTENT_CACHE_SEGMENT_SIZE;
+            final int threshold = contextKeys.contains(VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD)
+                    ? parent.getContextValue(Integer.class, VirtualHost.MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD)
+                    : VirtualHost.DEFAULT_MAPPED_MESSAGE_CONTENT_CACHE_THRESHOLD;
+            try
+            {
+                return new MappedMessageContentCache(new File(workDir, "content-cache"), segmentSize, threshold);
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Cannot create content cache for " + parent.getName(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the size in bytes below which content is not worth mapping.
+     */
+    public int getThreshold()
+    {
+        return _threshold;
+    }
+
+    /**
+     * Copies the given content into the cache, unless the cache already holds the content of the message.
+     *
+     * @return a slice of the mapping holding the content, or null if the content is smaller than the threshold, cannot
+     * be mapped, or the cache has been closed
+     */
+    public synchronized Collection<QpidByteBuffer> put(final long messageId,
+                                                       final byte[] data,
+                                                       final int offset,
+                                                       final int length)
+    {
+        return put(messageId, Collections.singletonList(QpidByteBuffer.wrap(data, offset, length)));
+    }
+
+    /**
+     * Copies the given content, which may be spread over several buffers, into the cache unless the cache already
+     * holds the content of the message.  The given buffers are not disposed.
+     *
+     * @return a slice of the mapping holding the content, or null if the content is smaller than the threshold, cannot
+     * be mapped, or the cache has been closed
+     */
+    public synchronized Collection<QpidByteBuffer> put(final long messageId, final Collection<QpidByteBuffer> content)
+    {
+        int length = 0;
+        for (QpidByteBuffer buf : content)
+        {
+            length += buf.remaining();
+        }
+        if (_closed || length < _threshold)
+        {
+            return null;
+        }
+
+        Location location = _locations.get(messageId);
+        if (location == null)
+        {
+            final Segment segment;
+            try
+            {
+                if (length > _segmentSize)
+                {
+                    segment = new Segment(length);
+                }
+                else
+                {
+                    if (_currentSegment == null || _currentSegment.remaining() < length)
+                    {
+                        nextSegment();
+                    }
+                    segment = _currentSegment;
+                }
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Cannot map content of message {} beneath {}", messageId, _directory.getAbsolutePath(), e);
+                return null;
+            }
+
+            location = segment.append(content, length);
+            _locations.put(messageId, location);
+        }
+        return location.getContent();
+    }
+
+    /**
+     * Returns the cached content of the given message as a slice of the mapping holding it.
+     *
+     * @return the content, or null if the cache does not hold it
+     */
+    public synchronized Collection<QpidByteBuffer> get(final long messageId)
+    {
+        final Location location = _locations.get(messageId);
+        return location == null ? null : location.getContent();
+    }
+
+    public synchronized void remove(final long messageId)
+    {
+        final Location location = _locations.remove(messageId);
+        if (location != null)
+        {
+            final Segment segment = location._segment;
+            if (--segment._entries == 0 && segment != _currentSegment)
+            {
+                segment.release();
+            }
+        }
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return _locations.size();
+    }
+
+    public synchronized long getMappedSize()
+    {
+        return _mappedSize;
+    }
+
+    public synchronized void close()
+    {
+        if (!_closed)
+        {
+            _closed = true;
+            final Set<Segment> segments = new HashSet<>();
+            for (Location location : _locations.values())
+            {
+                segments.add(location._segment);
+            }
+            if (_currentSegment != null)
+            {
+                segments.add(_currentSegment);
+                _currentSegment = null;
+            }
+            _locations.clear();
+            for (Segment segment : segments)
+            {
+                segment.release();
+            }
+        }
+    }
+
+    private void nextSegment() throws IOException
+    {
+        final Segment segment = new Segment(_segmentSize);
+        if (_currentSegment != null && _currentSegment._entries == 0)
+        {
+            _currentSegment.release();
+        }
+        _currentSegment = segment;
+    }
+
+    private final class Segment
+    {
+        private final File _file;
+        private final MappedByteBuffer _buffer;
+        private int _position;
+        private int _entries;
+
+        private Segment(final int size) throws IOException
+        {
+            _file = File.createTempFile("content", ".segment", _directory);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(_file, "rw"))
+            {
+                // the mapping stays valid once the file is closed
+                _buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            catch (IOException e)
+            {
+                deleteFile();
+                throw e;
+            }
+            _mappedSize += size;
+        }
+
+        private int remaining()
+        {
+            return _buffer.capacity() - _position;
+        }
+
+        private Location append(final Collection<QpidByteBuffer> content, final int length)
+        {
+            final ByteBuffer buffer = _buffer.duplicate();
+            buffer.position(_position);
+            for (QpidByteBuffer buf : content)
+            {
+                buf.copyTo(buffer);
+            }
+
+            final Location location = new Location(this, _position, length);
+            _position += length;
+            _entries++;
+            return location;
+        }
+
+        private void release()
+        {
+            _mappedSize -= _buffer.capacity();
+            deleteFile();
+        }
+
+        private void deleteFile()
+        {
+            if (!_file.delete())
+            {
+                LOGGER.info("Failed to delete content cache file {}", _file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static final class Location
+    {
+        private final Segment _segment;
+        private final int _offset;
+        private final int _length;
+
+        private Location(final Segment segment, final int offset, final int length)
+        {
+            _segment = segment;
+            _offset = offset;
+            _length = length;
+        }
+
+        private Collection<QpidByteBuffer> getContent()
+        {
+            final ByteBuffer buffer = _segment._buffer.duplicate();
+            buffer.position(_offset);
+            buffer.limit(_offset + _length);
+            return Collections.singletonList(QpidByteBuffer.wrap(buffer.slice()));
+        }
+    }
+}
@@ -21,9 +21,12 @@
 package org.apache.qpid.server.store;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -38,6 +41,7 @@ import org.apache.qpid.server.message.EnqueueableMessage;
 import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 /** A simple message store that stores the messages in a thread-safe structure in memory. */
@@ -435,6 +439,61 @@ public class MemoryMessageStore implements MessageStore
         }
 
 
+        @Override
+        public void visitMessageInstances(final TransactionLogResource queue,
+                                          final long fromMessageId,
+                                          final long toMessageId,
+                                          final MessageInstanceHandler handler) throws StoreException
+        {
+            List<Long> messageIds = new ArrayList<>();
+            synchronized (_transactionLock)
+            {
+                Set<Long> ids = _messageInstances.get(queue.getId());
+                if(ids != null)
+                {
+                    for (long id : ids)
+                    {
+                        if (id >= fromMessageId && id < toMessageId)
+                        {
+                            messageIds.add(id);
+                        }
+                    }
+                }
+            }
+            Collections.sort(messageIds);
+            for (long id : messageIds)
+            {
+                if (!handler.handle(new MemoryEnqueueRecord(queue.getId(), id)))
+                {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void visitMessageIds(final long fromMessageId,
+                                    final long toMessageId,
+                                    final MessageIdHandler handler) throws StoreException
+        {
+            List<Long> messageIds = new ArrayList<>();
+            for (Long id : _messages.keySet())
+            {
+                if (id >= fromMessageId && id < toMessageId)
+                {
+                    messageIds.add(id);
+                }
+            }
+            Collections.sort(messageIds);
+            for (long id : messageIds)
+            {
+                if (!handler.handle(id))
+                {
+                    return;
+                }
+            }
+        }
+
+
         @Override
         public void visitMessages(final MessageHandler handler) throws StoreException
         {
@@ -0,0 +1,402 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.plugin.MessageMetaDataType;
+
+/**
+ * Holds, outside of the heap, the encoded meta-data of messages which have been flowed to disk, so that the meta-data
+ * can be decoded again on demand without a read from the underlying store.
+ * <p>
+ * The meta-data is appended to fixed size segments of a memory mapped file, and a segment is reused once all the
+ * meta-data within it has been removed.  Only the location of the meta-data of each message is held on the heap.  The
+ * cache is not durable: its file is deleted when it is closed.
+ */
+public class MessageMetaDataCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageMetaDataCache.class);
+
+    private static final int RECORD_HEADER_SIZE = 4 + 1;
+    private static final long NOT_FOUND = -1L;
+
+    private final File _file;
+    private final RandomAccessFile _randomAccessFile;
+    private final FileChannel _fileChannel;
+    private final int _segmentSize;
+    private final List<MappedByteBuffer> _segments = new ArrayList<>();
+    private final Deque<Integer> _freeSegments = new ArrayDeque<>();
+    private final LocationIndex _index = new LocationIndex();
+    private int[] _segmentEntries = new int[8];
+    private int _currentSegment = -1;
+    private int _currentPosition;
+    private boolean _closed;
+
+    public MessageMetaDataCache(final File directory, final int segmentSize) throws IOException
+    {
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create directory " + directory.getAbsolutePath());
+        }
+        _segmentSize = segmentSize;
+        _file = File.createTempFile("metadata", ".cache", directory);
+        _randomAccessFile = new RandomAccessFile(_file, "rw");
+        _fileChannel = _randomAccessFile.getChannel();
+    }
+
+    /**
+     * Returns a cache for the meta-data of the messages of the given virtualhost's store, or null if the virtualhost
+     * is not configured to use one.
+     */
+    public static MessageMetaDataCache open(final ConfiguredObject<?> parent)
+    {
+        if (parent.getContextKeys(false).contains(VirtualHost.FLOWED_MESSAGE_META_DATA_CACHE_ENABLED)
+            && Boolean.TRUE.equals(parent.getContextValue(Boolean.class,
+                                                          VirtualHost.FLOWED_MESSAGE_META_DATA_CACHE_ENABLED)))
+        {
+            final String workDir = parent.getContextKeys(false).contains(VirtualHost.VIRTUALHOST_WORK_DIR_VAR)
+                    ? parent.getContextValue(String.class, VirtualHost.VIRTUALHOST_WORK_DIR_VAR)
+                    : System.getProperty("java.io.tmpdir");
+            final int segmentSize =
+                    parent.getContextKeys(false).contains(VirtualHost.FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE)
+                            ? parent.getContextValue(Integer.class,
+                                                     VirtualHost.FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE)
+                            : VirtualHost.DEFAULT_FLOWED_MESSAGE_META_DATA_CACHE_SEGMENT_SIZE;
+            try
+            {
+                return new MessageMetaDataCache(new File(workDir, "metadata-cache"), segmentSize);
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Cannot create meta-data cache for " + parent.getName(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the encoded form of the given meta-data to the cache, unless the cache already holds the meta-data of the
+     * message.
+     *
+     * @return false if the meta-data is too large to be cached, or the cache has been closed
+     */
+    public synchronized boolean put(final long messageId, final StorableMessageMetaData metaData)
+    {
+        if (_closed)
+        {
+            return false;
+        }
+        if (_index.get(messageId) != NOT_FOUND)
+        {
+            return true;
+        }
+
+        final int storableSize = metaData.getStorableSize();
+        final int recordSize = RECORD_HEADER_SIZE + storableSize;
+        if (recordSize > _segmentSize)
+        {
+            return false;
+        }
+
+        if (_currentSegment == -1 || _currentPosition + recordSize > _segmentSize)
+        {
+            nextSegment();
+        }
+
+        final ByteBuffer record = _segments.get(_currentSegment).duplicate();
+        record.position(_currentPosition);
+        record.putInt(storableSize);
+        record.put((byte) metaData.getType().ordinal());
+        record.limit(record.position() + storableSize);
+
+        final QpidByteBuffer buf = QpidByteBuffer.wrap(record.slice());
+        try
+        {
+            metaData.writeToBuffer(buf);
+        }
+        finally
+        {
+            buf.dispose();
+        }
+
+        _index.put(messageId, ((long) _currentSegment << 32) | _currentPosition);
+        _segmentEntries[_currentSegment]++;
+        _currentPosition += recordSize;
+        return true;
+    }
+
+    /**
+     * Decodes the cached meta-data of the given message.
+     *
+     * @return the meta-data, or null if the cache does not hold it
+     */
+    public StorableMessageMetaData get(final long messageId)
+    {
+        final int type;
+        final byte[] encoded;
+        synchronized (this)
+        {
+            final long location = _index.get(messageId);
+            if (location == NOT_FOUND)
+            {
+                return null;
+            }
+            final ByteBuffer record = _segments.get((int) (location >>> 32)).duplicate();
+            record.position((int) location);
+            encoded = new byte[record.getInt()];
+            type = record.get() & 0xff;
+            record.get(encoded);
+        }
+
+        final MessageMetaDataType metaDataType = MessageMetaDataTypeRegistry.fromOrdinal(type);
+        final QpidByteBuffer buf = QpidByteBuffer.wrap(encoded);
+        try
+        {
+            return metaDataType.createMetaData(buf);
+        }
+        finally
+        {
+            buf.dispose();
+        }
+    }
+
+    public synchronized void remove(final long messageId)
+    {
+        final long location = _index.remove(messageId);
+        if (location != NOT_FOUND)
+        {
+            final int segment = (int) (location >>> 32);
+            if (--_segmentEntries[segment] == 0 && segment != _currentSegment)
+            {
+                _freeSegments.push(segment);
+            }
+        }
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return _index.size();
+    }
+
+    public synchronized long getMappedSize()
+    {
+        return (long) _segments.size() * _segmentSize;
+    }
+
+    public synchronized void close()
+    {
+        if (!_closed)
+        {
+            _closed = true;
+            _index.clear();
+            _segments.clear();
+            _freeSegments.clear();
+            try
+            {
+                _randomAccessFile.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Failed to close meta-data cache file {}", _file.getAbsolutePath(), e);
+            }
+            if (!_file.delete())
+            {
+                LOGGER.info("Failed to delete meta-data cache file {}", _file.getAbsolutePath());
+            }
+        }
+    }
+
+    private void nextSegment()
+    {
+        if (_currentSegment != -1 && _segmentEntries[_currentSegment] == 0)
+        {
+            _freeSegments.push(_currentSegment);
+        }
+
+        if (_freeSegments.isEmpty())
+        {
+            final int segment = _segments.size();
+            try
+            {
+                _segments.add(_fileChannel.map(FileChannel.MapMode.READ_WRITE,
+                                               (long) segment * _segmentSize,
+                                               _segmentSize));
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Cannot extend meta-data cache file " + _file.getAbsolutePath(), e);
+            }
+            if (segment == _segmentEntries.length)
+            {
+                _segmentEntries = Arrays.copyOf(_segmentEntries, segment * 2);
+            }
+            _currentSegment = segment;
+        }
+        else
+        {
+            _currentSegment = _freeSegments.pop();
+        }
+        _currentPosition = 0;
+    }
+
+    /**
+     * Open addressed map from message id to the location of its meta-data, avoiding an object per entry.
+     */
+    private static final class LocationIndex
+    {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] _keys;
+        private long[] _values;
+        private int _size;
+
+        private LocationIndex()
+        {
+            clear();
+        }
+
+        long get(final long key)
+        {
+            final int mask = _keys.length - 1;
+            int i = slot(key, mask);
+            long current;
+            while ((current = _keys[i]) != EMPTY)
+            {
+                if (current == key)
+                {
+                    return _values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        void put(final long key, final long value)
+        {
+            if (2 * (_size + 1) > _keys.length)
+            {
+                resize(_keys.length * 2);
+            }
+            final int mask = _keys.length - 1;
+            int i = slot(key, mask);
+            while (_keys[i] != EMPTY && _keys[i] != key)
+            {
+                i = (i + 1) & mask;
+            }
+            if (_keys[i] == EMPTY)
+            {
+                _size++;
+            }
+            _keys[i] = key;
+            _values[i] = value;
+        }
+
+        long remove(final long key)
+        {
+            final int mask = _keys.length - 1;
+            int i = slot(key, mask);
+            while (_keys[i] != key)
+            {
+                if (_keys[i] == EMPTY)
+                {
+                    return NOT_FOUND;
+                }
+                i = (i + 1) & mask;
+            }
+            final long value = _values[i];
+
+            // shift back any entry displaced beyond the removed one, so that lookups need no tombstones
+            int j = i;
+            while (true)
+            {
+                j = (j + 1) & mask;
+                if (_keys[j] == EMPTY)
+                {
+                    break;
+                }
+                final int k = slot(_keys[j], mask);
+                if (i <= j ? (k <= i || k > j) : (k <= i && k > j))
+                {
+                    _keys[i] = _keys[j];
+                    _values[i] = _values[j];
+                    i = j;
+                }
+            }
+            _keys[i] = EMPTY;
+            _size--;
+            return value;
+        }
+
+        int size()
+        {
+            return _size;
+        }
+
+        void clear()
+        {
+            _keys = new long[INITIAL_CAPACITY];
+            _values = new long[INITIAL_CAPACITY];
+            Arrays.fill(_keys, EMPTY);
+            _size = 0;
+        }
+
+        private void resize(final int capacity)
+        {
+            final long[] keys = _keys;
+            final long[] values = _values;
+            _keys = new long[capacity];
+            _values = new long[capacity];
+            Arrays.fill(_keys, EMPTY);
+            _size = 0;
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (keys[i] != EMPTY)
+                {
+                    put(keys[i], values[i]);
+                }
+            }
+        }
+
+        private static int slot(final long key, final int mask)
+        {
+            final int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.io.File;
 import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 /**
@@ -86,6 +87,21 @@ public interface MessageStore
         void visitMessageInstances(MessageInstanceHandler handler) throws StoreException;
         void visitMessageInstances(TransactionLogResource queue, MessageInstanceHandler handler) throws StoreException;
 
+        /**
+         * Visits, in ascending order, the ids of the messages in the store whose id is at least fromMessageId and
+         * less than toMessageId, without reading their meta data.
+         */
+        void visitMessageIds(long fromMessageId, long toMessageId, MessageIdHandler handler) throws StoreException;
+
+        /**
+         * Visits, in ascending message id order, the instances of messages on the given queue whose message id is
+         * at least fromMessageId and less than toMessageId.
+         */
+        void visitMessageInstances(TransactionLogResource queue,
+                                   long fromMessageId,
+                                   long toMessageId,
+                                   MessageInstanceHandler handler) throws StoreException;
+
         void visitDistributedTransactions(DistributedTransactionHandler handler) throws StoreException;
 
         StoredMessage<?> getMessage(long messageId);
@@ -26,6 +26,7 @@ import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.store.handler.ConfiguredObjectRecordHandler;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 public abstract class NullMessageStore implements MessageStore, DurableConfigurationStore, MessageStoreProvider, MessageStore.MessageStoreReader
@@ -153,6 +154,19 @@ public abstract class NullMessageStore implements MessageStore, DurableConfigura
     {
     }
 
+    @Override
+    public void visitMessageInstances(TransactionLogResource queue,
+                                      long fromMessageId,
+                                      long toMessageId,
+                                      MessageInstanceHandler handler) throws StoreException
+    {
+    }
+
+    @Override
+    public void visitMessageIds(long fromMessageId, long toMessageId, MessageIdHandler handler) throws StoreException
+    {
+    }
+
     @Override
     public void visitMessageInstances(MessageInstanceHandler handler) throws StoreException
     {
@@ -24,6 +24,7 @@ package org.apache.qpid.server.store;
 import java.util.Collection;
 import java.util.Collections;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 
 public class StoredMemoryMessage<T extends StorableMessageMetaData> implements StoredMessage<T>, MessageHandle<T>
@@ -64,7 +65,7 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
                         : contentSize;
                 QpidByteBuffer oldContent = _content;
                 oldContent.flip();
-                _content = QpidByteBuffer.allocateDirect(size);
+                _content = QpidByteBuffer.allocateDirect(size, DirectMemoryCategory.CONTENT);
                 _content.put(oldContent);
                 _content.putCopyOf(src);
                 oldContent.dispose();
@@ -0,0 +1,104 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.trace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.apache.qpid.server.model.Content;
+import org.apache.qpid.server.model.CustomRestHeaders;
+import org.apache.qpid.server.model.RestContentHeader;
+
+/**
+ * Writes a snapshot of the {@link EventTracer} rings as JSON.  Event timestamps are {@link System#nanoTime()}
+ * values; the document carries a reference pair of nano and wall clock times taken when the snapshot was
+ * made so that they can be converted to absolute times.
+ */
+public class EventTraceContent implements Content, CustomRestHeaders
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final long _referenceNanoTime;
+    private final long _referenceTimeMillis;
+    private final List<TraceRecord> _records;
+
+    public EventTraceContent()
+    {
+        _referenceNanoTime = System.nanoTime();
+        _referenceTimeMillis = System.currentTimeMillis();
+        _records = EventTracer.snapshot();
+    }
+
+    @Override
+    public void write(final OutputStream outputStream) throws IOException
+    {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeNumberField("referenceNanoTime", _referenceNanoTime);
+        generator.writeNumberField("referenceTimeMillis", _referenceTimeMillis);
+        generator.writeArrayFieldStart("events");
+        for (TraceRecord record : _records)
+        {
+            generator.writeStartObject();
+            generator.writeNumberField("t", record.getTimestamp());
+            generator.writeStringField("thread", record.getThreadName());
+            generator.writeStringField("event", record.getEvent().name());
+            if (record.getSubject() != null)
+            {
+                generator.writeStringField("subject", String.valueOf(record.getSubject()));
+            }
+            generator.writeNumberField("value", record.getValue());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void release()
+    {
+        // noop; nothing to release
+    }
+
+    public List<TraceRecord> getRecords()
+    {
+        return _records;
+    }
+
+    @RestContentHeader("Content-Type")
+    public String getContentType()
+    {
+        return "application/json";
+    }
+
+    @RestContentHeader("Content-Disposition")
+    public String getContentDisposition()
+    {
+        return "attachment; filename=\"eventtrace.json\"";
+    }
+}
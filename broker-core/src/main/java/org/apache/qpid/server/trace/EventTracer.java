@@ -0,0 +1,203 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.trace;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Always-on, low overhead tracer of broker internal events.
+ *
+ * Each thread records into its own fixed size ring buffer, so recording an event takes no locks and never
+ * contends with other threads; once a ring is full the oldest events are overwritten.  The contents of all the
+ * rings can be collected on demand with {@link #snapshot()}, which does not stop the recording threads.
+ *
+ * Tracing can be disabled with the system property {@value #TRACE_ENABLED_PROPERTY}, and the number of events
+ * retained per thread is set by {@value #TRACE_BUFFER_SIZE_PROPERTY} (rounded down to a power of two, one slot
+ * of which is always reserved for the event being written).
+ */
+public final class EventTracer
+{
+    public static final String TRACE_ENABLED_PROPERTY = "qpid.trace.enabled";
+    public static final String TRACE_BUFFER_SIZE_PROPERTY = "qpid.trace.bufferSize";
+    public static final int DEFAULT_TRACE_BUFFER_SIZE = 4096;
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(TRACE_ENABLED_PROPERTY, "true"));
+    private static final int BUFFER_SIZE =
+            Integer.highestOneBit(Math.max(16, Integer.getInteger(TRACE_BUFFER_SIZE_PROPERTY,
+                                                                  DEFAULT_TRACE_BUFFER_SIZE)));
+
+    private static final Queue<EventRing> RINGS = new ConcurrentLinkedQueue<>();
+
+    private static final ThreadLocal<EventRing> THREAD_RING = new ThreadLocal<EventRing>()
+    {
+        @Override
+        protected EventRing initialValue()
+        {
+            removeTerminatedThreadRings();
+            EventRing ring = new EventRing(Thread.currentThread(), BUFFER_SIZE);
+            RINGS.add(ring);
+            return ring;
+        }
+    };
+
+    private static final Comparator<TraceRecord> TIMESTAMP_ORDER = new Comparator<TraceRecord>()
+    {
+        @Override
+        public int compare(final TraceRecord o1, final TraceRecord o2)
+        {
+            return Long.compare(o1.getTimestamp() - o2.getTimestamp(), 0L);
+        }
+    };
+
+    private EventTracer()
+    {
+    }
+
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Records an event.  The subject is retained until the slot holding the event is overwritten, so it should be a
+     * value such as a name or an address rather than a broker object that would otherwise be garbage collected.
+     */
+    public static void trace(TraceEvent event, Object subject)
+    {
+        trace(event, subject, 0L);
+    }
+
+    public static void trace(TraceEvent event, Object subject, long value)
+    {
+        if (ENABLED)
+        {
+            THREAD_RING.get().record(event, subject, value);
+        }
+    }
+
+    /**
+     * Collects the events currently held by the rings of all threads, ordered by the time they were recorded.
+     * Rings belonging to threads which have terminated are discarded once they have been collected, or when a
+     * new thread starts recording.
+     */
+    public static List<TraceRecord> snapshot()
+    {
+        List<TraceRecord> records = new ArrayList<>();
+        for (EventRing ring : RINGS)
+        {
+            ring.collect(records);
+        }
+        removeTerminatedThreadRings();
+        Collections.sort(records, TIMESTAMP_ORDER);
+        return records;
+    }
+
+    static int getBufferSize()
+    {
+        return BUFFER_SIZE;
+    }
+
+    private static void removeTerminatedThreadRings()
+    {
+        Iterator<EventRing> iterator = RINGS.iterator();
+        while (iterator.hasNext())
+        {
+            EventRing ring = iterator.next();
+            if (ring.isThreadTerminated())
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class EventRing
+    {
+        private final WeakReference<Thread> _thread;
+        private final String _threadName;
+        private final int _mask;
+        private final long[] _timestamps;
+        private final TraceEvent[] _events;
+        private final Object[] _subjects;
+        private final long[] _values;
+        private final AtomicLong _position = new AtomicLong();
+
+        private EventRing(final Thread thread, final int size)
+        {
+            _thread = new WeakReference<>(thread);
+            _threadName = thread.getName();
+            _mask = size - 1;
+            _timestamps = new long[size];
+            _events = new TraceEvent[size];
+            _subjects = new Object[size];
+            _values = new long[size];
+        }
+
+        /** Called only by the owning thread. */
+        private void record(final TraceEvent event, final Object subject, final long value)
+        {
+            long position = _position.get();
+            int index = (int) position & _mask;
+            _timestamps[index] = System.nanoTime();
+            _events[index] = event;
+            _subjects[index] = subject;
+            _values[index] = value;
+            // ordered store publishes the entry to readers without the cost of a full fence
+            _position.lazySet(position + 1);
+        }
+
+        private void collect(final List<TraceRecord> records)
+        {
+            // the slot after the newest entry may be in the middle of being overwritten, so at most size - 1
+            // entries can be read reliably
+            long end = _position.get();
+            long start = Math.max(0L, end - _mask);
+            List<TraceRecord> collected = new ArrayList<>((int) (end - start));
+            for (long position = start; position < end; position++)
+            {
+                int index = (int) position & _mask;
+                collected.add(new TraceRecord(_threadName,
+                                              _timestamps[index],
+                                              _events[index],
+                                              _subjects[index],
+                                              _values[index]));
+            }
+
+            // the owner may have moved on while we were copying; anything in a slot it may have reused is dropped
+            long firstReliable = _position.get() - _mask;
+            int skip = (int) Math.max(0L, Math.min(firstReliable - start, collected.size()));
+            records.addAll(collected.subList(skip, collected.size()));
+        }
+
+        private boolean isThreadTerminated()
+        {
+            Thread thread = _thread.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+}
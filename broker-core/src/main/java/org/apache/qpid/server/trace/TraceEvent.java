@@ -0,0 +1,44 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.trace;
+
+/**
+ * The kinds of event recorded by the {@link EventTracer}.  The meaning of the recorded value depends on the event.
+ */
+public enum TraceEvent
+{
+    /** A queue runner was submitted for execution; the value is unused. */
+    QUEUE_RUNNER_SCHEDULED,
+    /** A queue runner finished a pass over its queue; the value is the time spent running in nanoseconds. */
+    QUEUE_RUNNER_RAN,
+    /** A consumer was suspended; the value is unused. */
+    CONSUMER_SUSPENDED,
+    /** A suspended consumer became active again; the value is unused. */
+    CONSUMER_RESUMED,
+    /** A message was flowed to disk; the value is the message size in bytes. */
+    FLOW_TO_DISK,
+    /** A connection was scheduled for processing by an IO thread; the value is unused. */
+    CONNECTION_SCHEDULED,
+    /** A connection was selected as ready for IO; the value is unused. */
+    CONNECTION_SELECTED,
+    /** A message store committed (or flushed) to durable storage; the value is the latency in nanoseconds. */
+    STORE_COMMIT
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.trace;
+
+public final class TraceRecord
+{
+    private final String _threadName;
+    private final long _timestamp;
+    private final TraceEvent _event;
+    private final Object _subject;
+    private final long _value;
+
+    TraceRecord(final String threadName,
+                final long timestamp,
+                final TraceEvent event,
+                final Object subject,
+                final long value)
+    {
+        _threadName = threadName;
+        _timestamp = timestamp;
+        _event = event;
+        _subject = subject;
+        _value = value;
+    }
+
+    public String getThreadName()
+    {
+        return _threadName;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} at which the event was recorded
+     */
+    public long getTimestamp()
+    {
+        return _timestamp;
+    }
+
+    public TraceEvent getEvent()
+    {
+        return _event;
+    }
+
+    public Object getSubject()
+    {
+        return _subject;
+    }
+
+    public long getValue()
+    {
+        return _value;
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.qpid.protocol.AMQConstant;
 import org.apache.qpid.server.logging.EventLoggerProvider;
 import org.apache.qpid.server.model.Connection;
 import org.apache.qpid.server.protocol.AMQSessionModel;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.util.Deletable;
 
 public interface AMQPConnection<C extends AMQPConnection<C>> extends Connection<C>, Deletable<C>, EventLoggerProvider
@@ -59,6 +60,8 @@ public interface AMQPConnection<C extends AMQPConnection<C>> extends Connection<
 
     void registerMessageDelivered(long size);
 
+    LatencyStatistics getLatencyStatistics();
+
     void closeSessionAsync(AMQSessionModel<?> session, AMQConstant cause, String message);
 
     SocketAddress getRemoteSocketAddress();
@@ -69,6 +69,7 @@ import org.apache.qpid.server.model.adapter.SessionAdapter;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.stats.StatisticsCounter;
 import org.apache.qpid.server.stats.StatisticsGatherer;
 import org.apache.qpid.server.util.Action;
@@ -116,6 +117,7 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
     private volatile AccessControlContext _accessControllerContext;
     private volatile Thread _ioThread;
     private volatile StatisticsGatherer _statisticsGatherer;
+    private final LatencyStatistics _latencyStatistics = new LatencyStatistics();
 
     private volatile boolean _messageAuthorizationRequired;
 
@@ -241,6 +243,18 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
         return _network.getTransportInfo();
     }
 
+    @Override
+    public long getTlsOverheadBytes()
+    {
+        return _network.getTlsOverheadBytes();
+    }
+
+    @Override
+    public long getTlsCpuTime()
+    {
+        return _network.getTlsCpuTime();
+    }
+
     @Override
     public Protocol getProtocol()
     {
@@ -454,6 +468,66 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
         _statisticsGatherer.registerMessageReceived(messageSize, timestamp);
     }
 
+    @Override
+    public LatencyStatistics getLatencyStatistics()
+    {
+        return _latencyStatistics;
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP50()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP99()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getPublishToEnqueueLatencyP999()
+    {
+        return _latencyStatistics.getPublishToEnqueue().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP50()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP99()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getEnqueueToDeliverLatencyP999()
+    {
+        return _latencyStatistics.getEnqueueToDeliver().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP50()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP99()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getDeliverToAckLatencyP999()
+    {
+        return _latencyStatistics.getDeliverToAck().getValueAtPercentile(99.9);
+    }
+
     @Override
     public final void resetStatistics()
     {
@@ -461,6 +535,11 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
         _dataDelivered.reset();
         _messagesReceived.reset();
         _dataReceived.reset();
+        _latencyStatistics.reset();
+        for (AMQSessionModel<?> session : getSessionModels())
+        {
+            session.getLatencyStatistics().reset();
+        }
     }
 
     private StatisticsCounter getMessageReceiptStatistics()
@@ -45,13 +45,26 @@ public class NetworkConnectionScheduler
     private final long _threadKeepAliveTimeout;
     private final String _name;
     private final int _numberOfSelectors;
+    private final boolean _threadAffinity;
     private SelectorThread _selectorThread;
 
     public NetworkConnectionScheduler(final String name,
                                       final int numberOfSelectors, int threadPoolSize,
                                       long threadKeepAliveTimeout)
     {
-        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, new ThreadFactory()
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, false);
+    }
+
+    /**
+     * @param threadAffinity if true, each thread of the pool owns a selector of its own and performs all the work of
+     *                       the connections registered with that selector, in which case numberOfSelectors is ignored
+     */
+    public NetworkConnectionScheduler(final String name,
+                                      final int numberOfSelectors, int threadPoolSize,
+                                      long threadKeepAliveTimeout,
+                                      boolean threadAffinity)
+    {
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, threadAffinity, new ThreadFactory()
                                     {
                                         final AtomicInteger _count = new AtomicInteger();
 
@@ -76,6 +89,7 @@ public class NetworkConnectionScheduler
                ", _threadKeepAliveTimeout=" + _threadKeepAliveTimeout +
                ", _name='" + _name + '\'' +
                ", _numberOfSelectors=" + _numberOfSelectors +
+               ", _threadAffinity=" + _threadAffinity +
                ", _selectorThread=" + _selectorThread +
                '}';
     }
@@ -84,12 +98,22 @@ public class NetworkConnectionScheduler
                                       final int numberOfSelectors, int threadPoolSize,
                                       long threadKeepAliveTimeout,
                                       ThreadFactory factory)
+    {
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, false, factory);
+    }
+
+    public NetworkConnectionScheduler(String name,
+                                      final int numberOfSelectors, int threadPoolSize,
+                                      long threadKeepAliveTimeout,
+                                      boolean threadAffinity,
+                                      ThreadFactory factory)
     {
         _name = name;
         _poolSize = threadPoolSize;
         _threadKeepAliveTimeout = threadKeepAliveTimeout;
         _factory = factory;
         _numberOfSelectors = numberOfSelectors;
+        _threadAffinity = threadAffinity;
         _selectorThreadName = "Selector-"+name;
     }
 
@@ -98,7 +122,9 @@ public class NetworkConnectionScheduler
     {
         try
         {
-            _selectorThread = new SelectorThread(this, _numberOfSelectors);
+            _selectorThread = _threadAffinity
+                    ? new SelectorThread(this, _poolSize, true)
+                    : new SelectorThread(this, _numberOfSelectors, false);
             _executor = new ThreadPoolExecutor(_poolSize, _poolSize,
                                                _threadKeepAliveTimeout, TimeUnit.MINUTES,
                                                new LinkedBlockingQueue<Runnable>(), _factory);
@@ -129,7 +155,8 @@ public class NetworkConnectionScheduler
 
                 if (connection.isStateChanged() || connection.isPartialRead())
                 {
-                    if (_running.get() == _poolSize)
+                    // with thread affinity the remaining work is queued behind that of the selector's other connections
+                    if (_threadAffinity || _running.get() == _poolSize)
                     {
                         connection.clearScheduled();
                         schedule(connection);
@@ -222,6 +249,11 @@ public class NetworkConnectionScheduler
         return _poolSize;
     }
 
+    boolean isThreadAffinity()
+    {
+        return _threadAffinity;
+    }
+
     public void schedule(final NonBlockingConnection connection)
     {
         _selectorThread.addToWork(connection);
@@ -41,6 +41,9 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.server.stats.NetworkWriteStatistics;
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
 import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.util.ConnectionScopedRuntimeException;
 import org.apache.qpid.transport.ByteBufferSender;
@@ -69,6 +72,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     private boolean _partialRead = false;
 
     private final AmqpPort _port;
+    private final NetworkWriteStatistics _networkWriteStatistics = new NetworkWriteStatistics();
     private final AtomicBoolean _scheduled = new AtomicBoolean();
     private volatile long _scheduledTime;
     private volatile boolean _unexpectedByteBufferSizeReported;
@@ -79,6 +83,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     private final AtomicLong _maxReadIdleMillis = new AtomicLong();
     private final List<SchedulingDelayNotificationListener> _schedulingDelayNotificationListeners = new CopyOnWriteArrayList<>();
     private final AtomicBoolean _hasShutdown = new AtomicBoolean();
+    private final WriteCoalescer _writeCoalescer;
 
     public NonBlockingConnection(SocketChannel socketChannel,
                                  ProtocolEngine protocolEngine,
@@ -100,6 +105,14 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         _outboundMessageBufferLimit = (long) _port.getContextValue(Long.class,
                                                                    AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
 
+        _writeCoalescer = new WriteCoalescer(_port.getWriteCoalescingMode(),
+                                             _port.getWriteCoalescingMaxBytes(),
+                                             _port.getWriteCoalescingMaxDelay());
+        if (_writeCoalescer.isEnabled())
+        {
+            protocolEngine.getAggregateTicker().addTicker(_writeCoalescer);
+        }
+
         protocolEngine.setWorkListener(new Action<ProtocolEngine>()
         {
             @Override
@@ -121,6 +134,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
             _delegate = new NonBlockingConnectionUndecidedDelegate(this);
         }
 
+        _port.addNetworkWriteStatistics(_networkWriteStatistics);
     }
 
     String getThreadName()
@@ -171,6 +185,11 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return _socketChannel.socket().getRemoteSocketAddress();
     }
 
+    String getRemoteAddressString()
+    {
+        return _remoteSocketAddress;
+    }
+
     @Override
     public SocketAddress getLocalAddress()
     {
@@ -228,6 +247,18 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return _delegate.getTransportInfo();
     }
 
+    @Override
+    public long getTlsOverheadBytes()
+    {
+        return _delegate.getTlsOverheadBytes();
+    }
+
+    @Override
+    public long getTlsCpuTime()
+    {
+        return _delegate.getTlsCpuTime();
+    }
+
     boolean wantsRead()
     {
         return _fullyWritten;
@@ -283,7 +314,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
                     _pendingIterator = null;
                     _protocolEngine.setTransportBlockedForWriting(false);
                     boolean dataRead = doRead();
-                    _protocolEngine.setTransportBlockedForWriting(!doWrite());
+                    _protocolEngine.setTransportBlockedForWriting(!doCoalescedWrite(currentTime));
 
                     if (!_fullyWritten || dataRead || (_delegate.needsWork() && _delegate.getNetInputBuffer().position() != 0))
                     {
@@ -385,6 +416,21 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return complete;
     }
 
+    private boolean doCoalescedWrite(final long currentTime) throws IOException
+    {
+        if (!_writeCoalescer.isEnabled())
+        {
+            return doWrite();
+        }
+        if (_fullyWritten && !_writeCoalescer.shouldWrite(getBufferedSize(), currentTime))
+        {
+            return true;
+        }
+        final boolean fullyWritten = doWrite();
+        _writeCoalescer.written(fullyWritten ? 0L : getBufferedSize());
+        return fullyWritten;
+    }
+
     private long getBufferedSize()
     {
         // Avoids iterator garbage if empty
@@ -428,6 +474,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
                 }
                 finally
                 {
+                    _port.removeNetworkWriteStatistics(_networkWriteStatistics);
                     _socketChannel.close();
                 }
             }
@@ -525,6 +572,10 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     long writeToTransport(Collection<QpidByteBuffer> buffers) throws IOException
     {
         long written  = QpidByteBuffer.write(_socketChannel, buffers);
+        if (written > 0L)
+        {
+            _networkWriteStatistics.registerWrite(written);
+        }
         if (LOGGER.isDebugEnabled())
         {
             LOGGER.debug("Written " + written + " bytes");
@@ -655,6 +706,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         if (scheduled)
         {
             _scheduledTime = System.currentTimeMillis();
+            EventTracer.trace(TraceEvent.CONNECTION_SCHEDULED, _remoteSocketAddress);
         }
         return scheduled;
     }
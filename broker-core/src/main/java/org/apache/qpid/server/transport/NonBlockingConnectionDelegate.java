@@ -47,4 +47,8 @@ interface NonBlockingConnectionDelegate
     void shutdownOutput();
 
     String getTransportInfo();
+
+    long getTlsOverheadBytes();
+
+    long getTlsCpuTime();
 }
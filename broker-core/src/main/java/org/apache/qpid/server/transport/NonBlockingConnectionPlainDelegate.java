@@ -28,6 +28,7 @@ import org.apache.qpid.server.model.port.AmqpPort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 
 public class NonBlockingConnectionPlainDelegate implements NonBlockingConnectionDelegate
@@ -42,7 +43,7 @@ public class NonBlockingConnectionPlainDelegate implements NonBlockingConnection
     {
         _parent = parent;
         _networkBufferSize = port.getNetworkBufferSize();
-        _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+        _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.NETWORK);
     }
 
     @Override
@@ -90,7 +91,7 @@ public class NonBlockingConnectionPlainDelegate implements NonBlockingConnection
                 _parent.reportUnexpectedByteBufferSizeUsage();
             }
 
-            _netInputBuffer = QpidByteBuffer.allocateDirect(newBufSize);
+            _netInputBuffer = QpidByteBuffer.allocateDirect(newBufSize, DirectMemoryCategory.NETWORK);
             _netInputBuffer.put(currentBuffer);
             currentBuffer.dispose();
         }
@@ -158,4 +159,16 @@ public class NonBlockingConnectionPlainDelegate implements NonBlockingConnection
     {
         return "";
     }
+
+    @Override
+    public long getTlsOverheadBytes()
+    {
+        return 0L;
+    }
+
+    @Override
+    public long getTlsCpuTime()
+    {
+        return 0L;
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.apache.qpid.server.transport;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
@@ -33,10 +34,13 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.security.Principal;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -44,10 +48,15 @@ import java.util.ListIterator;
 public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDelegate
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingConnectionTLSDelegate.class);
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean THREAD_CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+    private static final long CPU_TIME_NOT_MEASURED = -1L;
 
     private final SSLEngine _sslEngine;
     private final NonBlockingConnection _parent;
     private final int _networkBufferSize;
+    private final boolean _batching;
+    private final boolean _cpuTimeMeasured;
     private SSLEngineResult _status;
     private final List<QpidByteBuffer> _encryptedOutput = new ArrayList<>();
     private Principal _principal;
@@ -56,6 +65,9 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     private QpidByteBuffer _netInputBuffer;
     private QpidByteBuffer _netOutputBuffer;
     private QpidByteBuffer _applicationBuffer;
+    private boolean _netOutputPending;
+    private volatile long _tlsOverheadBytes;
+    private volatile long _tlsCpuTime;
 
 
     public NonBlockingConnectionTLSDelegate(NonBlockingConnection parent, AmqpPort port)
@@ -63,6 +75,10 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         _parent = parent;
         _sslEngine = createSSLEngine(port);
         _networkBufferSize = port.getNetworkBufferSize();
+        _batching = port.isTlsBatching();
+        _cpuTimeMeasured = port.isTlsCpuTimeStatistics()
+                           && THREAD_CPU_TIME_SUPPORTED
+                           && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
 
         final int tlsPacketBufferSize = _sslEngine.getSession().getPacketBufferSize();
         if (tlsPacketBufferSize > _networkBufferSize)
@@ -71,9 +87,9 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
                     + ") is greater then broker network buffer size (" + _networkBufferSize + ")");
         }
 
-        _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
-        _applicationBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
-        _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+        _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.TLS);
+        _applicationBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.TLS);
+        _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.TLS);
     }
 
     @Override
@@ -92,18 +108,26 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         do
         {
             int oldAppBufPos = _applicationBuffer.position();
-            oldNetBufferPos = _netInputBuffer.position();
-
-            _status = _netInputBuffer.decryptSSL(_sslEngine, _applicationBuffer);
-            if (_status.getStatus() == SSLEngineResult.Status.CLOSED)
+            final long startCpuTime = startCpuTimeMeasurement();
+            do
             {
-                int remaining = _netInputBuffer.remaining();
-                _netInputBuffer.position(_netInputBuffer.limit());
-                // We'd usually expect no more bytes to be sent following a close_notify
-                LOGGER.debug("SSLEngine closed, discarded {} byte(s)", remaining);
+                oldNetBufferPos = _netInputBuffer.position();
+
+                _status = _netInputBuffer.decryptSSL(_sslEngine, _applicationBuffer);
+                _tlsOverheadBytes += _status.bytesConsumed() - _status.bytesProduced();
+                if (_status.getStatus() == SSLEngineResult.Status.CLOSED)
+                {
+                    int remaining = _netInputBuffer.remaining();
+                    _netInputBuffer.position(_netInputBuffer.limit());
+                    // We'd usually expect no more bytes to be sent following a close_notify
+                    LOGGER.debug("SSLEngine closed, discarded {} byte(s)", remaining);
+                }
+
+                tasksRun = runSSLEngineTasks(_status);
             }
+            while (_batching && canDecryptFurther(oldNetBufferPos));
+            endCpuTimeMeasurement(startCpuTime);
 
-            tasksRun = runSSLEngineTasks(_status);
             _applicationBuffer.flip();
             if(_applicationBuffer.position() > oldAppBufPos)
             {
@@ -128,9 +152,23 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         return readData;
     }
 
+    private boolean canDecryptFurther(final int oldNetBufferPos)
+    {
+        return _status.getStatus() == SSLEngineResult.Status.OK
+               && _status.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+               && _netInputBuffer.hasRemaining()
+               && _netInputBuffer.position() > oldNetBufferPos
+               && _applicationBuffer.remaining() >= _sslEngine.getSession().getApplicationBufferSize();
+    }
+
     @Override
     public boolean doWrite(Collection<QpidByteBuffer> bufferArray) throws IOException
     {
+        if (_batching)
+        {
+            return doBatchedWrite(bufferArray);
+        }
+
         final int bufCount = bufferArray.size();
 
         wrapBufferArray(bufferArray);
@@ -166,6 +204,63 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         return bufsSent && _encryptedOutput.isEmpty();
     }
 
+    /**
+     * Encrypts into the one output buffer, reused once its content has been written, as many records as it can hold
+     * before writing it, so that no buffer is allocated or disposed for each write.
+     */
+    private boolean doBatchedWrite(Collection<QpidByteBuffer> bufferArray) throws IOException
+    {
+        while (true)
+        {
+            if (_netOutputPending)
+            {
+                _parent.writeToTransport(Collections.singletonList(_netOutputBuffer));
+                if (_netOutputBuffer.hasRemaining())
+                {
+                    break;
+                }
+                _netOutputBuffer.clear();
+                _netOutputPending = false;
+            }
+
+            if (!wrapIntoOutputBuffer(bufferArray))
+            {
+                break;
+            }
+            _netOutputBuffer.flip();
+            _netOutputPending = true;
+        }
+
+        for (QpidByteBuffer buf : bufferArray)
+        {
+            if (buf.hasRemaining())
+            {
+                return false;
+            }
+        }
+        return !_netOutputPending;
+    }
+
+    private boolean wrapIntoOutputBuffer(Collection<QpidByteBuffer> bufferArray) throws SSLException
+    {
+        final long startCpuTime = startCpuTimeMeasurement();
+        boolean encrypted = false;
+        while (_sslEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_UNWRAP
+               && _netOutputBuffer.remaining() >= _sslEngine.getSession().getPacketBufferSize())
+        {
+            _status = QpidByteBuffer.encryptSSL(_sslEngine, bufferArray, _netOutputBuffer);
+            _tlsOverheadBytes += _status.bytesProduced() - _status.bytesConsumed();
+            runSSLEngineTasks(_status);
+            if (_status.bytesProduced() == 0)
+            {
+                break;
+            }
+            encrypted = true;
+        }
+        endCpuTimeMeasurement(startCpuTime);
+        return encrypted;
+    }
+
     protected void restoreApplicationBufferForWrite()
     {
         QpidByteBuffer oldApplicationBuffer = _applicationBuffer;
@@ -193,7 +288,7 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
                 _parent.reportUnexpectedByteBufferSizeUsage();
             }
 
-            _applicationBuffer = QpidByteBuffer.allocateDirect(newBufSize);
+            _applicationBuffer = QpidByteBuffer.allocateDirect(newBufSize, DirectMemoryCategory.TLS);
             _applicationBuffer.put(currentBuffer);
             currentBuffer.dispose();
         }
@@ -202,6 +297,7 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
 
     private void wrapBufferArray(Collection<QpidByteBuffer> bufferArray) throws SSLException
     {
+        final long startCpuTime = startCpuTimeMeasurement();
         boolean encrypted;
         do
         {
@@ -218,17 +314,18 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
                     {
                         _netOutputBuffer.dispose();
                     }
-                    _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+                    _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.TLS);
                 }
 
                 _status = QpidByteBuffer.encryptSSL(_sslEngine, bufferArray, _netOutputBuffer);
+                _tlsOverheadBytes += _status.bytesProduced() - _status.bytesConsumed();
                 encrypted = _status.bytesProduced() > 0;
                 runSSLEngineTasks(_status);
                 if(encrypted && _netOutputBuffer.remaining() < _sslEngine.getSession().getPacketBufferSize())
                 {
                     _netOutputBuffer.flip();
                     _encryptedOutput.add(_netOutputBuffer);
-                    _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+                    _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize, DirectMemoryCategory.TLS);
                 }
 
             }
@@ -239,6 +336,7 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
 
         }
         while(encrypted && _sslEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_UNWRAP);
+        endCpuTimeMeasurement(startCpuTime);
 
         if(_netOutputBuffer.position() != 0)
         {
@@ -384,4 +482,29 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         SSLSession session = _sslEngine.getSession();
         return session.getProtocol() + " ; " + session.getCipherSuite() ;
     }
+
+    @Override
+    public long getTlsOverheadBytes()
+    {
+        return _tlsOverheadBytes;
+    }
+
+    @Override
+    public long getTlsCpuTime()
+    {
+        return _cpuTimeMeasured ? _tlsCpuTime : CPU_TIME_NOT_MEASURED;
+    }
+
+    private long startCpuTimeMeasurement()
+    {
+        return _cpuTimeMeasured ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private void endCpuTimeMeasurement(final long startCpuTime)
+    {
+        if (_cpuTimeMeasured)
+        {
+            _tlsCpuTime += THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuTime;
+        }
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.apache.qpid.server.transport;
 
+import org.apache.qpid.bytebuffer.DirectMemoryCategory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.transport.network.TransportEncryption;
 
@@ -37,7 +38,7 @@ public class NonBlockingConnectionUndecidedDelegate implements NonBlockingConnec
     public NonBlockingConnectionUndecidedDelegate(NonBlockingConnection parent)
     {
         _parent = parent;
-        _netInputBuffer = QpidByteBuffer.allocateDirect(NUMBER_OF_BYTES_FOR_TLS_CHECK);
+        _netInputBuffer = QpidByteBuffer.allocateDirect(NUMBER_OF_BYTES_FOR_TLS_CHECK, DirectMemoryCategory.NETWORK);
 
     }
 
@@ -143,4 +144,16 @@ public class NonBlockingConnectionUndecidedDelegate implements NonBlockingConnec
     {
         return "";
     }
+
+    @Override
+    public long getTlsOverheadBytes()
+    {
+        return 0L;
+    }
+
+    @Override
+    public long getTlsCpuTime()
+    {
+        return 0L;
+    }
 }
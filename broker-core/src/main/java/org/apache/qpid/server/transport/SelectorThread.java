@@ -49,6 +49,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.qpid.configuration.CommonProperties;
+import org.apache.qpid.server.trace.EventTracer;
+import org.apache.qpid.server.trace.TraceEvent;
 
 
 class SelectorThread extends Thread
@@ -66,6 +68,8 @@ class SelectorThread extends Thread
 
     private final BlockingQueue<Runnable> _workQueue = new LinkedBlockingQueue<>();
     private final  AtomicInteger _nextSelectorTaskIndex = new AtomicInteger();
+    private final boolean _threadAffinity;
+    private final AtomicInteger _nextAffineSelectorTaskIndex = new AtomicInteger();
 
     public final class SelectionTask implements Runnable
     {
@@ -84,6 +88,11 @@ class SelectorThread extends Thread
         /** Set of connections that are currently being selected upon */
         private final Set<NonBlockingConnection> _unscheduledConnections = new HashSet<>();
 
+        /**
+         * Work for this task's connections, used in place of the shared work queue when each thread owns a selector.
+         */
+        private final Queue<Runnable> _affineWork = new ConcurrentLinkedQueue<>();
+
 
 
         private SelectionTask() throws IOException
@@ -122,6 +131,46 @@ class SelectorThread extends Thread
             return _unscheduledConnections;
         }
 
+        Queue<Runnable> getAffineWork()
+        {
+            return _affineWork;
+        }
+
+        private SelectorThread getSelectorThread()
+        {
+            return SelectorThread.this;
+        }
+
+        private void addWork(final Runnable work)
+        {
+            if (_threadAffinity)
+            {
+                _affineWork.add(work);
+            }
+            else
+            {
+                _workQueue.add(work);
+            }
+        }
+
+        private void runAffineWork()
+        {
+            if (!_affineWork.isEmpty())
+            {
+                // work added whilst this runs, such as connections rescheduling themselves, waits for the next select
+                List<Runnable> work = new ArrayList<>();
+                Runnable runnable;
+                while ((runnable = _affineWork.poll()) != null)
+                {
+                    work.add(runnable);
+                }
+                for (Runnable task : work)
+                {
+                    task.run();
+                }
+            }
+        }
+
         private List<NonBlockingConnection> processUnscheduledConnections()
         {
             _nextTimeout = Integer.MAX_VALUE;
@@ -191,7 +240,7 @@ class SelectorThread extends Thread
                                      localSocketAddress, e);
                     }
 
-                    _workQueue.add(new Runnable()
+                    addWork(new Runnable()
                     {
                         @Override
                         public void run()
@@ -316,6 +365,7 @@ class SelectorThread extends Thread
                                 }
                                 for (NonBlockingConnection connection : processSelectionKeys())
                                 {
+                                    EventTracer.trace(TraceEvent.CONNECTION_SELECTED, connection.getRemoteAddressString());
                                     if (connection.setScheduled())
                                     {
                                         connections.add(new ConnectionProcessor(_scheduler, connection));
@@ -335,7 +385,10 @@ class SelectorThread extends Thread
                                         connections.add(new ConnectionProcessor(_scheduler, connection));
                                     }
                                 }
-                                runTasks();
+                                if (!_threadAffinity || this == _selectionTasks[0])
+                                {
+                                    runTasks();
+                                }
                             }
                         }
                         finally
@@ -343,7 +396,15 @@ class SelectorThread extends Thread
                             clearSelecting();
                         }
 
-                        if (!connections.isEmpty())
+                        if (_threadAffinity)
+                        {
+                            for (ConnectionProcessor connectionProcessor : connections)
+                            {
+                                connectionProcessor.processConnection();
+                            }
+                            runAffineWork();
+                        }
+                        else if (!connections.isEmpty())
                         {
                             _workQueue.addAll(connections);
                             _workQueue.add(this);
@@ -399,16 +460,32 @@ class SelectorThread extends Thread
     private SelectionTask[] _selectionTasks;
 
     SelectorThread(final NetworkConnectionScheduler scheduler, final int numberOfSelectors) throws IOException
+    {
+        this(scheduler, numberOfSelectors, false);
+    }
+
+    /**
+     * @param threadAffinity if true, each thread running this object claims one selection task, selecting upon and
+     *                       doing the work of that task's connections until closed, so the number of selectors must
+     *                       equal the number of threads
+     */
+    SelectorThread(final NetworkConnectionScheduler scheduler,
+                   final int numberOfSelectors,
+                   final boolean threadAffinity) throws IOException
     {
         _scheduler = scheduler;
+        _threadAffinity = threadAffinity;
         _selectionTasks = new SelectionTask[numberOfSelectors];
         for(int i = 0; i < numberOfSelectors; i++)
         {
             _selectionTasks[i] = new SelectionTask();
         }
-        for(SelectionTask task : _selectionTasks)
+        if (!threadAffinity)
         {
-            _workQueue.add(task);
+            for(SelectionTask task : _selectionTasks)
+            {
+                _workQueue.add(task);
+            }
         }
     }
 
@@ -508,6 +585,15 @@ class SelectorThread extends Thread
     @Override
     public void run()
     {
+        if (_threadAffinity)
+        {
+            int index = _nextAffineSelectorTaskIndex.getAndIncrement();
+            if (index < _selectionTasks.length)
+            {
+                _selectionTasks[index].run();
+            }
+            return;
+        }
 
         final String name = Thread.currentThread().getName();
         try
@@ -696,6 +782,13 @@ class SelectorThread extends Thread
          }
          if(connection.setScheduled())
          {
+             if (_threadAffinity)
+             {
+                 SelectionTask selectionTask = getAffineSelectionTask(connection);
+                 selectionTask.addWork(new ConnectionProcessor(_scheduler, connection));
+                 selectionTask.wakeup();
+                 return;
+             }
              _workQueue.add(new ConnectionProcessor(_scheduler, connection));
          }
          SelectionTask selectionTask = connection.getSelectionTask();
@@ -704,4 +797,27 @@ class SelectorThread extends Thread
              selectionTask.wakeup();
          }
      }
+
+    private SelectionTask getAffineSelectionTask(final NonBlockingConnection connection)
+    {
+        SelectionTask selectionTask = connection.getSelectionTask();
+        if (selectionTask == null)
+        {
+            selectionTask = getNextSelectionTask();
+            connection.setSelectionTask(selectionTask);
+        }
+        else if (selectionTask.getSelectorThread() != this)
+        {
+            // The connection has been moved to this scheduler but is still registered with the selector of its
+            // previous one, which hands it over when next selecting it.  Until then its work is done by one of
+            // this scheduler's tasks, leaving the connection's task, and so its registration, as it is.
+            selectionTask = getNextSelectionTask();
+        }
+        return selectionTask;
+    }
+
+    SelectionTask[] getSelectionTasks()
+    {
+        return _selectionTasks;
+    }
 }
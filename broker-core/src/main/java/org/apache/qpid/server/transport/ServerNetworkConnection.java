@@ -27,6 +27,10 @@ public interface ServerNetworkConnection extends NetworkConnection
 
     String getTransportInfo();
 
+    long getTlsOverheadBytes();
+
+    long getTlsCpuTime();
+
     long getScheduledTime();
 
     void addSchedulingDelayNotificationListeners(SchedulingDelayNotificationListener listener);
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import org.apache.qpid.server.model.WriteCoalescingMode;
+import org.apache.qpid.transport.network.Ticker;
+
+/**
+ * Decides, each time a connection has done its work, whether the frames it has buffered should be written to the
+ * network now or held back so that they can be written together with the frames produced by later work.  Frames are
+ * never held back beyond the maximum bytes or the maximum delay.  As a ticker it wakes the connection once the delay
+ * of held back frames expires.
+ * <p>
+ * In adaptive mode frames are only held back whilst the connection produces, on average, less than a quarter of the
+ * maximum bytes per unit of work, so that connections streaming large amounts of data are not delayed.
+ */
+class WriteCoalescer implements Ticker
+{
+    private static final long NOT_DEFERRED = -1L;
+    private static final int ADAPTIVE_THRESHOLD_DIVISOR = 4;
+    private static final int AVERAGE_WEIGHT_SHIFT = 3;
+
+    private final WriteCoalescingMode _mode;
+    private final long _maxBytes;
+    private final long _maxDelay;
+
+    private volatile long _deferredSince = NOT_DEFERRED;
+    private long _unwrittenBytes;
+    private long _averageProducedBytes;
+
+    WriteCoalescer(final WriteCoalescingMode mode, final long maxBytes, final long maxDelay)
+    {
+        _mode = mode == null ? WriteCoalescingMode.NONE : mode;
+        _maxBytes = maxBytes;
+        _maxDelay = maxDelay;
+    }
+
+    boolean isEnabled()
+    {
+        return _mode != WriteCoalescingMode.NONE;
+    }
+
+    /**
+     * @return true if the given number of buffered bytes should be written now
+     */
+    boolean shouldWrite(final long bufferedBytes, final long currentTime)
+    {
+        if (!isEnabled())
+        {
+            return true;
+        }
+
+        final long producedBytes = bufferedBytes - _unwrittenBytes;
+        _unwrittenBytes = bufferedBytes;
+        if (producedBytes > 0L)
+        {
+            _averageProducedBytes += (producedBytes - _averageProducedBytes) >> AVERAGE_WEIGHT_SHIFT;
+        }
+
+        final long deferredSince = _deferredSince;
+        if (bufferedBytes == 0L
+            || bufferedBytes >= _maxBytes
+            || (_mode == WriteCoalescingMode.ADAPTIVE
+                && _averageProducedBytes >= _maxBytes / ADAPTIVE_THRESHOLD_DIVISOR)
+            || (deferredSince != NOT_DEFERRED && currentTime - deferredSince >= _maxDelay))
+        {
+            return true;
+        }
+
+        if (deferredSince == NOT_DEFERRED)
+        {
+            _deferredSince = currentTime;
+        }
+        return false;
+    }
+
+    /**
+     * Records the number of buffered bytes that remain after a write.  Any remainder is left to the connection's
+     * interest in writing rather than to the delay.
+     */
+    void written(final long remainingBytes)
+    {
+        _unwrittenBytes = remainingBytes;
+        _deferredSince = NOT_DEFERRED;
+    }
+
+    long getAverageProducedBytes()
+    {
+        return _averageProducedBytes;
+    }
+
+    @Override
+    public int getTimeToNextTick(final long currentTime)
+    {
+        final long deferredSince = _deferredSince;
+        if (deferredSince == NOT_DEFERRED)
+        {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, deferredSince + _maxDelay - currentTime));
+    }
+
+    @Override
+    public int tick(final long currentTime)
+    {
+        // the held back frames are written by the connection's work, which the expiry of the delay schedules
+        return getTimeToNextTick(currentTime);
+    }
+}
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.qpid.server.message.EnqueueableMessage;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.queue.BaseQueue;
+import org.apache.qpid.server.queue.EnqueueBatch;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.Transaction;
@@ -414,9 +415,27 @@ public class LocalTransaction implements ServerTransaction
     {
         _logger.debug("Beginning {} post transaction actions",  _postTransactionActions.size());
 
-        for(int i = 0; i < _postTransactionActions.size(); i++)
+        // consecutive enqueues of the transaction to the same queue are applied to it as a single batch
+        EnqueueBatch.begin();
+        boolean succeeded = false;
+        try
+        {
+            for(int i = 0; i < _postTransactionActions.size(); i++)
+            {
+                _postTransactionActions.get(i).postCommit();
+            }
+            succeeded = true;
+        }
+        finally
         {
-            _postTransactionActions.get(i).postCommit();
+            if (succeeded)
+            {
+                EnqueueBatch.complete();
+            }
+            else
+            {
+                EnqueueBatch.completeAfterFailure();
+            }
         }
 
         _logger.debug("Completed post transaction actions");
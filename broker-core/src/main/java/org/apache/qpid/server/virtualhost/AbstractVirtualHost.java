@@ -54,8 +54,11 @@ import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -157,7 +160,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     private final AtomicBoolean _acceptsConnections = new AtomicBoolean(false);
     private TaskExecutor _preferenceTaskExecutor;
 
-    private static enum BlockingType { STORE, FILESYSTEM };
+    private static enum BlockingType { STORE, FILESYSTEM, DIRECT_MEMORY };
 
     private static final String USE_ASYNC_RECOVERY = "use_async_message_store_recovery";
 
@@ -171,6 +174,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     private static final int HOUSEKEEPING_SHUTDOWN_TIMEOUT = 5;
 
     private ScheduledThreadPoolExecutor _houseKeepingTaskExecutor;
+    private volatile ThreadPoolExecutor _readAheadTaskExecutor;
 
     private final Broker<?> _broker;
 
@@ -246,6 +250,9 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     @ManagedAttributeField
     private int _numberOfSelectors;
 
+    @ManagedAttributeField
+    private boolean _connectionThreadAffinity;
+
     @ManagedAttributeField
     private List<String> _enabledConnectionValidators;
 
@@ -263,7 +270,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     private MessageDestination _defaultDestination;
 
     private MessageStore _messageStore;
-    private MessageStoreRecoverer _messageStoreRecoverer;
+    private volatile MessageStoreRecoverer _messageStoreRecoverer;
     private final FileSystemSpaceChecker _fileSystemSpaceChecker;
     private int _fileSystemMaxUsagePercent;
     private Collection<VirtualHostLogger> _virtualHostLoggersToClose;
@@ -557,6 +564,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     {
         super.onExceptionInOpen(e);
         shutdownHouseKeeping();
+        shutdownReadAhead();
         closeNetworkConnectionScheduler();
         closeMessageStore();
         stopPreferenceTaskExecutor();
@@ -1150,6 +1158,17 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         }
     }
 
+    private void shutdownReadAhead()
+    {
+        final ThreadPoolExecutor readAheadTaskExecutor = _readAheadTaskExecutor;
+        if(readAheadTaskExecutor != null)
+        {
+            _readAheadTaskExecutor = null;
+            // reading ahead is only an optimisation, so pending tasks are abandoned
+            readAheadTaskExecutor.shutdownNow();
+        }
+    }
+
     protected void removeHouseKeepingTasks()
     {
         BlockingQueue<Runnable> taskQueue = _houseKeepingTaskExecutor.getQueue();
@@ -1184,6 +1203,24 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         return _houseKeepingTaskExecutor.schedule(task, delay, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public void executeReadAheadTask(final String name, final Runnable task, final AccessControlContext context)
+    {
+        final ThreadPoolExecutor readAheadTaskExecutor = _readAheadTaskExecutor;
+        if(readAheadTaskExecutor == null)
+        {
+            throw new RejectedExecutionException("Virtual host '" + getName() + "' is not active");
+        }
+        readAheadTaskExecutor.execute(new HouseKeepingTask(name, this, context)
+        {
+            @Override
+            public void execute()
+            {
+                task.run();
+            }
+        });
+    }
+
     @Override
     public void executeTask(final String name, final Runnable task, AccessControlContext context)
     {
@@ -1451,6 +1488,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     {
         _dtxRegistry.close();
         shutdownHouseKeeping();
+        shutdownReadAhead();
         closeMessageStore();
         stopPreferenceTaskExecutor();
         closePreferenceStore();
@@ -1576,6 +1614,11 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         {
             connection.resetStatistics();
         }
+
+        for (Queue<?> queue : getChildren(Queue.class))
+        {
+            queue.resetLatencyStatistics();
+        }
     }
 
     public synchronized LinkRegistry getLinkRegistry(String remoteContainerId)
@@ -1938,6 +1981,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
             public void copy(QueueEntry entry, final Queue<?> queue)
             {
                 final ServerMessage message = entry.getMessage();
+                message.markRerouted();
 
                 txn.enqueue(queue, message, new ServerTransaction.EnqueueAction()
                 {
@@ -1958,6 +2002,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
                 final ServerMessage message = entry.getMessage();
                 if(entry.acquire())
                 {
+                    message.markRerouted();
                     txn.enqueue(queue, message,
                                 new ServerTransaction.EnqueueAction()
                                 {
@@ -2072,6 +2117,27 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         return getMessageDeliveryStatistics().getTotal();
     }
 
+    @Override
+    public long getRecoveredMessages()
+    {
+        MessageStoreRecoverer messageStoreRecoverer = _messageStoreRecoverer;
+        return messageStoreRecoverer == null ? 0 : messageStoreRecoverer.getRecoveredMessageCount();
+    }
+
+    @Override
+    public long getRecoveredQueueEntries()
+    {
+        MessageStoreRecoverer messageStoreRecoverer = _messageStoreRecoverer;
+        return messageStoreRecoverer == null ? 0 : messageStoreRecoverer.getRecoveredQueueEntryCount();
+    }
+
+    @Override
+    public long getRecoveryDuration()
+    {
+        MessageStoreRecoverer messageStoreRecoverer = _messageStoreRecoverer;
+        return messageStoreRecoverer == null ? 0 : messageStoreRecoverer.getRecoveryDuration();
+    }
+
     @Override
     public int getHousekeepingThreadCount()
     {
@@ -2090,6 +2156,12 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         return _numberOfSelectors;
     }
 
+    @Override
+    public boolean isConnectionThreadAffinity()
+    {
+        return _connectionThreadAffinity;
+    }
+
     @StateTransition( currentState = { State.UNINITIALIZED, State.ACTIVE, State.ERRORED }, desiredState = State.STOPPED )
     protected ListenableFuture<Void> doStop()
     {
@@ -2107,6 +2179,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
             public void run()
             {
                 shutdownHouseKeeping();
+                shutdownReadAhead();
                 closeNetworkConnectionScheduler();
                 closeMessageStore();
                 stopPreferenceTaskExecutor();
@@ -2347,7 +2420,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         Collection<Queue> queues = getChildren(Queue.class);
         long totalSize = calculateTotalEnqueuedSize(queues);
         _logger.debug("Allocating target size to queues, total target: {} ; total enqueued size {}", targetSize, totalSize);
-        if(targetSize > 0l)
+        if(targetSize >= 0l)
         {
             for (Queue<?> q : queues)
             {
@@ -2359,6 +2432,19 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         }
     }
 
+    @Override
+    public void setBlockedForDirectMemory(final boolean blocked)
+    {
+        if (blocked)
+        {
+            block(BlockingType.DIRECT_MEMORY);
+        }
+        else
+        {
+            unblock(BlockingType.DIRECT_MEMORY);
+        }
+    }
+
     @Override
     public long getTotalQueueDepthBytes()
     {
@@ -2488,6 +2574,20 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
 
         long threadPoolKeepAliveTimeout = getContextValue(Long.class, CONNECTION_THREAD_POOL_KEEP_ALIVE_TIMEOUT);
 
+        // each queue has at most one read-ahead task outstanding, so the number of queues bounds the work queue
+        final int readAheadThreadCount = getContextValue(Integer.class, READ_AHEAD_THREAD_COUNT);
+        final ThreadPoolExecutor readAheadTaskExecutor =
+                new ThreadPoolExecutor(readAheadThreadCount,
+                                       readAheadThreadCount,
+                                       threadPoolKeepAliveTimeout,
+                                       TimeUnit.MINUTES,
+                                       new LinkedBlockingQueue<Runnable>(),
+                                       new SuppressingInheritedAccessControlContextThreadFactory(
+                                               "virtualhost-" + getName() + "-readahead",
+                                               getSystemTaskSubject("Read Ahead", getPrincipal())));
+        readAheadTaskExecutor.allowCoreThreadTimeOut(true);
+        _readAheadTaskExecutor = readAheadTaskExecutor;
+
         final SuppressingInheritedAccessControlContextThreadFactory connectionThreadFactory =
                 new SuppressingInheritedAccessControlContextThreadFactory("virtualhost-" + getName() + "-iopool",
                                                                           getSystemTaskSubject("IO Pool", getPrincipal()));
@@ -2496,6 +2596,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
                                                                      getNumberOfSelectors(),
                                                                      getConnectionThreadPoolSize(),
                                                                      threadPoolKeepAliveTimeout,
+                                                                     isConnectionThreadAffinity(),
                                                                      connectionThreadFactory);
         _networkConnectionScheduler.start();
 
@@ -21,21 +21,33 @@
 package org.apache.qpid.server.virtualhost;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +60,7 @@ import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.plugin.MessageMetaDataType;
 import org.apache.qpid.server.queue.QueueEntry;
+import org.apache.qpid.server.queue.QueueRecoveryPager;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StorableMessageMetaData;
@@ -55,6 +68,7 @@ import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.Transaction;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
 import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 import org.apache.qpid.server.txn.DtxBranch;
 import org.apache.qpid.server.txn.DtxRegistry;
@@ -67,7 +81,7 @@ import org.apache.qpid.transport.util.Functions;
 public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
 {
     private static final Logger _logger = LoggerFactory.getLogger(AsynchronousMessageStoreRecoverer.class);
-    private AsynchronousRecoverer _asynchronousRecoverer;
+    private volatile AsynchronousRecoverer _asynchronousRecoverer;
 
     @Override
     public ListenableFuture<Void> recover(final VirtualHost<?> virtualHost)
@@ -86,11 +100,33 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         }
     }
 
+    @Override
+    public long getRecoveredMessageCount()
+    {
+        AsynchronousRecoverer asynchronousRecoverer = _asynchronousRecoverer;
+        return asynchronousRecoverer == null ? 0 : asynchronousRecoverer.getRecoveredMessageCount();
+    }
+
+    @Override
+    public long getRecoveredQueueEntryCount()
+    {
+        AsynchronousRecoverer asynchronousRecoverer = _asynchronousRecoverer;
+        return asynchronousRecoverer == null ? 0 : asynchronousRecoverer.getRecoveredQueueEntryCount();
+    }
+
+    @Override
+    public long getRecoveryDuration()
+    {
+        AsynchronousRecoverer asynchronousRecoverer = _asynchronousRecoverer;
+        return asynchronousRecoverer == null ? 0 : asynchronousRecoverer.getRecoveryDuration();
+    }
+
     private static class AsynchronousRecoverer
     {
         private static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousRecoverer.class);
 
         public static final int THREAD_POOL_SHUTDOWN_TIMEOUT = 5000;
+        private static final long PROGRESS_LOG_INTERVAL = 10000L;
         private final VirtualHost<?> _virtualHost;
         private final EventLogger _eventLogger;
         private final MessageStore _store;
@@ -102,6 +138,23 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         private final ListeningExecutorService _queueRecoveryExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
         private final MessageStore.MessageStoreReader _storeReader;
         private AtomicBoolean _continueRecovery = new AtomicBoolean(true);
+        private final int _rangeSize;
+        private final int _rangeRecoveryThreads;
+        private final ExecutorService _rangeRecoveryExecutor;
+        private final AtomicLong _recoveredMessageCount = new AtomicLong();
+        private final AtomicLong _recoveredQueueEntryCount = new AtomicLong();
+        private volatile long _recoveryStartTime;
+        private volatile long _recoveryEndTime;
+        private final int _lazyRecoveryPageSize;
+        private final List<LazyQueueRecoverer> _lazyRecoverers = new ArrayList<>();
+        private final Set<LazyQueueRecoverer> _activeLazyRecoverers = new CopyOnWriteArraySet<>();
+        private final ConcurrentSkipListSet<Long> _lazilyRecoveredMessageIds = new ConcurrentSkipListSet<>();
+        private final Object _pinnedMessagesLock = new Object();
+        // orphans are checked for by one thread at a time, rather than under a lock, as the check reads the store
+        private final AtomicBoolean _orphanCheckRunning = new AtomicBoolean();
+        private final AtomicBoolean _orphanCheckRequested = new AtomicBoolean();
+        private final SettableFuture<Void> _lazyRecoveryFuture = SettableFuture.create();
+        private long _orphanCheckedMessageId;
 
         private AsynchronousRecoverer(final VirtualHost<?> virtualHost)
         {
@@ -115,14 +168,48 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             Collection children = _virtualHost.getChildren(Queue.class);
             _recoveringQueues.addAll((Collection<? extends Queue<?>>) children);
 
+            _rangeSize = getContextValue(virtualHost, Integer.class, VirtualHost.RANGED_RECOVERY_RANGE_SIZE,
+                                         VirtualHost.DEFAULT_RANGED_RECOVERY_RANGE_SIZE);
+            _rangeRecoveryThreads = Math.max(1, getContextValue(virtualHost, Integer.class,
+                                                                VirtualHost.RANGED_RECOVERY_THREADS,
+                                                                VirtualHost.DEFAULT_RANGED_RECOVERY_THREADS));
+            _lazyRecoveryPageSize = getContextValue(virtualHost, Integer.class, VirtualHost.LAZY_RECOVERY_PAGE_SIZE,
+                                                    VirtualHost.DEFAULT_LAZY_RECOVERY_PAGE_SIZE);
+            _rangeRecoveryExecutor = _rangeSize > 0 && _lazyRecoveryPageSize <= 0
+                    ? Executors.newFixedThreadPool(_rangeRecoveryThreads)
+                    : null;
+        }
+
+        private static <T> T getContextValue(final VirtualHost<?> virtualHost,
+                                             final Class<T> type,
+                                             final String name,
+                                             final T defaultValue)
+        {
+            return virtualHost.getContextKeys(false).contains(name)
+                    ? virtualHost.getContextValue(type, name)
+                    : defaultValue;
         }
 
         public ListenableFuture<Void> recover()
         {
+            _recoveryStartTime = System.currentTimeMillis();
             getStoreReader().visitDistributedTransactions(new DistributedTransactionVisitor());
 
             List<ListenableFuture<Void>> queueRecoveryFutures = new ArrayList<>();
-            if(_recoveringQueues.isEmpty())
+            if ((_lazyRecoveryPageSize > 0 || _rangeRecoveryExecutor != null) && _recoveryComplete.get())
+            {
+                // every queue had to be recovered synchronously for distributed transaction recovery
+                return Futures.immediateFuture(null);
+            }
+            else if (_lazyRecoveryPageSize > 0)
+            {
+                return recoverLazily();
+            }
+            else if (_rangeRecoveryExecutor != null)
+            {
+                return _queueRecoveryExecutor.submit(new RangedRecoveringTask(), null);
+            }
+            else if(_recoveringQueues.isEmpty())
             {
                 return _queueRecoveryExecutor.submit(new RemoveOrphanedMessagesTask(), null);
             }
@@ -165,6 +252,23 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             return _logSubject;
         }
 
+        public long getRecoveredMessageCount()
+        {
+            return _recoveredMessageCount.get();
+        }
+
+        public long getRecoveredQueueEntryCount()
+        {
+            return _recoveredQueueEntryCount.get();
+        }
+
+        public long getRecoveryDuration()
+        {
+            long startTime = _recoveryStartTime;
+            long endTime = _recoveryEndTime;
+            return startTime == 0 ? 0 : (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+        }
+
         private boolean isRecovering(Queue<?> queue)
         {
             return _recoveringQueues.contains(queue);
@@ -174,6 +278,7 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         {
             MessageInstanceVisitor handler = new MessageInstanceVisitor(queue);
             _storeReader.visitMessageInstances(queue, handler);
+            _recoveredQueueEntryCount.addAndGet(handler.getRecoveredCount());
 
             getEventLogger().message(getLogSubject(), TransactionLogMessages.RECOVERED(handler.getRecoveredCount(), queue.getName()));
             getEventLogger().message(getLogSubject(), TransactionLogMessages.RECOVERY_COMPLETE(queue.getName(), true));
@@ -223,6 +328,7 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             messagesToDelete.clear();
             _recoveredMessages.clear();
             _storeReader.close();
+            _recoveryEndTime = System.currentTimeMillis();
         }
 
         private synchronized ServerMessage<?> getRecoveredMessage(final long messageId)
@@ -233,24 +339,33 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 StoredMessage<?> message = _storeReader.getMessage(messageId);
                 if(message != null)
                 {
-                    StorableMessageMetaData metaData = message.getMetaData();
-
-                    @SuppressWarnings("rawtypes")
-                    MessageMetaDataType type = metaData.getType();
-
-                    @SuppressWarnings("unchecked")
-                    ServerMessage<?> serverMessage = type.createMessage(message);
-
-                    ref = serverMessage.newReference();
+                    ref = createServerMessage(message).newReference();
                     _recoveredMessages.put(messageId, ref);
+                    _recoveredMessageCount.incrementAndGet();
                 }
             }
             return ref == null ? null : ref.getMessage();
         }
 
+        private ServerMessage<?> createServerMessage(final StoredMessage<?> message)
+        {
+            StorableMessageMetaData metaData = message.getMetaData();
+
+            @SuppressWarnings("rawtypes")
+            MessageMetaDataType type = metaData.getType();
+
+            @SuppressWarnings("unchecked")
+            ServerMessage<?> serverMessage = type.createMessage(message);
+            return serverMessage;
+        }
+
         public void cancel()
         {
             _continueRecovery.set(false);
+            if (_rangeRecoveryExecutor != null)
+            {
+                _rangeRecoveryExecutor.shutdown();
+            }
             _queueRecoveryExecutor.shutdown();
             try
             {
@@ -259,6 +374,10 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 {
                     _logger.warn("Failed to gracefully shutdown queue recovery executor within permitted time period");
                     _queueRecoveryExecutor.shutdownNow();
+                    if (_rangeRecoveryExecutor != null)
+                    {
+                        _rangeRecoveryExecutor.shutdownNow();
+                    }
                 }
             }
             catch (InterruptedException e)
@@ -268,6 +387,386 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             _storeReader.close();
         }
 
+        private void recoverRanges()
+        {
+            final Map<Queue<?>, AtomicLong> queueRecoveries = new HashMap<>();
+            for (Queue<?> queue : _recoveringQueues)
+            {
+                queueRecoveries.put(queue, new AtomicLong());
+            }
+
+            long lastProgressLogTime = System.currentTimeMillis();
+            long fromMessageId = 0L;
+            boolean lastRange = false;
+            while (!lastRange && _continueRecovery.get())
+            {
+                MessageIdCollector collector = new MessageIdCollector(_rangeSize);
+                _storeReader.visitMessageIds(fromMessageId, _maxMessageId, collector);
+
+                lastRange = !collector.isFull();
+                long toMessageId = lastRange ? _maxMessageId : collector.getLastMessageId() + 1;
+                recoverRange(new RecoveryRange(fromMessageId, toMessageId, collector), queueRecoveries);
+                fromMessageId = toMessageId;
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgressLogTime >= PROGRESS_LOG_INTERVAL)
+                {
+                    lastProgressLogTime = now;
+                    logProgress("Recovery in progress");
+                }
+            }
+
+            if (_continueRecovery.get())
+            {
+                for (Map.Entry<Queue<?>, AtomicLong> entry : queueRecoveries.entrySet())
+                {
+                    Queue<?> queue = entry.getKey();
+                    getEventLogger().message(getLogSubject(),
+                                             TransactionLogMessages.RECOVERED(entry.getValue().get(), queue.getName()));
+                    getEventLogger().message(getLogSubject(),
+                                             TransactionLogMessages.RECOVERY_COMPLETE(queue.getName(), true));
+                    queue.completeRecovery();
+                    _recoveringQueues.remove(queue);
+                }
+                _recoveryComplete.set(true);
+            }
+
+            synchronized (this)
+            {
+                for (MessageReference<? extends ServerMessage<?>> ref : _recoveredMessages.values())
+                {
+                    ref.release();
+                }
+                _recoveredMessages.clear();
+            }
+            _storeReader.close();
+            _recoveryEndTime = System.currentTimeMillis();
+            logProgress("Recovery complete");
+        }
+
+        /**
+         * Recovers the queue entries of the given range.  The entries of every queue within the range are visited
+         * first, so that the meta data is loaded only for the messages that some queue references.
+         */
+        private void recoverRange(final RecoveryRange range, final Map<Queue<?>, AtomicLong> queueRecoveries)
+        {
+            boolean allQueuesVisited = false;
+            try
+            {
+                List<QueueRangeRecoveringTask> queueTasks = new ArrayList<>();
+                for (Map.Entry<Queue<?>, AtomicLong> entry : queueRecoveries.entrySet())
+                {
+                    queueTasks.add(new QueueRangeRecoveringTask(entry.getKey(), range, entry.getValue()));
+                }
+                List<Runnable> scanTasks = new ArrayList<>();
+                for (QueueRangeRecoveringTask queueTask : queueTasks)
+                {
+                    scanTasks.add(queueTask.getScanTask());
+                }
+                runInParallel(scanTasks);
+                allQueuesVisited = _continueRecovery.get();
+
+                int sliceSize = Math.max(1, (range.getSize() + _rangeRecoveryThreads - 1) / _rangeRecoveryThreads);
+                List<Runnable> loadTasks = new ArrayList<>();
+                for (int start = 0; start < range.getSize(); start += sliceSize)
+                {
+                    loadTasks.add(new MessageLoadingTask(range, start, Math.min(range.getSize(), start + sliceSize)));
+                }
+                runInParallel(loadTasks);
+
+                runInParallel(new ArrayList<Runnable>(queueTasks));
+            }
+            finally
+            {
+                // messages of the range not referenced by a queue are only orphans if every queue was visited
+                range.release(allQueuesVisited,
+                              allQueuesVisited
+                              && getVirtualHost().getTotalQueueDepthBytes() > getVirtualHost().getTargetSize());
+            }
+        }
+
+        private void discardUnknownMessageInstance(final Queue<?> queue, final MessageEnqueueRecord record)
+        {
+            _logger.warn("Message id "
+                         + record.getMessageNumber()
+                         + " referenced in log as enqueued in queue "
+                         + queue.getName()
+                         + " is unknown, entry will be discarded");
+            Transaction txn = _store.newTransaction();
+            txn.dequeueMessage(record);
+            txn.commitTranAsync((Void) null);
+        }
+
+        private ListenableFuture<Void> recoverLazily()
+        {
+            List<LazyQueueRecoverer> recoverers = new ArrayList<>();
+            for (Queue<?> queue : _recoveringQueues)
+            {
+                recoverers.add(new LazyQueueRecoverer(queue));
+            }
+            // every recoverer must be active before any of them pages so that a message paged in by one of them is
+            // pinned for every other that has yet to page it in
+            _lazyRecoverers.addAll(recoverers);
+            _activeLazyRecoverers.addAll(recoverers);
+
+            if (recoverers.isEmpty())
+            {
+                _queueRecoveryExecutor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        lazyRecoveryAdvanced();
+                    }
+                });
+            }
+            else
+            {
+                for (LazyQueueRecoverer recoverer : recoverers)
+                {
+                    recoverer.start();
+                }
+            }
+            return _lazyRecoveryFuture;
+        }
+
+        /**
+         * Returns a reference to the message with the given id for the given recoverer, or null if the message is not
+         * in the store.  A message is loaded from the store only once: when a recoverer loads a message, it takes a
+         * reference to it on behalf of every other recoverer yet to page the message in whose queue holds an instance
+         * of it, as found by {@link #getInstancesOnLaggingRecoverers(LazyQueueRecoverer, long, long)}.  A recoverer
+         * holding more than a page of such messages has the content of those furthest ahead flowed to disk, which are
+         * added to the given list.  The caller must release the returned reference once the message has been
+         * recovered onto its queue.
+         */
+        private MessageReference<? extends ServerMessage<?>> getLazilyRecoveredMessage(final LazyQueueRecoverer recoverer,
+                                                                                        final long messageId,
+                                                                                        final Map<LazyQueueRecoverer, Set<Long>> laggingInstances,
+                                                                                        final List<ServerMessage<?>> messagesToFlow)
+        {
+            // the map of messages recovered by distributed transaction recovery is no longer written
+            MessageReference<? extends ServerMessage<?>> ref = _recoveredMessages.get(messageId);
+            if (ref != null)
+            {
+                return ref.getMessage().newReference();
+            }
+
+            synchronized (_pinnedMessagesLock)
+            {
+                ref = recoverer.unpinMessage(messageId);
+            }
+            if (ref == null)
+            {
+                StoredMessage<?> storedMessage = _storeReader.getMessage(messageId);
+                if (storedMessage == null)
+                {
+                    return null;
+                }
+                ServerMessage<?> message = createServerMessage(storedMessage);
+                synchronized (_pinnedMessagesLock)
+                {
+                    // another recoverer may have loaded the message meanwhile, in which case it is pinned for this one
+                    ref = recoverer.unpinMessage(messageId);
+                    if (ref == null)
+                    {
+                        ref = message.newReference();
+                        _lazilyRecoveredMessageIds.add(messageId);
+                        _recoveredMessageCount.incrementAndGet();
+                        for (Map.Entry<LazyQueueRecoverer, Set<Long>> entry : laggingInstances.entrySet())
+                        {
+                            final LazyQueueRecoverer other = entry.getKey();
+                            if (other.getPassedMessageId() <= messageId && entry.getValue().contains(messageId))
+                            {
+                                final ServerMessage<?> furthestPinned = other.pinMessage(messageId, message.newReference());
+                                if (furthestPinned != null)
+                                {
+                                    messagesToFlow.add(furthestPinned);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return ref;
+        }
+
+        /**
+         * Returns the ids of the instances within the given range on the queues of the active recoverers, other than
+         * the given one, which have yet to pass the end of the range.  Each queue is visited once for the whole range.
+         */
+        private Map<LazyQueueRecoverer, Set<Long>> getInstancesOnLaggingRecoverers(final LazyQueueRecoverer recoverer,
+                                                                                   final long fromMessageId,
+                                                                                   final long toMessageId)
+        {
+            Map<LazyQueueRecoverer, Set<Long>> laggingInstances = new HashMap<>();
+            for (LazyQueueRecoverer other : _activeLazyRecoverers)
+            {
+                final long passedMessageId = other.getPassedMessageId();
+                if (other != recoverer && passedMessageId < toMessageId)
+                {
+                    final Set<Long> messageIds = other.getEnqueuedMessageIds(Math.max(fromMessageId, passedMessageId),
+                                                                             toMessageId);
+                    if (!messageIds.isEmpty())
+                    {
+                        laggingInstances.put(other, messageIds);
+                    }
+                }
+            }
+            return laggingInstances;
+        }
+
+        /**
+         * Called whenever a lazy recoverer has paged in entries.  Messages in the store below the highest id that a
+         * recoverer has passed that were paged in by no recoverer, and have no instance on a queue whose recoverer
+         * has yet to pass them, are in no queue and are removed.  A call made while another thread is checking for
+         * orphans returns at once, leaving that thread to check again.
+         */
+        private void lazyRecoveryAdvanced()
+        {
+            _orphanCheckRequested.set(true);
+            while (_orphanCheckRequested.get() && _orphanCheckRunning.compareAndSet(false, true))
+            {
+                try
+                {
+                    _orphanCheckRequested.set(false);
+                    removeLazyRecoveryOrphans();
+                    completeLazyRecoveryIfNecessary();
+                }
+                finally
+                {
+                    _orphanCheckRunning.set(false);
+                }
+            }
+        }
+
+        // called by one thread at a time
+        private void removeLazyRecoveryOrphans()
+        {
+            long passedMessageId = _orphanCheckedMessageId;
+            for (LazyQueueRecoverer recoverer : _lazyRecoverers)
+            {
+                passedMessageId = Math.max(passedMessageId, recoverer.getPassedMessageId());
+            }
+
+            if (passedMessageId > _orphanCheckedMessageId && _continueRecovery.get())
+            {
+                final List<Long> unrecoveredMessageIds = new ArrayList<>();
+                _storeReader.visitMessageIds(_orphanCheckedMessageId, passedMessageId, new MessageIdHandler()
+                {
+                    @Override
+                    public boolean handle(final long messageId)
+                    {
+                        if (!_lazilyRecoveredMessageIds.contains(messageId)
+                            && !_recoveredMessages.containsKey(messageId))
+                        {
+                            unrecoveredMessageIds.add(messageId);
+                        }
+                        return _continueRecovery.get();
+                    }
+                });
+
+                if (!unrecoveredMessageIds.isEmpty())
+                {
+                    // the recoverers are visited before the recovered ids are checked, as a recoverer records the id
+                    // of a message it pages in before it moves past it
+                    final Set<Long> laggingMessageIds = new HashSet<>();
+                    for (Set<Long> messageIds : getInstancesOnLaggingRecoverers(null,
+                                                                               unrecoveredMessageIds.get(0),
+                                                                               passedMessageId).values())
+                    {
+                        laggingMessageIds.addAll(messageIds);
+                    }
+
+                    for (long messageId : unrecoveredMessageIds)
+                    {
+                        if (!laggingMessageIds.contains(messageId)
+                            && !_lazilyRecoveredMessageIds.contains(messageId)
+                            && _continueRecovery.get())
+                        {
+                            StoredMessage<?> storedMessage = _storeReader.getMessage(messageId);
+                            if (storedMessage != null)
+                            {
+                                _logger.info("Message id " + messageId + " in store, but not in any queue - removing....");
+                                storedMessage.remove();
+                            }
+                        }
+                    }
+                }
+
+                _lazilyRecoveredMessageIds.headSet(passedMessageId).clear();
+                _orphanCheckedMessageId = passedMessageId;
+            }
+        }
+
+        // called by one thread at a time
+        private void completeLazyRecoveryIfNecessary()
+        {
+            if (_activeLazyRecoverers.isEmpty() && _recoveryComplete.compareAndSet(false, true))
+            {
+                synchronized (this)
+                {
+                    for (MessageReference<? extends ServerMessage<?>> ref : _recoveredMessages.values())
+                    {
+                        ref.release();
+                    }
+                    _recoveredMessages.clear();
+                }
+                _storeReader.close();
+                _recoveryEndTime = System.currentTimeMillis();
+                logProgress("Recovery complete");
+                _lazyRecoveryFuture.set(null);
+            }
+        }
+
+        private void runInParallel(final List<Runnable> tasks)
+        {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks)
+            {
+                futures.add(_rangeRecoveryExecutor.submit(task));
+            }
+
+            RuntimeException failure = null;
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ServerScopedRuntimeException("Interrupted during message store recovery", e);
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new ServerScopedRuntimeException("Failure during message store recovery", e.getCause());
+                    }
+                }
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+
+        private void logProgress(final String prefix)
+        {
+            long duration = getRecoveryDuration();
+            long recoveredMessages = getRecoveredMessageCount();
+            _logger.info("{} for virtualhost '{}' : {} messages and {} queue entries recovered in {} ms ({} messages/s)",
+                         prefix,
+                         getVirtualHost().getName(),
+                         recoveredMessages,
+                         getRecoveredQueueEntryCount(),
+                         duration,
+                         duration == 0 ? recoveredMessages : recoveredMessages * 1000L / duration);
+        }
+
 
         private class DistributedTransactionVisitor implements DistributedTransactionHandler
         {
@@ -467,6 +966,446 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         }
 
 
+        private class RangedRecoveringTask implements Runnable
+        {
+            @Override
+            public void run()
+            {
+                String originalThreadName = Thread.currentThread().getName();
+                Thread.currentThread().setName("Ranged Recoverer (vh: " + getVirtualHost().getName() + ")");
+
+                try
+                {
+                    recoverRanges();
+                }
+                finally
+                {
+                    _rangeRecoveryExecutor.shutdown();
+                    Thread.currentThread().setName(originalThreadName);
+                }
+            }
+        }
+
+        private class LazyQueueRecoverer implements QueueRecoveryPager
+        {
+            private final Queue<?> _queue;
+            private final AtomicInteger _outstandingEntries = new AtomicInteger();
+            private final AtomicBoolean _paging = new AtomicBoolean();
+            private final NavigableMap<Long, MessageReference<? extends ServerMessage<?>>> _pinnedMessages = new TreeMap<>();
+            private volatile long _nextMessageId;
+            private volatile boolean _done;
+            private volatile boolean _pagingAhead;
+            private long _recoveredCount;
+
+            private LazyQueueRecoverer(final Queue<?> queue)
+            {
+                _queue = queue;
+            }
+
+            private void start()
+            {
+                _queue.recoverLazily(this);
+                pageInAsync();
+            }
+
+            /**
+             * Returns the id below which the recoverer has visited every instance on its queue.
+             */
+            private long getPassedMessageId()
+            {
+                return _done ? _maxMessageId : _nextMessageId;
+            }
+
+            private Set<Long> getEnqueuedMessageIds(final long fromMessageId, final long toMessageId)
+            {
+                final Set<Long> messageIds = new HashSet<>();
+                _storeReader.visitMessageInstances(_queue, fromMessageId, toMessageId, new MessageInstanceHandler()
+                {
+                    @Override
+                    public boolean handle(final MessageEnqueueRecord record)
+                    {
+                        messageIds.add(record.getMessageNumber());
+                        return _continueRecovery.get();
+                    }
+                });
+                return messageIds;
+            }
+
+            /**
+             * Called holding the pinned messages lock.
+             *
+             * @return the pinned message furthest ahead, if more than a page of messages is pinned, otherwise null
+             */
+            private ServerMessage<?> pinMessage(final long messageId,
+                                                final MessageReference<? extends ServerMessage<?>> ref)
+            {
+                _pinnedMessages.put(messageId, ref);
+                return _pinnedMessages.size() > _lazyRecoveryPageSize
+                        ? _pinnedMessages.lastEntry().getValue().getMessage()
+                        : null;
+            }
+
+            // called holding the pinned messages lock
+            private MessageReference<? extends ServerMessage<?>> unpinMessage(final long messageId)
+            {
+                return _pinnedMessages.remove(messageId);
+            }
+
+            private void releasePinnedMessages(final long toMessageId)
+            {
+                synchronized (_pinnedMessagesLock)
+                {
+                    Map<Long, MessageReference<? extends ServerMessage<?>>> passedMessages =
+                            _pinnedMessages.headMap(toMessageId);
+                    for (MessageReference<? extends ServerMessage<?>> ref : passedMessages.values())
+                    {
+                        ref.release();
+                    }
+                    passedMessages.clear();
+                }
+            }
+
+            @Override
+            public void entryDequeued()
+            {
+                if (_outstandingEntries.decrementAndGet() <= _lazyRecoveryPageSize / 2)
+                {
+                    pageInAsync();
+                }
+            }
+
+            @Override
+            public void entryHeld(final int heldEntries)
+            {
+                // the messages held back until recovery completes are only bounded once the queue's remaining entries
+                // are paged in, so once a page worth is held the remaining entries are paged in without waiting
+                if (heldEntries >= _lazyRecoveryPageSize && !_pagingAhead)
+                {
+                    _pagingAhead = true;
+                    pageInAsync();
+                }
+            }
+
+            private void pageInAsync()
+            {
+                if (!_done && _continueRecovery.get() && _paging.compareAndSet(false, true))
+                {
+                    try
+                    {
+                        _queueRecoveryExecutor.submit(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                pageIn();
+                            }
+                        });
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        // recovery has been cancelled
+                        _paging.set(false);
+                    }
+                }
+            }
+
+            private void pageIn()
+            {
+                String originalThreadName = Thread.currentThread().getName();
+                Thread.currentThread().setName("Queue Recoverer : " + _queue.getName() + " (vh: " + getVirtualHost().getName() + ")");
+
+                try
+                {
+                    if (_queue.isDeleted())
+                    {
+                        discardRemainingEntries();
+                        _done = true;
+                    }
+                    else
+                    {
+                        final List<MessageEnqueueRecord> page = new ArrayList<>(_lazyRecoveryPageSize);
+                        _storeReader.visitMessageInstances(_queue, _nextMessageId, _maxMessageId, new MessageInstanceHandler()
+                        {
+                            @Override
+                            public boolean handle(final MessageEnqueueRecord record)
+                            {
+                                page.add(record);
+                                return _continueRecovery.get() && page.size() < _lazyRecoveryPageSize;
+                            }
+                        });
+                        recoverPage(page);
+                        _done = page.size() < _lazyRecoveryPageSize;
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    _lazyRecoveryFuture.setException(e);
+                    return;
+                }
+                finally
+                {
+                    Thread.currentThread().setName(originalThreadName);
+                }
+
+                if (!_continueRecovery.get())
+                {
+                    return;
+                }
+
+                // a message pinned for the recoverer that it has passed without paging in is no longer needed by it
+                releasePinnedMessages(getPassedMessageId());
+
+                if (_done)
+                {
+                    if (!_queue.isDeleted())
+                    {
+                        getEventLogger().message(getLogSubject(),
+                                                 TransactionLogMessages.RECOVERED(_recoveredCount, _queue.getName()));
+                        getEventLogger().message(getLogSubject(),
+                                                 TransactionLogMessages.RECOVERY_COMPLETE(_queue.getName(), true));
+                        _queue.completeRecovery();
+                    }
+                    _recoveringQueues.remove(_queue);
+                    _activeLazyRecoverers.remove(this);
+                }
+
+                try
+                {
+                    lazyRecoveryAdvanced();
+                }
+                catch (RuntimeException e)
+                {
+                    _lazyRecoveryFuture.setException(e);
+                    return;
+                }
+
+                _paging.set(false);
+                if (_pagingAhead || _outstandingEntries.get() <= _lazyRecoveryPageSize / 2)
+                {
+                    pageInAsync();
+                }
+            }
+
+            private void discardRemainingEntries()
+            {
+                _storeReader.visitMessageInstances(_queue, _nextMessageId, _maxMessageId, new MessageInstanceHandler()
+                {
+                    @Override
+                    public boolean handle(final MessageEnqueueRecord record)
+                    {
+                        Transaction txn = _store.newTransaction();
+                        txn.dequeueMessage(record);
+                        txn.commitTranAsync((Void) null);
+                        _nextMessageId = record.getMessageNumber() + 1;
+                        return _continueRecovery.get();
+                    }
+                });
+            }
+
+            private void recoverPage(final List<MessageEnqueueRecord> page)
+            {
+                if (page.isEmpty())
+                {
+                    return;
+                }
+                final Map<LazyQueueRecoverer, Set<Long>> laggingInstances =
+                        getInstancesOnLaggingRecoverers(this,
+                                                        page.get(0).getMessageNumber(),
+                                                        page.get(page.size() - 1).getMessageNumber() + 1);
+                final List<ServerMessage<?>> messagesToFlow = new ArrayList<>();
+                for (MessageEnqueueRecord record : page)
+                {
+                    if (!_continueRecovery.get())
+                    {
+                        return;
+                    }
+                    long messageId = record.getMessageNumber();
+                    MessageReference<? extends ServerMessage<?>> ref =
+                            getLazilyRecoveredMessage(this, messageId, laggingInstances, messagesToFlow);
+                    if (ref != null)
+                    {
+                        if (_logger.isDebugEnabled())
+                        {
+                            _logger.debug("On recovery, delivering " + messageId + " to " + _queue.getName());
+                        }
+
+                        _outstandingEntries.incrementAndGet();
+                        try
+                        {
+                            _queue.recover(ref.getMessage(), record);
+                        }
+                        finally
+                        {
+                            ref.release();
+                        }
+                        _recoveredCount++;
+                        _recoveredQueueEntryCount.incrementAndGet();
+                    }
+                    else
+                    {
+                        discardUnknownMessageInstance(_queue, record);
+                    }
+                    _nextMessageId = messageId + 1;
+                }
+
+                // flowed only now that they are on this recoverer's queue, lest recovering them onto it read them back
+                for (ServerMessage<?> message : messagesToFlow)
+                {
+                    final StoredMessage<?> storedMessage = message.getStoredMessage();
+                    if (storedMessage != null)
+                    {
+                        storedMessage.flowToDisk();
+                    }
+                }
+            }
+        }
+
+        private class MessageLoadingTask implements Runnable
+        {
+            private final RecoveryRange _range;
+            private final int _start;
+            private final int _end;
+
+            private MessageLoadingTask(final RecoveryRange range, final int start, final int end)
+            {
+                _range = range;
+                _start = start;
+                _end = end;
+            }
+
+            @Override
+            public void run()
+            {
+                for (int i = _start; i < _end && _continueRecovery.get(); i++)
+                {
+                    long messageId = _range.getMessageId(i);
+                    // messages recovered by distributed transaction recovery are not loaded a second time
+                    if (_range.isReferenced(i) && !_recoveredMessages.containsKey(messageId))
+                    {
+                        StoredMessage<?> message = _storeReader.getMessage(messageId);
+                        if (message != null)
+                        {
+                            _range.setMessage(i, createServerMessage(message).newReference());
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Recovers the entries of a queue within a range in two steps: the scan task collects the queue's enqueue
+         * records within the range and marks the messages they reference, and once those messages are loaded the
+         * task itself recovers the records onto the queue.
+         */
+        private class QueueRangeRecoveringTask implements Runnable
+        {
+            private final Queue<?> _queue;
+            private final RecoveryRange _range;
+            private final AtomicLong _recoveredCount;
+            private final List<MessageEnqueueRecord> _records = new ArrayList<>();
+
+            private QueueRangeRecoveringTask(final Queue<?> queue,
+                                             final RecoveryRange range,
+                                             final AtomicLong recoveredCount)
+            {
+                _queue = queue;
+                _range = range;
+                _recoveredCount = recoveredCount;
+            }
+
+            private Runnable getScanTask()
+            {
+                return new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        String originalThreadName = Thread.currentThread().getName();
+                        Thread.currentThread().setName(getThreadName());
+
+                        try
+                        {
+                            _storeReader.visitMessageInstances(_queue,
+                                                               _range.getFromMessageId(),
+                                                               _range.getToMessageId(),
+                                                               new RecordCollector());
+                        }
+                        finally
+                        {
+                            Thread.currentThread().setName(originalThreadName);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public void run()
+            {
+                String originalThreadName = Thread.currentThread().getName();
+                Thread.currentThread().setName(getThreadName());
+
+                try
+                {
+                    for (MessageEnqueueRecord record : _records)
+                    {
+                        if (!_continueRecovery.get())
+                        {
+                            break;
+                        }
+                        recoverInstance(record);
+                    }
+                }
+                finally
+                {
+                    Thread.currentThread().setName(originalThreadName);
+                }
+            }
+
+            private String getThreadName()
+            {
+                return "Queue Recoverer : " + _queue.getName() + " (vh: " + getVirtualHost().getName() + ")";
+            }
+
+            private void recoverInstance(final MessageEnqueueRecord record)
+            {
+                long messageId = record.getMessageNumber();
+                ServerMessage<?> message = _range.getMessage(messageId);
+                if (message == null)
+                {
+                    // the map of messages recovered by distributed transaction recovery is no longer written
+                    MessageReference<? extends ServerMessage<?>> ref = _recoveredMessages.get(messageId);
+                    message = ref == null ? null : ref.getMessage();
+                }
+
+                if (message != null)
+                {
+                    if (_logger.isDebugEnabled())
+                    {
+                        _logger.debug("On recovery, delivering " + messageId + " to " + _queue.getName());
+                    }
+
+                    _queue.recover(message, record);
+                    _recoveredCount.incrementAndGet();
+                    _recoveredQueueEntryCount.incrementAndGet();
+                }
+                else
+                {
+                    discardUnknownMessageInstance(_queue, record);
+                }
+            }
+
+            private class RecordCollector implements MessageInstanceHandler
+            {
+                @Override
+                public boolean handle(final MessageEnqueueRecord record)
+                {
+                    _range.markReferenced(record.getMessageNumber());
+                    _records.add(record);
+                    return _continueRecovery.get();
+                }
+            }
+        }
+
         private class RemoveOrphanedMessagesTask implements Runnable
         {
             public RemoveOrphanedMessagesTask()
@@ -547,6 +1486,141 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 return _recoveredCount;
             }
         }
+
+        private static class MessageIdCollector implements MessageIdHandler
+        {
+            private final long[] _messageIds;
+            private int _size;
+
+            private MessageIdCollector(final int capacity)
+            {
+                _messageIds = new long[capacity];
+            }
+
+            @Override
+            public boolean handle(final long messageId)
+            {
+                _messageIds[_size++] = messageId;
+                return !isFull();
+            }
+
+            private boolean isFull()
+            {
+                return _size == _messageIds.length;
+            }
+
+            private long getLastMessageId()
+            {
+                return _messageIds[_size - 1];
+            }
+        }
+
+        /**
+         * The messages of the store with ids in [fromMessageId, toMessageId).  The message ids are held sorted,
+         * alongside the references to the messages loaded for them, so that queue entries are matched to their
+         * messages by binary search rather than through a map.  Only the messages marked as referenced by a queue
+         * entry are loaded.
+         */
+        private class RecoveryRange
+        {
+            private final long _fromMessageId;
+            private final long _toMessageId;
+            private final long[] _messageIds;
+            private final int _size;
+            private final MessageReference<? extends ServerMessage<?>>[] _messages;
+            private final boolean[] _referenced;
+
+            @SuppressWarnings("unchecked")
+            private RecoveryRange(final long fromMessageId, final long toMessageId, final MessageIdCollector collector)
+            {
+                _fromMessageId = fromMessageId;
+                _toMessageId = toMessageId;
+                _messageIds = collector._messageIds;
+                _size = collector._size;
+                _messages = new MessageReference[_size];
+                _referenced = new boolean[_size];
+            }
+
+            private long getFromMessageId()
+            {
+                return _fromMessageId;
+            }
+
+            private long getToMessageId()
+            {
+                return _toMessageId;
+            }
+
+            private int getSize()
+            {
+                return _size;
+            }
+
+            private long getMessageId(final int index)
+            {
+                return _messageIds[index];
+            }
+
+            private void setMessage(final int index, final MessageReference<? extends ServerMessage<?>> ref)
+            {
+                _messages[index] = ref;
+            }
+
+            private void markReferenced(final long messageId)
+            {
+                int index = Arrays.binarySearch(_messageIds, 0, _size, messageId);
+                if (index >= 0)
+                {
+                    _referenced[index] = true;
+                }
+            }
+
+            private boolean isReferenced(final int index)
+            {
+                return _referenced[index];
+            }
+
+            private ServerMessage<?> getMessage(final long messageId)
+            {
+                int index = Arrays.binarySearch(_messageIds, 0, _size, messageId);
+                if (index >= 0 && _messages[index] != null)
+                {
+                    return _messages[index].getMessage();
+                }
+                return null;
+            }
+
+            private void release(final boolean removeOrphans, final boolean flowToDisk)
+            {
+                for (int i = 0; i < _size; i++)
+                {
+                    MessageReference<? extends ServerMessage<?>> ref = _messages[i];
+                    if (ref != null)
+                    {
+                        ServerMessage<?> message = ref.getMessage();
+                        _recoveredMessageCount.incrementAndGet();
+                        ref.release();
+                        if (flowToDisk)
+                        {
+                            message.getStoredMessage().flowToDisk();
+                        }
+                        _messages[i] = null;
+                    }
+                    else if (removeOrphans
+                             && !_referenced[i]
+                             && !_recoveredMessages.containsKey(_messageIds[i])
+                             && _continueRecovery.get())
+                    {
+                        StoredMessage<?> storedMessage = _storeReader.getMessage(_messageIds[i]);
+                        if (storedMessage != null)
+                        {
+                            _logger.info("Message id " + _messageIds[i] + " in store, but not in any queue - removing....");
+                            storedMessage.remove();
+                        }
+                    }
+                }
+            }
+        }
     }
 
 
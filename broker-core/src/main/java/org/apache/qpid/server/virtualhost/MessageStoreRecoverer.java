@@ -33,4 +33,19 @@ public interface MessageStoreRecoverer
      * completed, this method call has no effect.
      */
     void cancel();
+
+    /**
+     * Returns the number of messages recovered so far.
+     */
+    long getRecoveredMessageCount();
+
+    /**
+     * Returns the number of queue entries recovered so far.
+     */
+    long getRecoveredQueueEntryCount();
+
+    /**
+     * Returns the time in milliseconds for which recovery has been running, or took to complete.
+     */
+    long getRecoveryDuration();
 }
@@ -60,10 +60,15 @@ import org.apache.qpid.transport.util.Functions;
 public class SynchronousMessageStoreRecoverer implements MessageStoreRecoverer
 {
     private static final Logger _logger = LoggerFactory.getLogger(SynchronousMessageStoreRecoverer.class);
+    private volatile long _recoveredMessageCount;
+    private volatile long _recoveredQueueEntryCount;
+    private volatile long _recoveryStartTime;
+    private volatile long _recoveryEndTime;
 
     @Override
     public ListenableFuture<Void> recover(VirtualHost<?> virtualHost)
     {
+        _recoveryStartTime = System.currentTimeMillis();
         EventLogger eventLogger = virtualHost.getEventLogger();
         MessageStore store = virtualHost.getMessageStore();
         MessageStore.MessageStoreReader storeReader = store.newMessageStoreReader();
@@ -83,6 +88,7 @@ public class SynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                                                                recoveredMessages, unusedMessages));
         for(Map.Entry<String,Integer> entry : queueRecoveries.entrySet())
         {
+            _recoveredQueueEntryCount += entry.getValue();
             eventLogger.message(logSubject, TransactionLogMessages.RECOVERED(entry.getValue(), entry.getKey()));
             eventLogger.message(logSubject, TransactionLogMessages.RECOVERY_COMPLETE(entry.getKey(), true));
             virtualHost.getAttainedChildFromAddress(Queue.class, entry.getKey()).completeRecovery();
@@ -108,8 +114,9 @@ public class SynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         }
         eventLogger.message(logSubject, TransactionLogMessages.RECOVERY_COMPLETE(null, false));
 
-        eventLogger.message(logSubject,
-                             MessageStoreMessages.RECOVERED(recoveredMessages.size() - unusedMessages.size()));
+        _recoveredMessageCount = recoveredMessages.size() - unusedMessages.size();
+        _recoveryEndTime = System.currentTimeMillis();
+        eventLogger.message(logSubject, MessageStoreMessages.RECOVERED(_recoveredMessageCount));
         eventLogger.message(logSubject, MessageStoreMessages.RECOVERY_COMPLETE());
 
         return Futures.immediateFuture(null);
@@ -121,6 +128,26 @@ public class SynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         // No-op
     }
 
+    @Override
+    public long getRecoveredMessageCount()
+    {
+        return _recoveredMessageCount;
+    }
+
+    @Override
+    public long getRecoveredQueueEntryCount()
+    {
+        return _recoveredQueueEntryCount;
+    }
+
+    @Override
+    public long getRecoveryDuration()
+    {
+        long startTime = _recoveryStartTime;
+        long endTime = _recoveryEndTime;
+        return startTime == 0 ? 0 : (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
     private static class MessageVisitor implements MessageHandler
     {
 
@@ -154,6 +154,12 @@ class RedirectingVirtualHostImpl
         throwUnsupportedForRedirector();
     }
 
+    @Override
+    public void executeReadAheadTask(final String name, final Runnable task, final AccessControlContext context)
+    {
+        throwUnsupportedForRedirector();
+    }
+
     @Override
     protected <C extends ConfiguredObject> ListenableFuture<C> addChildAsync(final Class<C> childClass,
                                                                              final Map<String, Object> attributes,
@@ -254,6 +260,12 @@ class RedirectingVirtualHostImpl
         return 0;
     }
 
+    @Override
+    public boolean isConnectionThreadAffinity()
+    {
+        return false;
+    }
+
     @Override
     public long getQueueCount()
     {
@@ -296,6 +308,24 @@ class RedirectingVirtualHostImpl
         return 0;
     }
 
+    @Override
+    public long getRecoveredMessages()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveredQueueEntries()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveryDuration()
+    {
+        return 0;
+    }
+
     @Override
     public Collection<? extends Connection<?>> getConnections()
     {
@@ -405,6 +435,12 @@ class RedirectingVirtualHostImpl
         return 0l;
     }
 
+    @Override
+    public void setBlockedForDirectMemory(final boolean blocked)
+    {
+
+    }
+
     @Override
     public void scheduleHouseKeepingTask(final long period, final HouseKeepingTask task)
     {
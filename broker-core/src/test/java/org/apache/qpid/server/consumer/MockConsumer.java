@@ -45,6 +45,7 @@ import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.Session;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.ConsumerListener;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.util.StateChangeListener;
@@ -293,6 +294,7 @@ public class MockConsumer implements ConsumerTarget
     private static class MockSessionModel implements AMQSessionModel<MockSessionModel>
     {
         private final UUID _id = UUID.randomUUID();
+        private final LatencyStatistics _latencyStatistics = new LatencyStatistics();
         private Session _modelObject;
 
         private MockSessionModel()
@@ -373,6 +375,12 @@ public class MockConsumer implements ConsumerTarget
             return 0;
         }
 
+        @Override
+        public LatencyStatistics getLatencyStatistics()
+        {
+            return _latencyStatistics;
+        }
+
         @Override
         public Long getTxnCount()
         {
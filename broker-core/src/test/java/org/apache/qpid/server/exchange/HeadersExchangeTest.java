@@ -247,6 +247,29 @@ public class HeadersExchangeTest extends QpidTestCase
 
     }
 
+    public void testIndexedBindings() throws Exception
+    {
+        List<Queue<?>> queues = new ArrayList<>();
+        for(int i = 0; i < 20; i++)
+        {
+            queues.add(createAndBind("Q" + i, "F0000=V" + i, "F0001"));
+        }
+        Queue<?> any = createAndBind("QAny", "F0000=V3", "F0002", "X-match=any");
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=V3", "F0001")), queues.get(3), any);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=V4")));
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0002")), any);
+
+        _exchange.replaceBinding("Q4", queues.get(4), getArgsMapFromStrings("F0000=V3"));
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=V3", "F0001")), queues.get(3), queues.get(4), any);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=V4", "F0001")));
+
+        _exchange.deleteBinding("Q3", queues.get(3));
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=V3", "F0001")), queues.get(4), any);
+    }
+
     private ServerMessage mockMessage(final Map<String, Object> headerValues)
     {
         final AMQMessageHeader header = mock(AMQMessageHeader.class);
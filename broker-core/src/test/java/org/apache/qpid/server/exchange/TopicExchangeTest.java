@@ -52,7 +52,7 @@ import org.apache.qpid.test.utils.QpidTestCase;
 public class TopicExchangeTest extends QpidTestCase
 {
 
-    private TopicExchange _exchange;
+    private TopicExchangeImpl _exchange;
     private VirtualHost<?> _vhost;
 
 
@@ -67,7 +67,7 @@ public class TopicExchangeTest extends QpidTestCase
         attributes.put(Exchange.DURABLE, false);
         attributes.put(Exchange.TYPE, ExchangeDefaults.TOPIC_EXCHANGE_CLASS);
 
-        _exchange = (TopicExchange) _vhost.createChild(Exchange.class, attributes, _vhost);
+        _exchange = (TopicExchangeImpl) _vhost.createChild(Exchange.class, attributes, _vhost);
         _exchange.open();
     }
 
@@ -467,6 +467,40 @@ public class TopicExchangeTest extends QpidTestCase
         _exchange.delete();
     }
 
+    public void testRoutingCacheInvalidatedByBindingChange() throws Exception
+    {
+        Queue<?> queue1 = createQueue("queue1");
+        Queue<?> queue2 = createQueue("queue2");
+        createBinding(UUID.randomUUID(), "a.*", queue1, _exchange, null);
+
+        Assert.assertEquals(1, routeMessage("a.b", 0l));
+        Assert.assertEquals(1, routeMessage("a.b", 1l));
+        Assert.assertEquals("Unexpected cache misses", 1, _exchange.getRoutingCacheMisses());
+        Assert.assertEquals("Unexpected cache hits", 1, _exchange.getRoutingCacheHits());
+
+        createBinding(UUID.randomUUID(), "a.b", queue2, _exchange, null);
+
+        Assert.assertEquals(2, routeMessage("a.b", 2l));
+        Assert.assertEquals("Unexpected cache misses", 2, _exchange.getRoutingCacheMisses());
+        Assert.assertEquals(3, queue1.getQueueDepthMessages());
+        Assert.assertEquals(1, queue2.getQueueDepthMessages());
+    }
+
+    public void testCachedRoutingNotChangedByCaller() throws Exception
+    {
+        Queue<?> queue = createQueue("queue1");
+        createBinding(UUID.randomUUID(), "a.*", queue, _exchange, null);
+
+        ServerMessage message = mock(ServerMessage.class);
+        when(message.getInitialRoutingAddress()).thenReturn("a.b");
+        List<? extends BaseQueue> queues = _exchange.route(message, "a.b", InstanceProperties.EMPTY);
+        Assert.assertEquals(1, queues.size());
+        queues.clear();
+
+        Assert.assertEquals("Unexpected number of queues routed to", 1, routeMessage("a.b", 1l));
+        Assert.assertEquals("Unexpected cache hits", 1, _exchange.getRoutingCacheHits());
+    }
+
     private BindingImpl createBinding(UUID id,
                                       String bindingKey,
                                       Queue<?> queue,
@@ -48,6 +48,7 @@ import org.apache.qpid.server.security.AccessControl;
 import org.apache.qpid.server.security.Result;
 import org.apache.qpid.server.security.SecurityToken;
 import org.apache.qpid.server.security.access.Operation;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.store.DurableConfigurationStore;
 import org.apache.qpid.server.store.preferences.PreferenceStore;
 import org.apache.qpid.server.transport.AMQPConnection;
@@ -226,6 +227,7 @@ public class BrokerTestHelper
         AMQSessionModel session = mock(AMQSessionModel.class);
         when(session.getAMQPConnection()).thenReturn(connection);
         when(session.getChannelId()).thenReturn(channelId);
+        when(session.getLatencyStatistics()).thenReturn(new LatencyStatistics());
         return session;
     }
 
@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -66,6 +67,7 @@ public class BrokerImplTest extends QpidTestCase
     private SystemConfig _systemConfig;
     private BrokerImpl _brokerImpl;
     private PreferenceStore _preferenceStore;
+    private final Map<String, Boolean> _blockedForDirectMemory = new ConcurrentHashMap<>();
 
     @Override
     public void setUp() throws Exception
@@ -129,6 +131,48 @@ public class BrokerImplTest extends QpidTestCase
                                flowToDiskThreshold);
     }
 
+    public void testDirectMemoryHighWatermark()
+    {
+        final long flowToDiskThreshold = 1024 * 1024;
+        final long highWatermark = 4 * 1024 * 1024;
+        final long lowWatermark = 2 * 1024 * 1024;
+        Map<String, Object> context = new HashMap<>();
+        context.put(Broker.BROKER_FLOW_TO_DISK_THRESHOLD, flowToDiskThreshold);
+        context.put(Broker.BROKER_DIRECT_MEMORY_HIGH_WATERMARK, highWatermark);
+        context.put(Broker.BROKER_DIRECT_MEMORY_LOW_WATERMARK, lowWatermark);
+        context.put(Broker.BROKER_DIRECT_MEMORY_CHECK_PERIOD, 0L);
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("name", "Broker");
+        attributes.put(Broker.MODEL_VERSION, BrokerModel.MODEL_VERSION);
+        attributes.put(Broker.DURABLE, true);
+        attributes.put("context", context);
+        _brokerImpl = new BrokerImpl(attributes, _systemConfig);
+        _brokerImpl.open();
+        assertEquals("Unexpected broker state", State.ACTIVE, _brokerImpl.getState());
+
+        createVhnWithVh(_brokerImpl, 0, flowToDiskThreshold / 2);
+        final VirtualHost<?> vh = _brokerImpl.getVirtualHostNodes().iterator().next().getVirtualHost();
+
+        _brokerImpl.checkDirectMemoryUsage(highWatermark);
+        assertEquals("Unexpected target size below the high watermark", flowToDiskThreshold, vh.getTargetSize());
+        assertNull("Virtual host unexpectedly blocked", _blockedForDirectMemory.get("testVh0"));
+
+        _brokerImpl.checkDirectMemoryUsage(highWatermark + 1);
+        assertEquals("Messages should be flowed to disk above the high watermark", 0L, vh.getTargetSize());
+        assertEquals("Virtual host not blocked", Boolean.TRUE, _blockedForDirectMemory.get("testVh0"));
+
+        _brokerImpl.checkDirectMemoryUsage(lowWatermark + flowToDiskThreshold / 4);
+        assertEquals("Unexpected target size between the watermarks",
+                     flowToDiskThreshold / 4, vh.getTargetSize());
+        assertEquals("Virtual host unblocked above the low watermark",
+                     Boolean.TRUE, _blockedForDirectMemory.get("testVh0"));
+
+        _brokerImpl.checkDirectMemoryUsage(lowWatermark - 1);
+        assertEquals("Unexpected target size below the low watermark", flowToDiskThreshold, vh.getTargetSize());
+        assertEquals("Virtual host not unblocked", Boolean.FALSE, _blockedForDirectMemory.get("testVh0"));
+    }
+
     public void testNetworkBufferSize()
     {
         Map<String, Object> attributes = new HashMap<>();
@@ -289,6 +333,13 @@ public class BrokerImplTest extends QpidTestCase
             {
                 return totalQueueSize;
             }
+
+            @Override
+            public void setBlockedForDirectMemory(final boolean blocked)
+            {
+                _blockedForDirectMemory.put(getName(), blocked);
+                super.setBlockedForDirectMemory(blocked);
+            }
         };
         vh.create();
     }
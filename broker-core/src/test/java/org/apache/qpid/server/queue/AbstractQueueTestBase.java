@@ -31,6 +31,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -54,6 +55,8 @@ import org.apache.qpid.exchange.ExchangeDefaults;
 import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.consumer.MockConsumer;
 import org.apache.qpid.server.exchange.DirectExchange;
+import org.apache.qpid.server.filter.FilterManager;
+import org.apache.qpid.server.filter.JMSSelectorFilter;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.InstanceProperties;
 import org.apache.qpid.server.message.MessageInstance;
@@ -63,7 +66,10 @@ import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.QueueNotificationListener;
 import org.apache.qpid.server.queue.AbstractQueue.QueueEntryFilter;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.txn.AutoCommitTransaction;
+import org.apache.qpid.server.txn.ServerTransaction;
 import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.model.BrokerTestHelper;
 import org.apache.qpid.test.utils.QpidTestCase;
@@ -231,6 +237,78 @@ abstract class AbstractQueueTestBase extends QpidTestCase
                    _consumer.getQueueContext().getReleasedEntry());
     }
 
+    public void testEnqueueBatchThenRegisterConsumer() throws Exception
+    {
+        ServerMessage messageA = createMessage(new Long(24));
+        ServerMessage messageB = createMessage(new Long(25));
+        ServerMessage messageC = createMessage(new Long(26));
+
+        final ArrayList<QueueEntry> queueEntries = new ArrayList<QueueEntry>();
+        _queue.enqueue(Arrays.asList(messageA, messageB, messageC),
+                       new EntryListAddingAction(queueEntries),
+                       Arrays.<MessageEnqueueRecord>asList(null, null, null));
+
+        assertEquals("Unexpected number of entries passed to post enqueue action", 3, queueEntries.size());
+        assertEquals("Unexpected queue depth", 3, _queue.getQueueDepthMessages());
+        assertEquals("Unexpected total enqueued count", 3, _queue.getTotalEnqueuedMessages());
+
+        _consumer = (QueueConsumer<?>) _queue.addConsumer(_consumerTarget, null, messageA.getClass(), "test",
+                                                          EnumSet.of(ConsumerImpl.Option.ACQUIRES,
+                                                                     ConsumerImpl.Option.SEES_REQUEUES), 0);
+        Thread.sleep(_queueRunnerWaitTime);
+        assertEquals("Unexpected number of messages delivered", 3, _consumerTarget.getMessages().size());
+        assertEquals(messageC, _consumer.getQueueContext().getLastSeenEntry().getMessage());
+    }
+
+    public void testConsumerWithIndexedSelectorOnlySeesMatchingEntries() throws Exception
+    {
+        ServerMessage messageA = createMessage(24L, (byte) 4, Collections.<String, Object>singletonMap("region", "EU"), 0L);
+        ServerMessage messageB = createMessage(25L, (byte) 4, Collections.<String, Object>singletonMap("region", "US"), 0L);
+        ServerMessage messageC = createMessage(26L, (byte) 4, Collections.<String, Object>singletonMap("region", "EU"), 0L);
+        ServerMessage messageD = createMessage(27L, (byte) 4, Collections.<String, Object>singletonMap("region", "US"), 0L);
+        ServerMessage messageE = createMessage(28L, (byte) 4, Collections.<String, Object>singletonMap("region", "EU"), 0L);
+
+        _queue.enqueue(messageA, null, null);
+        _queue.enqueue(messageB, null, null);
+        _queue.enqueue(messageC, null, null);
+
+        FilterManager filters = new FilterManager();
+        filters.add("selector", new JMSSelectorFilter("region = 'EU'"));
+        _consumer = (QueueConsumer<?>) _queue.addConsumer(_consumerTarget, filters, messageA.getClass(), "test",
+                                                          EnumSet.of(ConsumerImpl.Option.ACQUIRES,
+                                                                     ConsumerImpl.Option.SEES_REQUEUES), 0);
+
+        _queue.enqueue(messageD, null, null);
+        _queue.enqueue(messageE, null, null);
+        Thread.sleep(_queueRunnerWaitTime);
+
+        List<MessageInstance> messages = _consumerTarget.getMessages();
+        assertEquals("Unexpected number of messages delivered", 3, messages.size());
+        assertEquals("Unexpected first message", messageA, messages.get(0).getMessage());
+        assertEquals("Unexpected second message", messageC, messages.get(1).getMessage());
+        assertEquals("Unexpected third message", messageE, messages.get(2).getMessage());
+    }
+
+    public void testMessageSentTwiceInEnqueueBatchIsEnqueuedOnce() throws Exception
+    {
+        ServerMessage message = createMessage(new Long(24));
+        ServerTransaction txn = new AutoCommitTransaction(_virtualHost.getMessageStore());
+
+        EnqueueBatch.begin();
+        try
+        {
+            _queue.send(message, "test", InstanceProperties.EMPTY, txn, null);
+            _queue.send(message, "test", InstanceProperties.EMPTY, txn, null);
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        assertEquals("Unexpected queue depth", 1, _queue.getQueueDepthMessages());
+        assertEquals("Unexpected total enqueued count", 1, _queue.getTotalEnqueuedMessages());
+    }
+
     public void testMessageHeldIfNotYetValidWhenConsumerAdded() throws Exception
     {
         _queue.close();
@@ -0,0 +1,265 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.BrokerModel;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.model.ConfiguredObjectFactoryImpl;
+import org.apache.qpid.server.model.LifetimePolicy;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.TransactionLogResource;
+
+public class ConcurrentSortedQueueEntryListTest extends QueueEntryListTestBase
+{
+    private static final String[] KEYS = SortedQueueEntryListTest.keys;
+
+    private final String[] _keysSorted = KEYS.clone();
+    private SortedQueueImpl _testQueue;
+    private ConcurrentSortedQueueEntryList _list;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<String,Object>();
+        attributes.put(Queue.ID,UUID.randomUUID());
+        attributes.put(Queue.NAME, getName());
+        attributes.put(Queue.DURABLE, false);
+        attributes.put(Queue.LIFETIME_POLICY, LifetimePolicy.PERMANENT);
+        attributes.put(SortedQueue.SORT_KEY, "KEY");
+        attributes.put(SortedQueue.CONCURRENT_ENTRY_LIST, true);
+
+        final VirtualHost virtualHost = mock(VirtualHost.class);
+        when(virtualHost.getEventLogger()).thenReturn(new EventLogger());
+        ConfiguredObjectFactory factory = new ConfiguredObjectFactoryImpl(BrokerModel.getInstance());
+        when(virtualHost.getObjectFactory()).thenReturn(factory);
+        when(virtualHost.getModel()).thenReturn(factory.getModel());
+        when(virtualHost.getPrincipal()).thenReturn(mock(Principal.class));
+        TaskExecutor taskExecutor = CurrentThreadTaskExecutor.newStartedInstance();
+        when(virtualHost.getTaskExecutor()).thenReturn(taskExecutor);
+        when(virtualHost.getChildExecutor()).thenReturn(taskExecutor);
+        _testQueue = new SortedQueueImpl(attributes, virtualHost);
+        _testQueue.open();
+        _list = (ConcurrentSortedQueueEntryList) _testQueue.getEntries();
+
+        super.setUp();
+
+        Arrays.sort(_keysSorted);
+
+        long messageId = 0L;
+        for(final String key : KEYS)
+        {
+            _list.add(generateTestMessage(messageId++, key), null);
+        }
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntryList getTestList()
+    {
+        return getTestList(false);
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntryList getTestList(boolean newList)
+    {
+        if(newList)
+        {
+            return new ConcurrentSortedQueueEntryList(_testQueue);
+        }
+        else
+        {
+            return _list;
+        }
+    }
+
+    public int getExpectedListLength()
+    {
+        return KEYS.length;
+    }
+
+    public long getExpectedFirstMsgId()
+    {
+        return 67L;
+    }
+
+    public ServerMessage getTestMessageToAdd()
+    {
+        return generateTestMessage(1, "test value");
+    }
+
+    @Override
+    protected SortedQueueImpl getTestQueue()
+    {
+        return _testQueue;
+    }
+
+    public void testIterator()
+    {
+        super.testIterator();
+
+        final QueueEntryIterator iter = getTestList().iterator();
+        int count = 0;
+        while(iter.advance())
+        {
+            assertEquals("Sorted queue entry value does not match sorted key array",
+                         _keysSorted[count++], iter.getNode().getMessage().getMessageHeader().getHeader("KEY"));
+        }
+        assertEquals("Unexpected number of entries", KEYS.length, count);
+    }
+
+    public void testNullAndNonUniqueSortKeysOrderedByArrival()
+    {
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+        _list.add(generateTestMessage(0, "B"), null);
+        _list.add(generateTestMessage(1, null), null);
+        _list.add(generateTestMessage(2, "B"), null);
+        _list.add(generateTestMessage(3, null), null);
+        _list.add(generateTestMessage(4, "A"), null);
+
+        final long[] expectedIds = {1, 3, 4, 0, 2};
+        final QueueEntryIterator iter = _list.iterator();
+        int count = 0;
+        while(iter.advance())
+        {
+            assertEquals("Message id not as expected",
+                         expectedIds[count++], iter.getNode().getMessage().getMessageNumber());
+        }
+        assertEquals("Unexpected number of entries", expectedIds.length, count);
+    }
+
+    public void testNextOfDeletedEntry()
+    {
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+        final QueueEntry first = _list.add(generateTestMessage(1, "A"), null);
+        final QueueEntry second = _list.add(generateTestMessage(2, "B"), null);
+        final QueueEntry third = _list.add(generateTestMessage(3, "C"), null);
+
+        second.acquire();
+        second.delete();
+
+        assertEquals("Unexpected successor of first entry", third, _list.next(first));
+        assertEquals("Unexpected successor of deleted entry", third, _list.next(second));
+        assertEquals("Unexpected tail", third, _list.getTail());
+    }
+
+    public void testConcurrentAdd() throws Exception
+    {
+        final ConcurrentSortedQueueEntryList list = new ConcurrentSortedQueueEntryList(_testQueue);
+        final int threadCount = 4;
+        final int messagesPerThread = 500;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for(int t = 0; t < threadCount; t++)
+        {
+            final ServerMessage[] messages = new ServerMessage[messagesPerThread];
+            for(int i = 0; i < messagesPerThread; i++)
+            {
+                messages[i] = generateTestMessage((long) t * messagesPerThread + i,
+                                                  String.format("%05d", (i * 7919) % messagesPerThread));
+            }
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for(ServerMessage message : messages)
+                    {
+                        list.add(message, null);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        startLatch.countDown();
+        for(Thread thread : threads)
+        {
+            thread.join(10000L);
+        }
+
+        final QueueEntryIterator iter = list.iterator();
+        String previousKey = null;
+        int count = 0;
+        while(iter.advance())
+        {
+            final String key = (String) iter.getNode().getMessage().getMessageHeader().getHeader("KEY");
+            if(previousKey != null)
+            {
+                assertTrue("Entries out of order: " + previousKey + " before " + key, previousKey.compareTo(key) <= 0);
+            }
+            previousKey = key;
+            count++;
+        }
+        assertEquals("Unexpected number of entries", threadCount * messagesPerThread, count);
+    }
+
+    public void testConcurrentEntryListAttribute()
+    {
+        assertTrue("Concurrent entry list should have been selected", _testQueue.isConcurrentEntryList());
+    }
+
+    private ServerMessage generateTestMessage(final long id, final String keyValue)
+    {
+        final ServerMessage message = mock(ServerMessage.class);
+        AMQMessageHeader hdr = mock(AMQMessageHeader.class);
+        when(message.getMessageHeader()).thenReturn(hdr);
+        when(hdr.getHeader(eq("KEY"))).thenReturn(keyValue);
+        when(hdr.containsHeader(eq("KEY"))).thenReturn(true);
+        when(hdr.getHeaderNames()).thenReturn(Collections.singleton("KEY"));
+        MessageReference ref = mock(MessageReference.class);
+        when(ref.getMessage()).thenReturn(message);
+        when(message.newReference()).thenReturn(ref);
+        when(message.newReference(any(TransactionLogResource.class))).thenReturn(ref);
+        when(message.getMessageNumber()).thenReturn(id);
+
+        return message;
+    }
+}
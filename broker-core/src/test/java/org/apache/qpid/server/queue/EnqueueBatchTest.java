@@ -0,0 +1,228 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class EnqueueBatchTest extends QpidTestCase
+{
+    private BaseQueue _queue1;
+    private BaseQueue _queue2;
+    private Action<? super MessageInstance> _action;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _queue1 = mock(BaseQueue.class);
+        _queue2 = mock(BaseQueue.class);
+        _action = mock(Action.class);
+    }
+
+    public void testEnqueueWithoutBatchIsImmediate()
+    {
+        ServerMessage message = createMessage();
+        MessageEnqueueRecord record = mock(MessageEnqueueRecord.class);
+
+        EnqueueBatch.enqueue(_queue1, message, _action, record);
+
+        verify(_queue1).enqueue(message, _action, record);
+    }
+
+    public void testConsecutiveEnqueuesToQueueAppliedAsBatch()
+    {
+        ServerMessage message1 = createMessage();
+        ServerMessage message2 = createMessage();
+
+        EnqueueBatch.begin();
+        try
+        {
+            EnqueueBatch.enqueue(_queue1, message1, _action, null);
+            EnqueueBatch.enqueue(_queue1, message2, _action, null);
+
+            verify(_queue1, never()).enqueue(anyList(), any(Action.class), anyList());
+            verify(_queue1, never()).enqueue(any(ServerMessage.class), any(Action.class), any(MessageEnqueueRecord.class));
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        verify(_queue1).enqueue(Arrays.asList(message1, message2),
+                                _action,
+                                Arrays.<MessageEnqueueRecord>asList(null, null));
+
+        verify(message1.newReference()).release();
+        verify(message2.newReference()).release();
+    }
+
+    public void testEnqueueToOtherQueueAppliesPendingEnqueues()
+    {
+        ServerMessage message1 = createMessage();
+        ServerMessage message2 = createMessage();
+        ServerMessage message3 = createMessage();
+
+        EnqueueBatch.begin();
+        try
+        {
+            EnqueueBatch.enqueue(_queue1, message1, _action, null);
+            EnqueueBatch.enqueue(_queue2, message2, _action, null);
+
+            verify(_queue1).enqueue(message1, _action, null);
+            verify(_queue2, never()).enqueue(any(ServerMessage.class), any(Action.class), any(MessageEnqueueRecord.class));
+
+            EnqueueBatch.enqueue(_queue1, message3, _action, null);
+
+            verify(_queue2).enqueue(message2, _action, null);
+            verify(_queue1, never()).enqueue(message3, _action, null);
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        verify(_queue1).enqueue(message3, _action, null);
+    }
+
+    public void testFlushAppliesPendingEnqueues()
+    {
+        ServerMessage message = createMessage();
+
+        EnqueueBatch.begin();
+        try
+        {
+            EnqueueBatch.enqueue(_queue1, message, _action, null);
+            EnqueueBatch.flush();
+
+            verify(_queue1).enqueue(message, _action, null);
+            verify(message.newReference()).release();
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        verify(_queue1).enqueue(message, _action, null);
+    }
+
+    public void testPendingEnqueueIsReported()
+    {
+        ServerMessage message = createMessage();
+        ServerMessage otherMessage = createMessage();
+
+        EnqueueBatch.begin();
+        try
+        {
+            assertFalse(EnqueueBatch.isEnqueuePending(message));
+
+            EnqueueBatch.enqueue(_queue1, message, _action, null);
+
+            assertTrue(EnqueueBatch.isEnqueuePending(message));
+            assertTrue(EnqueueBatch.isEnqueuePending(_queue1, message));
+            assertFalse(EnqueueBatch.isEnqueuePending(_queue2, message));
+            assertFalse(EnqueueBatch.isEnqueuePending(_queue1, otherMessage));
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        assertFalse(EnqueueBatch.isEnqueuePending(_queue1, message));
+    }
+
+    public void testCompleteAfterFailureDoesNotThrow()
+    {
+        ServerMessage message = createMessage();
+        RuntimeException failure = new RuntimeException("Test");
+        doThrow(failure).when(_queue1).enqueue(message, _action, null);
+
+        EnqueueBatch.begin();
+        EnqueueBatch.enqueue(_queue1, message, _action, null);
+        EnqueueBatch.completeAfterFailure();
+
+        verify(_queue1).enqueue(message, _action, null);
+        verify(message.newReference()).release();
+        assertFalse(EnqueueBatch.isEnqueuePending(message));
+    }
+
+    public void testNestedBatchAppliedByOutermost()
+    {
+        ServerMessage message = createMessage();
+
+        EnqueueBatch.begin();
+        try
+        {
+            EnqueueBatch.begin();
+            try
+            {
+                EnqueueBatch.enqueue(_queue1, message, _action, null);
+            }
+            finally
+            {
+                EnqueueBatch.complete();
+            }
+            verify(_queue1, never()).enqueue(any(ServerMessage.class), any(Action.class), any(MessageEnqueueRecord.class));
+        }
+        finally
+        {
+            EnqueueBatch.complete();
+        }
+
+        verify(_queue1).enqueue(message, _action, null);
+    }
+
+    public void testCompleteWithoutBeginFails()
+    {
+        try
+        {
+            EnqueueBatch.complete();
+            fail("Exception not thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+    }
+
+    private ServerMessage createMessage()
+    {
+        ServerMessage message = mock(ServerMessage.class);
+        MessageReference reference = mock(MessageReference.class);
+        when(reference.getMessage()).thenReturn(message);
+        when(message.newReference()).thenReturn(reference);
+        return message;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.BrokerModel;
+import org.apache.qpid.server.model.ConfiguredObjectFactoryImpl;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class MessageGroupIndexTest extends QpidTestCase
+{
+    private static final String[] GROUPS = {"A", "B", "A", "C", "B", "A"};
+
+    private final MessageGroupIndex _index = new MessageGroupIndex();
+    private StandardQueueEntryList _list;
+    private QueueEntry[] _entries;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Map<String,Object> queueAttributes = new HashMap<String, Object>();
+        queueAttributes.put(Queue.ID, UUID.randomUUID());
+        queueAttributes.put(Queue.NAME, getName());
+        final VirtualHost virtualHost = mock(VirtualHost.class);
+        when(virtualHost.getEventLogger()).thenReturn(new EventLogger());
+        ConfiguredObjectFactoryImpl factory = new ConfiguredObjectFactoryImpl(BrokerModel.getInstance());
+        when(virtualHost.getObjectFactory()).thenReturn(factory);
+        when(virtualHost.getModel()).thenReturn(factory.getModel());
+        TaskExecutor taskExecutor = CurrentThreadTaskExecutor.newStartedInstance();
+        when(virtualHost.getTaskExecutor()).thenReturn(taskExecutor);
+        when(virtualHost.getChildExecutor()).thenReturn(taskExecutor);
+        when(virtualHost.getPrincipal()).thenReturn(mock(Principal.class));
+        StandardQueueImpl queue = new StandardQueueImpl(queueAttributes, virtualHost);
+        queue.open();
+        _list = queue.getEntries();
+
+        _entries = new QueueEntry[GROUPS.length];
+        for(int i = 0; i < GROUPS.length; i++)
+        {
+            final ServerMessage message = mock(ServerMessage.class);
+            when(message.getMessageNumber()).thenReturn((long) i);
+            MessageReference ref = mock(MessageReference.class);
+            when(ref.getMessage()).thenReturn(message);
+            when(message.newReference()).thenReturn(ref);
+            when(message.newReference(any(TransactionLogResource.class))).thenReturn(ref);
+
+            _entries[i] = _list.add(message, null);
+            _index.add(GROUPS[i], _entries[i]);
+        }
+    }
+
+    public void testFirstAvailableEntry()
+    {
+        assertSame("Unexpected first entry of group A", _entries[0], _index.getFirstAvailableEntry("A"));
+        assertSame("Unexpected first entry of group C", _entries[3], _index.getFirstAvailableEntry("C"));
+        assertNull("Unknown group should have no entries", _index.getFirstAvailableEntry("D"));
+
+        assertTrue("Could not acquire entry", _entries[0].acquire());
+        assertSame("Acquired entry should be skipped", _entries[2], _index.getFirstAvailableEntry("A"));
+    }
+
+    public void testNextAvailableEntryOfGroup()
+    {
+        assertSame("Unexpected entry of group A after head", _entries[0], _index.getNextAvailableEntry("A", _list.getHead()));
+        assertSame("Unexpected entry of group A after first", _entries[2], _index.getNextAvailableEntry("A", _entries[0]));
+        assertNull("No entry of group C should remain", _index.getNextAvailableEntry("C", _entries[3]));
+    }
+
+    public void testFindNextReadyEntryOmitsAssignedGroups()
+    {
+        _index.assign("A");
+        assertEquals("Unexpected number of ready groups", 2, _index.getReadyGroupCount());
+
+        assertSame("Unexpected entry after head", _entries[1], _index.findNextReadyEntry(_list.getHead(), null));
+        assertSame("Unexpected entry after second", _entries[3], _index.findNextReadyEntry(_entries[1], null));
+        assertSame("Unexpected entry after fourth", _entries[4], _index.findNextReadyEntry(_entries[3], null));
+        assertNull("No ready entries should remain", _index.findNextReadyEntry(_entries[4], null));
+        assertSame("Earlier entry found should be kept", _entries[0], _index.findNextReadyEntry(_list.getHead(), _entries[0]));
+
+        assertTrue("Could not acquire entry", _entries[3].acquire());
+        assertSame("Acquired entry should be skipped", _entries[4], _index.findNextReadyEntry(_entries[1], null));
+
+        _index.free("A");
+        assertEquals("Unexpected number of ready groups after free", 3, _index.getReadyGroupCount());
+        assertSame("Freed group should be ready", _entries[0], _index.findNextReadyEntry(_list.getHead(), null));
+    }
+
+    public void testAssignedGroupIsKeptWhenEmpty()
+    {
+        _index.assign("C");
+        _index.remove("C", _entries[3]);
+        assertEquals("Assigned group should be kept", 3, _index.getGroupCount());
+
+        _index.free("C");
+        assertEquals("Empty group should have been removed once freed", 2, _index.getGroupCount());
+    }
+
+    public void testDequeuedEntryIsNotIndexed()
+    {
+        final QueueEntry dequeuedEntry = mock(QueueEntry.class);
+        when(dequeuedEntry.isDeleted()).thenReturn(true);
+
+        _index.add("D", dequeuedEntry);
+        assertEquals("Group of a dequeued entry should not be kept", 3, _index.getGroupCount());
+        assertEquals("Unexpected number of ready groups", 3, _index.getReadyGroupCount());
+
+        _index.add("A", dequeuedEntry);
+        assertSame("Unexpected first entry of group A", _entries[0], _index.getFirstAvailableEntry("A"));
+    }
+
+    public void testRemove()
+    {
+        assertEquals("Unexpected number of groups", 3, _index.getGroupCount());
+
+        _index.remove("C", _entries[3]);
+        assertEquals("Empty group should have been removed", 2, _index.getGroupCount());
+        assertNull("Removed entry should not be found", _index.getFirstAvailableEntry("C"));
+
+        _index.remove("A", _entries[0]);
+        assertSame("Unexpected first entry of group A after removal", _entries[2], _index.getFirstAvailableEntry("A"));
+        assertSame("Ready group should be ordered by its new first entry",
+                   _entries[1], _index.findNextReadyEntry(_list.getHead(), null));
+    }
+}
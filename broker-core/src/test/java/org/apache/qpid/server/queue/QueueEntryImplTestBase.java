@@ -35,6 +35,7 @@ import java.util.UUID;
 import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
 import org.apache.qpid.server.configuration.updater.TaskExecutor;
 import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.InstanceProperties;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.MessageInstance.EntryState;
 import org.apache.qpid.server.message.MessageInstance.StealableConsumerAcquiredState;
@@ -275,6 +276,50 @@ public abstract class QueueEntryImplTestBase extends QpidTestCase
         assertTrue("Queue entry should have been rejected by the consumer", _queueEntry.isRejectedBy(sub2));
     }
 
+    public void testDeliveryCountAndFlags()
+    {
+        assertFalse("Queue entry should not yet have been delivered", _queueEntry.getDeliveredToConsumer());
+        assertEquals("Unexpected delivery count", 0, _queueEntry.getDeliveryCount());
+
+        _queueEntry.incrementDeliveryCount();
+        _queueEntry.incrementDeliveryCount();
+        _queueEntry.setRedelivered();
+
+        assertTrue("Queue entry should have been delivered", _queueEntry.getDeliveredToConsumer());
+        assertTrue("Queue entry should be marked redelivered", _queueEntry.isRedelivered());
+        assertEquals("Redelivered property not set",
+                     Boolean.TRUE,
+                     _queueEntry.getInstanceProperties().getProperty(InstanceProperties.Property.REDELIVERED));
+        assertEquals("Unexpected delivery count", 2, _queueEntry.getDeliveryCount());
+
+        _queueEntry.decrementDeliveryCount();
+        _queueEntry.decrementDeliveryCount();
+        _queueEntry.decrementDeliveryCount();
+
+        assertEquals("Unexpected delivery count", 0, _queueEntry.getDeliveryCount());
+        assertTrue("Queue entry should still be marked redelivered", _queueEntry.isRedelivered());
+        assertTrue("Queue entry should still have been delivered", _queueEntry.getDeliveredToConsumer());
+    }
+
+    public void testExpiration()
+    {
+        assertFalse("Queue entry should not have expired", _queueEntry.expired());
+        assertEquals("Unexpected expiration",
+                     0L,
+                     _queueEntry.getInstanceProperties().getProperty(InstanceProperties.Property.EXPIRATION));
+
+        long expiration = System.currentTimeMillis() - 1000L;
+        _queueEntry.setExpiration(expiration);
+
+        assertTrue("Queue entry should have expired", _queueEntry.expired());
+        assertEquals("Unexpected expiration",
+                     expiration,
+                     _queueEntry.getInstanceProperties().getProperty(InstanceProperties.Property.EXPIRATION));
+
+        _queueEntry.setExpiration(0L);
+        assertFalse("Queue entry should no longer expire", _queueEntry.expired());
+    }
+
     /**
      * Tests if entries in DEQUEUED or DELETED state are not returned by getNext method.
      */
@@ -20,15 +20,27 @@
  */
 package org.apache.qpid.server.queue;
 
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.security.AccessController;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.configuration.IllegalConfigurationException;
 import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.consumer.ConsumerTarget;
 import org.apache.qpid.server.consumer.MockConsumer;
@@ -39,6 +51,7 @@ import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.store.MessageDurability;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.StoredMessage;
 
 public class StandardQueueTest extends AbstractQueueTestBase
 {
@@ -256,6 +269,167 @@ public class StandardQueueTest extends AbstractQueueTestBase
         assertEquals(MessageDurability.NEVER, queue.getMessageDurability());
     }
 
+    public void testDeliveryToConsumersPartitionedAcrossRunners() throws Exception
+    {
+        int messageNumber = 20;
+
+        Map<String,Object> attributes = new HashMap<>();
+        attributes.put(Queue.NAME, "testDeliveryRunners");
+        attributes.put(Queue.DELIVERY_RUNNERS, 2);
+
+        Queue<?> queue = getVirtualHost().createChild(Queue.class, attributes);
+        assertEquals("Unexpected number of delivery runners", 2, queue.getDeliveryRunners());
+
+        enqueueGivenNumberOfMessages(queue, messageNumber);
+
+        final CountDownLatch latch = new CountDownLatch(messageNumber);
+        List<MockConsumer> targets = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            MockConsumer target = new MockConsumer()
+            {
+                @Override
+                public long send(final ConsumerImpl consumer, MessageInstance entry, boolean batch)
+                {
+                    long size = super.send(consumer, entry, batch);
+                    latch.countDown();
+                    return size;
+                }
+            };
+            targets.add(target);
+            queue.addConsumer(target,
+                              null,
+                              createMessage(-1l).getClass(),
+                              "test" + i,
+                              EnumSet.of(ConsumerImpl.Option.ACQUIRES,
+                                         ConsumerImpl.Option.SEES_REQUEUES), 0);
+        }
+
+        assertTrue("Not all messages were delivered", latch.await(10, TimeUnit.SECONDS));
+
+        Set<Long> received = new HashSet<>();
+        for (MockConsumer target : targets)
+        {
+            for (MessageInstance instance : target.getMessages())
+            {
+                assertTrue("Message delivered more than once: " + instance.getMessage().getMessageNumber(),
+                           received.add(instance.getMessage().getMessageNumber()));
+            }
+        }
+        assertEquals("Unexpected number of messages delivered", messageNumber, received.size());
+    }
+
+    public void testDeliveryRunnersMustBePositive() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<>();
+        attributes.put(Queue.NAME, "testDeliveryRunners");
+        attributes.put(Queue.DELIVERY_RUNNERS, 0);
+
+        try
+        {
+            getVirtualHost().createChild(Queue.class, attributes);
+            fail("Exception not thrown");
+        }
+        catch (IllegalConfigurationException e)
+        {
+            // pass
+        }
+    }
+
+    public void testContentOfFlowedMessagesReadAheadOfConsumer() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<>();
+        attributes.put(Queue.NAME, "testReadAhead");
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.READ_AHEAD_ENTRIES, "100"));
+
+        Queue<?> queue = getVirtualHost().createChild(Queue.class, attributes);
+
+        List<StoredMessage> storedMessages = new ArrayList<>();
+        for (long i = 0; i < 3; i++)
+        {
+            ServerMessage message = createMessage(i);
+            StoredMessage storedMessage = mock(StoredMessage.class);
+            when(storedMessage.isInMemory()).thenReturn(false);
+            when(storedMessage.getContent(anyInt(), anyInt())).thenReturn(Collections.<QpidByteBuffer>emptyList());
+            when(message.getStoredMessage()).thenReturn(storedMessage);
+            storedMessages.add(storedMessage);
+            queue.enqueue(message, null, null);
+        }
+
+        // a browser leaves the entries available, so the first delivery reads ahead the content of all of them
+        queue.addConsumer(new MockConsumer(),
+                          null,
+                          createMessage(-1l).getClass(),
+                          "browser",
+                          EnumSet.noneOf(ConsumerImpl.Option.class),
+                          0);
+
+        for (StoredMessage storedMessage : storedMessages)
+        {
+            verify(storedMessage, timeout(5000).atLeastOnce()).getContent(0, 0);
+        }
+    }
+
+    public void testConsumerOfOtherGroupSkipsEntriesOfAssignedGroup() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<>();
+        attributes.put(Queue.NAME, "testGroupedQueue");
+        attributes.put(Queue.MESSAGE_GROUP_KEY, "group");
+
+        Queue<?> queue = getVirtualHost().createChild(Queue.class, attributes);
+
+        queue.enqueue(createGroupedMessage(0L, "A"), null, null);
+
+        final MockConsumer consumerA = new MockConsumer();
+        queue.addConsumer(consumerA,
+                          null,
+                          createMessage(-1l).getClass(),
+                          "consumerA",
+                          EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES),
+                          0);
+        Thread.sleep(getQueueRunnerWaitTime());
+        assertEquals("Unexpected messages delivered to first consumer",
+                     Arrays.asList(0L), getMessageNumbers(consumerA));
+
+        // group A stays assigned to the first consumer as it does not acknowledge its message
+        consumerA.setState(ConsumerTarget.State.SUSPENDED);
+        queue.enqueue(createGroupedMessage(1L, "A"), null, null);
+        queue.enqueue(createGroupedMessage(2L, "B"), null, null);
+        queue.enqueue(createGroupedMessage(3L, "A"), null, null);
+        queue.enqueue(createGroupedMessage(4L, "B"), null, null);
+
+        final MockConsumer consumerB = new MockConsumer();
+        queue.addConsumer(consumerB,
+                          null,
+                          createMessage(-1l).getClass(),
+                          "consumerB",
+                          EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES),
+                          0);
+        Thread.sleep(getQueueRunnerWaitTime());
+        assertEquals("Unexpected messages delivered to second consumer",
+                     Arrays.asList(2L, 4L), getMessageNumbers(consumerB));
+
+        consumerA.setState(ConsumerTarget.State.ACTIVE);
+        Thread.sleep(getQueueRunnerWaitTime());
+        assertEquals("Unexpected messages delivered to first consumer",
+                     Arrays.asList(0L, 1L, 3L), getMessageNumbers(consumerA));
+    }
+
+    private ServerMessage createGroupedMessage(final long id, final String group)
+    {
+        return createMessage(id, (byte) 4, Collections.<String, Object>singletonMap("group", group), 0L);
+    }
+
+    private List<Long> getMessageNumbers(final MockConsumer consumer)
+    {
+        List<Long> messageNumbers = new ArrayList<>();
+        for (MessageInstance instance : consumer.getMessages())
+        {
+            messageNumbers.add(instance.getMessage().getMessageNumber());
+        }
+        return messageNumbers;
+    }
+
     private static class DequeuedQueue extends AbstractQueue
     {
 
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.server.stats;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class LatencyHistogramTest extends QpidTestCase
+{
+    public void testEmptyHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("Unexpected count", 0L, histogram.getCount());
+        assertEquals("Unexpected percentile of empty histogram", 0L, histogram.getValueAtPercentile(99.0));
+    }
+
+    public void testSmallValuesAreExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 0; i < 8; i++)
+        {
+            histogram.record(i);
+        }
+        assertEquals("Unexpected count", 8L, histogram.getCount());
+        assertEquals("Unexpected median", 3L, histogram.getValueAtPercentile(50.0));
+        assertEquals("Unexpected maximum", 7L, histogram.getValueAtPercentile(100.0));
+    }
+
+    public void testNegativeValuesIgnored()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1L);
+        assertEquals("Negative value should not be counted", 0L, histogram.getCount());
+    }
+
+    public void testReset()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000L);
+        histogram.record(2000L);
+        histogram.reset();
+        assertEquals("Unexpected count after reset", 0L, histogram.getCount());
+        assertEquals("Unexpected percentile after reset", 0L, histogram.getValueAtPercentile(50.0));
+
+        histogram.record(5L);
+        assertEquals("Unexpected count after recording again", 1L, histogram.getCount());
+    }
+
+    public void testPercentilesWithinPrecision()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+
+        assertWithinPrecision(500000L, histogram.getValueAtPercentile(50.0));
+        assertWithinPrecision(990000L, histogram.getValueAtPercentile(99.0));
+        assertWithinPrecision(999000L, histogram.getValueAtPercentile(99.9));
+    }
+
+    public void testBucketsAreContiguous()
+    {
+        int previousIndex = LatencyHistogram.getBucketIndex(0L);
+        for (long value = 1L; value < 1L << 20; value++)
+        {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue("Bucket index for " + value + " should not decrease", index >= previousIndex);
+            assertTrue("Bucket index for " + value + " should not skip a bucket", index <= previousIndex + 1);
+            assertTrue("Value " + value + " exceeds the highest value of its bucket",
+                       value <= LatencyHistogram.getHighestValueInBucket(index));
+            previousIndex = index;
+        }
+    }
+
+    public void testHugeValuesCountedInLastBucket()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals("Unexpected count", 1L, histogram.getCount());
+        assertTrue("Unexpected percentile", histogram.getValueAtPercentile(50.0) >= 1L << 42);
+    }
+
+    private void assertWithinPrecision(final long expected, final long actual)
+    {
+        assertTrue("Value " + actual + " not within precision of " + expected,
+                   actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.mockito.InOrder;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class CoalescingJDBCCommitterTest extends QpidTestCase
+{
+    private static final String INSERT = "INSERT";
+    private static final String DELETE = "DELETE";
+
+    private Connection _connection;
+    private PreparedStatement _insertStatement;
+    private PreparedStatement _deleteStatement;
+    private CoalescingJDBCCommitter _committer;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _connection = mock(Connection.class);
+        _insertStatement = mock(PreparedStatement.class);
+        _deleteStatement = mock(PreparedStatement.class);
+        when(_connection.prepareStatement(INSERT)).thenReturn(_insertStatement);
+        when(_connection.prepareStatement(DELETE)).thenReturn(_deleteStatement);
+        when(_insertStatement.executeBatch()).thenReturn(new int[]{1, 1, 1, 1});
+        when(_deleteStatement.executeBatch()).thenReturn(new int[]{1, 1, 1, 1});
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            if (_committer != null)
+            {
+                _committer.stop();
+            }
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testTransactionsWaitingForCommitThreadShareDatabaseCommit() throws Exception
+    {
+        startCommitter(10);
+
+        final BlockingJob blockingJob = new BlockingJob();
+        ListenableFuture<String> blockedFuture = _committer.commitAsync(blockingJob, "blocked");
+        blockingJob.awaitWrite();
+
+        TestJob[] jobs = new TestJob[3];
+        ListenableFuture<?>[] futures = new ListenableFuture<?>[jobs.length];
+        for (int i = 0; i < jobs.length; i++)
+        {
+            jobs[i] = new TestJob(INSERT, null);
+            futures[i] = _committer.commitAsync(jobs[i], i);
+        }
+        blockingJob.release();
+
+        assertEquals("blocked", blockedFuture.get(10, TimeUnit.SECONDS));
+        for (int i = 0; i < jobs.length; i++)
+        {
+            assertEquals(i, futures[i].get(10, TimeUnit.SECONDS));
+            assertTrue("Job " + i + " not told of its commit", jobs[i].isCommitted());
+        }
+
+        assertEquals("Unexpected number of committed transactions", 4, _committer.getCommittedTransactionCount());
+        assertEquals("Unexpected number of database commits", 2, _committer.getDatabaseCommitCount());
+        assertEquals("Unexpected number of commit latencies", 4, _committer.getCommitLatency().getCount());
+        verify(_connection, times(2)).commit();
+        verify(_insertStatement, times(4)).addBatch();
+        verify(_insertStatement, times(2)).executeBatch();
+    }
+
+    public void testNumberOfTransactionsInDatabaseCommitIsLimited() throws Exception
+    {
+        startCommitter(2);
+
+        final BlockingJob blockingJob = new BlockingJob();
+        _committer.commitAsync(blockingJob, null);
+        blockingJob.awaitWrite();
+
+        ListenableFuture<?> lastFuture = null;
+        for (int i = 0; i < 3; i++)
+        {
+            lastFuture = _committer.commitAsync(new TestJob(INSERT, null), i);
+        }
+        blockingJob.release();
+        lastFuture.get(10, TimeUnit.SECONDS);
+
+        assertEquals("Unexpected number of committed transactions", 4, _committer.getCommittedTransactionCount());
+        assertEquals("Unexpected number of database commits", 3, _committer.getDatabaseCommitCount());
+    }
+
+    public void testFailedTransactionDoesNotFailOtherTransactionsOfItsBatch() throws Exception
+    {
+        when(_deleteStatement.executeBatch()).thenReturn(new int[]{0});
+        startCommitter(10);
+
+        final BlockingJob blockingJob = new BlockingJob();
+        _committer.commitAsync(blockingJob, null);
+        blockingJob.awaitWrite();
+
+        TestJob failingJob = new TestJob(DELETE, "Row not found");
+        TestJob otherJob = new TestJob(INSERT, null);
+        ListenableFuture<?> failingFuture = _committer.commitAsync(failingJob, null);
+        ListenableFuture<?> otherFuture = _committer.commitAsync(otherJob, "other");
+        blockingJob.release();
+
+        assertFailed(failingFuture, "Row not found");
+        assertEquals("other", otherFuture.get(10, TimeUnit.SECONDS));
+        assertFalse("Failed job told of commit", failingJob.isCommitted());
+        assertTrue("Other job not told of its commit", otherJob.isCommitted());
+        assertEquals("Failed job not told of both roll backs", 2, failingJob.getRollbacks());
+        assertEquals("Other job not told of roll back of batch", 1, otherJob.getRollbacks());
+        verify(_connection, times(2)).rollback();
+        assertEquals("Unexpected number of committed transactions", 2, _committer.getCommittedTransactionCount());
+    }
+
+    public void testFailedTransactionCommittedAloneIsNotRetried() throws Exception
+    {
+        when(_deleteStatement.executeBatch()).thenReturn(new int[]{0});
+        startCommitter(10);
+
+        TestJob failingJob = new TestJob(DELETE, "Row not found");
+        assertFailed(_committer.commitAsync(failingJob, null), "Row not found");
+        assertEquals("Unexpected number of roll backs", 1, failingJob.getRollbacks());
+        verify(_connection).rollback();
+    }
+
+    public void testSynchronousCommit() throws Exception
+    {
+        startCommitter(10);
+
+        TestJob job = new TestJob(INSERT, null);
+        _committer.commit(job);
+        assertTrue("Job not told of its commit", job.isCommitted());
+        verify(_connection).commit();
+
+        when(_insertStatement.executeBatch()).thenThrow(new SQLException("Test"));
+        try
+        {
+            _committer.commit(new TestJob(INSERT, null));
+            fail("Exception not thrown");
+        }
+        catch (StoreException e)
+        {
+            assertTrue("Unexpected cause " + e.getCause(), e.getCause() instanceof SQLException);
+        }
+    }
+
+    public void testBatchesExecutedInStatementOrder() throws Exception
+    {
+        JDBCStatementBatch batch = new JDBCStatementBatch(_connection, INSERT, DELETE);
+        batch.getStatement(DELETE).setLong(1, 1L);
+        batch.addBatch(DELETE, null);
+        batch.getStatement(INSERT).setLong(1, 2L);
+        batch.addBatch(INSERT, null);
+        assertEquals("Unexpected row count", 2, batch.getRowCount());
+
+        batch.commit();
+
+        InOrder inOrder = inOrder(_insertStatement, _deleteStatement, _connection);
+        inOrder.verify(_insertStatement).executeBatch();
+        inOrder.verify(_deleteStatement).executeBatch();
+        inOrder.verify(_connection).commit();
+
+        try
+        {
+            batch.getStatement("UPDATE");
+            fail("Exception not thrown");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+        verify(_connection, never()).prepareStatement("UPDATE");
+    }
+
+    private void startCommitter(final int maxBatchSize)
+    {
+        _committer = new CoalescingJDBCCommitter(getTestName(), new CoalescingJDBCCommitter.BatchFactory()
+        {
+            @Override
+            public JDBCStatementBatch newBatch()
+            {
+                return new JDBCStatementBatch(_connection, INSERT, DELETE);
+            }
+        }, maxBatchSize, 0L);
+        _committer.start();
+    }
+
+    private void assertFailed(final ListenableFuture<?> future, final String expectedMessage) throws Exception
+    {
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue("Unexpected cause " + e.getCause(), e.getCause() instanceof StoreException);
+            assertEquals("Unexpected message", expectedMessage, e.getCause().getMessage());
+        }
+    }
+
+    private static class TestJob implements CoalescingJDBCCommitter.CommitJob
+    {
+        private final String _sql;
+        private final String _failureMessage;
+        private volatile boolean _committed;
+        private volatile int _rollbacks;
+
+        TestJob(final String sql, final String failureMessage)
+        {
+            _sql = sql;
+            _failureMessage = failureMessage;
+        }
+
+        @Override
+        public void write(final JDBCStatementBatch batch) throws SQLException
+        {
+            batch.getStatement(_sql).setLong(1, 1L);
+            batch.addBatch(_sql, _failureMessage);
+        }
+
+        @Override
+        public void committed()
+        {
+            _committed = true;
+        }
+
+        @Override
+        public void rolledBack()
+        {
+            _rollbacks++;
+        }
+
+        boolean isCommitted()
+        {
+            return _committed;
+        }
+
+        int getRollbacks()
+        {
+            return _rollbacks;
+        }
+    }
+
+    private static class BlockingJob extends TestJob
+    {
+        private final CountDownLatch _writing = new CountDownLatch(1);
+        private final CountDownLatch _release = new CountDownLatch(1);
+
+        BlockingJob()
+        {
+            super(INSERT, null);
+        }
+
+        @Override
+        public void write(final JDBCStatementBatch batch) throws SQLException
+        {
+            _writing.countDown();
+            try
+            {
+                _release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            super.write(batch);
+        }
+
+        void awaitWrite() throws InterruptedException
+        {
+            assertTrue("Job not written", _writing.await(10, TimeUnit.SECONDS));
+        }
+
+        void release()
+        {
+            _release.countDown();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.util.FileUtils;
+
+public class MappedMessageContentCacheTest extends QpidTestCase
+{
+    private static final int THRESHOLD = 16;
+    private static final int SEGMENT_SIZE = 100;
+
+    private File _directory;
+    private MappedMessageContentCache _cache;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _directory = new File(TMP_FOLDER, getTestName() + System.currentTimeMillis());
+        _cache = new MappedMessageContentCache(_directory, SEGMENT_SIZE, THRESHOLD);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _cache.close();
+            FileUtils.delete(_directory, true);
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testPutAndGet()
+    {
+        final byte[] data = createData(1, 60);
+
+        assertContent(data, 10, 40, _cache.put(1, data, 10, 40));
+        assertContent(data, 10, 40, _cache.get(1));
+        assertNull("Unexpected content for unknown message", _cache.get(2));
+    }
+
+    public void testContentIsDirect()
+    {
+        final Collection<QpidByteBuffer> content = _cache.put(1, createData(1, THRESHOLD), 0, THRESHOLD);
+
+        assertNotNull("Content not cached", content);
+        for (QpidByteBuffer buf : content)
+        {
+            assertTrue("Mapped content should be direct", buf.isDirect());
+        }
+    }
+
+    public void testContentBelowThresholdNotCached()
+    {
+        assertNull("Content should not have been cached", _cache.put(1, createData(1, THRESHOLD - 1), 0, THRESHOLD - 1));
+        assertNull("Unexpected content", _cache.get(1));
+        assertEquals("Unexpected entry count", 0, _cache.getEntryCount());
+    }
+
+    public void testContentLargerThanSegment()
+    {
+        final byte[] data = createData(1, SEGMENT_SIZE * 2);
+
+        assertContent(data, 0, data.length, _cache.put(1, data, 0, data.length));
+        assertEquals("Unexpected mapped size", SEGMENT_SIZE * 2, _cache.getMappedSize());
+
+        _cache.remove(1);
+
+        assertNull("Content found for removed message", _cache.get(1));
+        assertEquals("Unexpected mapped size after remove", 0, _cache.getMappedSize());
+    }
+
+    public void testSegmentFileDeletedOnceEmpty()
+    {
+        for (int i = 1; i <= 6; i++)
+        {
+            _cache.put(i, createData(i, 40), 0, 40);
+        }
+        assertEquals("Unexpected mapped size", SEGMENT_SIZE * 3, _cache.getMappedSize());
+        assertEquals("Unexpected number of cache files", 3, _directory.listFiles().length);
+
+        _cache.remove(1);
+        _cache.remove(2);
+
+        assertEquals("Unexpected mapped size after remove", SEGMENT_SIZE * 2, _cache.getMappedSize());
+        assertEquals("Segment file not deleted", 2, _directory.listFiles().length);
+        assertContent(createData(3, 40), 0, 40, _cache.get(3));
+    }
+
+    public void testContentStillReadableAfterClose()
+    {
+        final byte[] data = createData(1, 40);
+        final Collection<QpidByteBuffer> content = _cache.put(1, data, 0, data.length);
+
+        _cache.close();
+
+        assertEquals("Cache files not deleted", 0, _directory.listFiles().length);
+        assertNull("Content should not be cached after close", _cache.put(2, data, 0, data.length));
+        assertContent(data, 0, data.length, content);
+    }
+
+    private static byte[] createData(final int seed, final int length)
+    {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+
+    private static void assertContent(final byte[] expected,
+                                      final int offset,
+                                      final int length,
+                                      final Collection<QpidByteBuffer> content)
+    {
+        assertNotNull("Content not found", content);
+        int position = offset;
+        for (QpidByteBuffer buf : content)
+        {
+            final QpidByteBuffer duplicate = buf.duplicate();
+            while (duplicate.hasRemaining())
+            {
+                assertEquals("Unexpected byte at " + position, expected[position++], duplicate.get());
+            }
+            duplicate.dispose();
+        }
+        assertEquals("Unexpected content length", offset + length, position);
+    }
+}
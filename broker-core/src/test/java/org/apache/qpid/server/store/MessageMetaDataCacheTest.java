@@ -0,0 +1,146 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.util.FileUtils;
+
+public class MessageMetaDataCacheTest extends QpidTestCase
+{
+    // the encoded test meta-data is 12 bytes, preceded by a 5 byte header
+    private static final int RECORD_SIZE = 17;
+    private static final int RECORDS_PER_SEGMENT = 10;
+
+    private File _directory;
+    private MessageMetaDataCache _cache;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _directory = new File(TMP_FOLDER, getTestName() + System.currentTimeMillis());
+        _cache = new MessageMetaDataCache(_directory, RECORD_SIZE * RECORDS_PER_SEGMENT);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _cache.close();
+            FileUtils.delete(_directory, true);
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testPutAndGet()
+    {
+        final int numberOfMessages = 2000;
+        for (int i = 1; i <= numberOfMessages; i++)
+        {
+            assertTrue("Meta-data not cached", _cache.put(i, new TestMessageMetaData(i, i * 10)));
+        }
+        assertEquals("Unexpected entry count", numberOfMessages, _cache.getEntryCount());
+
+        for (int i = 1; i <= numberOfMessages; i++)
+        {
+            final StorableMessageMetaData metaData = _cache.get(i);
+            assertNotNull("Meta-data not found for message " + i, metaData);
+            assertEquals("Unexpected content size", i * 10, metaData.getContentSize());
+        }
+        assertNull("Unexpected meta-data for unknown message", _cache.get(numberOfMessages + 1));
+    }
+
+    public void testRemove()
+    {
+        final int numberOfMessages = 2000;
+        for (int i = 1; i <= numberOfMessages; i++)
+        {
+            _cache.put(i, new TestMessageMetaData(i, i));
+        }
+        for (int i = 1; i <= numberOfMessages; i += 2)
+        {
+            _cache.remove(i);
+        }
+
+        assertEquals("Unexpected entry count", numberOfMessages / 2, _cache.getEntryCount());
+        for (int i = 1; i <= numberOfMessages; i++)
+        {
+            final StorableMessageMetaData metaData = _cache.get(i);
+            if (i % 2 == 1)
+            {
+                assertNull("Meta-data found for removed message " + i, metaData);
+            }
+            else
+            {
+                assertNotNull("Meta-data not found for message " + i, metaData);
+                assertEquals("Unexpected content size", i, metaData.getContentSize());
+            }
+        }
+    }
+
+    public void testSegmentsReusedOnceEmpty()
+    {
+        for (int i = 1; i <= RECORDS_PER_SEGMENT * 3; i++)
+        {
+            _cache.put(i, new TestMessageMetaData(i, i));
+        }
+        final long mappedSize = _cache.getMappedSize();
+        assertEquals("Unexpected mapped size", RECORD_SIZE * RECORDS_PER_SEGMENT * 3, mappedSize);
+
+        for (int i = 1; i <= RECORDS_PER_SEGMENT * 3; i++)
+        {
+            _cache.remove(i);
+        }
+        for (int i = 1; i <= RECORDS_PER_SEGMENT * 3; i++)
+        {
+            _cache.put(i, new TestMessageMetaData(i, i));
+        }
+
+        assertEquals("Segments not reused", mappedSize, _cache.getMappedSize());
+        assertEquals("Unexpected content size", 5, _cache.get(5).getContentSize());
+    }
+
+    public void testMetaDataLargerThanSegmentNotCached() throws Exception
+    {
+        _cache.close();
+        _cache = new MessageMetaDataCache(_directory, RECORD_SIZE - 1);
+
+        assertFalse("Meta-data should not have been cached", _cache.put(1, new TestMessageMetaData(1, 1)));
+        assertNull("Unexpected meta-data", _cache.get(1));
+    }
+
+    public void testCloseDeletesFile()
+    {
+        _cache.put(1, new TestMessageMetaData(1, 1));
+        assertEquals("Unexpected number of cache files", 1, _directory.listFiles().length);
+
+        _cache.close();
+
+        assertEquals("Cache file not deleted", 0, _directory.listFiles().length);
+        assertFalse("Meta-data should not be cached after close", _cache.put(2, new TestMessageMetaData(2, 1)));
+    }
+}
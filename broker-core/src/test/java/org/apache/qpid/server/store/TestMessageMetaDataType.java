@@ -98,6 +98,17 @@ public class TestMessageMetaDataType implements MessageMetaDataType<TestMessageM
             return 0;
         }
 
+        @Override
+        public void markRerouted()
+        {
+        }
+
+        @Override
+        public boolean isRerouted()
+        {
+            return false;
+        }
+
         @Override
         public Collection<QpidByteBuffer> getContent(int offset, int length)
         {
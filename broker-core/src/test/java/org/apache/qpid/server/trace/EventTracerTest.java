@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.server.stats;
+
+package org.apache.qpid.server.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class EventTracerTest extends QpidTestCase
+{
+    private final Object _subject = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            return "subject-" + getTestName();
+        }
+    };
+
+    public void testEventsRecordedInOrder()
+    {
+        EventTracer.trace(TraceEvent.QUEUE_RUNNER_SCHEDULED, _subject);
+        EventTracer.trace(TraceEvent.QUEUE_RUNNER_RAN, _subject, 100L);
+        EventTracer.trace(TraceEvent.STORE_COMMIT, _subject, 200L);
+
+        List<TraceRecord> records = getRecordsForSubject(EventTracer.snapshot());
+        assertEquals("Unexpected number of records", 3, records.size());
+        assertEquals("Unexpected first event", TraceEvent.QUEUE_RUNNER_SCHEDULED, records.get(0).getEvent());
+        assertEquals("Unexpected second event", TraceEvent.QUEUE_RUNNER_RAN, records.get(1).getEvent());
+        assertEquals("Unexpected second value", 100L, records.get(1).getValue());
+        assertEquals("Unexpected third event", TraceEvent.STORE_COMMIT, records.get(2).getEvent());
+        assertEquals("Unexpected third value", 200L, records.get(2).getValue());
+        assertEquals("Unexpected thread name", Thread.currentThread().getName(), records.get(0).getThreadName());
+        assertTrue("Records not in time order", records.get(0).getTimestamp() <= records.get(2).getTimestamp());
+    }
+
+    public void testRingRetainsMostRecentEvents()
+    {
+        final int bufferSize = EventTracer.getBufferSize();
+        for (int i = 0; i < bufferSize + 10; i++)
+        {
+            EventTracer.trace(TraceEvent.FLOW_TO_DISK, _subject, i);
+        }
+
+        List<TraceRecord> records = getRecordsForSubject(EventTracer.snapshot());
+        assertEquals("Unexpected number of records", bufferSize - 1, records.size());
+        assertEquals("Unexpected oldest retained value", 11L, records.get(0).getValue());
+        assertEquals("Unexpected newest retained value",
+                     (long) bufferSize + 9, records.get(records.size() - 1).getValue());
+    }
+
+    public void testEventsFromTerminatedThreadCollectedOnce() throws Exception
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                EventTracer.trace(TraceEvent.CONSUMER_SUSPENDED, _subject);
+            }
+        }, "tracer-" + getTestName());
+        thread.start();
+        thread.join();
+
+        List<TraceRecord> records = getRecordsForSubject(EventTracer.snapshot());
+        assertEquals("Unexpected number of records", 1, records.size());
+        assertEquals("Unexpected thread name", "tracer-" + getTestName(), records.get(0).getThreadName());
+
+        assertTrue("Ring of terminated thread should have been discarded",
+                   getRecordsForSubject(EventTracer.snapshot()).isEmpty());
+    }
+
+    public void testContentWrittenAsJson() throws Exception
+    {
+        EventTracer.trace(TraceEvent.CONNECTION_SELECTED, _subject, 42L);
+
+        EventTraceContent content = new EventTraceContent();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        content.write(outputStream);
+        content.release();
+
+        Map<String, Object> document = new ObjectMapper().readValue(outputStream.toByteArray(), Map.class);
+        assertTrue("Reference time missing", document.containsKey("referenceTimeMillis"));
+
+        List<Map<String, Object>> events = (List<Map<String, Object>>) document.get("events");
+        Map<String, Object> found = null;
+        for (Map<String, Object> event : events)
+        {
+            if (_subject.toString().equals(event.get("subject")))
+            {
+                found = event;
+            }
+        }
+        assertNotNull("Event not found in dump", found);
+        assertEquals("Unexpected event", TraceEvent.CONNECTION_SELECTED.name(), found.get("event"));
+        assertEquals("Unexpected value", 42, ((Number) found.get("value")).intValue());
+        assertEquals("Unexpected content type", "application/json", content.getContentType());
+    }
+
+    private List<TraceRecord> getRecordsForSubject(final List<TraceRecord> records)
+    {
+        List<TraceRecord> result = new ArrayList<>();
+        for (TraceRecord record : records)
+        {
+            if (record.getSubject() == _subject)
+            {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+package org.apache.qpid.server.transport;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class NonBlockingConnectionTLSDelegateTest extends QpidTestCase
+{
+    private static final String KEYSTORE_RESOURCE = "ssl/test_keystore.jks";
+    private static final String KEYSTORE_PASSWORD = "password";
+    private static final int NETWORK_BUFFER_SIZE = 64 * 1024;
+    private static final int MESSAGE_SIZE = 100 * 1024;
+
+    private final ByteArrayOutputStream _written = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream _received = new ByteArrayOutputStream();
+    private NonBlockingConnection _parent;
+    private AmqpPort<?> _port;
+    private SSLEngine _clientEngine;
+    private ByteBuffer _clientNetInput;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _parent = mock(NonBlockingConnection.class);
+        when(_parent.writeToTransport(any(Collection.class))).thenAnswer(new Answer<Long>()
+        {
+            @Override
+            public Long answer(final InvocationOnMock invocation) throws Throwable
+            {
+                long written = 0;
+                for (QpidByteBuffer buf : (Collection<QpidByteBuffer>) invocation.getArguments()[0])
+                {
+                    byte[] data = new byte[buf.remaining()];
+                    buf.get(data);
+                    _written.write(data);
+                    written += data.length;
+                }
+                return written;
+            }
+        });
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                QpidByteBuffer buf = (QpidByteBuffer) invocation.getArguments()[0];
+                byte[] data = new byte[buf.remaining()];
+                buf.get(data);
+                _received.write(data);
+                return null;
+            }
+        }).when(_parent).processAmqpData(any(QpidByteBuffer.class));
+
+        _port = mock(AmqpPort.class);
+        when(_port.getNetworkBufferSize()).thenReturn(NETWORK_BUFFER_SIZE);
+        when(_port.getSSLContext()).thenReturn(createServerContext());
+
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, new TrustManager[]{new TrustingTrustManager()}, null);
+        _clientEngine = clientContext.createSSLEngine();
+        _clientEngine.setUseClientMode(true);
+        _clientNetInput = ByteBuffer.allocate(4 * NETWORK_BUFFER_SIZE);
+    }
+
+    public void testUnbatchedDataExchange() throws Exception
+    {
+        when(_port.isTlsBatching()).thenReturn(false);
+        doTestDataExchange();
+    }
+
+    public void testBatchedDataExchange() throws Exception
+    {
+        when(_port.isTlsBatching()).thenReturn(true);
+        doTestDataExchange();
+    }
+
+    public void testCpuTimeMeasuredOnlyWhenEnabled() throws Exception
+    {
+        NonBlockingConnectionTLSDelegate delegate = new NonBlockingConnectionTLSDelegate(_parent, _port);
+        assertEquals("TLS CPU time should not be measured unless enabled", -1L, delegate.getTlsCpuTime());
+
+        when(_port.isTlsCpuTimeStatistics()).thenReturn(true);
+        delegate = new NonBlockingConnectionTLSDelegate(_parent, _port);
+        handshake(delegate);
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled())
+        {
+            assertTrue("TLS CPU time should not be negative", delegate.getTlsCpuTime() >= 0);
+        }
+        else
+        {
+            assertEquals("TLS CPU time should not be reported if unsupported", -1L, delegate.getTlsCpuTime());
+        }
+    }
+
+    private void doTestDataExchange() throws Exception
+    {
+        NonBlockingConnectionTLSDelegate delegate = new NonBlockingConnectionTLSDelegate(_parent, _port);
+        handshake(delegate);
+
+        long overheadAfterHandshake = delegate.getTlsOverheadBytes();
+        assertTrue("Handshake should incur TLS overhead", overheadAfterHandshake > 0);
+
+        byte[] serverData = createData(MESSAGE_SIZE);
+        List<QpidByteBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < serverData.length; offset += 1024)
+        {
+            buffers.add(QpidByteBuffer.wrap(serverData, offset, 1024));
+        }
+        _written.reset();
+        int attempts = 0;
+        while (!delegate.doWrite(buffers))
+        {
+            assertTrue("Write did not complete", ++attempts < 100);
+        }
+        assertTrue("Unexpected encrypted length", _written.size() > serverData.length);
+        assertTrue("Unexpected data received by client", Arrays.equals(serverData, clientUnwrap()));
+        long overheadAfterWrite = delegate.getTlsOverheadBytes();
+        assertEquals("Unexpected write overhead",
+                     (long) (_written.size() - serverData.length),
+                     overheadAfterWrite - overheadAfterHandshake);
+
+        byte[] clientData = createData(MESSAGE_SIZE);
+        byte[] encrypted = clientWrap(ByteBuffer.wrap(clientData));
+        _received.reset();
+        serverRead(delegate, encrypted);
+        assertTrue("Unexpected data received by server", Arrays.equals(clientData, _received.toByteArray()));
+        assertEquals("Unexpected read overhead",
+                     (long) (encrypted.length - clientData.length),
+                     delegate.getTlsOverheadBytes() - overheadAfterWrite);
+    }
+
+    private void handshake(final NonBlockingConnectionTLSDelegate delegate) throws Exception
+    {
+        _clientEngine.beginHandshake();
+        int rounds = 0;
+        while (_clientEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+               || _clientNetInput.position() > 0)
+        {
+            assertTrue("Handshake did not complete", ++rounds < 100);
+            serverRead(delegate, clientWrap(ByteBuffer.allocate(0)));
+            _written.reset();
+            delegate.doWrite(Collections.<QpidByteBuffer>emptyList());
+            clientUnwrap();
+        }
+    }
+
+    private void serverRead(final NonBlockingConnectionTLSDelegate delegate, final byte[] data) throws Exception
+    {
+        int offset = 0;
+        do
+        {
+            QpidByteBuffer netInput = delegate.getNetInputBuffer();
+            int length = Math.min(netInput.remaining(), data.length - offset);
+            netInput.put(data, offset, length);
+            offset += length;
+            delegate.processData();
+        }
+        while (offset < data.length);
+    }
+
+    private byte[] clientWrap(final ByteBuffer src) throws Exception
+    {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        ByteBuffer netOutput = ByteBuffer.allocate(_clientEngine.getSession().getPacketBufferSize());
+        SSLEngineResult result;
+        do
+        {
+            netOutput.clear();
+            result = _clientEngine.wrap(src, netOutput);
+            runDelegatedTasks();
+            encrypted.write(netOutput.array(), 0, netOutput.position());
+        }
+        while (result.bytesProduced() > 0
+               && _clientEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_UNWRAP);
+        return encrypted.toByteArray();
+    }
+
+    private byte[] clientUnwrap() throws Exception
+    {
+        _clientNetInput.put(_written.toByteArray());
+        _written.reset();
+        _clientNetInput.flip();
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        ByteBuffer appBuffer = ByteBuffer.allocate(_clientEngine.getSession().getApplicationBufferSize());
+        SSLEngineResult result;
+        do
+        {
+            appBuffer.clear();
+            result = _clientEngine.unwrap(_clientNetInput, appBuffer);
+            runDelegatedTasks();
+            decrypted.write(appBuffer.array(), 0, appBuffer.position());
+        }
+        while (result.getStatus() == SSLEngineResult.Status.OK
+               && result.bytesConsumed() > 0
+               && _clientEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_WRAP);
+        _clientNetInput.compact();
+        return decrypted.toByteArray();
+    }
+
+    private void runDelegatedTasks()
+    {
+        Runnable task;
+        while ((task = _clientEngine.getDelegatedTask()) != null)
+        {
+            task.run();
+        }
+    }
+
+    private byte[] createData(final int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private SSLContext createServerContext() throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream keyStoreInputStream = getClass().getClassLoader().getResourceAsStream(KEYSTORE_RESOURCE))
+        {
+            keyStore.load(keyStoreInputStream, KEYSTORE_PASSWORD.toCharArray());
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, KEYSTORE_PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static class TrustingTrustManager implements X509TrustManager
+    {
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+        {
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+        {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers()
+        {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.server.transport;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SelectorThreadTest extends QpidTestCase
+{
+    private SelectorThread _selectorThread;
+    private SelectorThread _otherSelectorThread;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _selectorThread = new SelectorThread(mock(NetworkConnectionScheduler.class), 2, true);
+        _otherSelectorThread = new SelectorThread(mock(NetworkConnectionScheduler.class), 1, true);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            closeSelectors(_selectorThread);
+            closeSelectors(_otherSelectorThread);
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testAffineWorkAssignsSelectionTasksInTurn() throws Exception
+    {
+        SelectorThread.SelectionTask[] tasks = _selectorThread.getSelectionTasks();
+
+        NonBlockingConnection connection1 = createConnection(null);
+        _selectorThread.addToWork(connection1);
+        verify(connection1).setSelectionTask(tasks[0]);
+
+        NonBlockingConnection connection2 = createConnection(null);
+        _selectorThread.addToWork(connection2);
+        verify(connection2).setSelectionTask(tasks[1]);
+
+        assertEquals("Unexpected work for first task", 1, tasks[0].getAffineWork().size());
+        assertEquals("Unexpected work for second task", 1, tasks[1].getAffineWork().size());
+    }
+
+    public void testAffineWorkGoesToConnectionsSelectionTask() throws Exception
+    {
+        SelectorThread.SelectionTask[] tasks = _selectorThread.getSelectionTasks();
+        NonBlockingConnection connection = createConnection(tasks[1]);
+
+        _selectorThread.addToWork(connection);
+
+        verify(connection, never()).setSelectionTask(any(SelectorThread.SelectionTask.class));
+        assertTrue("Unexpected work for first task", tasks[0].getAffineWork().isEmpty());
+        assertEquals("Unexpected work for second task", 1, tasks[1].getAffineWork().size());
+    }
+
+    public void testAffineWorkOfConnectionRescheduledFromAnotherScheduler() throws Exception
+    {
+        SelectorThread.SelectionTask otherTask = _otherSelectorThread.getSelectionTasks()[0];
+        NonBlockingConnection connection = createConnection(otherTask);
+
+        _selectorThread.addToWork(connection);
+
+        assertTrue("Work should not be added to the task of the previous scheduler",
+                   otherTask.getAffineWork().isEmpty());
+        SelectorThread.SelectionTask[] tasks = _selectorThread.getSelectionTasks();
+        assertEquals("Unexpected work for this scheduler's tasks",
+                     1, tasks[0].getAffineWork().size() + tasks[1].getAffineWork().size());
+        verify(connection, never()).setSelectionTask(any(SelectorThread.SelectionTask.class));
+    }
+
+    public void testAffineWorkNotAddedForConnectionAlreadyScheduled() throws Exception
+    {
+        SelectorThread.SelectionTask[] tasks = _selectorThread.getSelectionTasks();
+        NonBlockingConnection connection = createConnection(tasks[0]);
+        when(connection.setScheduled()).thenReturn(false);
+
+        _selectorThread.addToWork(connection);
+
+        assertTrue("Unexpected work for first task", tasks[0].getAffineWork().isEmpty());
+        assertTrue("Unexpected work for second task", tasks[1].getAffineWork().isEmpty());
+    }
+
+    private NonBlockingConnection createConnection(final SelectorThread.SelectionTask selectionTask)
+    {
+        NonBlockingConnection connection = mock(NonBlockingConnection.class);
+        when(connection.setScheduled()).thenReturn(true);
+        when(connection.getSelectionTask()).thenReturn(selectionTask);
+        return connection;
+    }
+
+    private void closeSelectors(final SelectorThread selectorThread) throws Exception
+    {
+        selectorThread.close();
+        for (SelectorThread.SelectionTask task : selectorThread.getSelectionTasks())
+        {
+            task.getSelector().close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import org.apache.qpid.server.model.WriteCoalescingMode;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class WriteCoalescerTest extends QpidTestCase
+{
+    private static final long MAX_BYTES = 1024;
+    private static final long MAX_DELAY = 10;
+
+    public void testNoneAlwaysWrites()
+    {
+        final WriteCoalescer coalescer = new WriteCoalescer(WriteCoalescingMode.NONE, MAX_BYTES, MAX_DELAY);
+
+        assertFalse("Coalescing should be disabled", coalescer.isEnabled());
+        assertTrue("Small write should not be held back", coalescer.shouldWrite(1, 0));
+        assertEquals("Unexpected time to next tick", Integer.MAX_VALUE, coalescer.getTimeToNextTick(0));
+    }
+
+    public void testUnknownModeTreatedAsNone()
+    {
+        assertFalse("Coalescing should be disabled", new WriteCoalescer(null, MAX_BYTES, MAX_DELAY).isEnabled());
+    }
+
+    public void testBoundedHoldsBackUntilMaxDelay()
+    {
+        final WriteCoalescer coalescer = new WriteCoalescer(WriteCoalescingMode.BOUNDED, MAX_BYTES, MAX_DELAY);
+
+        assertFalse("Small write should be held back", coalescer.shouldWrite(10, 100));
+        assertEquals("Unexpected time to next tick", MAX_DELAY, coalescer.getTimeToNextTick(100));
+        assertFalse("Small write should still be held back", coalescer.shouldWrite(20, 105));
+        assertEquals("Unexpected time to next tick", MAX_DELAY - 5, coalescer.getTimeToNextTick(105));
+
+        assertTrue("Write should not be held back beyond the delay", coalescer.shouldWrite(30, 110));
+        assertEquals("Unexpected time to next tick once the delay expired", 0, coalescer.getTimeToNextTick(110));
+
+        coalescer.written(0);
+        assertEquals("Unexpected time to next tick once written", Integer.MAX_VALUE, coalescer.getTimeToNextTick(110));
+    }
+
+    public void testBoundedWritesOnceMaxBytesBuffered()
+    {
+        final WriteCoalescer coalescer = new WriteCoalescer(WriteCoalescingMode.BOUNDED, MAX_BYTES, MAX_DELAY);
+
+        assertFalse("Small write should be held back", coalescer.shouldWrite(10, 100));
+        assertTrue("Write should not be held back beyond max bytes", coalescer.shouldWrite(MAX_BYTES, 101));
+    }
+
+    public void testNothingBufferedIsNotHeldBack()
+    {
+        final WriteCoalescer coalescer = new WriteCoalescer(WriteCoalescingMode.BOUNDED, MAX_BYTES, MAX_DELAY);
+
+        assertTrue("Empty write should not be held back", coalescer.shouldWrite(0, 100));
+        assertEquals("Unexpected time to next tick", Integer.MAX_VALUE, coalescer.getTimeToNextTick(100));
+    }
+
+    public void testAdaptiveStopsHoldingBackLargeOutput()
+    {
+        final WriteCoalescer coalescer = new WriteCoalescer(WriteCoalescingMode.ADAPTIVE, MAX_BYTES, MAX_DELAY);
+
+        assertFalse("Small write should be held back", coalescer.shouldWrite(10, 100));
+        coalescer.written(0);
+
+        long time = 200;
+        while (coalescer.getAverageProducedBytes() < MAX_BYTES / 4)
+        {
+            coalescer.shouldWrite(MAX_BYTES - 1, time++);
+            coalescer.written(0);
+        }
+
+        assertTrue("Small write should not be held back after large output", coalescer.shouldWrite(10, time));
+    }
+}
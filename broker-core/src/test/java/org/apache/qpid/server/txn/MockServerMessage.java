@@ -126,6 +126,17 @@ class MockServerMessage implements ServerMessage
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void markRerouted()
+    {
+    }
+
+    @Override
+    public boolean isRerouted()
+    {
+        return false;
+    }
+
     @Override
     public long getMessageNumber()
     {
@@ -21,21 +21,47 @@
 package org.apache.qpid.server.virtualhost;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+
 import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.queue.QueueRecoveryPager;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.NullMessageStore;
+import org.apache.qpid.server.store.StorableMessageMetaData;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.store.TestMessageMetaData;
+import org.apache.qpid.server.store.Transaction;
 import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
 import org.apache.qpid.test.utils.QpidTestCase;
@@ -90,4 +116,428 @@ public class AsynchronousMessageStoreRecovererTest extends QpidTestCase
         ListenableFuture<Void> result = recoverer.recover(_virtualHost);
         assertNull(result.get());
     }
+
+    public void testRangedRecovery() throws Exception
+    {
+        when(_virtualHost.getContextKeys(false)).thenReturn(new HashSet<>(Arrays.asList(VirtualHost.RANGED_RECOVERY_RANGE_SIZE)));
+        when(_virtualHost.getContextValue(Integer.class, VirtualHost.RANGED_RECOVERY_RANGE_SIZE)).thenReturn(2);
+
+        final UUID queueId = UUID.randomUUID();
+        final Queue<?> queue = mock(Queue.class);
+        when(queue.getId()).thenReturn(queueId);
+        when(queue.getName()).thenReturn("test-queue");
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(Collections.singleton(queue));
+
+        // message 3 is in no queue, the queue entry for message 5 refers to a message not in the store
+        final List<Long> messageIds = Arrays.asList(1L, 2L, 3L, 4L);
+        final Map<Long, StoredMessage<StorableMessageMetaData>> storedMessages = new TreeMap<>();
+        for (long messageId : messageIds)
+        {
+            storedMessages.put(messageId, createMockStoredMessage(messageId));
+        }
+        final List<Long> queueEntryIds = Arrays.asList(1L, 2L, 4L, 5L);
+        final List<String> visitedRanges = new ArrayList<>();
+        final List<Long> loadedMessageIds = Collections.synchronizedList(new ArrayList<Long>());
+        when(_store.getNextMessageId()).thenReturn(6L);
+        Transaction transaction = mock(Transaction.class);
+        when(_store.newTransaction()).thenReturn(transaction);
+
+        final MessageStore.MessageStoreReader storeReader = new NullMessageStore()
+        {
+            @Override
+            public void visitMessageIds(final long fromMessageId,
+                                        final long toMessageId,
+                                        final MessageIdHandler handler) throws StoreException
+            {
+                for (long messageId : messageIds)
+                {
+                    if (messageId >= fromMessageId && messageId < toMessageId && !handler.handle(messageId))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void visitMessageInstances(final TransactionLogResource queue,
+                                              final long fromMessageId,
+                                              final long toMessageId,
+                                              final MessageInstanceHandler handler) throws StoreException
+            {
+                visitedRanges.add(fromMessageId + "-" + toMessageId);
+                for (long messageId : queueEntryIds)
+                {
+                    if (messageId >= fromMessageId && messageId < toMessageId)
+                    {
+                        handler.handle(new TestMessageEnqueueRecord(queueId, messageId));
+                    }
+                }
+            }
+
+            @Override
+            public StoredMessage<?> getMessage(final long messageId)
+            {
+                loadedMessageIds.add(messageId);
+                return storedMessages.get(messageId);
+            }
+        };
+        when(_store.newMessageStoreReader()).thenReturn(storeReader);
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        ListenableFuture<Void> result = recoverer.recover(_virtualHost);
+        assertNull(result.get());
+
+        assertEquals("Unexpected ranges", Arrays.asList("0-3", "3-5", "5-6"), visitedRanges);
+        verify(queue, times(3)).recover(any(ServerMessage.class), any(MessageEnqueueRecord.class));
+        verify(queue, never()).recover(argThat(new MessageNumberMatcher(3L)), any(MessageEnqueueRecord.class));
+        verify(transaction).dequeueMessage(argThat(new EnqueueRecordMatcher(5L)));
+        verify(queue).completeRecovery();
+        verify(storedMessages.get(3L)).remove();
+        Collections.sort(loadedMessageIds);
+        assertEquals("Each message should be loaded once, the orphan only for its removal",
+                     messageIds, loadedMessageIds);
+        assertEquals("Unexpected recovered message count", 3, recoverer.getRecoveredMessageCount());
+        assertEquals("Unexpected recovered queue entry count", 3, recoverer.getRecoveredQueueEntryCount());
+    }
+
+    public void testLazyRecovery() throws Exception
+    {
+        when(_virtualHost.getContextKeys(false)).thenReturn(new HashSet<>(Arrays.asList(VirtualHost.LAZY_RECOVERY_PAGE_SIZE)));
+        when(_virtualHost.getContextValue(Integer.class, VirtualHost.LAZY_RECOVERY_PAGE_SIZE)).thenReturn(2);
+
+        final UUID queueId = UUID.randomUUID();
+        final Queue<?> queue = mock(Queue.class);
+        when(queue.getId()).thenReturn(queueId);
+        when(queue.getName()).thenReturn("test-queue");
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(Collections.singleton(queue));
+
+        // message 4 is in no queue
+        final Map<Long, StoredMessage<StorableMessageMetaData>> storedMessages = new TreeMap<>();
+        for (long messageId = 1; messageId <= 4; messageId++)
+        {
+            storedMessages.put(messageId, createMockStoredMessage(messageId));
+        }
+        final List<Long> queueEntryIds = Arrays.asList(1L, 2L, 3L);
+        when(_store.getNextMessageId()).thenReturn(5L);
+
+        final MessageStore.MessageStoreReader storeReader = new NullMessageStore()
+        {
+            @Override
+            public void visitMessageIds(final long fromMessageId,
+                                        final long toMessageId,
+                                        final MessageIdHandler handler) throws StoreException
+            {
+                for (long messageId : storedMessages.keySet())
+                {
+                    if (messageId >= fromMessageId && messageId < toMessageId && !handler.handle(messageId))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void visitMessageInstances(final TransactionLogResource queue,
+                                              final long fromMessageId,
+                                              final long toMessageId,
+                                              final MessageInstanceHandler handler) throws StoreException
+            {
+                for (long messageId : queueEntryIds)
+                {
+                    if (messageId >= fromMessageId
+                        && messageId < toMessageId
+                        && !handler.handle(new TestMessageEnqueueRecord(queueId, messageId)))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public StoredMessage<?> getMessage(final long messageId)
+            {
+                return storedMessages.get(messageId);
+            }
+        };
+        when(_store.newMessageStoreReader()).thenReturn(storeReader);
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        ListenableFuture<Void> result = recoverer.recover(_virtualHost);
+
+        ArgumentCaptor<QueueRecoveryPager> pagerCaptor = ArgumentCaptor.forClass(QueueRecoveryPager.class);
+        verify(queue).recoverLazily(pagerCaptor.capture());
+
+        verify(queue, timeout(5000).times(2)).recover(any(ServerMessage.class), any(MessageEnqueueRecord.class));
+        verify(queue, never()).recover(argThat(new MessageNumberMatcher(3L)), any(MessageEnqueueRecord.class));
+        verify(queue, never()).completeRecovery();
+        assertFalse("Recovery should not be complete before the last page", result.isDone());
+
+        pagerCaptor.getValue().entryDequeued();
+
+        assertNull(result.get());
+        verify(queue).recover(argThat(new MessageNumberMatcher(3L)), any(MessageEnqueueRecord.class));
+        verify(queue).completeRecovery();
+        verify(storedMessages.get(4L)).remove();
+        verify(storedMessages.get(3L), never()).remove();
+        assertEquals("Unexpected recovered message count", 3, recoverer.getRecoveredMessageCount());
+    }
+
+    public void testLazyRecoveryOfIdleQueueDoesNotHoldBackOtherQueues() throws Exception
+    {
+        when(_virtualHost.getContextKeys(false)).thenReturn(new HashSet<>(Arrays.asList(VirtualHost.LAZY_RECOVERY_PAGE_SIZE)));
+        when(_virtualHost.getContextValue(Integer.class, VirtualHost.LAZY_RECOVERY_PAGE_SIZE)).thenReturn(2);
+
+        final Queue<?> idleQueue = mock(Queue.class);
+        when(idleQueue.getId()).thenReturn(UUID.randomUUID());
+        when(idleQueue.getName()).thenReturn("idle-queue");
+        final Queue<?> otherQueue = mock(Queue.class);
+        when(otherQueue.getId()).thenReturn(UUID.randomUUID());
+        when(otherQueue.getName()).thenReturn("other-queue");
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(new HashSet<>(Arrays.asList(idleQueue, otherQueue)));
+
+        // message 3 is on both queues, message 5 is in no queue
+        final Map<Long, StoredMessage<StorableMessageMetaData>> storedMessages = new TreeMap<>();
+        for (long messageId = 1; messageId <= 5; messageId++)
+        {
+            storedMessages.put(messageId, createMockStoredMessage(messageId));
+        }
+        final Map<UUID, List<Long>> queueEntryIds = new HashMap<>();
+        queueEntryIds.put(idleQueue.getId(), Arrays.asList(1L, 2L, 3L, 4L));
+        queueEntryIds.put(otherQueue.getId(), Arrays.asList(3L));
+        when(_store.getNextMessageId()).thenReturn(6L);
+
+        final MessageStore.MessageStoreReader storeReader = new NullMessageStore()
+        {
+            @Override
+            public void visitMessageIds(final long fromMessageId,
+                                        final long toMessageId,
+                                        final MessageIdHandler handler) throws StoreException
+            {
+                for (long messageId : storedMessages.keySet())
+                {
+                    if (messageId >= fromMessageId && messageId < toMessageId && !handler.handle(messageId))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void visitMessageInstances(final TransactionLogResource queue,
+                                              final long fromMessageId,
+                                              final long toMessageId,
+                                              final MessageInstanceHandler handler) throws StoreException
+            {
+                for (long messageId : queueEntryIds.get(queue.getId()))
+                {
+                    if (messageId >= fromMessageId
+                        && messageId < toMessageId
+                        && !handler.handle(new TestMessageEnqueueRecord(queue.getId(), messageId)))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public StoredMessage<?> getMessage(final long messageId)
+            {
+                return storedMessages.get(messageId);
+            }
+        };
+        when(_store.newMessageStoreReader()).thenReturn(storeReader);
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        ListenableFuture<Void> result = recoverer.recover(_virtualHost);
+
+        ArgumentCaptor<QueueRecoveryPager> pagerCaptor = ArgumentCaptor.forClass(QueueRecoveryPager.class);
+        verify(idleQueue).recoverLazily(pagerCaptor.capture());
+
+        verify(otherQueue, timeout(5000)).completeRecovery();
+        verify(storedMessages.get(5L), timeout(5000)).remove();
+        verify(idleQueue, timeout(5000).times(2)).recover(any(ServerMessage.class), any(MessageEnqueueRecord.class));
+        verify(storedMessages.get(4L), never()).remove();
+        assertFalse("Recovery should not be complete before the idle queue is recovered", result.isDone());
+
+        // holding back a page worth of messages published during recovery pages the remaining entries in
+        pagerCaptor.getValue().entryHeld(2);
+
+        assertNull(result.get());
+        verify(idleQueue).completeRecovery();
+
+        ArgumentCaptor<ServerMessage> idleQueueMessages = ArgumentCaptor.forClass(ServerMessage.class);
+        verify(idleQueue, times(4)).recover(idleQueueMessages.capture(), any(MessageEnqueueRecord.class));
+        ArgumentCaptor<ServerMessage> otherQueueMessages = ArgumentCaptor.forClass(ServerMessage.class);
+        verify(otherQueue).recover(otherQueueMessages.capture(), any(MessageEnqueueRecord.class));
+        assertSame("Message on both queues should be recovered once",
+                   otherQueueMessages.getValue(), idleQueueMessages.getAllValues().get(2));
+        assertEquals("Unexpected recovered message count", 4, recoverer.getRecoveredMessageCount());
+    }
+
+    public void testLazyRecoveryFlowsMessagesPinnedBeyondAPage() throws Exception
+    {
+        when(_virtualHost.getContextKeys(false)).thenReturn(new HashSet<>(Arrays.asList(VirtualHost.LAZY_RECOVERY_PAGE_SIZE)));
+        when(_virtualHost.getContextValue(Integer.class, VirtualHost.LAZY_RECOVERY_PAGE_SIZE)).thenReturn(2);
+
+        final Queue<?> idleQueue = mock(Queue.class);
+        when(idleQueue.getId()).thenReturn(UUID.randomUUID());
+        when(idleQueue.getName()).thenReturn("idle-queue");
+        final Queue<?> otherQueue = mock(Queue.class);
+        when(otherQueue.getId()).thenReturn(UUID.randomUUID());
+        when(otherQueue.getName()).thenReturn("other-queue");
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(new HashSet<>(Arrays.asList(idleQueue, otherQueue)));
+
+        // messages 3 to 5 are on both queues, so they are pinned for the idle queue when the other queue recovers them
+        final Map<Long, StoredMessage<StorableMessageMetaData>> storedMessages = new TreeMap<>();
+        for (long messageId = 1; messageId <= 5; messageId++)
+        {
+            storedMessages.put(messageId, createMockStoredMessage(messageId));
+        }
+        final Map<UUID, List<Long>> queueEntryIds = new HashMap<>();
+        queueEntryIds.put(idleQueue.getId(), Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        queueEntryIds.put(otherQueue.getId(), Arrays.asList(3L, 4L, 5L));
+        final List<Long> loadedMessageIds = Collections.synchronizedList(new ArrayList<Long>());
+        when(_store.getNextMessageId()).thenReturn(6L);
+
+        final MessageStore.MessageStoreReader storeReader = new NullMessageStore()
+        {
+            @Override
+            public void visitMessageIds(final long fromMessageId,
+                                        final long toMessageId,
+                                        final MessageIdHandler handler) throws StoreException
+            {
+                for (long messageId : storedMessages.keySet())
+                {
+                    if (messageId >= fromMessageId && messageId < toMessageId && !handler.handle(messageId))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void visitMessageInstances(final TransactionLogResource queue,
+                                              final long fromMessageId,
+                                              final long toMessageId,
+                                              final MessageInstanceHandler handler) throws StoreException
+            {
+                for (long messageId : queueEntryIds.get(queue.getId()))
+                {
+                    if (messageId >= fromMessageId
+                        && messageId < toMessageId
+                        && !handler.handle(new TestMessageEnqueueRecord(queue.getId(), messageId)))
+                    {
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public StoredMessage<?> getMessage(final long messageId)
+            {
+                loadedMessageIds.add(messageId);
+                return storedMessages.get(messageId);
+            }
+        };
+        when(_store.newMessageStoreReader()).thenReturn(storeReader);
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        ListenableFuture<Void> result = recoverer.recover(_virtualHost);
+
+        ArgumentCaptor<QueueRecoveryPager> idlePagerCaptor = ArgumentCaptor.forClass(QueueRecoveryPager.class);
+        verify(idleQueue).recoverLazily(idlePagerCaptor.capture());
+        ArgumentCaptor<QueueRecoveryPager> otherPagerCaptor = ArgumentCaptor.forClass(QueueRecoveryPager.class);
+        verify(otherQueue).recoverLazily(otherPagerCaptor.capture());
+
+        verify(otherQueue, timeout(5000).times(2)).recover(any(ServerMessage.class), any(MessageEnqueueRecord.class));
+        otherPagerCaptor.getValue().entryHeld(2);
+
+        verify(otherQueue, timeout(5000)).completeRecovery();
+        verify(storedMessages.get(5L), timeout(5000)).flowToDisk();
+        verify(storedMessages.get(3L), never()).flowToDisk();
+        verify(storedMessages.get(4L), never()).flowToDisk();
+        assertFalse("Recovery should not be complete before the idle queue is recovered", result.isDone());
+
+        idlePagerCaptor.getValue().entryHeld(2);
+
+        assertNull(result.get());
+        verify(idleQueue).completeRecovery();
+
+        ArgumentCaptor<ServerMessage> idleQueueMessages = ArgumentCaptor.forClass(ServerMessage.class);
+        verify(idleQueue, times(5)).recover(idleQueueMessages.capture(), any(MessageEnqueueRecord.class));
+        ArgumentCaptor<ServerMessage> otherQueueMessages = ArgumentCaptor.forClass(ServerMessage.class);
+        verify(otherQueue, times(3)).recover(otherQueueMessages.capture(), any(MessageEnqueueRecord.class));
+        assertEquals("Messages on both queues should be recovered once",
+                     otherQueueMessages.getAllValues(), idleQueueMessages.getAllValues().subList(2, 5));
+        Collections.sort(loadedMessageIds);
+        assertEquals("Each message should be loaded once", Arrays.asList(1L, 2L, 3L, 4L, 5L), loadedMessageIds);
+    }
+
+    private StoredMessage<StorableMessageMetaData> createMockStoredMessage(final long messageId)
+    {
+        TestMessageMetaData metaData = new TestMessageMetaData(messageId, 0);
+
+        @SuppressWarnings("unchecked")
+        final StoredMessage<StorableMessageMetaData> storedMessage = mock(StoredMessage.class);
+        when(storedMessage.getMessageNumber()).thenReturn(messageId);
+        when(storedMessage.getMetaData()).thenReturn(metaData);
+        return storedMessage;
+    }
+
+    private static class MessageNumberMatcher extends ArgumentMatcher<ServerMessage>
+    {
+        private final long _messageId;
+
+        private MessageNumberMatcher(final long messageId)
+        {
+            _messageId = messageId;
+        }
+
+        @Override
+        public boolean matches(final Object argument)
+        {
+            return argument instanceof ServerMessage && ((ServerMessage) argument).getMessageNumber() == _messageId;
+        }
+    }
+
+    private static class EnqueueRecordMatcher extends ArgumentMatcher<MessageEnqueueRecord>
+    {
+        private final long _messageId;
+
+        private EnqueueRecordMatcher(final long messageId)
+        {
+            _messageId = messageId;
+        }
+
+        @Override
+        public boolean matches(final Object argument)
+        {
+            return argument instanceof MessageEnqueueRecord
+                   && ((MessageEnqueueRecord) argument).getMessageNumber() == _messageId;
+        }
+    }
+
+    private static class TestMessageEnqueueRecord implements MessageEnqueueRecord
+    {
+        private final UUID _queueId;
+        private final long _messageId;
+
+        private TestMessageEnqueueRecord(final UUID queueId, final long messageId)
+        {
+            _queueId = queueId;
+            _messageId = messageId;
+        }
+
+        @Override
+        public UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageId;
+        }
+    }
 }
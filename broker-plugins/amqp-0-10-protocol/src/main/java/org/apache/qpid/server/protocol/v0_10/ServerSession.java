@@ -76,6 +76,7 @@ import org.apache.qpid.server.protocol.CapacityChecker;
 import org.apache.qpid.server.protocol.ConsumerListener;
 import org.apache.qpid.server.protocol.PublishAuthorisationCache;
 import org.apache.qpid.server.security.SecurityToken;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StoreException;
 import org.apache.qpid.server.store.StoredMessage;
@@ -144,6 +145,7 @@ public class ServerSession extends Session
     private boolean _wireBlockingState;
     private final List<ConsumerTarget> _consumersWithPendingWork = new ArrayList<>();
     private final PublishAuthorisationCache _publishAuthCahe;
+    private final LatencyStatistics _latencyStatistics;
 
 
     public static interface MessageDispositionChangeListener
@@ -193,6 +195,7 @@ public class ServerSession extends Session
         _subject.getPrincipals().addAll(serverConnection.getAuthorizedSubject().getPrincipals());
         _subject.getPrincipals().add(new SessionPrincipal(this));
         _accessControllerContext = amqpConnection.getAccessControlContextFromSubject(_subject);
+        _latencyStatistics = new LatencyStatistics(amqpConnection.getLatencyStatistics());
         final NamedAddressSpace addressSpace = serverConnection.getAddressSpace();
 
         if(addressSpace instanceof ConfiguredObject)
@@ -298,6 +301,10 @@ public class ServerSession extends Session
                                      instanceProperties, _transaction, _checkCapacityAction
                                     );
         getAMQPConnection().registerMessageReceived(message.getSize(), message.getArrivalTime());
+        if(enqueues != 0)
+        {
+            _latencyStatistics.registerEnqueue(message.getMessageNumber(), message.getArrivalTime());
+        }
         incrementOutstandingTxnsIfNecessary();
         incrementUncommittedMessageSize(message.getStoredMessage());
         return enqueues;
@@ -993,6 +1000,12 @@ public class ServerSession extends Session
         return _messageDispositionListenerMap.size();
     }
 
+    @Override
+    public LatencyStatistics getLatencyStatistics()
+    {
+        return _latencyStatistics;
+    }
+
     public boolean getBlocking()
     {
         return _blocking.get();
@@ -99,6 +99,7 @@ import org.apache.qpid.server.protocol.ConsumerListener;
 import org.apache.qpid.server.protocol.PublishAuthorisationCache;
 import org.apache.qpid.server.queue.QueueArgumentsConverter;
 import org.apache.qpid.server.security.SecurityToken;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.store.MessageHandle;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StoredMessage;
@@ -137,6 +138,7 @@ public class AMQChannel
     private final SecurityToken _token;
 
     private final PublishAuthorisationCache _publishAuthCahe;
+    private final LatencyStatistics _latencyStatistics;
 
 
 
@@ -237,6 +239,7 @@ public class AMQChannel
 
         _connection = connection;
         _channelId = channelId;
+        _latencyStatistics = new LatencyStatistics(connection.getLatencyStatistics());
 
         _subject = new Subject(false, connection.getSubject().getPrincipals(),
                                connection.getSubject().getPublicCredentials(),
@@ -528,6 +531,8 @@ public class AMQChannel
                             }
                             incrementUncommittedMessageSize(storedMessage);
                             incrementOutstandingTxnsIfNecessary();
+                            _latencyStatistics.registerEnqueue(amqMessage.getMessageNumber(),
+                                                               amqMessage.getArrivalTime());
                         }
 
                     }
@@ -1767,6 +1772,12 @@ public class AMQChannel
         return getUnacknowledgedMessageMap().size();
     }
 
+    @Override
+    public LatencyStatistics getLatencyStatistics()
+    {
+        return _latencyStatistics;
+    }
+
     private void flow(boolean flow)
     {
         MethodRegistry methodRegistry = _connection.getMethodRegistry();
@@ -72,6 +72,7 @@ import org.apache.qpid.server.model.Transport;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.ConnectionClosingTicker;
+import org.apache.qpid.server.queue.EnqueueBatch;
 import org.apache.qpid.server.security.SubjectCreator;
 import org.apache.qpid.server.security.auth.SubjectAuthenticationResult;
 import org.apache.qpid.server.store.StoreException;
@@ -248,10 +249,16 @@ public class AMQPConnection_0_8Impl
             {
                 updateLastReadTime();
 
+                // consecutive messages published to the same queue by the frames in this buffer are enqueued as a
+                // batch; the decoder applies the batch before processing any frame other than a publish
+                EnqueueBatch.begin();
+                boolean succeeded = false;
                 try
                 {
                     _decoder.decodeBuffer(msg);
+                    EnqueueBatch.flush();
                     receivedCompleteAllChannels();
+                    succeeded = true;
                 }
                 catch (AMQFrameDecodingException | IOException e)
                 {
@@ -269,6 +276,17 @@ public class AMQPConnection_0_8Impl
                         throw new ConnectionScopedRuntimeException(e);
                     }
                 }
+                finally
+                {
+                    if (succeeded)
+                    {
+                        EnqueueBatch.complete();
+                    }
+                    else
+                    {
+                        EnqueueBatch.completeAfterFailure();
+                    }
+                }
                 return null;
             }
         }, getAccessControllerContext());
@@ -31,11 +31,18 @@ import org.slf4j.LoggerFactory;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.codec.ServerDecoder;
 import org.apache.qpid.framing.AMQFrameDecodingException;
+import org.apache.qpid.framing.AMQMethodBodyImpl;
+import org.apache.qpid.framing.BasicPublishBody;
+import org.apache.qpid.framing.ContentBody;
+import org.apache.qpid.framing.ContentHeaderBody;
+import org.apache.qpid.server.queue.EnqueueBatch;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
 
 public class BrokerDecoder extends ServerDecoder
 {
     private static final Logger _logger = LoggerFactory.getLogger(BrokerDecoder.class);
+    private static final int PUBLISH_CLASS_AND_METHOD = (BasicPublishBody.CLASS_ID << 16) | BasicPublishBody.METHOD_ID;
+
     private final AMQPConnection_0_8Impl _connection;
     /**
      * Creates a new AMQP decoder.
@@ -64,6 +71,11 @@ public class BrokerDecoder extends ServerDecoder
             {
                 _connection.channelRequiresSync(channel);
             }
+            if (!isPublishFrame(type, in))
+            {
+                // frames other than publishes must see the messages published before them on their queues
+                EnqueueBatch.flush();
+            }
             doProcessFrame(channelId, type, bodySize, in);
 
         }
@@ -137,6 +149,15 @@ public class BrokerDecoder extends ServerDecoder
         return required;
     }
 
+    private boolean isPublishFrame(final byte type, final QpidByteBuffer in)
+    {
+        return type == ContentHeaderBody.TYPE
+               || type == ContentBody.TYPE
+               || (type == AMQMethodBodyImpl.TYPE
+                   && in.remaining() >= 4
+                   && in.getInt(in.position()) == PUBLISH_CLASS_AND_METHOD);
+    }
+
     private void doProcessFrame(final int channelId, final byte type, final long bodySize, final QpidByteBuffer in)
             throws AMQFrameDecodingException
     {
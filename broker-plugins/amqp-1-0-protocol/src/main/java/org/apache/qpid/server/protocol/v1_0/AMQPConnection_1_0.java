@@ -72,6 +72,7 @@ import org.apache.qpid.server.model.Transport;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.ConnectionClosingTicker;
+import org.apache.qpid.server.queue.EnqueueBatch;
 import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
 import org.apache.qpid.server.protocol.v1_0.type.UnsignedShort;
 import org.apache.qpid.server.protocol.v1_0.type.codec.AMQPDescribedTypeRegistry;
@@ -304,6 +305,11 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
     public void receive(final short channel, final Object frame)
     {
         FRAME_LOGGER.debug("RECV[{}|{}] : {}", _remoteAddress, channel, frame);
+        if (!(frame instanceof Transfer))
+        {
+            // frames other than transfers must see the messages transferred before them on their queues
+            EnqueueBatch.flush();
+        }
         if (frame instanceof FrameBody)
         {
             ((FrameBody) frame).invoke(channel, this);
@@ -1143,6 +1149,10 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
             public Object run()
             {
                 updateLastReadTime();
+                // consecutive messages transferred to the same queue by the frames in this buffer are enqueued as a
+                // batch; the batch is applied before any frame other than a transfer is processed
+                EnqueueBatch.begin();
+                boolean succeeded = false;
                 try
                 {
                     int remaining;
@@ -1174,6 +1184,7 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
 
                     }
                     while (msg.remaining() != remaining);
+                    succeeded = true;
                 }
                 catch (IllegalArgumentException | IllegalStateException e)
                 {
@@ -1190,6 +1201,17 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
                         throw new ConnectionScopedRuntimeException(e);
                     }
                 }
+                finally
+                {
+                    if (succeeded)
+                    {
+                        EnqueueBatch.complete();
+                    }
+                    else
+                    {
+                        EnqueueBatch.completeAfterFailure();
+                    }
+                }
                 return null;
             }
         }, getAccessControllerContext());
@@ -33,6 +33,7 @@ import org.apache.qpid.server.protocol.v1_0.type.Binary;
 import org.apache.qpid.server.protocol.v1_0.type.DeliveryState;
 import org.apache.qpid.server.protocol.v1_0.type.Outcome;
 import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
+import org.apache.qpid.server.protocol.v1_0.type.messaging.Accepted;
 import org.apache.qpid.server.protocol.v1_0.type.messaging.Target;
 import org.apache.qpid.server.protocol.v1_0.type.messaging.TerminusDurability;
 import org.apache.qpid.server.protocol.v1_0.type.transaction.TransactionalState;
@@ -233,6 +234,11 @@ public class ReceivingLink_1_0 implements ReceivingLinkListener, Link_1_0, Deliv
 
                     getSession().getAMQPConnection()
                             .registerMessageReceived(message.getSize(), message.getArrivalTime());
+                    if (outcome instanceof Accepted)
+                    {
+                        getSession().getLatencyStatistics().registerEnqueue(message.getMessageNumber(),
+                                                                             message.getArrivalTime());
+                    }
 
                     if (!(transaction instanceof AutoCommitTransaction))
                     {
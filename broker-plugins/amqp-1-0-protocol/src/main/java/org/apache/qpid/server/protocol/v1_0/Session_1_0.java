@@ -92,6 +92,7 @@ import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.ConsumerListener;
 import org.apache.qpid.server.protocol.LinkRegistry;
 import org.apache.qpid.server.security.SecurityToken;
+import org.apache.qpid.server.stats.LatencyStatistics;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.txn.AutoCommitTransaction;
 import org.apache.qpid.server.txn.ServerTransaction;
@@ -106,6 +107,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
     private static final Symbol LIFETIME_POLICY = Symbol.valueOf("lifetime-policy");
     private final AccessControlContext _accessControllerContext;
     private final SecurityToken _securityToken;
+    private final LatencyStatistics _latencyStatistics;
     private AutoCommitTransaction _transaction;
 
     private final LinkedHashMap<Integer, ServerTransaction> _openTransactions =
@@ -182,6 +184,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
         _subject.getPrincipals().addAll(connection.getSubject().getPrincipals());
         _subject.getPrincipals().add(new SessionPrincipal(this));
         _accessControllerContext = connection.getAccessControlContextFromSubject(_subject);
+        _latencyStatistics = new LatencyStatistics(connection.getLatencyStatistics());
         _securityToken = connection.getAddressSpace() instanceof ConfiguredObject
                 ? ((ConfiguredObject)connection.getAddressSpace()).newToken(_subject)
                 : connection.getBroker().newToken(_subject);
@@ -1304,6 +1307,12 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
         return 0;
     }
 
+    @Override
+    public LatencyStatistics getLatencyStatistics()
+    {
+        return _latencyStatistics;
+    }
+
     @Override
     public Long getTxnCount()
     {
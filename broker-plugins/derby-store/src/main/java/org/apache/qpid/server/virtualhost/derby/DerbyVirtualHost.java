@@ -20,6 +20,9 @@
 package org.apache.qpid.server.virtualhost.derby;
 
 import org.apache.qpid.server.model.ManagedAttribute;
+import org.apache.qpid.server.model.ManagedStatistic;
+import org.apache.qpid.server.model.StatisticType;
+import org.apache.qpid.server.model.StatisticUnit;
 import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.store.SizeMonitoringSettings;
 
@@ -35,4 +38,27 @@ public interface DerbyVirtualHost<X extends DerbyVirtualHost<X>> extends Virtual
 
     @ManagedAttribute(mandatory = true, defaultValue = "0")
     Long getStoreOverfullSize();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT,
+                      label = "Store Transactions Committed",
+                      description = "The number of transactions committed by the message store")
+    long getStoreCommittedTransactions();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT,
+                      label = "Store Database Commits",
+                      description = "The number of database commits made by the message store, each of which commits"
+                                    + " one or more transactions")
+    long getStoreDatabaseCommits();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Store Commit Latency p50",
+                      description = "50th percentile, in nanoseconds, of the time from the commit of message store"
+                                    + " transactions to the completion of the database commit that includes them")
+    long getStoreCommitLatencyP50();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Store Commit Latency p99",
+                      description = "99th percentile, in nanoseconds, of the time from the commit of message store"
+                                    + " transactions to the completion of the database commit that includes them")
+    long getStoreCommitLatencyP99();
 }
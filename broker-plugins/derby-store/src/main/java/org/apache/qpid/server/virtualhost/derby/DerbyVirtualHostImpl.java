@@ -25,6 +25,7 @@ import org.apache.qpid.server.model.ManagedAttributeField;
 import org.apache.qpid.server.model.ManagedObject;
 import org.apache.qpid.server.model.ManagedObjectFactoryConstructor;
 import org.apache.qpid.server.model.VirtualHostNode;
+import org.apache.qpid.server.store.AbstractJDBCMessageStore;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.derby.DerbyMessageStore;
 import org.apache.qpid.server.store.derby.DerbyUtils;
@@ -84,6 +85,40 @@ public class DerbyVirtualHostImpl extends AbstractVirtualHost<DerbyVirtualHostIm
         return _storeOverfullSize;
     }
 
+    @Override
+    public long getStoreCommittedTransactions()
+    {
+        final AbstractJDBCMessageStore messageStore = getJDBCMessageStore();
+        return messageStore == null ? 0L : messageStore.getCommittedTransactionCount();
+    }
+
+    @Override
+    public long getStoreDatabaseCommits()
+    {
+        final AbstractJDBCMessageStore messageStore = getJDBCMessageStore();
+        return messageStore == null ? 0L : messageStore.getDatabaseCommitCount();
+    }
+
+    @Override
+    public long getStoreCommitLatencyP50()
+    {
+        final AbstractJDBCMessageStore messageStore = getJDBCMessageStore();
+        return messageStore == null ? 0L : messageStore.getCommitLatencyAtPercentile(50.0);
+    }
+
+    @Override
+    public long getStoreCommitLatencyP99()
+    {
+        final AbstractJDBCMessageStore messageStore = getJDBCMessageStore();
+        return messageStore == null ? 0L : messageStore.getCommitLatencyAtPercentile(99.0);
+    }
+
+    private AbstractJDBCMessageStore getJDBCMessageStore()
+    {
+        final MessageStore messageStore = getMessageStore();
+        return messageStore instanceof AbstractJDBCMessageStore ? (AbstractJDBCMessageStore) messageStore : null;
+    }
+
     @Override
     protected void validateMessageStoreCreation()
     {
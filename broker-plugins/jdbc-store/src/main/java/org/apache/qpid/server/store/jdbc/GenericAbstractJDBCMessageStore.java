@@ -47,6 +47,7 @@ public abstract class GenericAbstractJDBCMessageStore extends org.apache.qpid.se
 
             createOrOpenMessageStoreDatabase();
             setMaximumMessageId();
+            initMessageStore(parent);
         }
     }
 
@@ -76,8 +77,14 @@ public abstract class GenericAbstractJDBCMessageStore extends org.apache.qpid.se
             }
             finally
             {
-                doClose();
-                super.closeMessageStore();
+                try
+                {
+                    super.closeMessageStore();
+                }
+                finally
+                {
+                    doClose();
+                }
             }
 
         }
@@ -0,0 +1,557 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store.segmentedlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+
+/**
+ * A file of the segmented log, mapped into memory in its entirety.  The file is sized when it is created and records
+ * are appended to it until it is full, each record being framed by its length and a CRC32 checksum of its type and
+ * body.  The unused remainder of the file is zero, so a zero length marks the end of the records.
+ * <p>
+ * The length of a record is written after its body, so that a record whose append was interrupted either fails its
+ * checksum or, if its length was never written, reads as the end of the records.  In the latter case whatever was
+ * written of it, and of any record after it, must be zeroed before the segment is appended to again, lest it be
+ * replayed as a record once its start has been overwritten.  Appends are made by a single thread at a time, under
+ * the lock of the store.
+ * <p>
+ * The mapping is released as soon as the segment is closed or deleted, rather than when the buffer is garbage
+ * collected, so that the disk blocks of a deleted segment are freed promptly.  Reads copy the records they return,
+ * pinning the segment only for the duration of the copy.
+ */
+class LogSegment
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogSegment.class);
+
+    interface RecordHandler
+    {
+        /**
+         * Handles a record of the segment.  The body holds the record less its type, and is positioned at the given
+         * offset within the segment.
+         */
+        void handle(LogSegment segment, byte type, ByteBuffer body, int bodyOffset);
+    }
+
+    static final int MAGIC = 0x51504c47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final String FILE_SUFFIX = ".log";
+    private static final int SCRATCH_SIZE = 8 * 1024;
+
+    private final long _number;
+    private final File _file;
+    private final MappedByteBuffer _buffer;
+    private final ByteBuffer _writeBuffer;
+    private final CRC32 _checksum = new CRC32();
+    private final byte[] _scratch = new byte[SCRATCH_SIZE];
+    private final Set<Long> _referencedSegments = new HashSet<>();
+    // one reference is held by the log until the segment is closed, and one by each read in progress
+    private final AtomicInteger _references = new AtomicInteger(1);
+    private final AtomicBoolean _closed = new AtomicBoolean();
+    private int _scratchPosition;
+    private int _recordStart;
+    private int _liveRecords;
+    private long _lastSupersedingSegment = -1L;
+
+    private LogSegment(final long number, final File file, final MappedByteBuffer buffer)
+    {
+        _number = number;
+        _file = file;
+        _buffer = buffer;
+        _writeBuffer = buffer.duplicate();
+    }
+
+    static LogSegment create(final File directory, final long number, final int size) throws IOException
+    {
+        final File file = new File(directory, getFileName(number));
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            randomAccessFile.setLength(size);
+            // the mapping stays valid once the file is closed
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, number);
+        buffer.force();
+
+        final LogSegment segment = new LogSegment(number, file, buffer);
+        segment._writeBuffer.position(HEADER_SIZE);
+        return segment;
+    }
+
+    /**
+     * Maps the existing file of a segment.
+     *
+     * @return the segment, or null if the file does not start with the header of the given segment
+     */
+    static LogSegment open(final File file, final long number) throws IOException
+    {
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+        }
+        if (buffer.capacity() < HEADER_SIZE
+            || buffer.getInt(0) != MAGIC
+            || buffer.getInt(4) != VERSION
+            || buffer.getLong(8) != number)
+        {
+            unmap(buffer);
+            return null;
+        }
+        final LogSegment segment = new LogSegment(number, file, buffer);
+        segment._writeBuffer.position(HEADER_SIZE);
+        return segment;
+    }
+
+    static String getFileName(final long number)
+    {
+        return String.format("%016x", number) + FILE_SUFFIX;
+    }
+
+    /**
+     * Returns the number of the segment held in the file of the given name, or -1 if the file is not a segment.
+     */
+    static long getSegmentNumber(final String fileName)
+    {
+        if (fileName.length() == 16 + FILE_SUFFIX.length() && fileName.endsWith(FILE_SUFFIX))
+        {
+            try
+            {
+                return Long.parseLong(fileName.substring(0, 16), 16);
+            }
+            catch (NumberFormatException e)
+            {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+
+    long getNumber()
+    {
+        return _number;
+    }
+
+    File getFile()
+    {
+        return _file;
+    }
+
+    int getSize()
+    {
+        return _buffer.capacity();
+    }
+
+    int getPosition()
+    {
+        return _writeBuffer.position() + _scratchPosition;
+    }
+
+    int remaining()
+    {
+        return _buffer.capacity() - getPosition();
+    }
+
+    /**
+     * Replays the records of the segment in the order in which they were appended, leaving the segment positioned to
+     * append after the last of them.
+     *
+     * @return false if the replay stopped at a record that is incomplete or fails its checksum, rather than at the
+     * end of the records
+     */
+    boolean replay(final RecordHandler handler)
+    {
+        final ByteBuffer buffer = _buffer.duplicate();
+        int position = HEADER_SIZE;
+        boolean complete = true;
+        while (buffer.capacity() - position >= RECORD_HEADER_SIZE)
+        {
+            final int length = buffer.getInt(position);
+            if (length == 0)
+            {
+                break;
+            }
+            final int bodyStart = position + RECORD_HEADER_SIZE;
+            if (length < 0 || length > buffer.capacity() - bodyStart
+                || buffer.getInt(position + 4) != checksum(buffer, bodyStart, length))
+            {
+                complete = false;
+                break;
+            }
+
+            buffer.limit(bodyStart + length);
+            buffer.position(bodyStart + 1);
+            handler.handle(this, buffer.get(bodyStart), buffer.slice(), bodyStart + 1);
+            buffer.clear();
+            position = bodyStart + length;
+        }
+        _writeBuffer.position(position);
+        return complete;
+    }
+
+    /**
+     * Zeroes the segment from its current position, so that nothing beyond the last record replayed is mistaken for a
+     * record once further records have been appended.  Only the parts of the segment that are not already zero are
+     * written.
+     */
+    void truncate()
+    {
+        final int position = _writeBuffer.position();
+        final byte[] zeroes = new byte[SCRATCH_SIZE];
+        boolean written = false;
+        while (_writeBuffer.hasRemaining())
+        {
+            final int length = Math.min(_scratch.length, _writeBuffer.remaining());
+            final int chunkStart = _writeBuffer.position();
+            _writeBuffer.get(_scratch, 0, length);
+            if (!isZero(_scratch, length))
+            {
+                _writeBuffer.position(chunkStart);
+                _writeBuffer.put(zeroes, 0, length);
+                written = true;
+            }
+        }
+        _writeBuffer.position(position);
+        if (written)
+        {
+            _buffer.force();
+        }
+    }
+
+    private static boolean isZero(final byte[] bytes, final int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (bytes[i] != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void beginRecord(final byte type)
+    {
+        _recordStart = _writeBuffer.position();
+        _writeBuffer.position(_recordStart + RECORD_HEADER_SIZE);
+        _checksum.reset();
+        putByte(type);
+    }
+
+    void putByte(final byte value)
+    {
+        ensureScratch(1);
+        _scratch[_scratchPosition++] = value;
+    }
+
+    void putInt(final int value)
+    {
+        ensureScratch(4);
+        for (int shift = 24; shift >= 0; shift -= 8)
+        {
+            _scratch[_scratchPosition++] = (byte) (value >>> shift);
+        }
+    }
+
+    void putLong(final long value)
+    {
+        ensureScratch(8);
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            _scratch[_scratchPosition++] = (byte) (value >>> shift);
+        }
+    }
+
+    void putBytes(final byte[] value)
+    {
+        putInt(value.length);
+        int offset = 0;
+        while (offset < value.length)
+        {
+            ensureScratch(1);
+            final int length = Math.min(value.length - offset, _scratch.length - _scratchPosition);
+            System.arraycopy(value, offset, _scratch, _scratchPosition, length);
+            _scratchPosition += length;
+            offset += length;
+        }
+    }
+
+    void putContent(final Collection<QpidByteBuffer> content)
+    {
+        for (QpidByteBuffer buf : content)
+        {
+            final QpidByteBuffer source = buf.duplicate();
+            try
+            {
+                while (source.hasRemaining())
+                {
+                    ensureScratch(1);
+                    final int length = Math.min(source.remaining(), _scratch.length - _scratchPosition);
+                    source.get(_scratch, _scratchPosition, length);
+                    _scratchPosition += length;
+                }
+            }
+            finally
+            {
+                source.dispose();
+            }
+        }
+    }
+
+    /**
+     * Completes the record begun by {@link #beginRecord(byte)}, writing its length and checksum.
+     *
+     * @return the position in the segment following the record
+     */
+    int endRecord()
+    {
+        flushScratch();
+        final int end = _writeBuffer.position();
+        final int length = end - _recordStart - RECORD_HEADER_SIZE;
+        _writeBuffer.putInt(_recordStart + 4, (int) _checksum.getValue());
+        _writeBuffer.putInt(_recordStart, length);
+        return end;
+    }
+
+    /**
+     * Copies the given region of the segment into a new buffer.
+     *
+     * @return the copy, or null if the segment has been closed
+     */
+    QpidByteBuffer copy(final int offset, final int length)
+    {
+        if (!pin())
+        {
+            return null;
+        }
+        try
+        {
+            final QpidByteBuffer copy = QpidByteBuffer.allocateDirect(length);
+            copy.put(slice(offset, length));
+            copy.flip();
+            return copy;
+        }
+        finally
+        {
+            unpin();
+        }
+    }
+
+    /**
+     * Copies the given region of the segment into a new array.
+     *
+     * @return the copy, or null if the segment has been closed
+     */
+    byte[] getBytes(final int offset, final int length)
+    {
+        if (!pin())
+        {
+            return null;
+        }
+        try
+        {
+            final byte[] bytes = new byte[length];
+            slice(offset, length).get(bytes);
+            return bytes;
+        }
+        finally
+        {
+            unpin();
+        }
+    }
+
+    void force()
+    {
+        _buffer.force();
+    }
+
+    /**
+     * Releases the mapping of the segment once no read is in progress.  The segment must no longer be appended to.
+     */
+    void close()
+    {
+        if (_closed.compareAndSet(false, true))
+        {
+            unpin();
+        }
+    }
+
+    boolean delete()
+    {
+        close();
+        return _file.delete();
+    }
+
+    int getLiveRecords()
+    {
+        return _liveRecords;
+    }
+
+    void addLiveRecord()
+    {
+        _liveRecords++;
+    }
+
+    /**
+     * Records that a record of this segment has been superseded by a record of the given segment.
+     */
+    void removeLiveRecord(final LogSegment supersedingSegment)
+    {
+        _liveRecords--;
+        _lastSupersedingSegment = Math.max(_lastSupersedingSegment, supersedingSegment.getNumber());
+        if (supersedingSegment != this)
+        {
+            supersedingSegment._referencedSegments.add(_number);
+        }
+    }
+
+    /**
+     * Returns the numbers of the segments holding records superseded by records of this segment.  This segment must
+     * be kept for as long as any of them is, lest those records be replayed.
+     */
+    Set<Long> getReferencedSegments()
+    {
+        return _referencedSegments;
+    }
+
+    /**
+     * Returns the number of the latest segment holding a record that superseded a record of this segment, or -1 if
+     * none has.
+     */
+    long getLastSupersedingSegment()
+    {
+        return _lastSupersedingSegment;
+    }
+
+    private ByteBuffer slice(final int offset, final int length)
+    {
+        final ByteBuffer buffer = _buffer.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice();
+    }
+
+    private boolean pin()
+    {
+        int references;
+        do
+        {
+            references = _references.get();
+            if (references == 0)
+            {
+                return false;
+            }
+        }
+        while (!_references.compareAndSet(references, references + 1));
+        return true;
+    }
+
+    private void unpin()
+    {
+        if (_references.decrementAndGet() == 0)
+        {
+            unmap(_buffer);
+        }
+    }
+
+    private static void unmap(final MappedByteBuffer buffer)
+    {
+        try
+        {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+            {
+                final Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            // the mapping is released when the buffer is garbage collected instead
+            LOGGER.debug("Cannot release the mapping of a segment", e);
+        }
+    }
+
+    private void ensureScratch(final int length)
+    {
+        if (_scratch.length - _scratchPosition < length)
+        {
+            flushScratch();
+        }
+    }
+
+    private void flushScratch()
+    {
+        if (_scratchPosition > 0)
+        {
+            _checksum.update(_scratch, 0, _scratchPosition);
+            _writeBuffer.put(_scratch, 0, _scratchPosition);
+            _scratchPosition = 0;
+        }
+    }
+
+    private int checksum(final ByteBuffer buffer, final int offset, final int length)
+    {
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer body = buffer.duplicate();
+        body.position(offset);
+        int remaining = length;
+        while (remaining > 0)
+        {
+            final int chunk = Math.min(remaining, _scratch.length);
+            body.get(_scratch, 0, chunk);
+            checksum.update(_scratch, 0, chunk);
+            remaining -= chunk;
+        }
+        return (int) checksum.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LogSegment[number=" + _number + ", file=" + _file.getAbsolutePath() + "]";
+    }
+}
@@ -0,0 +1,1918 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store.segmentedlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.message.EnqueueableMessage;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.plugin.MessageMetaDataType;
+import org.apache.qpid.server.store.Event;
+import org.apache.qpid.server.store.EventListener;
+import org.apache.qpid.server.store.EventManager;
+import org.apache.qpid.server.store.FileBasedSettings;
+import org.apache.qpid.server.store.MessageDurability;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.MessageHandle;
+import org.apache.qpid.server.store.MessageMetaDataTypeRegistry;
+import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.MessageStoreProvider;
+import org.apache.qpid.server.store.StorableMessageMetaData;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.store.Transaction;
+import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.store.Xid;
+import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
+import org.apache.qpid.server.store.handler.MessageHandler;
+import org.apache.qpid.server.store.handler.MessageIdHandler;
+import org.apache.qpid.server.store.handler.MessageInstanceHandler;
+import org.apache.qpid.server.virtualhost.segmentedlog.SegmentedLogVirtualHost;
+import org.apache.qpid.util.FileUtils;
+
+/**
+ * A message store that appends every change to a log, rather than updating the records of a database in place.
+ * <p>
+ * The log is a sequence of fixed size segment files, each mapped into memory.  The meta-data and content of a message
+ * are appended when the message is first enqueued by a transaction or is flowed to disk, and a transaction appends a
+ * single record holding all of its enqueues, dequeues and distributed transaction changes.  The content of a stored
+ * message is copied from the mapping when it is read.  The store keeps an index of the messages, queue entries and
+ * distributed transactions that are current, so that none of the log need be read once it has been recovered.
+ * <p>
+ * Transactions append their records under a single lock and then wait for a sync thread to force the log to disk.
+ * The sync thread forces the records of all the transactions waiting when it becomes free at once, so that the cost
+ * of the force is shared between them.  Should a force fail, the records appended since the last sync may be lost,
+ * so the store fails every later append and sync.  After each successful force the sync thread also deletes the files
+ * of segments none of whose records are current any longer, unless a later segment holds a record superseding a
+ * record of an earlier segment that is still present.  A segment is kept for as long as any of its records is
+ * current, so a single long lived message keeps its segment on disk.
+ * <p>
+ * A segment that is full is ended with a record of its own, and is forced by the sync thread together with the
+ * segment that follows it, rather than by the appending thread.
+ * <p>
+ * On opening, the segments are replayed in order to rebuild the index.  The first record that is incomplete or fails
+ * its checksum, or the missing end of a segment that is followed by another, is taken to be the end of the log.
+ */
+public class SegmentedLogMessageStore implements MessageStore, MessageStoreProvider
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedLogMessageStore.class);
+
+    public static final String TYPE = "SegmentedLog";
+
+    private static final int MINIMUM_SEGMENT_SIZE = 64 * 1024;
+
+    private static final byte MESSAGE_RECORD = 1;
+    private static final byte TRANSACTION_RECORD = 2;
+    private static final byte REMOVE_RECORD = 3;
+    private static final byte SEGMENT_END_RECORD = 4;
+
+    private static final int SEGMENT_END_RECORD_SIZE = LogSegment.RECORD_HEADER_SIZE + 1;
+
+    private static final byte ENQUEUE_OPERATION = 1;
+    private static final byte DEQUEUE_OPERATION = 2;
+    private static final byte RECORD_XID_OPERATION = 3;
+    private static final byte REMOVE_XID_OPERATION = 4;
+
+    private static final int QUEUE_ENTRY_SIZE = 16 + 8;
+
+    private final AtomicBoolean _messageStoreOpen = new AtomicBoolean(false);
+    private final AtomicLong _messageId = new AtomicLong(1);
+    private final AtomicLong _committedTransactions = new AtomicLong();
+    private final AtomicLong _syncs = new AtomicLong();
+    private final EventManager _eventManager = new EventManager();
+
+    private final Object _lock = new Object();
+    private final NavigableMap<Long, LogSegment> _segments = new TreeMap<>();
+    // in the order in which they were first appended to, which is the order in which they must be forced
+    private final Set<LogSegment> _unsyncedSegments = new LinkedHashSet<>();
+    private final ConcurrentNavigableMap<Long, StoredLogMessage<?>> _storedMessages = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<UUID, ConcurrentNavigableMap<Long, LogSegment>> _queueEntries =
+            new ConcurrentHashMap<>();
+    private final Map<Xid, DistributedTransaction> _distributedTransactions = new HashMap<>();
+
+    private File _storeDirectory;
+    private int _segmentSize;
+    private long _compactionInterval;
+    private LogSegment _currentSegment;
+    private LogSyncer _syncer;
+    private StoreException _syncFailure;
+
+    @Override
+    public void openMessageStore(final ConfiguredObject<?> parent)
+    {
+        if (_messageStoreOpen.compareAndSet(false, true))
+        {
+            _storeDirectory = new File(((FileBasedSettings) parent).getStorePath());
+            if (!_storeDirectory.exists() && !_storeDirectory.mkdirs())
+            {
+                throw new StoreException("Cannot create directory " + _storeDirectory.getAbsolutePath());
+            }
+            _segmentSize = Math.max(MINIMUM_SEGMENT_SIZE,
+                                    getContextValue(parent,
+                                                    Integer.class,
+                                                    SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_SEGMENT_SIZE,
+                                                    SegmentedLogVirtualHost.DEFAULT_SEGMENT_SIZE));
+            _compactionInterval = Math.max(1L,
+                                           getContextValue(parent,
+                                                           Long.class,
+                                                           SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_COMPACTION_INTERVAL,
+                                                           SegmentedLogVirtualHost.DEFAULT_COMPACTION_INTERVAL));
+
+            recover();
+
+            final LogSyncer syncer = new LogSyncer("Log-Syncer-" + parent.getName());
+            synchronized (_lock)
+            {
+                _syncer = syncer;
+            }
+            syncer.start();
+        }
+    }
+
+    private static <T> T getContextValue(final ConfiguredObject<?> parent,
+                                         final Class<T> type,
+                                         final String name,
+                                         final T defaultValue)
+    {
+        return parent.getContextKeys(false).contains(name) ? parent.getContextValue(type, name) : defaultValue;
+    }
+
+    @Override
+    public void upgradeStoreStructure() throws StoreException
+    {
+        checkMessageStoreOpen();
+    }
+
+    @Override
+    public <T extends StorableMessageMetaData> MessageHandle<T> addMessage(final T metaData)
+    {
+        return new StoredLogMessage<>(getNextMessageId(), metaData);
+    }
+
+    @Override
+    public long getNextMessageId()
+    {
+        return _messageId.getAndIncrement();
+    }
+
+    @Override
+    public boolean isPersistent()
+    {
+        return true;
+    }
+
+    @Override
+    public Transaction newTransaction()
+    {
+        checkMessageStoreOpen();
+        return new SegmentedLogTransaction();
+    }
+
+    @Override
+    public void closeMessageStore()
+    {
+        final LogSyncer syncer;
+        synchronized (_lock)
+        {
+            if (!_messageStoreOpen.compareAndSet(true, false))
+            {
+                return;
+            }
+            syncer = _syncer;
+            _syncer = null;
+        }
+
+        syncer.close();
+
+        synchronized (_lock)
+        {
+            if (_syncFailure == null)
+            {
+                for (LogSegment segment : _unsyncedSegments)
+                {
+                    segment.force();
+                }
+            }
+            _unsyncedSegments.clear();
+            for (LogSegment segment : _segments.values())
+            {
+                segment.close();
+            }
+            _segments.clear();
+            _currentSegment = null;
+            _storedMessages.clear();
+            _queueEntries.clear();
+            _distributedTransactions.clear();
+        }
+    }
+
+    @Override
+    public void onDelete(final ConfiguredObject<?> parent)
+    {
+        if (_messageStoreOpen.get())
+        {
+            throw new IllegalStateException("Cannot delete the store as the message store is still open");
+        }
+
+        final String storePath = ((FileBasedSettings) parent).getStorePath();
+        if (storePath != null)
+        {
+            LOGGER.debug("Deleting store {}", storePath);
+
+            if (!FileUtils.delete(new File(storePath), true))
+            {
+                LOGGER.info("Failed to delete the store at location " + storePath);
+            }
+        }
+    }
+
+    @Override
+    public void addEventListener(final EventListener eventListener, final Event... events)
+    {
+        _eventManager.addEventListener(eventListener, events);
+    }
+
+    @Override
+    public String getStoreLocation()
+    {
+        return _storeDirectory == null ? null : _storeDirectory.getAbsolutePath();
+    }
+
+    @Override
+    public File getStoreLocationAsFile()
+    {
+        return _storeDirectory;
+    }
+
+    @Override
+    public MessageStore getMessageStore()
+    {
+        return this;
+    }
+
+    @Override
+    public MessageStoreReader newMessageStoreReader()
+    {
+        return new SegmentedLogMessageStoreReader();
+    }
+
+    public long getCommittedTransactionCount()
+    {
+        return _committedTransactions.get();
+    }
+
+    /**
+     * Returns the number of times the log has been forced to disk on behalf of transactions, or to make durable the
+     * removals preceding a compaction.
+     */
+    public long getSyncCount()
+    {
+        return _syncs.get();
+    }
+
+    public int getSegmentCount()
+    {
+        synchronized (_lock)
+        {
+            return _segments.size();
+        }
+    }
+
+    private void checkMessageStoreOpen()
+    {
+        if (!_messageStoreOpen.get())
+        {
+            throw new IllegalStateException("Message store is not open");
+        }
+    }
+
+    private void recover()
+    {
+        final NavigableMap<Long, File> segmentFiles = new TreeMap<>();
+        final File[] files = _storeDirectory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                final long number = LogSegment.getSegmentNumber(file.getName());
+                if (number >= 0L)
+                {
+                    segmentFiles.put(number, file);
+                }
+            }
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final RecoveryHandler recoveryHandler = new RecoveryHandler();
+        synchronized (_lock)
+        {
+            final Iterator<Map.Entry<Long, File>> iterator = segmentFiles.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                final Map.Entry<Long, File> entry = iterator.next();
+                final File file = entry.getValue();
+                final boolean last = !iterator.hasNext();
+                final LogSegment segment;
+                try
+                {
+                    segment = LogSegment.open(file, entry.getKey());
+                }
+                catch (IOException e)
+                {
+                    throw new StoreException("Cannot open segment " + file.getAbsolutePath(), e);
+                }
+
+                if (segment == null)
+                {
+                    if (!last)
+                    {
+                        throw new StoreException("File " + file.getAbsolutePath() + " is not a segment of version "
+                                                 + LogSegment.VERSION);
+                    }
+                    // the segment was created, but its header was never synced
+                    LOGGER.warn("Deleting segment {} of which no record was synced", file.getAbsolutePath());
+                    if (!file.delete())
+                    {
+                        throw new StoreException("Cannot delete incomplete segment " + file.getAbsolutePath());
+                    }
+                    break;
+                }
+
+                _segments.put(segment.getNumber(), segment);
+                _currentSegment = segment;
+                if (!segment.replay(recoveryHandler) || (!last && !recoveryHandler.isEnded(segment)))
+                {
+                    // a segment is ended and synced before any record of the next is acknowledged, so the log ends at
+                    // the first record that is incomplete, and the later segments hold nothing that was acknowledged
+                    LOGGER.warn("Discarding the incomplete record at position {} of segment {}",
+                                segment.getPosition(),
+                                file.getAbsolutePath());
+                    segment.truncate();
+                    while (iterator.hasNext())
+                    {
+                        final File discardedFile = iterator.next().getValue();
+                        LOGGER.warn("Deleting segment {} which follows the end of the log",
+                                    discardedFile.getAbsolutePath());
+                        if (!discardedFile.delete())
+                        {
+                            throw new StoreException("Cannot delete segment " + discardedFile.getAbsolutePath());
+                        }
+                    }
+                }
+                else if (last)
+                {
+                    // a record whose length was never written reads as the end of the log, so whatever follows it is
+                    // zeroed lest it be replayed once the records appended after recovery have overwritten its start
+                    segment.truncate();
+                }
+            }
+
+            if (_currentSegment == null)
+            {
+                _currentSegment = createSegment(0L, _segmentSize);
+            }
+            else if (recoveryHandler.isEnded(_currentSegment))
+            {
+                _currentSegment = createSegment(_currentSegment.getNumber() + 1L, _segmentSize);
+            }
+        }
+        _messageId.set(recoveryHandler.getMaximumMessageId() + 1L);
+
+        LOGGER.info("Recovered {} message(s), {} queue entries and {} distributed transaction(s) from {} segment(s)"
+                    + " in {} ms",
+                    _storedMessages.size(),
+                    recoveryHandler.getQueueEntryCount(),
+                    _distributedTransactions.size(),
+                    _segments.size(),
+                    System.currentTimeMillis() - startTime);
+    }
+
+    private LogSegment createSegment(final long number, final int size)
+    {
+        try
+        {
+            final LogSegment segment = LogSegment.create(_storeDirectory, number, size);
+            _segments.put(number, segment);
+            LOGGER.debug("Created segment {}", segment);
+            return segment;
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Cannot create segment " + number + " in " + _storeDirectory.getAbsolutePath(),
+                                     e);
+        }
+    }
+
+    /**
+     * Returns the segment to which a record of the given size is to be appended, moving on to a new segment if the
+     * current one cannot hold it.  Must be called with the lock held.
+     */
+    private LogSegment prepareAppend(final int recordSize)
+    {
+        if (_syncFailure != null)
+        {
+            throw new StoreException("Cannot append to the log, which has failed to sync", _syncFailure);
+        }
+        final int size = LogSegment.RECORD_HEADER_SIZE + recordSize;
+        // room is always left in a segment for the record that ends it
+        if (_currentSegment.remaining() < size + SEGMENT_END_RECORD_SIZE)
+        {
+            // the syncer forces the ended segment before the next, so recovery can tell a segment whose tail was lost
+            // by the missing end record
+            _currentSegment.beginRecord(SEGMENT_END_RECORD);
+            _currentSegment.endRecord();
+            _unsyncedSegments.add(_currentSegment);
+            _currentSegment = createSegment(_currentSegment.getNumber() + 1L,
+                                            Math.max(_segmentSize,
+                                                     LogSegment.HEADER_SIZE + size + SEGMENT_END_RECORD_SIZE));
+        }
+        _unsyncedSegments.add(_currentSegment);
+        return _currentSegment;
+    }
+
+    /**
+     * Appends the meta-data and content of the message to the log.  Must be called with the lock held.
+     */
+    private MessageLocation appendMessage(final long messageId,
+                                          final StorableMessageMetaData metaData,
+                                          final Collection<QpidByteBuffer> content)
+    {
+        final byte[] metaDataBytes = new byte[metaData.getStorableSize()];
+        final QpidByteBuffer metaDataBuffer = QpidByteBuffer.wrap(metaDataBytes);
+        metaData.writeToBuffer(metaDataBuffer);
+        metaDataBuffer.dispose();
+
+        int contentLength = 0;
+        for (QpidByteBuffer buf : content)
+        {
+            contentLength += buf.remaining();
+        }
+
+        final LogSegment segment = prepareAppend(1 + 8 + 1 + 4 + metaDataBytes.length + 4 + contentLength);
+        segment.beginRecord(MESSAGE_RECORD);
+        segment.putLong(messageId);
+        final byte metaDataType = (byte) metaData.getType().ordinal();
+        segment.putByte(metaDataType);
+        final int metaDataOffset = segment.getPosition() + 4;
+        segment.putBytes(metaDataBytes);
+        segment.putInt(contentLength);
+        final int contentOffset = segment.getPosition();
+        segment.putContent(content);
+        segment.endRecord();
+
+        return new MessageLocation(segment,
+                                   metaDataType,
+                                   metaDataOffset,
+                                   metaDataBytes.length,
+                                   contentOffset,
+                                   contentLength);
+    }
+
+    /**
+     * Appends the removal of the message to the log.  Must be called with the lock held.
+     */
+    private void appendRemove(final long messageId)
+    {
+        final LogSegment segment = prepareAppend(1 + 8);
+        segment.beginRecord(REMOVE_RECORD);
+        segment.putLong(messageId);
+        segment.endRecord();
+        messageRemoved(messageId, segment);
+    }
+
+    /**
+     * Appends the messages that have not yet been stored, and then a record of the operations of a transaction.
+     *
+     * @return false if the transaction has no operations, and so nothing was appended
+     */
+    private boolean appendTransaction(final List<StoredLogMessage<?>> messages, final List<Operation> operations)
+    {
+        if (operations.isEmpty())
+        {
+            return false;
+        }
+
+        synchronized (_lock)
+        {
+            checkMessageStoreOpen();
+
+            for (StoredLogMessage<?> message : messages)
+            {
+                message.store();
+            }
+
+            int size = 1 + 4;
+            for (Operation operation : operations)
+            {
+                size += operation.getSize();
+            }
+            final LogSegment segment = prepareAppend(size);
+            segment.beginRecord(TRANSACTION_RECORD);
+            segment.putInt(operations.size());
+            for (Operation operation : operations)
+            {
+                operation.write(segment);
+            }
+            segment.endRecord();
+
+            for (Operation operation : operations)
+            {
+                operation.apply(segment);
+            }
+        }
+        _committedTransactions.incrementAndGet();
+        return true;
+    }
+
+    private void messageStored(final StoredLogMessage<?> message, final LogSegment segment)
+    {
+        _storedMessages.put(message.getMessageNumber(), message);
+        segment.addLiveRecord();
+    }
+
+    private void messageRemoved(final long messageId, final LogSegment segment)
+    {
+        final StoredLogMessage<?> message = _storedMessages.remove(messageId);
+        if (message != null)
+        {
+            message.getLocation().getSegment().removeLiveRecord(segment);
+        }
+    }
+
+    /**
+     * Removes from the log, and returns, the segments whose files can be deleted.  A segment can be deleted when
+     * none of its records is current, it is no longer being appended to, the records that superseded its records
+     * have been synced, and all the segments holding records superseded by its records have themselves been removed.
+     * Must be called with the lock held.
+     */
+    private List<LogSegment> removeCompactableSegments()
+    {
+        final List<LogSegment> compactableSegments = new ArrayList<>();
+        final Iterator<LogSegment> iterator = _segments.values().iterator();
+        while (iterator.hasNext())
+        {
+            final LogSegment segment = iterator.next();
+            if (segment != _currentSegment
+                && segment.getLiveRecords() == 0
+                && !isSupersededByUnsyncedRecord(segment)
+                && !referencesRetainedSegment(segment))
+            {
+                iterator.remove();
+                compactableSegments.add(segment);
+            }
+        }
+        return compactableSegments;
+    }
+
+    private boolean isSupersededByUnsyncedRecord(final LogSegment segment)
+    {
+        // segments are appended to in order, so a segment later than any unsynced segment holds no synced record
+        for (LogSegment unsyncedSegment : _unsyncedSegments)
+        {
+            if (unsyncedSegment.getNumber() <= segment.getLastSupersedingSegment())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean referencesRetainedSegment(final LogSegment segment)
+    {
+        final Iterator<Long> iterator = segment.getReferencedSegments().iterator();
+        while (iterator.hasNext())
+        {
+            if (_segments.containsKey(iterator.next()))
+            {
+                return true;
+            }
+            iterator.remove();
+        }
+        return false;
+    }
+
+    private void awaitSync(final ListenableFuture<?> future)
+    {
+        try
+        {
+            future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted whilst waiting for the log to be synced", e);
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new StoreException("Failed to sync the log", cause);
+        }
+    }
+
+    private Operation readOperation(final ByteBuffer body)
+    {
+        final byte type = body.get();
+        switch (type)
+        {
+            case ENQUEUE_OPERATION:
+                return new EnqueueOperation(readUUID(body), body.getLong());
+            case DEQUEUE_OPERATION:
+                return new DequeueOperation(readUUID(body), body.getLong());
+            case RECORD_XID_OPERATION:
+                final Xid xid = readXid(body);
+                final RecordImpl[] enqueues = readRecords(body);
+                final RecordImpl[] dequeues = readRecords(body);
+                return new RecordXidOperation(xid, enqueues, dequeues);
+            case REMOVE_XID_OPERATION:
+                return new RemoveXidOperation(readXid(body));
+            default:
+                throw new StoreException("Unknown operation type " + type);
+        }
+    }
+
+    private static UUID readUUID(final ByteBuffer body)
+    {
+        final long mostSignificantBits = body.getLong();
+        return new UUID(mostSignificantBits, body.getLong());
+    }
+
+    private static byte[] readBytes(final ByteBuffer body)
+    {
+        final byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return bytes;
+    }
+
+    private static Xid readXid(final ByteBuffer body)
+    {
+        final long format = body.getLong();
+        final byte[] globalId = readBytes(body);
+        return new Xid(format, globalId, readBytes(body));
+    }
+
+    private static RecordImpl[] readRecords(final ByteBuffer body)
+    {
+        final RecordImpl[] records = new RecordImpl[body.getInt()];
+        for (int i = 0; i < records.length; i++)
+        {
+            final UUID queueId = readUUID(body);
+            records[i] = new RecordImpl(queueId, body.getLong());
+        }
+        return records;
+    }
+
+    private static void writeUUID(final LogSegment segment, final UUID uuid)
+    {
+        segment.putLong(uuid.getMostSignificantBits());
+        segment.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static int getXidSize(final Xid xid)
+    {
+        return 8 + 4 + xid.getGlobalId().length + 4 + xid.getBranchId().length;
+    }
+
+    private static void writeXid(final LogSegment segment, final Xid xid)
+    {
+        segment.putLong(xid.getFormat());
+        segment.putBytes(xid.getGlobalId());
+        segment.putBytes(xid.getBranchId());
+    }
+
+    private static void writeRecords(final LogSegment segment, final RecordImpl[] records)
+    {
+        segment.putInt(records.length);
+        for (RecordImpl record : records)
+        {
+            writeUUID(segment, record.getId());
+            segment.putLong(record.getMessageNumber());
+        }
+    }
+
+    private abstract class Operation
+    {
+        /**
+         * Returns the size in bytes of the operation within a transaction record.
+         */
+        abstract int getSize();
+
+        abstract void write(LogSegment segment);
+
+        /**
+         * Applies the operation, appended to the given segment, to the index.
+         */
+        abstract void apply(LogSegment segment);
+
+        long getMessageNumber()
+        {
+            return 0L;
+        }
+    }
+
+    private final class EnqueueOperation extends Operation
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        private EnqueueOperation(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        int getSize()
+        {
+            return 1 + QUEUE_ENTRY_SIZE;
+        }
+
+        @Override
+        void write(final LogSegment segment)
+        {
+            segment.putByte(ENQUEUE_OPERATION);
+            writeUUID(segment, _queueId);
+            segment.putLong(_messageNumber);
+        }
+
+        @Override
+        void apply(final LogSegment segment)
+        {
+            ConcurrentNavigableMap<Long, LogSegment> entries = _queueEntries.get(_queueId);
+            if (entries == null)
+            {
+                entries = new ConcurrentSkipListMap<>();
+                _queueEntries.put(_queueId, entries);
+            }
+            final LogSegment previous = entries.put(_messageNumber, segment);
+            segment.addLiveRecord();
+            if (previous != null)
+            {
+                previous.removeLiveRecord(segment);
+            }
+        }
+
+        @Override
+        long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+    }
+
+    private final class DequeueOperation extends Operation
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        private DequeueOperation(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        int getSize()
+        {
+            return 1 + QUEUE_ENTRY_SIZE;
+        }
+
+        @Override
+        void write(final LogSegment segment)
+        {
+            segment.putByte(DEQUEUE_OPERATION);
+            writeUUID(segment, _queueId);
+            segment.putLong(_messageNumber);
+        }
+
+        @Override
+        void apply(final LogSegment segment)
+        {
+            final ConcurrentNavigableMap<Long, LogSegment> entries = _queueEntries.get(_queueId);
+            if (entries != null)
+            {
+                final LogSegment enqueueSegment = entries.remove(_messageNumber);
+                if (enqueueSegment != null)
+                {
+                    enqueueSegment.removeLiveRecord(segment);
+                }
+                if (entries.isEmpty())
+                {
+                    _queueEntries.remove(_queueId, entries);
+                }
+            }
+        }
+
+        @Override
+        long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+    }
+
+    private final class RecordXidOperation extends Operation
+    {
+        private final Xid _xid;
+        private final RecordImpl[] _enqueues;
+        private final RecordImpl[] _dequeues;
+
+        private RecordXidOperation(final Xid xid, final RecordImpl[] enqueues, final RecordImpl[] dequeues)
+        {
+            _xid = xid;
+            _enqueues = enqueues;
+            _dequeues = dequeues;
+        }
+
+        @Override
+        int getSize()
+        {
+            return 1 + getXidSize(_xid) + 4 + _enqueues.length * QUEUE_ENTRY_SIZE
+                   + 4 + _dequeues.length * QUEUE_ENTRY_SIZE;
+        }
+
+        @Override
+        void write(final LogSegment segment)
+        {
+            segment.putByte(RECORD_XID_OPERATION);
+            writeXid(segment, _xid);
+            writeRecords(segment, _enqueues);
+            writeRecords(segment, _dequeues);
+        }
+
+        @Override
+        void apply(final LogSegment segment)
+        {
+            final DistributedTransaction previous =
+                    _distributedTransactions.put(_xid, new DistributedTransaction(segment, _enqueues, _dequeues));
+            segment.addLiveRecord();
+            if (previous != null)
+            {
+                previous.getSegment().removeLiveRecord(segment);
+            }
+        }
+
+        @Override
+        long getMessageNumber()
+        {
+            long messageNumber = 0L;
+            for (RecordImpl record : _enqueues)
+            {
+                messageNumber = Math.max(messageNumber, record.getMessageNumber());
+            }
+            return messageNumber;
+        }
+    }
+
+    private final class RemoveXidOperation extends Operation
+    {
+        private final Xid _xid;
+
+        private RemoveXidOperation(final Xid xid)
+        {
+            _xid = xid;
+        }
+
+        @Override
+        int getSize()
+        {
+            return 1 + getXidSize(_xid);
+        }
+
+        @Override
+        void write(final LogSegment segment)
+        {
+            segment.putByte(REMOVE_XID_OPERATION);
+            writeXid(segment, _xid);
+        }
+
+        @Override
+        void apply(final LogSegment segment)
+        {
+            final DistributedTransaction transaction = _distributedTransactions.remove(_xid);
+            if (transaction != null)
+            {
+                transaction.getSegment().removeLiveRecord(segment);
+            }
+        }
+    }
+
+    private final class RecoveryHandler implements LogSegment.RecordHandler
+    {
+        private long _maximumMessageId;
+        private long _queueEntryCount;
+        private LogSegment _endedSegment;
+
+        @Override
+        public void handle(final LogSegment segment, final byte type, final ByteBuffer body, final int bodyOffset)
+        {
+            switch (type)
+            {
+                case MESSAGE_RECORD:
+                    final long messageId = body.getLong();
+                    final byte metaDataType = body.get();
+                    final int metaDataLength = body.getInt();
+                    final int metaDataOffset = bodyOffset + body.position();
+                    body.position(body.position() + metaDataLength);
+                    final int contentLength = body.getInt();
+                    final int contentOffset = bodyOffset + body.position();
+                    final MessageLocation location = new MessageLocation(segment,
+                                                                         metaDataType,
+                                                                         metaDataOffset,
+                                                                         metaDataLength,
+                                                                         contentOffset,
+                                                                         contentLength);
+                    messageRemoved(messageId, segment);
+                    messageStored(new StoredLogMessage<StorableMessageMetaData>(messageId, location), segment);
+                    _maximumMessageId = Math.max(_maximumMessageId, messageId);
+                    break;
+                case TRANSACTION_RECORD:
+                    final int operationCount = body.getInt();
+                    for (int i = 0; i < operationCount; i++)
+                    {
+                        final Operation operation = readOperation(body);
+                        operation.apply(segment);
+                        _maximumMessageId = Math.max(_maximumMessageId, operation.getMessageNumber());
+                    }
+                    break;
+                case REMOVE_RECORD:
+                    final long removedMessageId = body.getLong();
+                    messageRemoved(removedMessageId, segment);
+                    _maximumMessageId = Math.max(_maximumMessageId, removedMessageId);
+                    break;
+                case SEGMENT_END_RECORD:
+                    _endedSegment = segment;
+                    break;
+                default:
+                    throw new StoreException("Unknown record type " + type + " in segment " + segment);
+            }
+        }
+
+        long getMaximumMessageId()
+        {
+            return _maximumMessageId;
+        }
+
+        boolean isEnded(final LogSegment segment)
+        {
+            return _endedSegment == segment;
+        }
+
+        long getQueueEntryCount()
+        {
+            long queueEntryCount = 0L;
+            for (ConcurrentNavigableMap<Long, LogSegment> entries : _queueEntries.values())
+            {
+                queueEntryCount += entries.size();
+            }
+            return queueEntryCount;
+        }
+    }
+
+    private static final class MessageLocation
+    {
+        private final LogSegment _segment;
+        private final byte _metaDataType;
+        private final int _metaDataOffset;
+        private final int _metaDataLength;
+        private final int _contentOffset;
+        private final int _contentLength;
+
+        private MessageLocation(final LogSegment segment,
+                                final byte metaDataType,
+                                final int metaDataOffset,
+                                final int metaDataLength,
+                                final int contentOffset,
+                                final int contentLength)
+        {
+            _segment = segment;
+            _metaDataType = metaDataType;
+            _metaDataOffset = metaDataOffset;
+            _metaDataLength = metaDataLength;
+            _contentOffset = contentOffset;
+            _contentLength = contentLength;
+        }
+
+        LogSegment getSegment()
+        {
+            return _segment;
+        }
+
+        StorableMessageMetaData readMetaData()
+        {
+            final MessageMetaDataType<?> type = MessageMetaDataTypeRegistry.fromOrdinal(_metaDataType & 0xff);
+            final byte[] metaDataBytes = _segment.getBytes(_metaDataOffset, _metaDataLength);
+            if (metaDataBytes == null)
+            {
+                throw new StoreException("Segment " + _segment.getNumber() + " holding the message is closed");
+            }
+            final QpidByteBuffer buf = QpidByteBuffer.wrap(metaDataBytes);
+            try
+            {
+                return type.createMetaData(buf);
+            }
+            finally
+            {
+                buf.dispose();
+            }
+        }
+
+        /**
+         * Returns a copy of the given part of the content, read from the mapping of the segment holding it.  The
+         * content is copied so that it may outlive the segment, which is unmapped once it is deleted.
+         */
+        Collection<QpidByteBuffer> getContent(final int offset, final int length)
+        {
+            if (offset >= _contentLength || length <= 0)
+            {
+                return Collections.emptyList();
+            }
+            final QpidByteBuffer content = _segment.copy(_contentOffset + offset,
+                                                         Math.min(length, _contentLength - offset));
+            if (content == null)
+            {
+                throw new StoreException("Segment " + _segment.getNumber() + " holding the message is closed");
+            }
+            return Collections.singletonList(content);
+        }
+    }
+
+    /**
+     * A message of the store.  The meta-data and content of the message are held in memory until the message is
+     * stored, whereupon the content is read from the log and the meta-data is kept until the message is flowed to
+     * disk.  The lock of the store, when needed, is always acquired before that of the message.
+     */
+    private final class StoredLogMessage<T extends StorableMessageMetaData> implements StoredMessage<T>, MessageHandle<T>
+    {
+        private final long _messageId;
+        private T _metaData;
+        private List<QpidByteBuffer> _content;
+        private MessageLocation _location;
+        private boolean _removed;
+
+        private StoredLogMessage(final long messageId, final T metaData)
+        {
+            _messageId = messageId;
+            _metaData = metaData;
+        }
+
+        private StoredLogMessage(final long messageId, final MessageLocation location)
+        {
+            _messageId = messageId;
+            _location = location;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageId;
+        }
+
+        @Override
+        public synchronized T getMetaData()
+        {
+            if (_metaData == null && _location != null && !_removed)
+            {
+                _metaData = (T) _location.readMetaData();
+            }
+            return _metaData;
+        }
+
+        @Override
+        public synchronized void addContent(final QpidByteBuffer src)
+        {
+            if (_content == null)
+            {
+                _content = new ArrayList<>();
+            }
+            _content.add(src.slice());
+        }
+
+        @Override
+        public StoredMessage<T> allContentAdded()
+        {
+            return this;
+        }
+
+        @Override
+        public synchronized Collection<QpidByteBuffer> getContent(int offset, int length)
+        {
+            if (_removed)
+            {
+                // the segment holding the content may have been deleted
+                return Collections.emptyList();
+            }
+            else if (_location != null)
+            {
+                return _location.getContent(offset, length);
+            }
+            else if (_content == null)
+            {
+                return Collections.emptyList();
+            }
+
+            final Collection<QpidByteBuffer> content = new ArrayList<>(_content.size());
+            int position = 0;
+            for (QpidByteBuffer buf : _content)
+            {
+                if (length <= 0)
+                {
+                    break;
+                }
+                final int bufRemaining = buf.remaining();
+                if (position + bufRemaining > offset)
+                {
+                    final int offsetInBuf = Math.max(0, offset - position);
+                    final int viewLength = Math.min(length, bufRemaining - offsetInBuf);
+                    content.add(buf.view(offsetInBuf, viewLength));
+                    length -= viewLength;
+                }
+                position += bufRemaining;
+            }
+            return content;
+        }
+
+        /**
+         * Appends the message to the log, unless it has already been stored or has been removed.  Must be called with
+         * the lock of the store held.
+         */
+        private synchronized void store()
+        {
+            if (_location == null && !_removed)
+            {
+                final Collection<QpidByteBuffer> content =
+                        _content == null ? Collections.<QpidByteBuffer>emptyList() : _content;
+                _location = appendMessage(_messageId, _metaData, content);
+                messageStored(this, _location.getSegment());
+                disposeContent();
+            }
+        }
+
+        private synchronized boolean isStored()
+        {
+            return _location != null;
+        }
+
+        private synchronized MessageLocation getLocation()
+        {
+            return _location;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (isStored())
+            {
+                synchronized (_lock)
+                {
+                    checkMessageStoreOpen();
+                    synchronized (this)
+                    {
+                        if (!_removed)
+                        {
+                            appendRemove(_messageId);
+                            discard();
+                        }
+                    }
+                }
+            }
+            else
+            {
+                synchronized (this)
+                {
+                    if (!_removed)
+                    {
+                        discard();
+                    }
+                }
+            }
+        }
+
+        private void discard()
+        {
+            _removed = true;
+            disposeContent();
+            if (_metaData != null)
+            {
+                _metaData.dispose();
+                _metaData = null;
+            }
+        }
+
+        private void disposeContent()
+        {
+            if (_content != null)
+            {
+                for (QpidByteBuffer buf : _content)
+                {
+                    buf.dispose();
+                }
+                _content = null;
+            }
+        }
+
+        @Override
+        public synchronized boolean isInMemory()
+        {
+            return _content != null || _metaData != null;
+        }
+
+        @Override
+        public boolean flowToDisk()
+        {
+            if (!isStored())
+            {
+                synchronized (_lock)
+                {
+                    checkMessageStoreOpen();
+                    store();
+                }
+            }
+            synchronized (this)
+            {
+                if (_location != null)
+                {
+                    _metaData = null;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName() + "[messageId=" + _messageId + "]";
+        }
+    }
+
+    private final class SegmentedLogTransaction implements Transaction
+    {
+        private final List<StoredLogMessage<?>> _messages = new ArrayList<>();
+        private final List<Operation> _operations = new ArrayList<>();
+
+        @Override
+        public MessageEnqueueRecord enqueueMessage(final TransactionLogResource queue,
+                                                  final EnqueueableMessage message)
+        {
+            checkMessageStoreOpen();
+
+            addMessage(message.getStoredMessage());
+            _operations.add(new EnqueueOperation(queue.getId(), message.getMessageNumber()));
+            return new SegmentedLogEnqueueRecord(queue.getId(), message.getMessageNumber());
+        }
+
+        @Override
+        public void dequeueMessage(final MessageEnqueueRecord enqueueRecord)
+        {
+            checkMessageStoreOpen();
+
+            _operations.add(new DequeueOperation(enqueueRecord.getQueueId(), enqueueRecord.getMessageNumber()));
+        }
+
+        @Override
+        public void commitTran()
+        {
+            if (appendTransaction(_messages, _operations))
+            {
+                awaitSync(getSyncer().sync(null));
+            }
+            clear();
+        }
+
+        @Override
+        public <X> ListenableFuture<X> commitTranAsync(final X val)
+        {
+            final boolean appended = appendTransaction(_messages, _operations);
+            clear();
+            return appended ? getSyncer().sync(val) : Futures.immediateFuture(val);
+        }
+
+        @Override
+        public void abortTran()
+        {
+            clear();
+        }
+
+        @Override
+        public void removeXid(final StoredXidRecord record)
+        {
+            checkMessageStoreOpen();
+
+            _operations.add(new RemoveXidOperation(new Xid(record.getFormat(),
+                                                           record.getGlobalId(),
+                                                           record.getBranchId())));
+        }
+
+        @Override
+        public StoredXidRecord recordXid(final long format,
+                                         final byte[] globalId,
+                                         final byte[] branchId,
+                                         final EnqueueRecord[] enqueues,
+                                         final DequeueRecord[] dequeues)
+        {
+            checkMessageStoreOpen();
+
+            final RecordImpl[] enqueueRecords = new RecordImpl[enqueues.length];
+            for (int i = 0; i < enqueues.length; i++)
+            {
+                final EnqueueableMessage message = enqueues[i].getMessage();
+                addMessage(message.getStoredMessage());
+                enqueueRecords[i] = new RecordImpl(enqueues[i].getResource().getId(), message.getMessageNumber());
+            }
+            final RecordImpl[] dequeueRecords = new RecordImpl[dequeues.length];
+            for (int i = 0; i < dequeues.length; i++)
+            {
+                final MessageEnqueueRecord enqueueRecord = dequeues[i].getEnqueueRecord();
+                dequeueRecords[i] = new RecordImpl(enqueueRecord.getQueueId(), enqueueRecord.getMessageNumber());
+            }
+            _operations.add(new RecordXidOperation(new Xid(format, globalId, branchId),
+                                                   enqueueRecords,
+                                                   dequeueRecords));
+            return new SegmentedLogStoredXidRecord(format, globalId, branchId);
+        }
+
+        private void addMessage(final StoredMessage<?> storedMessage)
+        {
+            if (storedMessage instanceof StoredLogMessage)
+            {
+                _messages.add((StoredLogMessage<?>) storedMessage);
+            }
+        }
+
+        private void clear()
+        {
+            _messages.clear();
+            _operations.clear();
+        }
+    }
+
+    private LogSyncer getSyncer()
+    {
+        synchronized (_lock)
+        {
+            checkMessageStoreOpen();
+            return _syncer;
+        }
+    }
+
+    /**
+     * Forces the log to disk on behalf of the transactions waiting for it, and deletes the segments that are no
+     * longer needed.  A transaction waits only for the force that starts after its records have been appended, and
+     * all the transactions waiting when a force starts share it.  When no transaction is waiting the thread wakes
+     * once every compaction interval.
+     */
+    private final class LogSyncer extends Thread
+    {
+        private final Queue<PendingSync<?>> _pendingSyncs = new ConcurrentLinkedQueue<>();
+        private final Object _syncLock = new Object();
+        private boolean _stopped;
+        private boolean _finished;
+
+        private LogSyncer(final String name)
+        {
+            super(name);
+        }
+
+        <X> ListenableFuture<X> sync(final X value)
+        {
+            final PendingSync<X> pendingSync = new PendingSync<>(value);
+            synchronized (_syncLock)
+            {
+                if (_finished)
+                {
+                    pendingSync.abort(new StoreException("Message store is closed"));
+                }
+                else
+                {
+                    _pendingSyncs.add(pendingSync);
+                    _syncLock.notifyAll();
+                }
+            }
+            return pendingSync.getFuture();
+        }
+
+        void close()
+        {
+            synchronized (_syncLock)
+            {
+                _stopped = true;
+                _syncLock.notifyAll();
+            }
+            if (Thread.currentThread() != this)
+            {
+                try
+                {
+                    join();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new StoreException("Log syncer has not shutdown", e);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                synchronized (_syncLock)
+                {
+                    if (!_stopped && _pendingSyncs.isEmpty())
+                    {
+                        try
+                        {
+                            _syncLock.wait(_compactionInterval);
+                        }
+                        catch (InterruptedException e)
+                        {
+                        }
+                    }
+                    if (_stopped)
+                    {
+                        _finished = true;
+                        break;
+                    }
+                }
+                syncAndCompact();
+            }
+            syncAndCompact();
+        }
+
+        private void syncAndCompact()
+        {
+            final List<PendingSync<?>> pendingSyncs = new ArrayList<>();
+            PendingSync<?> pendingSync;
+            while ((pendingSync = _pendingSyncs.poll()) != null)
+            {
+                pendingSyncs.add(pendingSync);
+            }
+
+            final List<LogSegment> segmentsToSync;
+            final StoreException syncFailure;
+            synchronized (_lock)
+            {
+                syncFailure = _syncFailure;
+                segmentsToSync = new ArrayList<>(_unsyncedSegments);
+                if (syncFailure == null)
+                {
+                    _unsyncedSegments.clear();
+                }
+            }
+
+            if (syncFailure != null)
+            {
+                abort(pendingSyncs, syncFailure);
+                return;
+            }
+
+            try
+            {
+                if (!segmentsToSync.isEmpty())
+                {
+                    for (LogSegment segment : segmentsToSync)
+                    {
+                        segment.force();
+                    }
+                    _syncs.incrementAndGet();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Failed to sync the log of {} transaction(s), no further changes will be accepted",
+                             pendingSyncs.size(),
+                             e);
+                final StoreException storeException = new StoreException("Failed to sync the log", e);
+                synchronized (_lock)
+                {
+                    // records that were appended to the failed segments may be lost, so the log can no longer be
+                    // made durable, and nothing that it supersedes may be deleted
+                    _unsyncedSegments.addAll(segmentsToSync);
+                    _syncFailure = storeException;
+                }
+                abort(pendingSyncs, storeException);
+                return;
+            }
+
+            for (PendingSync<?> completedSync : pendingSyncs)
+            {
+                completedSync.complete();
+            }
+
+            final List<LogSegment> segmentsToDelete;
+            synchronized (_lock)
+            {
+                segmentsToDelete = removeCompactableSegments();
+            }
+            for (LogSegment segment : segmentsToDelete)
+            {
+                if (segment.delete())
+                {
+                    LOGGER.debug("Deleted segment {}", segment);
+                }
+                else
+                {
+                    LOGGER.info("Failed to delete segment file {}", segment.getFile().getAbsolutePath());
+                }
+            }
+        }
+
+        private void abort(final List<PendingSync<?>> pendingSyncs, final StoreException exception)
+        {
+            for (PendingSync<?> failedSync : pendingSyncs)
+            {
+                failedSync.abort(exception);
+            }
+        }
+    }
+
+    private static final class PendingSync<X>
+    {
+        private final SettableFuture<X> _future = SettableFuture.create();
+        private final X _value;
+
+        private PendingSync(final X value)
+        {
+            _value = value;
+        }
+
+        ListenableFuture<X> getFuture()
+        {
+            return _future;
+        }
+
+        void complete()
+        {
+            _future.set(_value);
+        }
+
+        void abort(final RuntimeException e)
+        {
+            _future.setException(e);
+        }
+    }
+
+    private static final class DistributedTransaction
+    {
+        private final LogSegment _segment;
+        private final RecordImpl[] _enqueues;
+        private final RecordImpl[] _dequeues;
+
+        private DistributedTransaction(final LogSegment segment,
+                                       final RecordImpl[] enqueues,
+                                       final RecordImpl[] dequeues)
+        {
+            _segment = segment;
+            _enqueues = enqueues;
+            _dequeues = dequeues;
+        }
+
+        LogSegment getSegment()
+        {
+            return _segment;
+        }
+
+        RecordImpl[] getEnqueues()
+        {
+            return _enqueues;
+        }
+
+        RecordImpl[] getDequeues()
+        {
+            return _dequeues;
+        }
+    }
+
+    private static class RecordImpl implements Transaction.EnqueueRecord, Transaction.DequeueRecord, TransactionLogResource, EnqueueableMessage
+    {
+        private final SegmentedLogEnqueueRecord _record;
+        private final long _messageNumber;
+        private final UUID _queueId;
+
+        RecordImpl(final UUID queueId, final long messageNumber)
+        {
+            _messageNumber = messageNumber;
+            _queueId = queueId;
+            _record = new SegmentedLogEnqueueRecord(queueId, messageNumber);
+        }
+
+        @Override
+        public MessageEnqueueRecord getEnqueueRecord()
+        {
+            return _record;
+        }
+
+        @Override
+        public TransactionLogResource getResource()
+        {
+            return this;
+        }
+
+        @Override
+        public EnqueueableMessage getMessage()
+        {
+            return this;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+
+        @Override
+        public boolean isPersistent()
+        {
+            return true;
+        }
+
+        @Override
+        public StoredMessage getStoredMessage()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getName()
+        {
+            return _queueId.toString();
+        }
+
+        @Override
+        public UUID getId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public MessageDurability getMessageDurability()
+        {
+            return MessageDurability.DEFAULT;
+        }
+    }
+
+    private static class SegmentedLogEnqueueRecord implements MessageEnqueueRecord
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        SegmentedLogEnqueueRecord(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        public UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+    }
+
+    private static class SegmentedLogStoredXidRecord implements Transaction.StoredXidRecord
+    {
+        private final long _format;
+        private final byte[] _globalId;
+        private final byte[] _branchId;
+
+        SegmentedLogStoredXidRecord(final long format, final byte[] globalId, final byte[] branchId)
+        {
+            _format = format;
+            _globalId = globalId;
+            _branchId = branchId;
+        }
+
+        @Override
+        public long getFormat()
+        {
+            return _format;
+        }
+
+        @Override
+        public byte[] getGlobalId()
+        {
+            return _globalId;
+        }
+
+        @Override
+        public byte[] getBranchId()
+        {
+            return _branchId;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            final SegmentedLogStoredXidRecord that = (SegmentedLogStoredXidRecord) o;
+
+            return _format == that._format
+                   && Arrays.equals(_globalId, that._globalId)
+                   && Arrays.equals(_branchId, that._branchId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = (int) (_format ^ (_format >>> 32));
+            result = 31 * result + Arrays.hashCode(_globalId);
+            result = 31 * result + Arrays.hashCode(_branchId);
+            return result;
+        }
+    }
+
+    private class SegmentedLogMessageStoreReader implements MessageStoreReader
+    {
+        @Override
+        public void visitMessages(final MessageHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            for (StoredLogMessage<?> message : _storedMessages.values())
+            {
+                if (!handler.handle(message))
+                {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void visitMessageInstances(final MessageInstanceHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            for (Map.Entry<UUID, ConcurrentNavigableMap<Long, LogSegment>> entry : _queueEntries.entrySet())
+            {
+                if (!visitMessageInstances(entry.getKey(), entry.getValue(), handler))
+                {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void visitMessageInstances(final TransactionLogResource queue,
+                                          final MessageInstanceHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            final ConcurrentNavigableMap<Long, LogSegment> entries = _queueEntries.get(queue.getId());
+            if (entries != null)
+            {
+                visitMessageInstances(queue.getId(), entries, handler);
+            }
+        }
+
+        @Override
+        public void visitMessageInstances(final TransactionLogResource queue,
+                                          final long fromMessageId,
+                                          final long toMessageId,
+                                          final MessageInstanceHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            final ConcurrentNavigableMap<Long, LogSegment> entries = _queueEntries.get(queue.getId());
+            if (entries != null && fromMessageId < toMessageId)
+            {
+                visitMessageInstances(queue.getId(), entries.subMap(fromMessageId, toMessageId), handler);
+            }
+        }
+
+        private boolean visitMessageInstances(final UUID queueId,
+                                              final NavigableMap<Long, LogSegment> entries,
+                                              final MessageInstanceHandler handler)
+        {
+            for (Long messageId : entries.keySet())
+            {
+                if (!handler.handle(new SegmentedLogEnqueueRecord(queueId, messageId)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void visitMessageIds(final long fromMessageId,
+                                    final long toMessageId,
+                                    final MessageIdHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            if (fromMessageId < toMessageId)
+            {
+                for (Long messageId : _storedMessages.subMap(fromMessageId, toMessageId).keySet())
+                {
+                    if (!handler.handle(messageId))
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void visitDistributedTransactions(final DistributedTransactionHandler handler) throws StoreException
+        {
+            checkMessageStoreOpen();
+
+            final Map<Xid, DistributedTransaction> distributedTransactions;
+            synchronized (_lock)
+            {
+                distributedTransactions = new HashMap<>(_distributedTransactions);
+            }
+            for (Map.Entry<Xid, DistributedTransaction> entry : distributedTransactions.entrySet())
+            {
+                final Xid xid = entry.getKey();
+                final DistributedTransaction transaction = entry.getValue();
+                if (!handler.handle(new SegmentedLogStoredXidRecord(xid.getFormat(),
+                                                                     xid.getGlobalId(),
+                                                                     xid.getBranchId()),
+                                    transaction.getEnqueues(),
+                                    transaction.getDequeues()))
+                {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public StoredMessage<?> getMessage(final long messageId)
+        {
+            checkMessageStoreOpen();
+
+            return _storedMessages.get(messageId);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
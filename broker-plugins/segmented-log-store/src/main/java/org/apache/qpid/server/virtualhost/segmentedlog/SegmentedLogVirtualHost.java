@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.virtualhost.segmentedlog;
+
+import org.apache.qpid.server.model.ManagedAttribute;
+import org.apache.qpid.server.model.ManagedContextDefault;
+import org.apache.qpid.server.model.ManagedStatistic;
+import org.apache.qpid.server.model.StatisticType;
+import org.apache.qpid.server.model.StatisticUnit;
+import org.apache.qpid.server.model.VirtualHost;
+
+public interface SegmentedLogVirtualHost<X extends SegmentedLogVirtualHost<X>> extends VirtualHost<X>, org.apache.qpid.server.store.FileBasedSettings
+{
+    String STORE_PATH = "storePath";
+
+    String QPID_SEGMENTED_LOG_SEGMENT_SIZE = "qpid.segmented_log.segment_size";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = QPID_SEGMENTED_LOG_SEGMENT_SIZE,
+            description = "The size in bytes of each file of a segmented log message store.  A record larger than a"
+                          + " segment is given a file of its own.")
+    int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    String QPID_SEGMENTED_LOG_COMPACTION_INTERVAL = "qpid.segmented_log.compaction_interval";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = QPID_SEGMENTED_LOG_COMPACTION_INTERVAL,
+            description = "The interval in milliseconds at which a segmented log message store syncs records that no"
+                          + " transaction is waiting for, and deletes the segments none of whose records are still"
+                          + " needed.")
+    long DEFAULT_COMPACTION_INTERVAL = 1000L;
+
+    @ManagedAttribute(mandatory = true, defaultValue = "${qpid.work_dir}${file.separator}${this:name}${file.separator}messages")
+    String getStorePath();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT,
+                      label = "Store Transactions Committed",
+                      description = "The number of transactions committed by the message store")
+    long getStoreCommittedTransactions();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT,
+                      label = "Store Log Syncs",
+                      description = "The number of times the message store has synced its log to disk, each of which"
+                                    + " makes durable the records of one or more transactions")
+    long getStoreLogSyncs();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT,
+                      label = "Store Log Segments",
+                      description = "The number of segment files of the message store's log")
+    long getStoreLogSegments();
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.virtualhost.segmentedlog;
+
+import java.util.Map;
+
+import org.apache.qpid.server.configuration.IllegalConfigurationException;
+import org.apache.qpid.server.model.ManagedAttributeField;
+import org.apache.qpid.server.model.ManagedObject;
+import org.apache.qpid.server.model.ManagedObjectFactoryConstructor;
+import org.apache.qpid.server.model.VirtualHostNode;
+import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.segmentedlog.SegmentedLogMessageStore;
+import org.apache.qpid.server.util.FileHelper;
+import org.apache.qpid.server.virtualhost.AbstractVirtualHost;
+
+@ManagedObject(category = false, type = SegmentedLogVirtualHostImpl.VIRTUAL_HOST_TYPE)
+public class SegmentedLogVirtualHostImpl extends AbstractVirtualHost<SegmentedLogVirtualHostImpl>
+        implements SegmentedLogVirtualHost<SegmentedLogVirtualHostImpl>
+{
+    public static final String VIRTUAL_HOST_TYPE = "SegmentedLog";
+
+    @ManagedAttributeField
+    private String _storePath;
+
+    @ManagedObjectFactoryConstructor
+    public SegmentedLogVirtualHostImpl(final Map<String, Object> attributes,
+                                       final VirtualHostNode<?> virtualHostNode)
+    {
+        super(attributes, virtualHostNode);
+    }
+
+    @Override
+    protected MessageStore createMessageStore()
+    {
+        return new SegmentedLogMessageStore();
+    }
+
+    @Override
+    public String getStorePath()
+    {
+        return _storePath;
+    }
+
+    @Override
+    public long getStoreCommittedTransactions()
+    {
+        final SegmentedLogMessageStore messageStore = getSegmentedLogMessageStore();
+        return messageStore == null ? 0L : messageStore.getCommittedTransactionCount();
+    }
+
+    @Override
+    public long getStoreLogSyncs()
+    {
+        final SegmentedLogMessageStore messageStore = getSegmentedLogMessageStore();
+        return messageStore == null ? 0L : messageStore.getSyncCount();
+    }
+
+    @Override
+    public long getStoreLogSegments()
+    {
+        final SegmentedLogMessageStore messageStore = getSegmentedLogMessageStore();
+        return messageStore == null ? 0L : messageStore.getSegmentCount();
+    }
+
+    private SegmentedLogMessageStore getSegmentedLogMessageStore()
+    {
+        final MessageStore messageStore = getMessageStore();
+        return messageStore instanceof SegmentedLogMessageStore ? (SegmentedLogMessageStore) messageStore : null;
+    }
+
+    @Override
+    protected void validateMessageStoreCreation()
+    {
+        if (!new FileHelper().isWritableDirectory(getStorePath()))
+        {
+            throw new IllegalConfigurationException("The store path is not writable directory");
+        }
+    }
+}
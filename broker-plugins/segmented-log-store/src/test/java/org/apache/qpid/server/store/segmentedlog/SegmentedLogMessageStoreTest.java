@@ -0,0 +1,538 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store.segmentedlog;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.message.EnqueueableMessage;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.MessageDurability;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.MessageHandle;
+import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.MessageStoreTestCase;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.store.TestMessageMetaData;
+import org.apache.qpid.server.store.Transaction;
+import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.store.handler.MessageInstanceHandler;
+import org.apache.qpid.server.virtualhost.segmentedlog.SegmentedLogVirtualHost;
+import org.apache.qpid.util.FileUtils;
+
+public class SegmentedLogMessageStoreTest extends MessageStoreTestCase
+{
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int CONTENT_SIZE = 10 * 1024;
+
+    private String _storeLocation;
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            deleteStoreIfExists();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testOnDelete() throws Exception
+    {
+        File location = new File(_storeLocation);
+        assertTrue("Store does not exist at " + _storeLocation, location.exists());
+
+        getStore().closeMessageStore();
+        assertTrue("Store does not exist at " + _storeLocation, location.exists());
+
+        SegmentedLogVirtualHost mockVH = mock(SegmentedLogVirtualHost.class);
+        when(mockVH.getStorePath()).thenReturn(_storeLocation);
+
+        getStore().onDelete(mockVH);
+        assertFalse("Store exists at " + _storeLocation, location.exists());
+    }
+
+    public void testContentReadFromLog() throws Exception
+    {
+        final byte[] content = createContent(CONTENT_SIZE);
+        final StoredMessage<TestMessageMetaData> message = addMessage(content);
+        enqueueMessage(message, "testQueue");
+        assertTrue("Message should be flowed to disk", message.flowToDisk());
+        assertFalse("Message should not be in memory", message.isInMemory());
+
+        assertContent(content, message, 100, 1000);
+        assertContent(content, message, CONTENT_SIZE - 10, 1000);
+        assertEquals("Unexpected meta-data content size",
+                     CONTENT_SIZE,
+                     message.getMetaData().getContentSize());
+
+        reopenStore();
+
+        final StoredMessage<?> recoveredMessage =
+                getStore().newMessageStoreReader().getMessage(message.getMessageNumber());
+        assertNotNull("Message not recovered", recoveredMessage);
+        assertEquals("Unexpected recovered content size",
+                     CONTENT_SIZE,
+                     recoveredMessage.getMetaData().getContentSize());
+        assertContent(content, recoveredMessage, 0, CONTENT_SIZE);
+        assertContent(content, recoveredMessage, 5000, 10);
+    }
+
+    public void testMessagesSpanningSegmentsAreRecovered() throws Exception
+    {
+        final byte[] content = createContent(CONTENT_SIZE);
+        final List<Long> messageIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final StoredMessage<TestMessageMetaData> message = addMessage(content);
+            enqueueMessage(message, "testQueue");
+            messageIds.add(message.getMessageNumber());
+        }
+
+        final StoredMessage<TestMessageMetaData> largeMessage = addMessage(createContent(SEGMENT_SIZE * 2));
+        enqueueMessage(largeMessage, "testQueue");
+        messageIds.add(largeMessage.getMessageNumber());
+
+        assertTrue("Expected the log to span several segments", getSegmentFiles().length > 3);
+
+        reopenStore();
+
+        final List<Long> recoveredIds = getEnqueuedMessageIds();
+        assertEquals("Unexpected recovered queue entries", messageIds, recoveredIds);
+
+        final StoredMessage<?> recoveredMessage =
+                getStore().newMessageStoreReader().getMessage(largeMessage.getMessageNumber());
+        assertContent(createContent(SEGMENT_SIZE * 2), recoveredMessage, SEGMENT_SIZE, CONTENT_SIZE);
+    }
+
+    public void testDequeuedSegmentsAreCompacted() throws Exception
+    {
+        final byte[] content = createContent(CONTENT_SIZE);
+        final TransactionLogResource queue = createQueue("testQueue");
+        final List<StoredMessage<TestMessageMetaData>> messages = new ArrayList<>();
+        final List<MessageEnqueueRecord> enqueueRecords = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final StoredMessage<TestMessageMetaData> message = addMessage(content);
+            final Transaction transaction = getStore().newTransaction();
+            enqueueRecords.add(transaction.enqueueMessage(queue, createEnqueueableMessage(message)));
+            transaction.commitTran();
+            messages.add(message);
+        }
+        final int segmentCount = getSegmentFiles().length;
+        assertTrue("Expected the log to span several segments", segmentCount > 3);
+
+        final StoredMessage<TestMessageMetaData> retainedMessage = messages.get(messages.size() - 1);
+        for (int i = 0; i < messages.size() - 1; i++)
+        {
+            final Transaction transaction = getStore().newTransaction();
+            transaction.dequeueMessage(enqueueRecords.get(i));
+            transaction.commitTran();
+            messages.get(i).remove();
+        }
+
+        long timeout = System.currentTimeMillis() + 5000L;
+        while (getSegmentFiles().length > 2 && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10L);
+        }
+        assertTrue("Dequeued segments were not compacted: " + Arrays.toString(getSegmentFiles()),
+                   getSegmentFiles().length <= 2);
+
+        reopenStore();
+
+        assertEquals("Unexpected recovered queue entries",
+                     Arrays.asList(retainedMessage.getMessageNumber()),
+                     getEnqueuedMessageIds());
+        assertContent(content,
+                      getStore().newMessageStoreReader().getMessage(retainedMessage.getMessageNumber()),
+                      0,
+                      CONTENT_SIZE);
+    }
+
+    public void testContentReadBeforeCompactionOutlivesSegment() throws Exception
+    {
+        final byte[] content = createContent(CONTENT_SIZE);
+        final TransactionLogResource queue = createQueue("testQueue");
+        final List<StoredMessage<TestMessageMetaData>> messages = new ArrayList<>();
+        final List<MessageEnqueueRecord> enqueueRecords = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final StoredMessage<TestMessageMetaData> message = addMessage(content);
+            final Transaction transaction = getStore().newTransaction();
+            enqueueRecords.add(transaction.enqueueMessage(queue, createEnqueueableMessage(message)));
+            transaction.commitTran();
+            assertTrue("Message should be flowed to disk", message.flowToDisk());
+            messages.add(message);
+        }
+
+        final Collection<QpidByteBuffer> firstContent = messages.get(0).getContent(0, CONTENT_SIZE);
+        for (int i = 0; i < messages.size() - 1; i++)
+        {
+            final Transaction transaction = getStore().newTransaction();
+            transaction.dequeueMessage(enqueueRecords.get(i));
+            transaction.commitTran();
+            messages.get(i).remove();
+        }
+
+        long timeout = System.currentTimeMillis() + 5000L;
+        while (getSegmentFiles().length > 2 && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10L);
+        }
+        assertTrue("Dequeued segments were not compacted: " + Arrays.toString(getSegmentFiles()),
+                   getSegmentFiles().length <= 2);
+
+        int position = 0;
+        for (QpidByteBuffer buf : firstContent)
+        {
+            while (buf.hasRemaining())
+            {
+                assertEquals("Unexpected content at position " + position, content[position++], buf.get());
+            }
+            buf.dispose();
+        }
+        assertEquals("Unexpected content length", CONTENT_SIZE, position);
+    }
+
+    public void testIncompleteRecordIsDiscardedOnRecovery() throws Exception
+    {
+        final StoredMessage<TestMessageMetaData> firstMessage = addMessage(createContent(100));
+        enqueueMessage(firstMessage, "testQueue");
+        final StoredMessage<TestMessageMetaData> secondMessage = addMessage(createContent(100));
+        enqueueMessage(secondMessage, "testQueue");
+
+        getStore().closeMessageStore();
+
+        final File[] segmentFiles = getSegmentFiles();
+        final File lastSegmentFile = segmentFiles[segmentFiles.length - 1];
+        final AtomicInteger lastRecordOffset = new AtomicInteger();
+        final LogSegment segment =
+                LogSegment.open(lastSegmentFile, LogSegment.getSegmentNumber(lastSegmentFile.getName()));
+        segment.replay(new LogSegment.RecordHandler()
+        {
+            @Override
+            public void handle(final LogSegment segment, final byte type, final ByteBuffer body, final int bodyOffset)
+            {
+                lastRecordOffset.set(bodyOffset);
+            }
+        });
+        try (RandomAccessFile file = new RandomAccessFile(lastSegmentFile, "rw"))
+        {
+            file.seek(lastRecordOffset.get());
+            final int value = file.read();
+            file.seek(lastRecordOffset.get());
+            file.write(value ^ 0xff);
+        }
+
+        reopenStore();
+
+        assertEquals("Unexpected queue entries after discarding the last record",
+                     Arrays.asList(firstMessage.getMessageNumber()),
+                     getEnqueuedMessageIds());
+
+        final StoredMessage<TestMessageMetaData> thirdMessage = addMessage(createContent(100));
+        enqueueMessage(thirdMessage, "testQueue");
+
+        reopenStore();
+
+        assertEquals("Unexpected queue entries after appending to the recovered log",
+                     Arrays.asList(firstMessage.getMessageNumber(), thirdMessage.getMessageNumber()),
+                     getEnqueuedMessageIds());
+    }
+
+    public void testRecordWhoseLengthWasNotWrittenEndsLogOnRecovery() throws Exception
+    {
+        final StoredMessage<TestMessageMetaData> firstMessage = addMessage(createContent(100));
+        enqueueMessage(firstMessage, "testQueue");
+        final StoredMessage<TestMessageMetaData> secondMessage = addMessage(createContent(100));
+        enqueueMessage(secondMessage, "testQueue");
+
+        getStore().closeMessageStore();
+
+        final File[] segmentFiles = getSegmentFiles();
+        final File lastSegmentFile = segmentFiles[segmentFiles.length - 1];
+        final List<Integer> recordOffsets = new ArrayList<>();
+        final LogSegment segment =
+                LogSegment.open(lastSegmentFile, LogSegment.getSegmentNumber(lastSegmentFile.getName()));
+        segment.replay(new LogSegment.RecordHandler()
+        {
+            @Override
+            public void handle(final LogSegment segment, final byte type, final ByteBuffer body, final int bodyOffset)
+            {
+                // the body follows the record header and the type
+                recordOffsets.add(bodyOffset - 1 - LogSegment.RECORD_HEADER_SIZE);
+            }
+        });
+        segment.close();
+
+        // the length is written last, so a record torn by a crash may have a body but no length
+        final int tornRecordOffset = recordOffsets.get(recordOffsets.size() - 2);
+        try (RandomAccessFile file = new RandomAccessFile(lastSegmentFile, "rw"))
+        {
+            file.seek(tornRecordOffset);
+            file.writeInt(0);
+        }
+
+        reopenStore();
+
+        assertEquals("Unexpected queue entries after discarding the torn record",
+                     Arrays.asList(firstMessage.getMessageNumber()),
+                     getEnqueuedMessageIds());
+
+        getStore().closeMessageStore();
+
+        try (RandomAccessFile file = new RandomAccessFile(lastSegmentFile, "r"))
+        {
+            file.seek(tornRecordOffset);
+            final byte[] remainder = new byte[(int) (file.length() - tornRecordOffset)];
+            file.readFully(remainder);
+            for (int i = 0; i < remainder.length; i++)
+            {
+                assertEquals("Unexpected byte at position " + (tornRecordOffset + i) + " beyond the torn record",
+                             0,
+                             remainder[i]);
+            }
+        }
+
+        reopenStore();
+
+        // a shorter record overwrites only the start of the torn one
+        final StoredMessage<TestMessageMetaData> thirdMessage = addMessage(createContent(10));
+        enqueueMessage(thirdMessage, "testQueue");
+
+        reopenStore();
+
+        assertEquals("Unexpected queue entries after appending to the recovered log",
+                     Arrays.asList(firstMessage.getMessageNumber(), thirdMessage.getMessageNumber()),
+                     getEnqueuedMessageIds());
+    }
+
+    public void testSegmentWhoseEndWasLostEndsLog() throws Exception
+    {
+        final byte[] content = createContent(CONTENT_SIZE);
+        final List<Long> messageIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final StoredMessage<TestMessageMetaData> message = addMessage(content);
+            enqueueMessage(message, "testQueue");
+            messageIds.add(message.getMessageNumber());
+        }
+        assertTrue("Expected the log to span several segments", getSegmentFiles().length > 3);
+
+        getStore().closeMessageStore();
+
+        final File firstSegmentFile = getSegmentFiles()[0];
+        final AtomicInteger endRecordOffset = new AtomicInteger();
+        final LogSegment segment =
+                LogSegment.open(firstSegmentFile, LogSegment.getSegmentNumber(firstSegmentFile.getName()));
+        assertTrue("First segment should be complete", segment.replay(new LogSegment.RecordHandler()
+        {
+            @Override
+            public void handle(final LogSegment segment, final byte type, final ByteBuffer body, final int bodyOffset)
+            {
+                endRecordOffset.set(bodyOffset - 1 - LogSegment.RECORD_HEADER_SIZE);
+            }
+        }));
+        segment.close();
+        try (RandomAccessFile file = new RandomAccessFile(firstSegmentFile, "rw"))
+        {
+            file.seek(endRecordOffset.get());
+            file.write(new byte[LogSegment.RECORD_HEADER_SIZE + 1]);
+        }
+
+        reopenStore();
+
+        final List<Long> recoveredIds = getEnqueuedMessageIds();
+        assertFalse("Expected the entries of the first segment to be recovered", recoveredIds.isEmpty());
+        assertEquals("Unexpected recovered queue entries", messageIds.subList(0, recoveredIds.size()), recoveredIds);
+        assertTrue("Expected the entries of later segments to be discarded", recoveredIds.size() < messageIds.size());
+        assertEquals("Later segments were not deleted: " + Arrays.toString(getSegmentFiles()),
+                     1,
+                     getSegmentFiles().length);
+    }
+
+    public void testAsynchronousCommit() throws Exception
+    {
+        final SegmentedLogMessageStore store = (SegmentedLogMessageStore) getStore();
+        final TransactionLogResource queue = createQueue("testQueue");
+
+        final List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            final StoredMessage<TestMessageMetaData> message = addMessage(createContent(100));
+            final Transaction transaction = store.newTransaction();
+            transaction.enqueueMessage(queue, createEnqueueableMessage(message));
+            futures.add(transaction.commitTranAsync(i));
+        }
+        for (int i = 0; i < futures.size(); i++)
+        {
+            assertEquals("Unexpected future value", Integer.valueOf(i), futures.get(i).get());
+        }
+        assertEquals("Unexpected committed transactions", 10, store.getCommittedTransactionCount());
+        assertTrue("Log was not synced", store.getSyncCount() > 0);
+
+        reopenStore();
+
+        assertEquals("Unexpected queue entries", 10, getEnqueuedMessageIds().size());
+    }
+
+    @Override
+    protected VirtualHost createVirtualHost()
+    {
+        _storeLocation = TMP_FOLDER + File.separator + getTestName();
+        deleteStoreIfExists();
+
+        final SegmentedLogVirtualHost parent = mock(SegmentedLogVirtualHost.class);
+        when(parent.getName()).thenReturn(getTestName());
+        when(parent.getStorePath()).thenReturn(_storeLocation);
+        when(parent.getContextKeys(false)).thenReturn(new HashSet<>(Arrays.asList(
+                SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_SEGMENT_SIZE,
+                SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_COMPACTION_INTERVAL)));
+        when(parent.getContextValue(Integer.class, SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_SEGMENT_SIZE))
+                .thenReturn(SEGMENT_SIZE);
+        when(parent.getContextValue(Long.class, SegmentedLogVirtualHost.QPID_SEGMENTED_LOG_COMPACTION_INTERVAL))
+                .thenReturn(10L);
+        return parent;
+    }
+
+    @Override
+    protected MessageStore createMessageStore()
+    {
+        return new SegmentedLogMessageStore();
+    }
+
+    private void deleteStoreIfExists()
+    {
+        if (_storeLocation != null)
+        {
+            File location = new File(_storeLocation);
+            if (location.exists())
+            {
+                FileUtils.delete(location, true);
+            }
+        }
+    }
+
+    private File[] getSegmentFiles()
+    {
+        final List<File> segmentFiles = new ArrayList<>();
+        for (File file : new File(_storeLocation).listFiles())
+        {
+            if (LogSegment.getSegmentNumber(file.getName()) >= 0L)
+            {
+                segmentFiles.add(file);
+            }
+        }
+        final File[] files = segmentFiles.toArray(new File[segmentFiles.size()]);
+        Arrays.sort(files);
+        return files;
+    }
+
+    private StoredMessage<TestMessageMetaData> addMessage(final byte[] content)
+    {
+        final MessageHandle<TestMessageMetaData> handle =
+                getStore().addMessage(new TestMessageMetaData(getStore().getNextMessageId(), content.length));
+        final QpidByteBuffer buf = QpidByteBuffer.wrap(content);
+        handle.addContent(buf);
+        buf.dispose();
+        return handle.allContentAdded();
+    }
+
+    private List<Long> getEnqueuedMessageIds()
+    {
+        final List<Long> messageIds = new ArrayList<>();
+        getStore().newMessageStoreReader().visitMessageInstances(new MessageInstanceHandler()
+        {
+            @Override
+            public boolean handle(final MessageEnqueueRecord record)
+            {
+                messageIds.add(record.getMessageNumber());
+                return true;
+            }
+        });
+        return messageIds;
+    }
+
+    private static byte[] createContent(final int size)
+    {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    private static void assertContent(final byte[] expected,
+                                      final StoredMessage<?> message,
+                                      final int offset,
+                                      final int length)
+    {
+        final Collection<QpidByteBuffer> content = message.getContent(offset, length);
+        final int expectedLength = Math.min(length, expected.length - offset);
+        int position = offset;
+        for (QpidByteBuffer buf : content)
+        {
+            while (buf.hasRemaining())
+            {
+                assertEquals("Unexpected content at position " + position, expected[position++], buf.get());
+            }
+            buf.dispose();
+        }
+        assertEquals("Unexpected content length", expectedLength, position - offset);
+    }
+
+    private static TransactionLogResource createQueue(final String queueName)
+    {
+        final TransactionLogResource queue = mock(TransactionLogResource.class);
+        when(queue.getId()).thenReturn(UUID.nameUUIDFromBytes(queueName.getBytes()));
+        when(queue.getName()).thenReturn(queueName);
+        when(queue.getMessageDurability()).thenReturn(MessageDurability.DEFAULT);
+        return queue;
+    }
+
+    private static EnqueueableMessage createEnqueueableMessage(final StoredMessage<TestMessageMetaData> message)
+    {
+        final EnqueueableMessage enqueueableMessage = mock(EnqueueableMessage.class);
+        when(enqueueableMessage.isPersistent()).thenReturn(true);
+        when(enqueueableMessage.getMessageNumber()).thenReturn(message.getMessageNumber());
+        when(enqueueableMessage.getStoredMessage()).thenReturn(message);
+        return enqueueableMessage;
+    }
+}
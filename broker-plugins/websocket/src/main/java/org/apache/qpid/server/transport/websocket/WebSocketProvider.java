@@ -479,6 +479,18 @@ class WebSocketProvider implements AcceptingTransport
             return _connection.getProtocol();
         }
 
+        @Override
+        public long getTlsOverheadBytes()
+        {
+            return 0L;
+        }
+
+        @Override
+        public long getTlsCpuTime()
+        {
+            return 0L;
+        }
+
         @Override
         public long getScheduledTime()
         {
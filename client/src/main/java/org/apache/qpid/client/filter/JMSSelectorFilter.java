@@ -24,6 +24,7 @@ import org.apache.qpid.AMQInternalException;
 import org.apache.qpid.client.message.AbstractJMSMessage;
 import org.apache.qpid.filter.FilterableMessage;
 import org.apache.qpid.filter.JMSMessagePropertyExpression;
+import org.apache.qpid.filter.SelectorCompiler;
 import org.apache.qpid.filter.SelectorParsingException;
 import org.apache.qpid.filter.selector.ParseException;
 import org.apache.qpid.filter.selector.SelectorParser;
@@ -56,7 +57,7 @@ public class JMSSelectorFilter implements MessageFilter
         {
             SelectorParser<FilterableMessage> selectorParser = new SelectorParser<>();
             selectorParser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
-            _matcher = selectorParser.parse(selector);
+            _matcher = SelectorCompiler.compile(selectorParser.parse(selector));
         }
         catch (ParseException e)
         {
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports pooled buffers which are garbage collected before all the QpidByteBuffers sharing them have been disposed,
+ * and which so never return to the pool, together with the stack at which each was allocated.  Recording the stack
+ * is costly, so detection is only enabled when debugging.
+ */
+final class BufferLeakDetector
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferLeakDetector.class);
+
+    private final ReferenceQueue<ByteBufferRef> _queue = new ReferenceQueue<>();
+    private final Set<Tracker> _trackers = Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+    private final AtomicLong _leakCount = new AtomicLong();
+
+    Tracker track(final ByteBufferRef ref, final int size)
+    {
+        reportLeaks();
+        final Tracker tracker = new Tracker(ref, size);
+        _trackers.add(tracker);
+        return tracker;
+    }
+
+    void reportLeaks()
+    {
+        Tracker tracker;
+        while ((tracker = (Tracker) _queue.poll()) != null)
+        {
+            if (_trackers.remove(tracker))
+            {
+                _leakCount.incrementAndGet();
+                LOGGER.warn("Pooled direct buffer of {} bytes was garbage collected without being disposed."
+                            + " It was allocated at:", tracker._size, tracker._allocation);
+            }
+        }
+    }
+
+    long getLeakCount()
+    {
+        reportLeaks();
+        return _leakCount.get();
+    }
+
+    final class Tracker extends PhantomReference<ByteBufferRef>
+    {
+        private final int _size;
+        private final Throwable _allocation;
+
+        private Tracker(final ByteBufferRef ref, final int size)
+        {
+            super(ref, _queue);
+            _size = size;
+            _allocation = new Throwable("Allocated by thread " + Thread.currentThread().getName());
+        }
+
+        void released()
+        {
+            _trackers.remove(this);
+            clear();
+        }
+    }
+}
@@ -21,29 +21,121 @@
 package org.apache.qpid.bytebuffer;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/**
+ * Pool of direct buffers of the pooled buffer size.  Each thread draws buffers from, and returns them to, a magazine of
+ * its own, exchanging half a magazine at a time with the shared depot, so that a buffer is usually reused by the thread
+ * which released it without any contention with other threads.
+ * <p>
+ * The buffers held by the depot and by the magazines together are bounded by the maximum size.  Each pooled buffer
+ * holds one of the maximum size's permits, which a magazine acquires in batches and keeps whilst its thread draws
+ * buffers from it, so that a thread releasing a buffer rarely needs to acquire a permit of its own.  The buffers of
+ * the magazine of a thread which has died are returned to the depot.
+ */
 class BufferPool
 {
+    static final int DEFAULT_MAGAZINE_SIZE = 32;
+
     private final int _maxSize;
-    private final ConcurrentLinkedQueue<ByteBuffer> _pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final int _magazineSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> _depot = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _depotBufferCount = new AtomicInteger();
+    private final AtomicInteger _permitsIssued = new AtomicInteger();
+    private final ThreadStateRegistry<Magazine> _magazineRegistry = new ThreadStateRegistry<>();
+    private final ThreadLocal<Magazine> _magazines = new ThreadLocal<Magazine>()
+    {
+        @Override
+        protected Magazine initialValue()
+        {
+            // threads are most likely to have died when others are being started
+            drainDeadThreadMagazines();
+            final Magazine magazine = new Magazine(_magazineSize);
+            _magazineRegistry.register(magazine);
+            return magazine;
+        }
+    };
 
     BufferPool(final int maxSize)
+    {
+        this(maxSize, DEFAULT_MAGAZINE_SIZE);
+    }
+
+    BufferPool(final int maxSize, final int magazineSize)
     {
         _maxSize = maxSize;
+        _magazineSize = magazineSize;
     }
 
     ByteBuffer getBuffer()
     {
-        return _pooledBuffers.poll();
+        if (_magazineSize == 0)
+        {
+            final ByteBuffer buf = pollDepotOrDrainDeadThreadMagazines();
+            if (buf != null)
+            {
+                releasePermits(1);
+            }
+            return buf;
+        }
+
+        final Magazine magazine = _magazines.get();
+        ByteBuffer buf = magazine.poll();
+        if (buf == null)
+        {
+            // the magazine is empty, so the thread is drawing rather than releasing buffers and needs no permits
+            releasePermits(magazine._permits);
+            magazine._permits = 0;
+
+            buf = pollDepotOrDrainDeadThreadMagazines();
+            if (buf != null)
+            {
+                // the permits of the buffer handed out and of those taken with it pass to the magazine
+                magazine._permits++;
+                ByteBuffer next;
+                while (magazine.size() < _magazineSize / 2 && (next = pollDepot()) != null)
+                {
+                    magazine.push(next);
+                    magazine._permits++;
+                }
+            }
+        }
+        return buf;
     }
 
     void returnBuffer(ByteBuffer buf)
     {
         buf.clear();
-        if (_pooledBuffers.size() < _maxSize)
+        if (_magazineSize == 0)
+        {
+            if (acquirePermits(1) == 1)
+            {
+                offerDepot(buf);
+            }
+            return;
+        }
+
+        final Magazine magazine = _magazines.get();
+        if (magazine.size() >= _magazineSize)
+        {
+            while (magazine.size() > _magazineSize / 2)
+            {
+                offerDepot(magazine.pollLast());
+                magazine._permits--;
+            }
+        }
+        if (magazine.size() == magazine._permits)
+        {
+            magazine._permits += acquirePermits(Math.min(Math.max(1, _magazineSize / 2),
+                                                         _magazineSize - magazine._permits));
+        }
+        // once the pool is full the buffer is left to be freed by the garbage collector
+        if (magazine.size() < magazine._permits)
         {
-            _pooledBuffers.add(buf);
+            magazine.push(buf);
         }
     }
 
@@ -51,4 +143,145 @@ class BufferPool
     {
         return _maxSize;
     }
+
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    /**
+     * Returns the number of buffers held by the pool, whether by the shared depot or by the magazines of threads.
+     */
+    public int getPooledBufferCount()
+    {
+        int count = _depotBufferCount.get();
+        for (Magazine magazine : _magazineRegistry.getStates())
+        {
+            count += magazine._size;
+        }
+        return count;
+    }
+
+    int getDepotBufferCount()
+    {
+        return _depotBufferCount.get();
+    }
+
+    private ByteBuffer pollDepotOrDrainDeadThreadMagazines()
+    {
+        ByteBuffer buf = pollDepot();
+        if (buf == null && drainDeadThreadMagazines())
+        {
+            buf = pollDepot();
+        }
+        return buf;
+    }
+
+    private boolean drainDeadThreadMagazines()
+    {
+        boolean drained = false;
+        for (Magazine magazine : _magazineRegistry.removeDeadThreadStates())
+        {
+            ByteBuffer buf;
+            while ((buf = magazine.poll()) != null)
+            {
+                offerDepot(buf);
+                magazine._permits--;
+                drained = true;
+            }
+            releasePermits(magazine._permits);
+            magazine._permits = 0;
+        }
+        return drained;
+    }
+
+    private ByteBuffer pollDepot()
+    {
+        final ByteBuffer buf = _depot.poll();
+        if (buf != null)
+        {
+            _depotBufferCount.decrementAndGet();
+        }
+        return buf;
+    }
+
+    // the buffer offered must hold a permit, which it keeps whilst in the depot
+    private void offerDepot(final ByteBuffer buf)
+    {
+        _depotBufferCount.incrementAndGet();
+        _depot.add(buf);
+    }
+
+    /**
+     * @return the number of permits acquired, which is less than that requested if too few remain
+     */
+    private int acquirePermits(final int requested)
+    {
+        while (true)
+        {
+            final int issued = _permitsIssued.get();
+            final int acquired = Math.min(requested, _maxSize - issued);
+            if (acquired <= 0)
+            {
+                return 0;
+            }
+            if (_permitsIssued.compareAndSet(issued, issued + acquired))
+            {
+                return acquired;
+            }
+        }
+    }
+
+    private void releasePermits(final int released)
+    {
+        if (released > 0)
+        {
+            _permitsIssued.addAndGet(-released);
+        }
+    }
+
+    private static final class Magazine
+    {
+        private static final AtomicIntegerFieldUpdater<Magazine> SIZE =
+                AtomicIntegerFieldUpdater.newUpdater(Magazine.class, "_size");
+
+        private final ArrayDeque<ByteBuffer> _buffers;
+        // at least the number of buffers held, the remainder being kept for buffers yet to be released
+        private int _permits;
+        // written only by the thread owning the magazine, read by the statistics
+        private volatile int _size;
+
+        private Magazine(final int magazineSize)
+        {
+            _buffers = new ArrayDeque<>(magazineSize);
+        }
+
+        private int size()
+        {
+            return _buffers.size();
+        }
+
+        private ByteBuffer poll()
+        {
+            final ByteBuffer buf = _buffers.poll();
+            if (buf != null)
+            {
+                SIZE.lazySet(this, _buffers.size());
+            }
+            return buf;
+        }
+
+        private ByteBuffer pollLast()
+        {
+            final ByteBuffer buf = _buffers.pollLast();
+            SIZE.lazySet(this, _buffers.size());
+            return buf;
+        }
+
+        private void push(final ByteBuffer buf)
+        {
+            _buffers.push(buf);
+            SIZE.lazySet(this, _buffers.size());
+        }
+    }
 }
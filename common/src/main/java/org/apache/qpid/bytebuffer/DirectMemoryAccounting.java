@@ -0,0 +1,67 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+/**
+ * Keeps the total of the direct memory in use by each {@link DirectMemoryCategory}.  Memory is counted from the
+ * allocation of the underlying buffer until the last QpidByteBuffer sharing it is disposed; buffers held idle by the
+ * pool or by the slabs are not counted against any category.  Each total is kept in a striped counter, as buffers are
+ * allocated and disposed of by many threads at once.
+ */
+final class DirectMemoryAccounting
+{
+    private static final DirectMemoryCategory[] CATEGORIES = DirectMemoryCategory.values();
+
+    private final StripedCounter[] _used = new StripedCounter[CATEGORIES.length];
+
+    DirectMemoryAccounting()
+    {
+        for (int i = 0; i < CATEGORIES.length; i++)
+        {
+            _used[i] = new StripedCounter();
+        }
+    }
+
+    void allocated(final DirectMemoryCategory category, final int size)
+    {
+        _used[category.ordinal()].add(size);
+    }
+
+    void released(final DirectMemoryCategory category, final int size)
+    {
+        _used[category.ordinal()].add(-size);
+    }
+
+    long getUsed(final DirectMemoryCategory category)
+    {
+        return _used[category.ordinal()].get();
+    }
+
+    long getTotalUsed()
+    {
+        long total = 0L;
+        for (int i = 0; i < CATEGORIES.length; i++)
+        {
+            total += _used[i].get();
+        }
+        return total;
+    }
+}
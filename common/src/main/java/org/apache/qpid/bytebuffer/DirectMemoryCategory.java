@@ -0,0 +1,37 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+/**
+ * The use to which direct memory allocated through {@link QpidByteBuffer} is put.  Buffers sliced or viewed from
+ * another remain accounted to the category of the buffer they share.
+ */
+public enum DirectMemoryCategory
+{
+    /** Buffers into which network input is read */
+    NETWORK,
+    /** Message content held in memory by the message stores */
+    CONTENT,
+    /** Buffers used by the TLS engine to encrypt and decrypt network traffic */
+    TLS,
+    /** Any other use, such as the encoding of frames */
+    OTHER
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A direct buffer allocated outside the pool.  It is left to the garbage collector once the last QpidByteBuffer
+ * sharing it is disposed, but is reference counted so that it ceases to be accounted for at that point.
+ */
+class NonPooledDirectByteBufferRef implements ByteBufferRef
+{
+    private static final AtomicIntegerFieldUpdater<NonPooledDirectByteBufferRef> REF_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(NonPooledDirectByteBufferRef.class, "_refCount");
+
+    private final ByteBuffer _buffer;
+    private final DirectMemoryAccounting _accounting;
+    private final DirectMemoryCategory _category;
+    private volatile int _refCount;
+
+    NonPooledDirectByteBufferRef(final ByteBuffer buffer,
+                                 final DirectMemoryAccounting accounting,
+                                 final DirectMemoryCategory category)
+    {
+        _buffer = buffer;
+        _accounting = accounting;
+        _category = category;
+        _accounting.allocated(category, buffer.capacity());
+    }
+
+    @Override
+    public void incrementRef()
+    {
+        if (REF_COUNT.get(this) >= 0)
+        {
+            REF_COUNT.incrementAndGet(this);
+        }
+    }
+
+    @Override
+    public void decrementRef()
+    {
+        if (REF_COUNT.get(this) > 0 && REF_COUNT.decrementAndGet(this) == 0)
+        {
+            _accounting.released(_category, _buffer.capacity());
+        }
+    }
+
+    @Override
+    public ByteBuffer getBuffer()
+    {
+        return _buffer;
+    }
+
+    @Override
+    public void removeFromPool()
+    {
+
+    }
+}
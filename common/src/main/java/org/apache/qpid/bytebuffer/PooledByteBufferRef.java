@@ -28,11 +28,21 @@ class PooledByteBufferRef implements ByteBufferRef
     private static final AtomicIntegerFieldUpdater<PooledByteBufferRef> REF_COUNT = AtomicIntegerFieldUpdater.newUpdater(PooledByteBufferRef.class, "_refCount");
 
     private final ByteBuffer _buffer;
+    private final BufferLeakDetector.Tracker _tracker;
+    private final DirectMemoryAccounting _accounting;
+    private final DirectMemoryCategory _category;
     private volatile int _refCount;
 
-    PooledByteBufferRef(final ByteBuffer buffer)
+    PooledByteBufferRef(final ByteBuffer buffer,
+                        final BufferLeakDetector leakDetector,
+                        final DirectMemoryAccounting accounting,
+                        final DirectMemoryCategory category)
     {
         _buffer = buffer;
+        _tracker = leakDetector == null ? null : leakDetector.track(this, buffer.capacity());
+        _accounting = accounting;
+        _category = category;
+        _accounting.allocated(category, buffer.capacity());
     }
 
     @Override
@@ -50,6 +60,11 @@ class PooledByteBufferRef implements ByteBufferRef
     {
         if(REF_COUNT.get(this) > 0 && REF_COUNT.decrementAndGet(this) == 0)
         {
+            if (_tracker != null)
+            {
+                _tracker.released();
+            }
+            _accounting.released(_category, _buffer.capacity());
             QpidByteBuffer.returnToPool(_buffer);
         }
     }
@@ -51,10 +51,12 @@ public class QpidByteBuffer
             DISPOSED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(
             QpidByteBuffer.class,
             "_disposed");
-    private static final ThreadLocal<QpidByteBuffer> _cachedBuffer = new ThreadLocal<>();
     private static final ByteBuffer[] EMPTY_BYTE_BUFFER_ARRAY = new ByteBuffer[0];
+    private static final DirectMemoryAccounting ACCOUNTING = new DirectMemoryAccounting();
     private volatile static boolean _isPoolInitialized;
     private volatile static BufferPool _bufferPool;
+    private volatile static SlabAllocator _slabAllocator;
+    private volatile static BufferLeakDetector _leakDetector;
     private volatile static int _pooledBufferSize;
     private volatile static ByteBuffer _zeroed;
     private final int _offset;
@@ -557,6 +559,11 @@ public class QpidByteBuffer
     }
 
     public static QpidByteBuffer allocateDirect(int size)
+    {
+        return allocateDirect(size, DirectMemoryCategory.OTHER);
+    }
+
+    public static QpidByteBuffer allocateDirect(int size, DirectMemoryCategory category)
     {
         if (size < 0)
         {
@@ -575,75 +582,51 @@ public class QpidByteBuffer
                 {
                     buf = ByteBuffer.allocateDirect(size);
                 }
-                ref = new PooledByteBufferRef(buf);
+                ref = new PooledByteBufferRef(buf, _leakDetector, ACCOUNTING, category);
             }
             else
             {
-                QpidByteBuffer buf = _cachedBuffer.get();
-                if (buf == null || buf.remaining() < size)
+                QpidByteBuffer rVal = _slabAllocator.allocate(size, category);
+                if (rVal == null)
                 {
-                    if (buf != null)
-                    {
-                        buf.dispose();
-                    }
-                    buf = allocateDirect(_pooledBufferSize);
+                    // larger than the largest size class, so given a pooled buffer of its own
+                    final QpidByteBuffer buf = allocateDirect(_pooledBufferSize, category);
+                    rVal = buf.view(0, size);
+                    buf.dispose();
                 }
-                QpidByteBuffer rVal = buf.view(0, size);
-                buf.position(buf.position() + size);
-
-                _cachedBuffer.set(buf);
                 return rVal;
             }
         }
         else
         {
-            ref = new NonPooledByteBufferRef(ByteBuffer.allocateDirect(size));
+            ref = new NonPooledDirectByteBufferRef(ByteBuffer.allocateDirect(size), ACCOUNTING, category);
         }
         return new QpidByteBuffer(ref);
     }
 
     public static Collection<QpidByteBuffer> allocateDirectCollection(int size)
+    {
+        return allocateDirectCollection(size, DirectMemoryCategory.OTHER);
+    }
+
+    public static Collection<QpidByteBuffer> allocateDirectCollection(int size, DirectMemoryCategory category)
     {
         if (_pooledBufferSize == 0)
         {
-            return Collections.singleton(allocateDirect(size));
+            return Collections.singleton(allocateDirect(size, category));
         }
         else
         {
-            List<QpidByteBuffer> buffers = new ArrayList<>((size / _pooledBufferSize) + 2);
+            List<QpidByteBuffer> buffers = new ArrayList<>((size / _pooledBufferSize) + 1);
             int remaining = size;
-
-            QpidByteBuffer buf = _cachedBuffer.get();
-            if (buf == null)
+            while (remaining >= _pooledBufferSize)
             {
-                buf = allocateDirect(_pooledBufferSize);
+                buffers.add(allocateDirect(_pooledBufferSize, category));
+                remaining -= _pooledBufferSize;
             }
-            while (remaining > buf.remaining())
+            if (remaining > 0 || buffers.isEmpty())
             {
-                int bufRemaining = buf.remaining();
-                if (buf == _cachedBuffer.get())
-                {
-                    buffers.add(buf.view(0, bufRemaining));
-                    buf.dispose();
-                }
-                else
-                {
-                    buffers.add(buf);
-                }
-                remaining -= bufRemaining;
-                buf = allocateDirect(_pooledBufferSize);
-            }
-            buffers.add(buf.view(0, remaining));
-            buf.position(buf.position() + remaining);
-
-            if (buf.hasRemaining())
-            {
-                _cachedBuffer.set(buf);
-            }
-            else
-            {
-                _cachedBuffer.set(allocateDirect(_pooledBufferSize));
-                buf.dispose();
+                buffers.add(allocateDirect(remaining, category));
             }
             return buffers;
         }
@@ -782,25 +765,51 @@ public class QpidByteBuffer
 
     public synchronized static void initialisePool(int bufferSize, int maxPoolSize)
     {
-        if (_isPoolInitialized && (bufferSize != _pooledBufferSize || maxPoolSize != _bufferPool.getMaxSize()))
+        initialisePool(bufferSize, maxPoolSize, BufferPool.DEFAULT_MAGAZINE_SIZE, false);
+    }
+
+    public synchronized static void initialisePool(int bufferSize,
+                                                   int maxPoolSize,
+                                                   int magazineSize,
+                                                   boolean leakDetection)
+    {
+        if (_isPoolInitialized && (bufferSize != _pooledBufferSize
+                                   || maxPoolSize != _bufferPool.getMaxSize()
+                                   || magazineSize != _bufferPool.getMagazineSize()
+                                   || leakDetection != (_leakDetector != null)))
         {
             final String errorMessage = String.format(
-                    "QpidByteBuffer pool has already been initialised with bufferSize=%d and maxPoolSize=%d." +
-                    "Re-initialisation with different bufferSize=%d and maxPoolSize=%d is not allowed.",
+                    "QpidByteBuffer pool has already been initialised with bufferSize=%d, maxPoolSize=%d, " +
+                    "magazineSize=%d and leakDetection=%b. Re-initialisation with different bufferSize=%d, " +
+                    "maxPoolSize=%d, magazineSize=%d and leakDetection=%b is not allowed.",
                     _pooledBufferSize,
                     _bufferPool.getMaxSize(),
+                    _bufferPool.getMagazineSize(),
+                    _leakDetector != null,
                     bufferSize,
-                    maxPoolSize);
+                    maxPoolSize,
+                    magazineSize,
+                    leakDetection);
             throw new IllegalStateException(errorMessage);
         }
         if (bufferSize <= 0)
         {
             throw new IllegalArgumentException("Negative or zero bufferSize illegal : " + bufferSize);
         }
+        if (magazineSize < 0)
+        {
+            throw new IllegalArgumentException("Negative magazineSize illegal : " + magazineSize);
+        }
+        if (_isPoolInitialized)
+        {
+            return;
+        }
 
-        _bufferPool = new BufferPool(maxPoolSize);
+        _bufferPool = new BufferPool(maxPoolSize, magazineSize);
         _pooledBufferSize = bufferSize;
         _zeroed = ByteBuffer.allocateDirect(_pooledBufferSize);
+        _leakDetector = leakDetection ? new BufferLeakDetector() : null;
+        _slabAllocator = new SlabAllocator(_pooledBufferSize, _bufferPool, _zeroed, _leakDetector, ACCOUNTING);
         _isPoolInitialized = true;
     }
 
@@ -809,6 +818,79 @@ public class QpidByteBuffer
         return _pooledBufferSize;
     }
 
+    /**
+     * @return the number of buffers held by the pool, including those held by the magazines of threads
+     */
+    public static int getNumberOfPooledBuffers()
+    {
+        return _isPoolInitialized ? _bufferPool.getPooledBufferCount() : 0;
+    }
+
+    /**
+     * @return the total size of the slabs from which buffers smaller than the pooled buffer size are allocated
+     */
+    public static long getSlabCapacity()
+    {
+        return _isPoolInitialized ? _slabAllocator.getCapacity() : 0L;
+    }
+
+    /**
+     * @return the total size of the slab chunks currently in use
+     */
+    public static long getSlabUsedSize()
+    {
+        return _isPoolInitialized ? _slabAllocator.getUsedSize() : 0L;
+    }
+
+    /**
+     * @return the total size requested of the slab chunks currently in use
+     */
+    public static long getSlabRequestedSize()
+    {
+        return _isPoolInitialized ? _slabAllocator.getRequestedSize() : 0L;
+    }
+
+    /**
+     * @return the number of pooled buffers found to have been garbage collected without being disposed, or -1 if
+     * leak detection is not enabled
+     */
+    public static long getNumberOfLeakedBuffers()
+    {
+        final BufferLeakDetector leakDetector = _leakDetector;
+        return leakDetector == null ? -1L : leakDetector.getLeakCount();
+    }
+
+    /**
+     * @return the direct memory in use by buffers allocated for the given category, including any memory beyond that
+     * requested due to rounding up to a size class or to the pooled buffer size
+     */
+    public static long getDirectMemoryUsed(DirectMemoryCategory category)
+    {
+        return ACCOUNTING.getUsed(category);
+    }
+
+    /**
+     * @return the direct memory held idle by the pool and by the free chunks of the slabs, ready for reuse
+     */
+    public static long getPooledDirectMemory()
+    {
+        if (!_isPoolInitialized)
+        {
+            return 0L;
+        }
+        return (long) _bufferPool.getPooledBufferCount() * _pooledBufferSize
+               + _slabAllocator.getCapacity() - _slabAllocator.getUsedSize();
+    }
+
+    /**
+     * @return the direct memory in use by buffers allocated for all categories, excluding that held idle by the pool
+     * and the slabs, which is available for reuse and does not shrink as buffers are disposed
+     */
+    public static long getTotalDirectMemoryUsed()
+    {
+        return ACCOUNTING.getTotalUsed();
+    }
+
     private static final class BufferInputStream extends InputStream
     {
         private final QpidByteBuffer _qpidByteBuffer;
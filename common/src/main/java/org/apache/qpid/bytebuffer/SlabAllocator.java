@@ -0,0 +1,405 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates buffers smaller than the pooled buffer size as chunks of slabs, each slab being a pooled buffer divided
+ * into chunks of one of a number of size classes.  The size classes are the powers of two from the minimum chunk size
+ * up to half the slab size.
+ * <p>
+ * Each chunk is reference counted on its own, so that it returns to its slab as soon as the buffers sharing it have
+ * been disposed, regardless of the other chunks of the slab.  Each thread allocates from a slab of its own for each
+ * size class.  Once that slab is exhausted the thread detaches from it and adopts a slab to which chunks have since
+ * been returned, or failing that a new one.  A detached slab becomes available for adoption as soon as any of its
+ * chunks is returned.  Slabs remain with their size class once created.  The slabs of a thread which has died are
+ * detached, so that their free chunks may be adopted by other threads.
+ * <p>
+ * The statistics are kept in striped counters, so that threads allocating and disposing of chunks concurrently do
+ * not contend on them.
+ */
+final class SlabAllocator
+{
+    static final int MIN_CHUNK_SIZE = 256;
+
+    private static final int OWNED = 0;
+    private static final int DETACHED = 1;
+    private static final int QUEUED = 2;
+
+    private final int _slabSize;
+    private final BufferPool _bufferPool;
+    private final ByteBuffer _zeroed;
+    private final BufferLeakDetector _leakDetector;
+    private final DirectMemoryAccounting _accounting;
+    private final SizeClass[] _sizeClasses;
+    private final ThreadStateRegistry<Slab[]> _currentSlabsRegistry = new ThreadStateRegistry<>();
+    private final ThreadLocal<Slab[]> _currentSlabs = new ThreadLocal<Slab[]>()
+    {
+        @Override
+        protected Slab[] initialValue()
+        {
+            // threads are most likely to have died when others are being started
+            detachDeadThreadSlabs();
+            final Slab[] currentSlabs = new Slab[_sizeClasses.length];
+            _currentSlabsRegistry.register(currentSlabs);
+            return currentSlabs;
+        }
+    };
+
+    SlabAllocator(final int slabSize,
+                  final BufferPool bufferPool,
+                  final ByteBuffer zeroed,
+                  final BufferLeakDetector leakDetector,
+                  final DirectMemoryAccounting accounting)
+    {
+        _slabSize = slabSize;
+        _bufferPool = bufferPool;
+        _zeroed = zeroed;
+        _leakDetector = leakDetector;
+        _accounting = accounting;
+
+        int numberOfSizeClasses = 0;
+        for (int chunkSize = MIN_CHUNK_SIZE; chunkSize <= slabSize / 2; chunkSize <<= 1)
+        {
+            numberOfSizeClasses++;
+        }
+        _sizeClasses = new SizeClass[numberOfSizeClasses];
+        for (int i = 0; i < numberOfSizeClasses; i++)
+        {
+            _sizeClasses[i] = new SizeClass(MIN_CHUNK_SIZE << i);
+        }
+    }
+
+    /**
+     * @return a buffer of the given size, or null if the size exceeds the largest size class
+     */
+    QpidByteBuffer allocate(final int size, final DirectMemoryCategory category)
+    {
+        final int index = getSizeClassIndex(size);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        final SizeClass sizeClass = _sizeClasses[index];
+        final Slab[] currentSlabs = _currentSlabs.get();
+        Slab slab = currentSlabs[index];
+        int chunk = slab == null ? -1 : slab.allocateChunk();
+        while (chunk < 0)
+        {
+            if (slab != null)
+            {
+                slab.detach();
+            }
+            slab = sizeClass.adoptSlab();
+            currentSlabs[index] = slab;
+            chunk = slab.allocateChunk();
+        }
+
+        final ChunkRef ref = new ChunkRef(slab, chunk, size, _zeroed, _leakDetector, _accounting, category);
+        final QpidByteBuffer chunkBuffer = new QpidByteBuffer(ref);
+        final QpidByteBuffer buffer = chunkBuffer.view(0, size);
+        chunkBuffer.dispose();
+        return buffer;
+    }
+
+    int getSizeClassIndex(final int size)
+    {
+        int chunkSize = MIN_CHUNK_SIZE;
+        for (int i = 0; i < _sizeClasses.length; i++)
+        {
+            if (size <= chunkSize)
+            {
+                return i;
+            }
+            chunkSize <<= 1;
+        }
+        return -1;
+    }
+
+    int getNumberOfSizeClasses()
+    {
+        return _sizeClasses.length;
+    }
+
+    /**
+     * @return the total size of the slabs of all size classes
+     */
+    long getCapacity()
+    {
+        long capacity = 0L;
+        for (SizeClass sizeClass : _sizeClasses)
+        {
+            capacity += (long) sizeClass._slabCount.get() * _slabSize;
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the total size of the chunks currently allocated
+     */
+    long getUsedSize()
+    {
+        long used = 0L;
+        for (SizeClass sizeClass : _sizeClasses)
+        {
+            used += sizeClass._allocatedChunks.get() * sizeClass._chunkSize;
+        }
+        return used;
+    }
+
+    /**
+     * @return the total size requested of the chunks currently allocated, which is less than the used size by the
+     * rounding of sizes up to their size class
+     */
+    long getRequestedSize()
+    {
+        long requested = 0L;
+        for (SizeClass sizeClass : _sizeClasses)
+        {
+            requested += sizeClass._requestedBytes.get();
+        }
+        return requested;
+    }
+
+    private boolean detachDeadThreadSlabs()
+    {
+        boolean detached = false;
+        for (Slab[] currentSlabs : _currentSlabsRegistry.removeDeadThreadStates())
+        {
+            for (Slab slab : currentSlabs)
+            {
+                if (slab != null)
+                {
+                    slab.detach();
+                    detached = true;
+                }
+            }
+        }
+        return detached;
+    }
+
+    private final class SizeClass
+    {
+        private final int _chunkSize;
+        private final ConcurrentLinkedQueue<Slab> _adoptableSlabs = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _slabCount = new AtomicInteger();
+        private final StripedCounter _allocatedChunks = new StripedCounter();
+        private final StripedCounter _requestedBytes = new StripedCounter();
+
+        private SizeClass(final int chunkSize)
+        {
+            _chunkSize = chunkSize;
+        }
+
+        private Slab adoptSlab()
+        {
+            Slab slab = _adoptableSlabs.poll();
+            if (slab == null && detachDeadThreadSlabs())
+            {
+                slab = _adoptableSlabs.poll();
+            }
+            if (slab != null)
+            {
+                slab._state.set(OWNED);
+            }
+            else
+            {
+                ByteBuffer buffer = _bufferPool.getBuffer();
+                if (buffer == null)
+                {
+                    buffer = ByteBuffer.allocateDirect(_slabSize);
+                }
+                slab = new Slab(this, buffer);
+                _slabCount.incrementAndGet();
+            }
+            return slab;
+        }
+    }
+
+    private final class Slab
+    {
+        private final SizeClass _sizeClass;
+        private final ByteBuffer _buffer;
+        private final AtomicIntegerArray _nextFree;
+        // the tag in the upper half avoids ABA, the lower half holds the index of the first free chunk plus one
+        private final AtomicLong _freeHead;
+        private final AtomicInteger _state = new AtomicInteger(OWNED);
+
+        private Slab(final SizeClass sizeClass, final ByteBuffer buffer)
+        {
+            _sizeClass = sizeClass;
+            _buffer = buffer;
+            final int numberOfChunks = _slabSize / sizeClass._chunkSize;
+            _nextFree = new AtomicIntegerArray(numberOfChunks);
+            for (int i = 0; i < numberOfChunks; i++)
+            {
+                _nextFree.set(i, i + 1 < numberOfChunks ? i + 1 : -1);
+            }
+            _freeHead = new AtomicLong(1L);
+        }
+
+        private int allocateChunk()
+        {
+            while (true)
+            {
+                final long head = _freeHead.get();
+                final int chunk = (int) head - 1;
+                if (chunk < 0)
+                {
+                    return -1;
+                }
+                if (_freeHead.compareAndSet(head, nextHead(head, _nextFree.get(chunk))))
+                {
+                    _sizeClass._allocatedChunks.add(1L);
+                    return chunk;
+                }
+            }
+        }
+
+        private void freeChunk(final int chunk)
+        {
+            while (true)
+            {
+                final long head = _freeHead.get();
+                _nextFree.set(chunk, (int) head - 1);
+                if (_freeHead.compareAndSet(head, nextHead(head, chunk)))
+                {
+                    break;
+                }
+            }
+            _sizeClass._allocatedChunks.add(-1L);
+
+            if (_state.get() == DETACHED && _state.compareAndSet(DETACHED, QUEUED))
+            {
+                _sizeClass._adoptableSlabs.add(this);
+            }
+        }
+
+        private void detach()
+        {
+            _state.set(DETACHED);
+            // a chunk returned whilst the slab was still owned would not have queued it
+            if ((int) _freeHead.get() != 0 && _state.compareAndSet(DETACHED, QUEUED))
+            {
+                _sizeClass._adoptableSlabs.add(this);
+            }
+        }
+
+        private ByteBuffer getChunk(final int chunk)
+        {
+            final ByteBuffer buffer = _buffer.duplicate();
+            final int offset = chunk * _sizeClass._chunkSize;
+            buffer.limit(offset + _sizeClass._chunkSize);
+            buffer.position(offset);
+            return buffer.slice();
+        }
+
+        private long nextHead(final long head, final int chunk)
+        {
+            return (((head >>> 32) + 1L) << 32) | ((chunk + 1) & 0xFFFFFFFFL);
+        }
+    }
+
+    private static final class ChunkRef implements ByteBufferRef
+    {
+        private static final AtomicIntegerFieldUpdater<ChunkRef> REF_COUNT =
+                AtomicIntegerFieldUpdater.newUpdater(ChunkRef.class, "_refCount");
+
+        private final ByteBuffer _zeroed;
+        private final Slab _slab;
+        private final int _chunk;
+        private final int _requestedSize;
+        private final ByteBuffer _buffer;
+        private final BufferLeakDetector.Tracker _tracker;
+        private final DirectMemoryAccounting _accounting;
+        private final DirectMemoryCategory _category;
+        private volatile int _refCount;
+
+        private ChunkRef(final Slab slab,
+                         final int chunk,
+                         final int requestedSize,
+                         final ByteBuffer zeroed,
+                         final BufferLeakDetector leakDetector,
+                         final DirectMemoryAccounting accounting,
+                         final DirectMemoryCategory category)
+        {
+            _zeroed = zeroed;
+            _slab = slab;
+            _chunk = chunk;
+            _requestedSize = requestedSize;
+            _buffer = slab.getChunk(chunk);
+            _tracker = leakDetector == null ? null : leakDetector.track(this, _buffer.capacity());
+            slab._sizeClass._requestedBytes.add(requestedSize);
+            _accounting = accounting;
+            _category = category;
+            _accounting.allocated(category, _buffer.capacity());
+        }
+
+        @Override
+        public void incrementRef()
+        {
+            if (REF_COUNT.get(this) >= 0)
+            {
+                REF_COUNT.incrementAndGet(this);
+            }
+        }
+
+        @Override
+        public void decrementRef()
+        {
+            if (REF_COUNT.get(this) > 0 && REF_COUNT.decrementAndGet(this) == 0)
+            {
+                if (_tracker != null)
+                {
+                    _tracker.released();
+                }
+
+                final ByteBuffer buffer = _buffer.duplicate();
+                final ByteBuffer zeroed = _zeroed.duplicate();
+                zeroed.limit(buffer.capacity());
+                buffer.put(zeroed);
+
+                _slab._sizeClass._requestedBytes.add(-_requestedSize);
+                _accounting.released(_category, _buffer.capacity());
+                _slab.freeChunk(_chunk);
+            }
+        }
+
+        @Override
+        public ByteBuffer getBuffer()
+        {
+            return _buffer.duplicate();
+        }
+
+        @Override
+        public void removeFromPool()
+        {
+            REF_COUNT.set(this, Integer.MIN_VALUE / 2);
+        }
+    }
+}
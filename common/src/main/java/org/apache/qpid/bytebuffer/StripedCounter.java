@@ -0,0 +1,68 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads update with little contention, each adding to one of a number of cells chosen by its
+ * thread, at the cost of summing the cells to read it.  Each cell occupies a cache line of its own.
+ */
+final class StripedCounter
+{
+    private static final int CELL_SPACING = 8;
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPES = getNumberOfStripes();
+
+    private final AtomicLongArray _cells = new AtomicLongArray(STRIPES * CELL_SPACING);
+
+    void add(final long delta)
+    {
+        _cells.addAndGet(getCellIndex(), delta);
+    }
+
+    long get()
+    {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            sum += _cells.get(i * CELL_SPACING);
+        }
+        return sum;
+    }
+
+    private static int getCellIndex()
+    {
+        // thread ids are allocated in sequence, so spread evenly over the stripes
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * CELL_SPACING;
+    }
+
+    private static int getNumberOfStripes()
+    {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < 2 * processors && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the state that a pool or allocator holds for each thread, so that the state of a thread which has died can be
+ * reclaimed rather than held for the life of the pool or allocator.  The state of a thread is expected to be used
+ * only by that thread; once the thread has been seen to die, its state may be used by the thread reclaiming it.
+ */
+final class ThreadStateRegistry<T>
+{
+    private final ConcurrentMap<WeakReference<Thread>, T> _states = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the given state as that of the current thread.
+     */
+    void register(final T state)
+    {
+        _states.put(new WeakReference<>(Thread.currentThread()), state);
+    }
+
+    Collection<T> getStates()
+    {
+        return _states.values();
+    }
+
+    /**
+     * Removes the states of the threads which have died since the last call.
+     *
+     * @return the removed states, which are no longer used by their threads
+     */
+    List<T> removeDeadThreadStates()
+    {
+        List<T> deadThreadStates = Collections.emptyList();
+        for (Map.Entry<WeakReference<Thread>, T> entry : _states.entrySet())
+        {
+            final Thread thread = entry.getKey().get();
+            if ((thread == null || !thread.isAlive()) && _states.remove(entry.getKey(), entry.getValue()))
+            {
+                if (deadThreadStates.isEmpty())
+                {
+                    deadThreadStates = new ArrayList<>();
+                }
+                deadThreadStates.add(entry.getValue());
+            }
+        }
+        return deadThreadStates;
+    }
+}
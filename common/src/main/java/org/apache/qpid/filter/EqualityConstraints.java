@@ -0,0 +1,86 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts from a selector expression the equality predicates of the form <code>property = 'literal'</code> which
+ * any matching message must satisfy, that is those which are combined with the remainder of the expression only
+ * by AND.
+ */
+public final class EqualityConstraints
+{
+    private EqualityConstraints()
+    {
+    }
+
+    /**
+     * @param expression the parsed selector
+     * @return the required string value of each constrained property, in the order they appear in the selector
+     */
+    public static <E> Map<PropertyExpression<E>, String> getRequiredValues(final Expression<E> expression)
+    {
+        Map<PropertyExpression<E>, String> requiredValues = new LinkedHashMap<>();
+        addRequiredValues(expression, requiredValues);
+        return requiredValues;
+    }
+
+    private static <E> void addRequiredValues(final Expression<E> expression,
+                                              final Map<PropertyExpression<E>, String> requiredValues)
+    {
+        if(expression instanceof LogicExpression
+           && "AND".equals(((LogicExpression<E>) expression).getExpressionSymbol()))
+        {
+            LogicExpression<E> and = (LogicExpression<E>) expression;
+            addRequiredValues(and.getLeft(), requiredValues);
+            addRequiredValues(and.getRight(), requiredValues);
+        }
+        else if(expression instanceof ComparisonExpression
+                && "=".equals(((ComparisonExpression<E>) expression).getExpressionSymbol()))
+        {
+            ComparisonExpression<E> equal = (ComparisonExpression<E>) expression;
+            if(!addRequiredValue(equal.getLeft(), equal.getRight(), requiredValues))
+            {
+                addRequiredValue(equal.getRight(), equal.getLeft(), requiredValues);
+            }
+        }
+    }
+
+    private static <E> boolean addRequiredValue(final Expression<E> property,
+                                                final Expression<E> constant,
+                                                final Map<PropertyExpression<E>, String> requiredValues)
+    {
+        if(property instanceof PropertyExpression
+           && constant instanceof ConstantExpression
+           && ((ConstantExpression<E>) constant).getValue() instanceof String)
+        {
+            PropertyExpression<E> propertyExpression = (PropertyExpression<E>) property;
+            if(!requiredValues.containsKey(propertyExpression))
+            {
+                requiredValues.put(propertyExpression, (String) ((ConstantExpression<E>) constant).getValue());
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+/**
+ * Turns a parsed selector into an equivalent tree of specialised evaluators.
+ * <p>
+ * Sub-expressions which reference no message properties are folded to constants, AND, OR and NOT nodes are
+ * rebuilt over their compiled operands, and comparisons of an expression against a numeric or string literal
+ * are replaced by evaluators which convert the literal once and compare primitive values, avoiding the boxing and
+ * type dispatch of {@link ComparisonExpression#compare(Comparable, Comparable)} for the common value types.
+ * Any other node is retained as parsed. The compiled tree gives the same result as the parsed one for every
+ * message.
+ */
+public final class SelectorCompiler
+{
+    private SelectorCompiler()
+    {
+    }
+
+    public static <E> BooleanExpression<E> compile(final BooleanExpression<E> expression)
+    {
+        if(isConstant(expression))
+        {
+            BooleanExpression<E> folded = fold(expression);
+            if(folded != null)
+            {
+                return folded;
+            }
+        }
+
+        if(expression instanceof LogicExpression)
+        {
+            LogicExpression<E> logic = (LogicExpression<E>) expression;
+            BooleanExpression<E> left = compile((BooleanExpression<E>) logic.getLeft());
+            BooleanExpression<E> right = compile((BooleanExpression<E>) logic.getRight());
+            if("AND".equals(logic.getExpressionSymbol()))
+            {
+                return createAnd(left, right);
+            }
+            else if("OR".equals(logic.getExpressionSymbol()))
+            {
+                return createOr(left, right);
+            }
+        }
+        else if(expression instanceof UnaryExpression
+                && "NOT".equals(((UnaryExpression<E>) expression).getExpressionSymbol()))
+        {
+            return new NotEvaluator<>(compile((BooleanExpression<E>) ((UnaryExpression<E>) expression).getRight()));
+        }
+        else if(expression instanceof ComparisonExpression)
+        {
+            BooleanExpression<E> comparison = createComparison((ComparisonExpression<E>) expression);
+            if(comparison != null)
+            {
+                return comparison;
+            }
+        }
+        return expression;
+    }
+
+    private static boolean isConstant(final Expression<?> expression)
+    {
+        if(expression instanceof ConstantExpression)
+        {
+            return true;
+        }
+        else if(expression instanceof BinaryExpression)
+        {
+            return isConstant(((BinaryExpression<?>) expression).getLeft())
+                   && isConstant(((BinaryExpression<?>) expression).getRight());
+        }
+        else if(expression instanceof UnaryExpression)
+        {
+            return isConstant(((UnaryExpression<?>) expression).getRight());
+        }
+        return false;
+    }
+
+    private static <E> BooleanExpression<E> fold(final BooleanExpression<E> expression)
+    {
+        Object value;
+        try
+        {
+            value = expression.evaluate(null);
+        }
+        catch (RuntimeException e)
+        {
+            // leave the failure to occur when a message is evaluated, as it would for the parsed selector
+            return null;
+        }
+        if(value == null || value instanceof Boolean)
+        {
+            return new ConstantExpression.BooleanConstantExpression<>(value);
+        }
+        return null;
+    }
+
+    private static <E> Object foldValue(final Expression<E> expression)
+    {
+        if(isConstant(expression))
+        {
+            try
+            {
+                return expression.evaluate(null);
+            }
+            catch (RuntimeException e)
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static <E> BooleanExpression<E> createAnd(final BooleanExpression<E> left,
+                                                      final BooleanExpression<E> right)
+    {
+        if(left instanceof ConstantExpression)
+        {
+            Object value = ((ConstantExpression<E>) left).getValue();
+            if(value == null)
+            {
+                return left;
+            }
+            else if(value == Boolean.TRUE)
+            {
+                return right;
+            }
+            else if(value == Boolean.FALSE)
+            {
+                return left;
+            }
+        }
+        return new AndEvaluator<>(left, right);
+    }
+
+    private static <E> BooleanExpression<E> createOr(final BooleanExpression<E> left,
+                                                     final BooleanExpression<E> right)
+    {
+        if(left instanceof ConstantExpression)
+        {
+            Object value = ((ConstantExpression<E>) left).getValue();
+            if(value == Boolean.TRUE)
+            {
+                return left;
+            }
+            else if(value == null || value == Boolean.FALSE)
+            {
+                return right;
+            }
+        }
+        return new OrEvaluator<>(left, right);
+    }
+
+    private static <E> BooleanExpression<E> createComparison(final ComparisonExpression<E> comparison)
+    {
+        String symbol = comparison.getExpressionSymbol();
+        Comparator comparator;
+        if("=".equals(symbol))
+        {
+            comparator = Comparator.EQUAL;
+        }
+        else if(">".equals(symbol))
+        {
+            comparator = Comparator.GREATER_THAN;
+        }
+        else if(">=".equals(symbol))
+        {
+            comparator = Comparator.GREATER_THAN_EQUAL;
+        }
+        else if("<".equals(symbol))
+        {
+            comparator = Comparator.LESS_THAN;
+        }
+        else if("<=".equals(symbol))
+        {
+            comparator = Comparator.LESS_THAN_EQUAL;
+        }
+        else
+        {
+            return null;
+        }
+
+        if(isConstant(comparison.getLeft()))
+        {
+            return null;
+        }
+        Object constant = foldValue(comparison.getRight());
+        if(constant instanceof Integer || constant instanceof Long || constant instanceof Double)
+        {
+            return new NumericComparisonEvaluator<>(comparison, comparator, (Number) constant);
+        }
+        else if(constant instanceof String && comparator == Comparator.EQUAL)
+        {
+            return new StringEqualityEvaluator<>(comparison, (String) constant);
+        }
+        return null;
+    }
+
+    private enum Comparator
+    {
+        EQUAL
+        {
+            @Override
+            boolean asBoolean(final int answer)
+            {
+                return answer == 0;
+            }
+        },
+        GREATER_THAN
+        {
+            @Override
+            boolean asBoolean(final int answer)
+            {
+                return answer > 0;
+            }
+        },
+        GREATER_THAN_EQUAL
+        {
+            @Override
+            boolean asBoolean(final int answer)
+            {
+                return answer >= 0;
+            }
+        },
+        LESS_THAN
+        {
+            @Override
+            boolean asBoolean(final int answer)
+            {
+                return answer < 0;
+            }
+        },
+        LESS_THAN_EQUAL
+        {
+            @Override
+            boolean asBoolean(final int answer)
+            {
+                return answer <= 0;
+            }
+        };
+
+        abstract boolean asBoolean(int answer);
+    }
+
+    private abstract static class Evaluator<E> implements BooleanExpression<E>
+    {
+        @Override
+        public boolean matches(final E message)
+        {
+            return evaluate(message) == Boolean.TRUE;
+        }
+    }
+
+    private static final class AndEvaluator<E> extends Evaluator<E>
+    {
+        private final BooleanExpression<E> _left;
+        private final BooleanExpression<E> _right;
+
+        private AndEvaluator(final BooleanExpression<E> left, final BooleanExpression<E> right)
+        {
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        public Object evaluate(final E message)
+        {
+            Boolean lv = (Boolean) _left.evaluate(message);
+            if(lv == null)
+            {
+                return null;
+            }
+            if(!lv)
+            {
+                return Boolean.FALSE;
+            }
+            return _right.evaluate(message);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "(" + _left + " AND " + _right + ")";
+        }
+    }
+
+    private static final class OrEvaluator<E> extends Evaluator<E>
+    {
+        private final BooleanExpression<E> _left;
+        private final BooleanExpression<E> _right;
+
+        private OrEvaluator(final BooleanExpression<E> left, final BooleanExpression<E> right)
+        {
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        public Object evaluate(final E message)
+        {
+            Boolean lv = (Boolean) _left.evaluate(message);
+            if(lv != null && lv)
+            {
+                return Boolean.TRUE;
+            }
+            return _right.evaluate(message);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "(" + _left + " OR " + _right + ")";
+        }
+    }
+
+    private static final class NotEvaluator<E> extends Evaluator<E>
+    {
+        private final BooleanExpression<E> _operand;
+
+        private NotEvaluator(final BooleanExpression<E> operand)
+        {
+            _operand = operand;
+        }
+
+        @Override
+        public Object evaluate(final E message)
+        {
+            Boolean value = (Boolean) _operand.evaluate(message);
+            if(value == null)
+            {
+                return null;
+            }
+            return value ? Boolean.FALSE : Boolean.TRUE;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "(NOT " + _operand + ")";
+        }
+    }
+
+    /**
+     * Base for comparisons of an expression with a literal. Values of types without a specialised path are passed
+     * to the parsed comparison so that its type promotion rules are preserved exactly.
+     */
+    private abstract static class LiteralComparisonEvaluator<E> extends Evaluator<E>
+    {
+        private final ComparisonExpression<E> _comparison;
+        private final Expression<E> _operand;
+        private final Comparable _literal;
+        private final boolean _equality;
+
+        LiteralComparisonEvaluator(final ComparisonExpression<E> comparison,
+                                   final Comparable literal,
+                                   final boolean equality)
+        {
+            _comparison = comparison;
+            _operand = comparison.getLeft();
+            _literal = literal;
+            _equality = equality;
+        }
+
+        @Override
+        public final Object evaluate(final E message)
+        {
+            Object value = _operand.evaluate(message);
+            if(value == null)
+            {
+                return _equality ? Boolean.FALSE : null;
+            }
+            Boolean result = compareValue(value);
+            if(result != null)
+            {
+                return result;
+            }
+            else if(_equality)
+            {
+                if(value.equals(_literal))
+                {
+                    return Boolean.TRUE;
+                }
+                return value instanceof Comparable ? _comparison.compare((Comparable) value, _literal) : Boolean.FALSE;
+            }
+            else
+            {
+                return _comparison.compare((Comparable) value, _literal);
+            }
+        }
+
+        /**
+         * @return the result of the comparison, or null if the value's type has no specialised path
+         */
+        abstract Boolean compareValue(Object value);
+
+        @Override
+        public String toString()
+        {
+            return _comparison.toString();
+        }
+    }
+
+    private static final class NumericComparisonEvaluator<E> extends LiteralComparisonEvaluator<E>
+    {
+        private final Comparator _comparator;
+        private final Class<?> _literalClass;
+        private final long _longLiteral;
+        private final float _floatLiteral;
+        private final double _doubleLiteral;
+
+        private NumericComparisonEvaluator(final ComparisonExpression<E> comparison,
+                                           final Comparator comparator,
+                                           final Number literal)
+        {
+            super(comparison, (Comparable) literal, comparator == Comparator.EQUAL);
+            _comparator = comparator;
+            _literalClass = literal.getClass();
+            _longLiteral = literal.longValue();
+            _floatLiteral = literal.floatValue();
+            _doubleLiteral = literal.doubleValue();
+        }
+
+        @Override
+        Boolean compareValue(final Object value)
+        {
+            Class<?> valueClass = value.getClass();
+            int answer;
+            if(valueClass == Integer.class || valueClass == Short.class || valueClass == Byte.class
+               || valueClass == Long.class)
+            {
+                if(_literalClass == Double.class)
+                {
+                    answer = Double.compare(((Number) value).doubleValue(), _doubleLiteral);
+                }
+                else
+                {
+                    answer = Long.compare(((Number) value).longValue(), _longLiteral);
+                }
+            }
+            else if(valueClass == Float.class)
+            {
+                if(_literalClass == Double.class)
+                {
+                    answer = Double.compare(((Float) value).doubleValue(), _doubleLiteral);
+                }
+                else
+                {
+                    answer = Float.compare((Float) value, _floatLiteral);
+                }
+            }
+            else if(valueClass == Double.class)
+            {
+                answer = Double.compare((Double) value, _doubleLiteral);
+            }
+            else
+            {
+                return null;
+            }
+            return _comparator.asBoolean(answer) ? Boolean.TRUE : Boolean.FALSE;
+        }
+    }
+
+    private static final class StringEqualityEvaluator<E> extends LiteralComparisonEvaluator<E>
+    {
+        private final String _literal;
+
+        private StringEqualityEvaluator(final ComparisonExpression<E> comparison, final String literal)
+        {
+            super(comparison, literal, true);
+            _literal = literal;
+        }
+
+        @Override
+        Boolean compareValue(final Object value)
+        {
+            if(value.getClass() == String.class)
+            {
+                return _literal.equals(value) ? Boolean.TRUE : Boolean.FALSE;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class BufferPoolTest extends QpidTestCase
+{
+    public void testBufferReusedByReleasingThread()
+    {
+        final BufferPool pool = new BufferPool(2, 4);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+
+        pool.returnBuffer(buffer);
+
+        assertEquals("Buffer should be held by the thread's magazine", 0, pool.getDepotBufferCount());
+        assertEquals("Unexpected number of pooled buffers", 1, pool.getPooledBufferCount());
+        assertSame("Unexpected buffer", buffer, pool.getBuffer());
+        assertNull("Unexpected buffer", pool.getBuffer());
+    }
+
+    public void testPoolIncludingMagazinesBoundedByMaxSize()
+    {
+        final int maxSize = 2;
+        final int magazineSize = 4;
+        final BufferPool pool = new BufferPool(maxSize, magazineSize);
+        for (int i = 0; i < 10; i++)
+        {
+            pool.returnBuffer(ByteBuffer.allocateDirect(8));
+        }
+
+        assertEquals("Unexpected number of pooled buffers", maxSize, pool.getPooledBufferCount());
+
+        int buffers = 0;
+        while (pool.getBuffer() != null)
+        {
+            buffers++;
+        }
+        assertEquals("Unexpected number of pooled buffers", maxSize, buffers);
+    }
+
+    public void testMagazineOfDeadThreadDrainedToDepot() throws Exception
+    {
+        final BufferPool pool = new BufferPool(10, 4);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                pool.returnBuffer(buffer);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals("Buffer should be held by the magazine of the thread", 1, pool.getPooledBufferCount());
+        assertSame("Buffer held by the magazine of a dead thread not reused", buffer, pool.getBuffer());
+        assertEquals("Unexpected number of pooled buffers", 0, pool.getPooledBufferCount());
+    }
+
+    public void testBufferExchangedBetweenThreadsThroughDepot() throws Exception
+    {
+        final BufferPool pool = new BufferPool(10, 0);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                pool.returnBuffer(buffer);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertSame("Buffer released by another thread not reused", buffer, pool.getBuffer());
+    }
+}
@@ -791,6 +791,19 @@ public class QpidByteBufferTest extends QpidTestCase
         }
     }
 
+    public void testSettingUpPoolTwiceWithDifferentMagazineSize() throws Exception
+    {
+        try
+        {
+            QpidByteBuffer.initialisePool(BUFFER_SIZE, POOL_SIZE, BufferPool.DEFAULT_MAGAZINE_SIZE + 1, false);
+            fail("It is not legal to initialize buffer twice with different settings.");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+    }
+
     public void testDeflateInflateDirect() throws Exception
     {
         byte[] input = "aaabbbcccddddeeeffff".getBytes();
@@ -849,6 +862,41 @@ public class QpidByteBufferTest extends QpidTestCase
         directSlice.dispose();
     }
 
+    public void testDirectMemoryAccountedByCategory() throws Exception
+    {
+        final long networkBefore = QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.NETWORK);
+        final long contentBefore = QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.CONTENT);
+
+        QpidByteBuffer pooled = QpidByteBuffer.allocateDirect(BUFFER_SIZE, DirectMemoryCategory.NETWORK);
+        Collection<QpidByteBuffer> content =
+                QpidByteBuffer.allocateDirectCollection(BUFFER_SIZE * 2 + 1, DirectMemoryCategory.CONTENT);
+        QpidByteBuffer unpooled = QpidByteBuffer.allocateDirect(BUFFER_SIZE * 10, DirectMemoryCategory.CONTENT);
+
+        assertEquals("Unexpected network memory",
+                     networkBefore + BUFFER_SIZE, QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.NETWORK));
+        assertEquals("Unexpected content memory",
+                     contentBefore + BUFFER_SIZE * 13,
+                     QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.CONTENT));
+
+        QpidByteBuffer duplicate = unpooled.duplicate();
+        unpooled.dispose();
+        assertEquals("Memory still shared by a duplicate should remain accounted",
+                     contentBefore + BUFFER_SIZE * 13,
+                     QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.CONTENT));
+
+        duplicate.dispose();
+        pooled.dispose();
+        for (QpidByteBuffer buffer : content)
+        {
+            buffer.dispose();
+        }
+
+        assertEquals("Unexpected network memory after dispose",
+                     networkBefore, QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.NETWORK));
+        assertEquals("Unexpected content memory after dispose",
+                     contentBefore, QpidByteBuffer.getDirectMemoryUsed(DirectMemoryCategory.CONTENT));
+    }
+
     public void testView() throws Exception
     {
         byte[] content = "ABCDEF".getBytes();
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SlabAllocatorTest extends QpidTestCase
+{
+    private static final int SLAB_SIZE = 4096;
+    private static final int CHUNKS_PER_SLAB = SLAB_SIZE / SlabAllocator.MIN_CHUNK_SIZE;
+
+    private DirectMemoryAccounting _accounting;
+    private SlabAllocator _allocator;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _accounting = new DirectMemoryAccounting();
+        _allocator = new SlabAllocator(SLAB_SIZE,
+                                       new BufferPool(10, 4),
+                                       ByteBuffer.allocateDirect(SLAB_SIZE),
+                                       null,
+                                       _accounting);
+    }
+
+    public void testSizeClasses()
+    {
+        assertEquals("Unexpected number of size classes", 4, _allocator.getNumberOfSizeClasses());
+        assertEquals("Unexpected size class", 0, _allocator.getSizeClassIndex(1));
+        assertEquals("Unexpected size class", 0, _allocator.getSizeClassIndex(SlabAllocator.MIN_CHUNK_SIZE));
+        assertEquals("Unexpected size class", 1, _allocator.getSizeClassIndex(SlabAllocator.MIN_CHUNK_SIZE + 1));
+        assertEquals("Unexpected size class", 3, _allocator.getSizeClassIndex(SLAB_SIZE / 2));
+        assertEquals("Size above the largest class", -1, _allocator.getSizeClassIndex(SLAB_SIZE / 2 + 1));
+        assertNull("Unexpected buffer for size above the largest class",
+                   _allocator.allocate(SLAB_SIZE / 2 + 1, DirectMemoryCategory.OTHER));
+    }
+
+    public void testAllocateAndDispose()
+    {
+        final QpidByteBuffer buffer = _allocator.allocate(100, DirectMemoryCategory.OTHER);
+
+        assertEquals("Unexpected capacity", 100, buffer.capacity());
+        assertTrue("Buffer should be direct", buffer.isDirect());
+        assertEquals("Unexpected slab capacity", SLAB_SIZE, _allocator.getCapacity());
+        assertEquals("Unexpected used size", SlabAllocator.MIN_CHUNK_SIZE, _allocator.getUsedSize());
+        assertEquals("Unexpected requested size", 100, _allocator.getRequestedSize());
+
+        final QpidByteBuffer duplicate = buffer.duplicate();
+        buffer.dispose();
+        assertEquals("Chunk returned whilst still referenced", SlabAllocator.MIN_CHUNK_SIZE, _allocator.getUsedSize());
+
+        duplicate.dispose();
+        assertEquals("Chunk not returned", 0, _allocator.getUsedSize());
+        assertEquals("Unexpected requested size", 0, _allocator.getRequestedSize());
+    }
+
+    public void testChunkIsZeroedOnReuse()
+    {
+        QpidByteBuffer buffer = _allocator.allocate(100, DirectMemoryCategory.OTHER);
+        buffer.put((byte) 0xFF);
+        buffer.dispose();
+
+        buffer = _allocator.allocate(100, DirectMemoryCategory.OTHER);
+        buffer.limit(1);
+        assertEquals("Chunk is not zeroed", (byte) 0x0, buffer.get());
+        buffer.dispose();
+    }
+
+    public void testLongLivedChunkDoesNotPinSlab()
+    {
+        final List<QpidByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < CHUNKS_PER_SLAB; i++)
+        {
+            buffers.add(_allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER));
+        }
+        final QpidByteBuffer longLived = buffers.remove(0);
+        for (QpidByteBuffer buffer : buffers)
+        {
+            buffer.dispose();
+        }
+        buffers.clear();
+
+        for (int i = 0; i < CHUNKS_PER_SLAB - 1; i++)
+        {
+            buffers.add(_allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER));
+        }
+        assertEquals("Free chunks of the slab were not reused", SLAB_SIZE, _allocator.getCapacity());
+
+        longLived.dispose();
+        for (QpidByteBuffer buffer : buffers)
+        {
+            buffer.dispose();
+        }
+        assertEquals("Unexpected used size", 0, _allocator.getUsedSize());
+    }
+
+    public void testDetachedSlabAdoptedOnceChunksReturned()
+    {
+        final List<QpidByteBuffer> firstSlab = new ArrayList<>();
+        for (int i = 0; i < CHUNKS_PER_SLAB; i++)
+        {
+            firstSlab.add(_allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER));
+        }
+        final QpidByteBuffer fromSecondSlab =
+                _allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER);
+        assertEquals("Unexpected slab capacity", 2 * SLAB_SIZE, _allocator.getCapacity());
+
+        for (QpidByteBuffer buffer : firstSlab)
+        {
+            buffer.dispose();
+        }
+        for (int i = 1; i < CHUNKS_PER_SLAB; i++)
+        {
+            _allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER);
+        }
+        _allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE, DirectMemoryCategory.OTHER);
+
+        assertEquals("Detached slab was not adopted", 2 * SLAB_SIZE, _allocator.getCapacity());
+        fromSecondSlab.dispose();
+    }
+
+    public void testSlabOfDeadThreadAdopted() throws Exception
+    {
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                _allocator.allocate(100, DirectMemoryCategory.OTHER).dispose();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        final QpidByteBuffer buffer = _allocator.allocate(100, DirectMemoryCategory.OTHER);
+        assertEquals("Slab of the dead thread was not adopted", SLAB_SIZE, _allocator.getCapacity());
+        buffer.dispose();
+    }
+
+    public void testDirectMemoryAccounting()
+    {
+        final QpidByteBuffer content = _allocator.allocate(100, DirectMemoryCategory.CONTENT);
+        final QpidByteBuffer tls = _allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE + 1, DirectMemoryCategory.TLS);
+
+        assertEquals("Unexpected content memory",
+                     SlabAllocator.MIN_CHUNK_SIZE, _accounting.getUsed(DirectMemoryCategory.CONTENT));
+        assertEquals("Unexpected TLS memory",
+                     2 * SlabAllocator.MIN_CHUNK_SIZE, _accounting.getUsed(DirectMemoryCategory.TLS));
+        assertEquals("Unexpected total memory", 3 * SlabAllocator.MIN_CHUNK_SIZE, _accounting.getTotalUsed());
+
+        final QpidByteBuffer slice = content.slice();
+        content.dispose();
+        assertEquals("Memory of a chunk still shared should remain accounted",
+                     SlabAllocator.MIN_CHUNK_SIZE, _accounting.getUsed(DirectMemoryCategory.CONTENT));
+
+        slice.dispose();
+        tls.dispose();
+        assertEquals("Unexpected total memory after dispose", 0L, _accounting.getTotalUsed());
+    }
+
+    public void testLeakDetection() throws Exception
+    {
+        final BufferLeakDetector leakDetector = new BufferLeakDetector();
+        _allocator = new SlabAllocator(SLAB_SIZE,
+                                       new BufferPool(10, 4),
+                                       ByteBuffer.allocateDirect(SLAB_SIZE),
+                                       leakDetector,
+                                       _accounting);
+
+        _allocator.allocate(100, DirectMemoryCategory.OTHER).dispose();
+        _allocator.allocate(100, DirectMemoryCategory.OTHER);
+
+        for (int i = 0; i < 50 && leakDetector.getLeakCount() == 0; i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals("Unexpected number of leaks", 1, leakDetector.getLeakCount());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.qpid.filter.selector.SelectorParser;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SelectorCompilerTest extends QpidTestCase
+{
+    private static final List<String> SELECTORS = Arrays.asList("value = 5",
+                                                                "value > 5",
+                                                                "value >= 5",
+                                                                "value < 5",
+                                                                "value <= 5",
+                                                                "value <> 5",
+                                                                "value = 5.0",
+                                                                "value > 4.5",
+                                                                "value < 5000000000",
+                                                                "value = 'five'",
+                                                                "value <> 'five'",
+                                                                "value > 2 + 3",
+                                                                "value + 1 > 5",
+                                                                "5 < value",
+                                                                "value = 5 AND other = 'x'",
+                                                                "value = 5 OR other = 'x'",
+                                                                "NOT (value < 5) OR other IS NULL",
+                                                                "1 = 1 AND value >= 5",
+                                                                "1 = 2 OR value >= 5",
+                                                                "1 = 2 AND value >= 5",
+                                                                "value IN ('five', 'six') AND other LIKE 'x%'");
+
+    private static final List<Object> VALUES = Arrays.<Object>asList(null,
+                                                                     (byte) 5,
+                                                                     (short) 4,
+                                                                     5,
+                                                                     6,
+                                                                     5L,
+                                                                     5000000001L,
+                                                                     4.5f,
+                                                                     5.0f,
+                                                                     -0.0f,
+                                                                     5.0d,
+                                                                     Double.NaN,
+                                                                     "five",
+                                                                     "six",
+                                                                     Boolean.TRUE);
+
+    public void testCompiledSelectorsAgreeWithParsedSelectors() throws Exception
+    {
+        List<FilterableMessage> messages = new ArrayList<>();
+        for (Object value : VALUES)
+        {
+            for (Object other : Arrays.<Object>asList(null, "x", "y"))
+            {
+                messages.add(createMessage(value, other));
+            }
+        }
+
+        for (String selector : SELECTORS)
+        {
+            BooleanExpression<FilterableMessage> parsed = parse(selector);
+            BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parsed);
+            for (FilterableMessage message : messages)
+            {
+                String description = selector + " with value " + message.getHeader("value")
+                                     + " and other " + message.getHeader("other");
+                assertEquals(description, parsed.evaluate(message), compiled.evaluate(message));
+                assertEquals(description, parsed.matches(message), compiled.matches(message));
+            }
+        }
+    }
+
+    public void testConstantSelectorIsFolded() throws Exception
+    {
+        BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parse("2 * 3 = 6 AND NOT (1 > 2)"));
+
+        assertTrue("Expected constant expression, got " + compiled.getClass(),
+                   compiled instanceof ConstantExpression);
+        assertEquals(Boolean.TRUE, ((ConstantExpression) compiled).getValue());
+    }
+
+    public void testComparisonWithLiteralIsSpecialised() throws Exception
+    {
+        BooleanExpression<FilterableMessage> parsed = parse("value > 2 + 3");
+        BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parsed);
+
+        assertNotSame(parsed, compiled);
+        assertTrue(compiled.matches(createMessage(6, null)));
+        assertFalse(compiled.matches(createMessage(5, null)));
+    }
+
+    private BooleanExpression<FilterableMessage> parse(final String selector) throws Exception
+    {
+        SelectorParser<FilterableMessage> selectorParser = new SelectorParser<>();
+        selectorParser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
+        return selectorParser.parse(selector);
+    }
+
+    private FilterableMessage createMessage(final Object value, final Object other)
+    {
+        FilterableMessage message = mock(FilterableMessage.class);
+        when(message.getHeader("value")).thenReturn(value);
+        when(message.getHeader("other")).thenReturn(other);
+        return message;
+    }
+}